@@ -547,7 +547,8 @@ public class Cache2kBuilder<K, V> {
 
   /**
    * A set of listeners. Listeners added in this collection will be
-   * executed in a asynchronous mode.
+   * executed in a asynchronous mode. A {@link org.cache2k.event.CacheEntryBatchListener}
+   * receives the events in batches.
    *
    * @throws IllegalArgumentException if an identical listener is already added.
    * @param listener The listener to add
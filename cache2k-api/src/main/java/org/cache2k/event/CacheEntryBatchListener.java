@@ -0,0 +1,46 @@
+package org.cache2k.event;
+
+/*
+ * #%L
+ * cache2k API
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+
+import java.util.List;
+
+/**
+ * Listener that receives the events of a cache in batches instead of one call per
+ * event. The listener needs to be added with
+ * {@link org.cache2k.Cache2kBuilder#addAsyncListener}. Events are grouped until
+ * the batch size is reached or the time window has passed. Events of the same key
+ * are delivered in the order they happened, also across batches.
+ *
+ * @author Jens Wilke
+ */
+public interface CacheEntryBatchListener<K, V> extends CacheEntryOperationListener<K,V> {
+
+  /**
+   * Called with the events that happened since the last call.
+   *
+   * @param cache Reference to the cache that generated the events.
+   * @param events the events in order of occurrence per key, never empty
+   */
+  void onEntryEvents(Cache<K,V> cache, List<CacheEntryEvent<K,V>> events);
+
+}
@@ -0,0 +1,51 @@
+package org.cache2k.event;
+
+/*
+ * #%L
+ * cache2k API
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.CacheEntry;
+
+/**
+ * An entry event delivered to a {@link CacheEntryBatchListener}.
+ *
+ * @author Jens Wilke
+ */
+public interface CacheEntryEvent<K, V> {
+
+  enum Type {
+    CREATED, UPDATED, REMOVED, EXPIRED, EVICTED
+  }
+
+  Type getType();
+
+  K getKey();
+
+  /**
+   * The entry after the operation. For removal, expiry and eviction the entry
+   * containing the last data.
+   */
+  CacheEntry<K, V> getEntry();
+
+  /**
+   * For an update the entry before the operation, otherwise {@code null}.
+   */
+  CacheEntry<K, V> getPreviousEntry();
+
+}
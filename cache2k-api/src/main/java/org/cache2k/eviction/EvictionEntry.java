@@ -0,0 +1,44 @@
+package org.cache2k.eviction;
+
+/*
+ * #%L
+ * cache2k API
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Entry of the cache as seen by an {@link EvictionPolicy}. The policy may keep the
+ * reference to identify the entry, until it is removed.
+ *
+ * @author Jens Wilke
+ */
+public interface EvictionEntry {
+
+  /**
+   * Hash code of the key, as used by the cache. Stays the same while the entry
+   * is in the cache.
+   */
+  int getKeyHash();
+
+  /**
+   * Number of hits on the entry since it was inserted. The cache counts hits in the
+   * entry without calling the policy, so the read path stays free of locking. A policy
+   * reads the counter when it looks for an entry to evict or when the entry is removed.
+   */
+  long getHitCount();
+
+}
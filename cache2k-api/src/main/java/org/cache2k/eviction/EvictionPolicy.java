@@ -0,0 +1,56 @@
+package org.cache2k.eviction;
+
+/*
+ * #%L
+ * cache2k API
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * A custom eviction policy, selected by its class name via the configuration section
+ * {@code evictionPolicy} of the cache2k implementation. The implementation needs a
+ * public default constructor. One instance is created for each eviction segment of a
+ * cache.
+ *
+ * <p>The cache calls the methods while holding the eviction lock of the segment, so an
+ * implementation needs no synchronization. Methods must not call operations of the cache.
+ *
+ * @author Jens Wilke
+ */
+public interface EvictionPolicy {
+
+  /**
+   * A new entry was inserted in the cache.
+   */
+  void insert(EvictionEntry e);
+
+  /**
+   * The entry was removed from the cache or evicted. The policy must not return
+   * the entry from {@link #selectVictim()} afterwards.
+   */
+  void remove(EvictionEntry e);
+
+  /**
+   * Select an entry to evict. Only called if the policy holds entries. The cache may call
+   * this several times before the selected entries are removed, so consecutive calls need
+   * to return different entries, e.g. by advancing a clock hand. An entry that could not
+   * be evicted, because it is in use at the moment, stays in the cache and may be
+   * selected again later.
+   */
+  EvictionEntry selectVictim();
+
+}
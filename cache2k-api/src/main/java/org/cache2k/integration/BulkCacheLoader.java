@@ -0,0 +1,86 @@
+package org.cache2k.integration;
+
+/*
+ * #%L
+ * cache2k API
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.CacheEntry;
+import org.cache2k.CacheOperationCompletionListener;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Loader that retrieves the values for multiple keys in one request. The cache uses the
+ * bulk load for {@link org.cache2k.Cache#getAll(Iterable)},
+ * {@link org.cache2k.Cache#loadAll(Iterable, CacheOperationCompletionListener)},
+ * {@link org.cache2k.Cache#reloadAll(Iterable, CacheOperationCompletionListener)} and
+ * {@link org.cache2k.Cache#prefetchAll(Iterable, CacheOperationCompletionListener)}.
+ *
+ * <p>While a bulk load is running, the entries for the requested keys are locked, so
+ * concurrent requests on the same keys wait for the result. Keys which are already
+ * loaded by another operation are not part of the bulk request.
+ *
+ * <p>A single value is loaded by calling {@link #loadAll} with one key. Override
+ * {@link #load(Object, long, CacheEntry)}, if there is a more efficient way.
+ * Bulk loading is not supported if the cache has listeners, a writer or an
+ * asynchronous loader, in this case only single values are loaded.
+ *
+ * @author Jens Wilke
+ * @see CacheLoader
+ */
+public abstract class BulkCacheLoader<K, V> extends AdvancedCacheLoader<K, V> {
+
+  /**
+   * Executor running the task in the calling thread. Passed to {@link #loadAll} if the
+   * load should not occupy additional threads.
+   */
+  public static final Executor CALLER_RUNS = new Executor() {
+    @Override
+    public void execute(final Runnable command) {
+      command.run();
+    }
+  };
+
+  /**
+   * Loads the value via {@link #loadAll} with one key.
+   */
+  @Override
+  public V load(final K key, final long startTime, final CacheEntry<K, V> currentEntry) throws Exception {
+    return loadAll(Collections.singleton(key), startTime, CALLER_RUNS).get(key);
+  }
+
+  /**
+   * Retrieves or generates the values for the keys.
+   *
+   * <p>From inside this method it is illegal to call methods on the same cache. This
+   * may cause a deadlock.
+   *
+   * @param keys the non-null keys to provide the values for
+   * @param startTime time in millis, retrieved before the call
+   * @param executor an executor for concurrent loading, may execute within the calling thread
+   * @return the loaded values. If a key has no mapping, the value {@code null} is associated.
+   * @throws Exception Unhandled exception from the loader. The exception is handled for
+   *                   every requested key, like for a single load
+   */
+  public abstract Map<K, V> loadAll(Set<K> keys, long startTime, Executor executor) throws Exception;
+
+}
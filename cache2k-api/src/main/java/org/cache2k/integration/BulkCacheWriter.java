@@ -0,0 +1,97 @@
+package org.cache2k.integration;
+
+/*
+ * #%L
+ * cache2k API
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writer that writes or deletes multiple entries in one request. The cache uses the
+ * bulk operations for {@link org.cache2k.Cache#putAll(Map)} and
+ * {@link org.cache2k.Cache#removeAll(Iterable)}. The writer reports a failure for
+ * each key separately. Only entries written successfully are updated in the cache.
+ * If some keys fail, the cache operation throws a {@link CacheWriterException}
+ * after all other entries were updated.
+ *
+ * <p>While a bulk write is running, the entries for the keys are locked, so concurrent
+ * requests on the same keys wait for the result. Keys which are processed by another
+ * operation at the same time are written separately via {@link #write} or
+ * {@link #delete}.
+ *
+ * <p>Single mutations are written by calling {@link #writeAll} or {@link #deleteAll}
+ * with one key. Override {@link #write(Object, Object)} and {@link #delete(Object)},
+ * if there is a more efficient way.
+ *
+ * @author Jens Wilke
+ * @see CacheWriter
+ */
+public abstract class BulkCacheWriter<K, V> extends CacheWriter<K, V> {
+
+  /**
+   * Writes the value via {@link #writeAll} with one entry.
+   */
+  @Override
+  public void write(final K key, final V value) throws Exception {
+    rethrow(writeAll(Collections.singletonMap(key, value)), key);
+  }
+
+  /**
+   * Deletes via {@link #deleteAll} with one key.
+   */
+  @Override
+  public void delete(final K key) throws Exception {
+    rethrow(deleteAll(Collections.singleton(key)), key);
+  }
+
+  private void rethrow(Map<K, Exception> _failures, K key) throws Exception {
+    if (_failures != null && _failures.containsKey(key)) {
+      throw _failures.get(key);
+    }
+  }
+
+  /**
+   * Called when the values were updated or inserted into the cache.
+   *
+   * <p><b>Calling cache operations:</b> It is illegal to call any
+   * cache methods from this method. This may have an undesired effect
+   * and can cause a deadlock.
+   *
+   * @param entries the keys and values to be written, values may be null if null is permitted
+   * @return the exceptions of the keys that could not be written. An empty map or
+   *         {@code null} if all entries were written.
+   * @throws Exception Unhandled exception from the writer. No entry is updated in
+   *                   the cache, the exception is reported for every key
+   */
+  public abstract Map<K, Exception> writeAll(Map<K, V> entries) throws Exception;
+
+  /**
+   * Called when mappings are removed from the cache.
+   *
+   * @param keys the keys removed from the cache
+   * @return the exceptions of the keys that could not be deleted. An empty map or
+   *         {@code null} if all keys were deleted.
+   * @throws Exception Unhandled exception from the writer. No entry is removed from
+   *                   the cache, the exception is reported for every key
+   */
+  public abstract Map<K, Exception> deleteAll(Set<K> keys) throws Exception;
+
+}
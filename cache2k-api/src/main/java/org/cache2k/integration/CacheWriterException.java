@@ -33,4 +33,8 @@ public class CacheWriterException extends CustomizationException {
     super(cause);
   }
 
+  public CacheWriterException(final String message, final Throwable cause) {
+    super(message, cause);
+  }
+
 }
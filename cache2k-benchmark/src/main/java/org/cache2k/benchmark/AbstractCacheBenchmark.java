@@ -0,0 +1,95 @@
+package org.cache2k.benchmark;
+
+/*
+ * #%L
+ * cache2k JMH benchmarks
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Common parameters and the key sequence for the cache benchmarks. The key space is
+ * bigger than the capacity, so operations that insert also run the eviction.
+ *
+ * @author Jens Wilke
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public abstract class AbstractCacheBenchmark {
+
+  /** Length of the pre generated key sequence, power of two */
+  public static final int SEQUENCE_LENGTH = 1 << 20;
+  public static final int SEQUENCE_MASK = SEQUENCE_LENGTH - 1;
+
+  @Param({"HEAP", "WIRED"})
+  public CacheVariant variant;
+
+  @Param({"UNIFORM", "ZIPFIAN", "SCAN"})
+  public KeyDistribution distribution;
+
+  @Param({"131072"})
+  public int entryCapacity;
+
+  /** Use a power of two, so the zipfian keys get scattered */
+  @Param({"262144"})
+  public int keySpace;
+
+  protected int[] keys;
+
+  @Setup
+  public void setupKeys() {
+    keys = distribution.generate(SEQUENCE_LENGTH, keySpace, new Random(1802));
+  }
+
+  /**
+   * Position in the key sequence of each thread. Threads start at a random offset
+   * so they do not request the same keys at the same time.
+   */
+  @State(Scope.Thread)
+  public static class ThreadState {
+
+    int index;
+
+    @Setup
+    public void setup() {
+      index = new Random().nextInt(SEQUENCE_LENGTH);
+    }
+
+    public int next(final int[] _keys) {
+      return _keys[index++ & SEQUENCE_MASK];
+    }
+
+  }
+
+}
@@ -0,0 +1,144 @@
+package org.cache2k.benchmark;
+
+/*
+ * #%L
+ * cache2k JMH benchmarks
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.integration.CacheLoader;
+import org.cache2k.processor.EntryProcessor;
+import org.cache2k.processor.MutableCacheEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Cache operations with object keys. The cache is filled to its capacity before the
+ * measurement. {@code get} has a loader, so a miss inserts and evicts.
+ *
+ * @author Jens Wilke
+ */
+@State(Scope.Benchmark)
+public class CacheBenchmark extends AbstractCacheBenchmark {
+
+  public static final int GET_ALL_BATCH_SIZE = 16;
+
+  static final Callable<Integer> CONSTANT = new Callable<Integer>() {
+    @Override
+    public Integer call() {
+      return 4711;
+    }
+  };
+
+  static final EntryProcessor<Integer, Integer, Integer> READ_OR_SET =
+    new EntryProcessor<Integer, Integer, Integer>() {
+      @Override
+      public Integer process(final MutableCacheEntry<Integer, Integer> e) {
+        if (!e.exists()) {
+          e.setValue(e.getKey());
+        }
+        return e.getValue();
+      }
+    };
+
+  /** Boxed keys, so the benchmark does not measure the allocation of the key */
+  Integer[] boxedKeys;
+  Cache<Integer, Integer> cache;
+
+  @Setup
+  public void setup() {
+    boxedKeys = new Integer[keySpace];
+    for (int i = 0; i < keySpace; i++) {
+      boxedKeys[i] = i;
+    }
+    cache = variant.apply(Cache2kBuilder.of(Integer.class, Integer.class))
+      .entryCapacity(entryCapacity)
+      .eternal(true)
+      .loader(new CacheLoader<Integer, Integer>() {
+        @Override
+        public Integer load(final Integer key) {
+          return key;
+        }
+      })
+      .build();
+    for (int i = 0; i < entryCapacity; i++) {
+      cache.put(boxedKeys[keys[i]], keys[i]);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    cache.close();
+  }
+
+  @Benchmark
+  public Integer get(ThreadState t) {
+    return cache.get(boxedKeys[t.next(keys)]);
+  }
+
+  @Benchmark
+  public Integer peek(ThreadState t) {
+    return cache.peek(boxedKeys[t.next(keys)]);
+  }
+
+  @Benchmark
+  public void put(ThreadState t) {
+    Integer k = boxedKeys[t.next(keys)];
+    cache.put(k, k);
+  }
+
+  @Benchmark
+  public Integer invoke(ThreadState t) {
+    return cache.invoke(boxedKeys[t.next(keys)], READ_OR_SET);
+  }
+
+  @Benchmark
+  public Integer computeIfAbsent(ThreadState t) {
+    return cache.computeIfAbsent(boxedKeys[t.next(keys)], CONSTANT);
+  }
+
+  @Benchmark
+  public Map<Integer, Integer> getAll(BatchState b, ThreadState t) {
+    List<Integer> _batch = b.batch;
+    _batch.clear();
+    for (int i = 0; i < GET_ALL_BATCH_SIZE; i++) {
+      _batch.add(boxedKeys[t.next(keys)]);
+    }
+    return cache.getAll(_batch);
+  }
+
+  /**
+   * Reused key list for {@code getAll}.
+   */
+  @State(Scope.Thread)
+  public static class BatchState {
+
+    final List<Integer> batch = new ArrayList<Integer>(GET_ALL_BATCH_SIZE);
+
+  }
+
+}
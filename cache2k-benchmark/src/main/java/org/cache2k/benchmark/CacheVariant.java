@@ -0,0 +1,55 @@
+package org.cache2k.benchmark;
+
+/*
+ * #%L
+ * cache2k JMH benchmarks
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.CacheEntry;
+import org.cache2k.event.CacheEntryCreatedListener;
+
+/**
+ * Select the cache implementation that is benchmarked. A synchronous listener
+ * makes the builder wrap the {@code HeapCache} into a {@code WiredCache}.
+ *
+ * @author Jens Wilke
+ */
+public enum CacheVariant {
+
+  HEAP {
+    @Override
+    public <K, V> Cache2kBuilder<K, V> apply(final Cache2kBuilder<K, V> b) {
+      return b;
+    }
+  },
+
+  WIRED {
+    @Override
+    public <K, V> Cache2kBuilder<K, V> apply(final Cache2kBuilder<K, V> b) {
+      return b.addListener(new CacheEntryCreatedListener<K, V>() {
+        @Override
+        public void onEntryCreated(final Cache<K, V> cache, final CacheEntry<K, V> entry) { }
+      });
+    }
+  };
+
+  public abstract <K, V> Cache2kBuilder<K, V> apply(Cache2kBuilder<K, V> b);
+
+}
@@ -0,0 +1,80 @@
+package org.cache2k.benchmark;
+
+/*
+ * #%L
+ * cache2k JMH benchmarks
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.IntCache;
+import org.cache2k.integration.CacheLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Operations on the {@link IntCache} with primitive keys. Same setup as {@link CacheBenchmark}.
+ *
+ * @author Jens Wilke
+ */
+@State(Scope.Benchmark)
+public class IntCacheBenchmark extends AbstractCacheBenchmark {
+
+  IntCache<Integer> cache;
+
+  @Setup
+  public void setup() {
+    cache = variant.apply(Cache2kBuilder.of(Integer.class, Integer.class))
+      .entryCapacity(entryCapacity)
+      .eternal(true)
+      .loader(new CacheLoader<Integer, Integer>() {
+        @Override
+        public Integer load(final Integer key) {
+          return key;
+        }
+      })
+      .buildForIntKey();
+    for (int i = 0; i < entryCapacity; i++) {
+      cache.put(keys[i], Integer.valueOf(keys[i]));
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    cache.close();
+  }
+
+  @Benchmark
+  public Integer get(ThreadState t) {
+    return cache.get(t.next(keys));
+  }
+
+  @Benchmark
+  public Integer peek(ThreadState t) {
+    return cache.peek(t.next(keys));
+  }
+
+  @Benchmark
+  public void put(ThreadState t) {
+    int k = t.next(keys);
+    cache.put(k, Integer.valueOf(k));
+  }
+
+}
@@ -0,0 +1,83 @@
+package org.cache2k.benchmark;
+
+/*
+ * #%L
+ * cache2k JMH benchmarks
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Random;
+
+/**
+ * Distribution of the requested keys.
+ *
+ * @author Jens Wilke
+ */
+public enum KeyDistribution {
+
+  /** Every key in the key space is requested with equal probability */
+  UNIFORM {
+    @Override
+    public int[] generate(final int _count, final int _keySpace, final Random _random) {
+      int[] a = new int[_count];
+      for (int i = 0; i < _count; i++) {
+        a[i] = _random.nextInt(_keySpace);
+      }
+      return a;
+    }
+  },
+
+  /**
+   * Few keys are requested very often, with a skew typical for web workloads.
+   * See {@link ZipfianGenerator}.
+   */
+  ZIPFIAN {
+    @Override
+    public int[] generate(final int _count, final int _keySpace, final Random _random) {
+      ZipfianGenerator _generator = new ZipfianGenerator(_keySpace, _random);
+      int[] a = new int[_count];
+      for (int i = 0; i < _count; i++) {
+        a[i] = _generator.next();
+      }
+      return a;
+    }
+  },
+
+  /**
+   * All keys are requested in sequence and repeated. If the key space is bigger than
+   * the cache capacity, this is the worst case for LRU.
+   */
+  SCAN {
+    @Override
+    public int[] generate(final int _count, final int _keySpace, final Random _random) {
+      int[] a = new int[_count];
+      for (int i = 0; i < _count; i++) {
+        a[i] = i % _keySpace;
+      }
+      return a;
+    }
+  };
+
+  /**
+   * Generate a key sequence.
+   *
+   * @param _count length of the sequence
+   * @param _keySpace keys are in the range {@code 0 <= key < _keySpace}
+   */
+  public abstract int[] generate(int _count, int _keySpace, Random _random);
+
+}
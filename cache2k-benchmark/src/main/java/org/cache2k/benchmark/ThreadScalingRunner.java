@@ -0,0 +1,57 @@
+package org.cache2k.benchmark;
+
+/*
+ * #%L
+ * cache2k JMH benchmarks
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run the selected benchmarks once for each thread count, since JMH has no
+ * parameter for the thread count. Usage:
+ *
+ * <pre>{@code
+ * java -cp target/benchmarks.jar org.cache2k.benchmark.ThreadScalingRunner [regex] [threads,...]
+ * }</pre>
+ *
+ * <p>Default is all benchmarks of this module with 1, 2, 4 threads and the
+ * number of available processors.
+ *
+ * @author Jens Wilke
+ */
+public class ThreadScalingRunner {
+
+  public static void main(String[] args) throws RunnerException {
+    String _include = args.length > 0 ? args[0] : ThreadScalingRunner.class.getPackage().getName() + ".*";
+    String _threads = args.length > 1 ? args[1] :
+      "1,2,4," + Runtime.getRuntime().availableProcessors();
+    for (String s : _threads.split(",")) {
+      int _threadCount = Integer.parseInt(s.trim());
+      Options opt = new OptionsBuilder()
+        .include(_include)
+        .threads(_threadCount)
+        .build();
+      new Runner(opt).run();
+    }
+  }
+
+}
@@ -0,0 +1,95 @@
+package org.cache2k.benchmark;
+
+/*
+ * #%L
+ * cache2k JMH benchmarks
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Random;
+
+/**
+ * Zipfian distributed integers, following the algorithm of Gray et al. "Quickly generating
+ * billion-record synthetic databases" as used in YCSB. The most frequent value is 0.
+ * Popular values are scattered over the key space, so they do not end up in adjacent
+ * hash table slots.
+ *
+ * @author Jens Wilke
+ */
+public class ZipfianGenerator {
+
+  public static final double DEFAULT_THETA = 0.99;
+
+  private final int items;
+  private final Random random;
+  private final double theta;
+  private final double alpha;
+  private final double zetan;
+  private final double eta;
+
+  public ZipfianGenerator(final int _items, final Random _random) {
+    this(_items, DEFAULT_THETA, _random);
+  }
+
+  public ZipfianGenerator(final int _items, final double _theta, final Random _random) {
+    items = _items;
+    random = _random;
+    theta = _theta;
+    alpha = 1.0 / (1.0 - theta);
+    zetan = zeta(items, theta);
+    double _zeta2 = zeta(2, theta);
+    eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - _zeta2 / zetan);
+  }
+
+  private static double zeta(final int n, final double _theta) {
+    double sum = 0;
+    for (int i = 0; i < n; i++) {
+      sum += 1 / Math.pow(i + 1, _theta);
+    }
+    return sum;
+  }
+
+  public int next() {
+    double u = random.nextDouble();
+    double uz = u * zetan;
+    int v;
+    if (uz < 1.0) {
+      v = 0;
+    } else if (uz < 1.0 + Math.pow(0.5, theta)) {
+      v = 1;
+    } else {
+      v = (int) (items * Math.pow(eta * u - eta + 1, alpha));
+      if (v >= items) {
+        v = items - 1;
+      }
+    }
+    return scatter(v);
+  }
+
+  /**
+   * Map the rank to a key. Multiplying with an odd constant is a bijection modulo
+   * 2^32, so the mapping is only collision free if the item count is a power of two.
+   * Otherwise use the rank itself.
+   */
+  private int scatter(final int v) {
+    if (Integer.bitCount(items) != 1) {
+      return v;
+    }
+    return (v * 0x9E3779B9) & (items - 1);
+  }
+
+}
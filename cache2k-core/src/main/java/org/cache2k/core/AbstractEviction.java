@@ -23,6 +23,11 @@ package org.cache2k.core;
 import org.cache2k.core.concurrency.Job;
 import org.cache2k.Weigher;
 
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
 /**
  * Basic eviction functionality.
  *
@@ -35,11 +40,23 @@ public abstract class AbstractEviction implements Eviction, EvictionMetrics {
   public static final int MAXIMAL_CHUNK_SIZE = 64;
   public static final long MINIMUM_CAPACITY_FOR_CHUNKING = 1000;
 
+  /**
+   * Delay before the background eviction is retried when a round could not evict
+   * any entry.
+   */
+  static final long BACKGROUND_EVICTION_RETRY_MILLIS = 1;
+
+  /**
+   * Number of batches the insert buffer may hold, before inserting threads wait for
+   * the eviction lock.
+   */
+  static final int INSERT_BUFFER_MAXIMUM_BATCHES = 16;
+
   protected final long maxSize;
   protected final long maxWeight;
   protected final long correctedMaxSizeOrWeight;
   protected final HeapCache heapCache;
-  private final Object lock = new Object();
+  private final ReentrantLock lock = new ReentrantLock();
   private long newEntryCounter;
   private long removedCnt;
   private long expiredRemovedCnt;
@@ -53,6 +70,29 @@ public abstract class AbstractEviction implements Eviction, EvictionMetrics {
   private int evictionRunningCount = 0;
   private long evictionRunningWeight = 0;
   private final Weigher weigher;
+  private FrequencySketch admissionFilter;
+  /** Most recently inserted entry, which may be evicted instead of the eviction candidate */
+  private Entry admissionCandidate;
+  private long admissionRejectCount;
+  private ReadBuffer readBuffer;
+  /** Inserts and removals not yet applied to the replacement list, or null */
+  private ConcurrentLinkedQueue<Entry> insertBuffer;
+  private int insertBufferBatchSize;
+  private int insertBufferLimit;
+  private final AtomicInteger insertBufferSize = new AtomicInteger();
+  private long insertBufferDrainCount;
+  /** Evict in a background task, if set */
+  private boolean backgroundEviction;
+  private long lowWatermark;
+  private long highWatermark;
+  private boolean backgroundEvictionScheduled;
+  private long backgroundEvictionCount;
+  private final Runnable backgroundEvictionTask = new Runnable() {
+    @Override
+    public void run() {
+      runBackgroundEviction();
+    }
+  };
 
   public AbstractEviction(final HeapCache heapCache, final HeapCacheListener listener,
                           final long maxSize, final Weigher weigher, final long maxWeight,
@@ -92,6 +132,66 @@ public abstract class AbstractEviction implements Eviction, EvictionMetrics {
     return weigher != null;
   }
 
+  /**
+   * Enable the admission filter. Needs to be called before the eviction is used.
+   *
+   * @see AdmissionFilterConfiguration
+   */
+  public void setAdmissionFilter(final FrequencySketch v) {
+    admissionFilter = v;
+  }
+
+  /**
+   * Buffer with recorded hits, that is drained before eviction candidates are selected.
+   *
+   * @see ReadBufferConfiguration
+   */
+  public void setReadBuffer(final ReadBuffer v) {
+    readBuffer = v;
+  }
+
+  /**
+   * Buffer inserts and removals, so callers of {@link #submitWithoutEviction(Entry)}
+   * and {@link #evictEventually(int)} do not block on the eviction lock. Needs to be called before the eviction is used.
+   *
+   * @param _batchSize maximum number of buffered entries applied by a submitting thread
+   * @see InsertBufferConfiguration
+   */
+  public void setInsertBuffer(final int _batchSize) {
+    if (_batchSize <= 0) {
+      throw new IllegalArgumentException("batch size must be positive");
+    }
+    insertBuffer = new ConcurrentLinkedQueue<Entry>();
+    insertBufferBatchSize = _batchSize;
+    insertBufferLimit = _batchSize * INSERT_BUFFER_MAXIMUM_BATCHES;
+  }
+
+  /**
+   * Evict in a background task of the cache executor instead of the inserting thread.
+   * The background eviction starts when the capacity is reached and evicts until the
+   * size or weight is below the low watermark. The inserting thread only evicts if the
+   * size or weight reaches the high watermark. Needs to be called before the eviction is used.
+   *
+   * @param _lowWatermarkPercent percentage of the capacity, the background eviction stops at
+   * @param _highWatermarkPercent percentage of the capacity, inserting threads start to evict at
+   * @see BackgroundEvictionConfiguration
+   */
+  public void setBackgroundEviction(final int _lowWatermarkPercent, final int _highWatermarkPercent) {
+    if (_lowWatermarkPercent <= 0 || _lowWatermarkPercent > 100) {
+      throw new IllegalArgumentException("low watermark needs to be between 1 and 100 percent");
+    }
+    if (_highWatermarkPercent < 100) {
+      throw new IllegalArgumentException("high watermark needs to be at least 100 percent");
+    }
+    long _capacity = maxSize >= 0 ? maxSize : maxWeight;
+    if (_capacity == Long.MAX_VALUE) {
+      return;
+    }
+    lowWatermark = _capacity * _lowWatermarkPercent / 100;
+    highWatermark = Math.max(correctedMaxSizeOrWeight, _capacity * _highWatermarkPercent / 100);
+    backgroundEviction = true;
+  }
+
   protected static long getWeightFromEntry(Entry e) {
     return LongTo16BitFloatingPoint.toLong(e.getCompressedWeight());
   }
@@ -157,12 +257,15 @@ public abstract class AbstractEviction implements Eviction, EvictionMetrics {
       return;
     }
     Entry[] evictionChunk = null;
-    synchronized (lock) {
+    lock.lock();
+    try {
       updateWeightInLock(e);
       if (currentWeight <= (correctedMaxSizeOrWeight + evictionRunningWeight)) {
         return;
       }
       evictionChunk = fillEvictionChunk();
+    } finally {
+      lock.unlock();
     }
     evictChunk(evictionChunk);
   }
@@ -180,6 +283,7 @@ public abstract class AbstractEviction implements Eviction, EvictionMetrics {
 
   private void removeEventually(final Entry e) {
     if (!e.isRemovedFromReplacementList()) {
+      recordHits(e);
       removeFromReplacementList(e);
       updateTotalWeightForRemove(e);
       long nrt = e.getNextRefreshTime();
@@ -193,18 +297,71 @@ public abstract class AbstractEviction implements Eviction, EvictionMetrics {
     }
   }
 
+  /**
+   * With an insert buffer, the entry is appended to the buffer and the buffer is applied
+   * only if the eviction lock is available. Buffered entries are applied in order, so
+   * an insert is always applied before the removal of the same entry. If the buffer
+   * is full, the thread waits for the lock, so the buffer cannot grow without bounds.
+   */
   @Override
   public boolean submitWithoutEviction(final Entry e) {
-    synchronized (lock) {
-      if (e.isNotYetInsertedInReplacementList()) {
-        insertIntoReplacementList(e);
-        insertAndWeighInLock(e);
-        newEntryCounter++;
-      } else {
-        removeEventually(e);
-        updateTotalWeightForRemove(e);
+    if (insertBuffer != null) {
+      insertBuffer.add(e);
+      if (insertBufferSize.incrementAndGet() > insertBufferLimit) {
+        lock.lock();
+      } else if (!lock.tryLock()) {
+        return false;
+      }
+      try {
+        drainInsertBufferInLock(insertBufferBatchSize);
+        return isEvictionNeeded();
+      } finally {
+        lock.unlock();
       }
+    }
+    lock.lock();
+    try {
+      submitInLock(e);
       return isEvictionNeeded();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void submitInLock(final Entry e) {
+    if (e.isNotYetInsertedInReplacementList()) {
+      insertIntoReplacementList(e);
+      insertAndWeighInLock(e);
+      newEntryCounter++;
+      if (admissionFilter != null) {
+        admissionFilter.increment(e.hashCode);
+        admissionCandidate = e;
+      }
+    } else {
+      removeEventually(e);
+      updateTotalWeightForRemove(e);
+    }
+  }
+
+  /**
+   * Apply buffered inserts and removals to the replacement list.
+   *
+   * @param _maxCount stop after this number of entries, so a thread that submits
+   *                  does not keep on draining entries of other threads
+   */
+  private void drainInsertBufferInLock(final int _maxCount) {
+    if (insertBuffer == null) {
+      return;
+    }
+    int _count = 0;
+    Entry e;
+    while (_count < _maxCount && (e = insertBuffer.poll()) != null) {
+      submitInLock(e);
+      _count++;
+    }
+    if (_count > 0) {
+      insertBufferSize.addAndGet(-_count);
+      insertBufferDrainCount++;
     }
   }
 
@@ -223,25 +380,154 @@ public abstract class AbstractEviction implements Eviction, EvictionMetrics {
   @Override
   public void evictEventually() {
     Entry[] chunk;
-    synchronized (lock) {
+    lock.lock();
+    try {
       chunk = fillEvictionChunk();
+    } finally {
+      lock.unlock();
     }
     evictChunk(chunk);
   }
 
+  /**
+   * Called by an inserting thread. With an insert buffer the thread does not wait for the
+   * eviction lock and drains only a batch of the buffer. If the lock is taken, the eviction
+   * is left to the lock holder or a following insert. If the buffer is full, the thread
+   * waits for the lock and evicts as needed.
+   */
   @Override
   public void evictEventually(final int hashCodeHint) {
-    evictEventually();
+    if (insertBuffer == null) {
+      evictEventually();
+      return;
+    }
+    if (insertBufferSize.get() > insertBufferLimit) {
+      evictEventuallyAfterFullDrain();
+      return;
+    }
+    if (!lock.tryLock()) {
+      return;
+    }
+    Entry[] chunk;
+    try {
+      drainInsertBufferInLock(insertBufferBatchSize);
+      chunk = selectEvictionChunk();
+    } finally {
+      lock.unlock();
+    }
+    evictChunk(chunk);
+  }
+
+  /**
+   * Apply the complete insert buffer and evict chunks, until no more eviction is needed.
+   * Catches up with the evictions skipped by inserts that did not get the lock.
+   */
+  private void evictEventuallyAfterFullDrain() {
+    Entry[] chunk;
+    do {
+      lock.lock();
+      try {
+        chunk = fillEvictionChunk();
+      } finally {
+        lock.unlock();
+      }
+    } while (chunk != null && evictChunk(chunk) > 0);
   }
 
   private Entry[] fillEvictionChunk() {
+    drainInsertBufferInLock(Integer.MAX_VALUE);
+    return selectEvictionChunk();
+  }
+
+  private Entry[] selectEvictionChunk() {
     if (!isEvictionNeeded()) {
       return null;
     }
+    if (backgroundEviction && scheduleBackgroundEviction()) {
+      return null;
+    }
+    if (readBuffer != null) {
+      readBuffer.tryDrain();
+    }
     final Entry[] chunk = reuseChunkArray();
     return refillChunk(chunk);
   }
 
+  /**
+   * Start the background eviction, if not yet running.
+   *
+   * @return true, if the caller does not need to evict, because the high watermark
+   *         is not reached yet
+   */
+  private boolean scheduleBackgroundEviction() {
+    if (!backgroundEvictionScheduled) {
+      backgroundEvictionScheduled = true;
+      try {
+        heapCache.getExecutor().execute(backgroundEvictionTask);
+      } catch (RejectedExecutionException ex) {
+        backgroundEvictionScheduled = false;
+        return false;
+      }
+    }
+    return getSizeOrWeightWithoutRunningEvictions() < highWatermark;
+  }
+
+  private long getSizeOrWeightWithoutRunningEvictions() {
+    if (isWeigherPresent()) {
+      return currentWeight - evictionRunningWeight;
+    }
+    return getSize() - evictionRunningCount;
+  }
+
+  /**
+   * Evict chunks until the low watermark is reached. If no entry could be evicted,
+   * the eviction is continued in a new task after a short delay.
+   */
+  private void runBackgroundEviction() {
+    for (;;) {
+      Entry[] chunk;
+      lock.lock();
+      try {
+        drainInsertBufferInLock(Integer.MAX_VALUE);
+        if (heapCache.isClosed() || getSizeOrWeightWithoutRunningEvictions() <= lowWatermark) {
+          backgroundEvictionScheduled = false;
+          return;
+        }
+        backgroundEvictionCount++;
+        chunk = refillChunk(reuseChunkArray());
+      } finally {
+        lock.unlock();
+      }
+      if (evictChunk(chunk) == 0) {
+        rescheduleBackgroundEviction();
+        return;
+      }
+    }
+  }
+
+  /**
+   * No entry could be evicted, e.g. because all candidates are processing at the moment
+   * or were evicted by an inserting thread. Retry in a new task, so the size reaches the
+   * low watermark also without further inserts, which only start the background eviction
+   * when the capacity is reached.
+   */
+  private void rescheduleBackgroundEviction() {
+    try {
+      heapCache.getClock().sleep(BACKGROUND_EVICTION_RETRY_MILLIS);
+      heapCache.getExecutor().execute(backgroundEvictionTask);
+      return;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } catch (RejectedExecutionException ignore) {
+    }
+    lock.lock();
+    try {
+      backgroundEvictionScheduled = false;
+    } finally {
+      lock.unlock();
+    }
+  }
+
   private Entry[] refillChunk(Entry[] chunk) {
     if (chunk == null) {
       chunk = new Entry[chunkSize];
@@ -249,6 +535,9 @@ public abstract class AbstractEviction implements Eviction, EvictionMetrics {
     evictionRunningCount += chunk.length;
     for (int i = 0; i < chunk.length; i++) {
       chunk[i] = findEvictionCandidate(null);
+      if (admissionFilter != null) {
+        chunk[i] = admitOrReject(chunk[i]);
+      }
       if (isWeigherPresent()) {
         evictionRunningWeight += getWeightFromEntry(chunk[i]);
       }
@@ -256,13 +545,55 @@ public abstract class AbstractEviction implements Eviction, EvictionMetrics {
     return chunk;
   }
 
+  /**
+   * Compare the most recently inserted entry with the eviction candidate. The new
+   * entry stays only if it is used more frequently. Entries promoted to the hot
+   * set were seen before and are not considered.
+   *
+   * @return the entry to evict
+   */
+  private Entry admitOrReject(final Entry _candidate) {
+    Entry _newEntry = admissionCandidate;
+    if (_newEntry == null) {
+      return _candidate;
+    }
+    admissionCandidate = null;
+    if (_newEntry == _candidate || _newEntry.isHot() || _newEntry.isRemovedFromReplacementList()) {
+      return _candidate;
+    }
+    if (estimateFrequency(_newEntry) > estimateFrequency(_candidate)) {
+      return _candidate;
+    }
+    admissionRejectCount++;
+    return _newEntry;
+  }
+
+  private int estimateFrequency(final Entry e) {
+    long _hits = Math.min(e.hitCnt, FrequencySketch.MAXIMUM_FREQUENCY);
+    return admissionFilter.frequency(e.hashCode) + (int) _hits;
+  }
+
+  /**
+   * Hits of resident entries are counted in the entry. Transfer them to the
+   * frequency sketch when the entry leaves the cache.
+   */
+  private void recordHits(final Entry e) {
+    if (admissionFilter == null) {
+      return;
+    }
+    admissionFilter.add(e.hashCode, (int) Math.min(e.hitCnt, FrequencySketch.MAXIMUM_FREQUENCY));
+  }
+
   private int evictChunk(Entry[] chunk) {
     if (chunk == null) { return 0; }
     int processCount = removeFromHash(chunk);
     if (processCount > 0) {
-      synchronized (lock) {
+      lock.lock();
+      try {
         removeAllFromReplacementListOnEvict(chunk);
         evictChunkReuse = chunk;
+      } finally {
+        lock.unlock();
       }
     }
     return processCount;
@@ -323,6 +654,7 @@ public abstract class AbstractEviction implements Eviction, EvictionMetrics {
       Entry e = chunk[i];
       if (e != null) {
         if (!e.isRemovedFromReplacementList()) {
+          recordHits(e);
           removeFromReplacementListOnEvict(e);
           updateTotalWeightForRemove(e);
           evictedCount++;
@@ -395,6 +727,17 @@ public abstract class AbstractEviction implements Eviction, EvictionMetrics {
 
   @Override
   public boolean drain() {
+    if (readBuffer != null) {
+      readBuffer.drain();
+    }
+    if (insertBuffer != null) {
+      lock.lock();
+      try {
+        drainInsertBufferInLock(Integer.MAX_VALUE);
+      } finally {
+        lock.unlock();
+      }
+    }
     return false;
   }
 
@@ -403,8 +746,11 @@ public abstract class AbstractEviction implements Eviction, EvictionMetrics {
 
   @Override
   public <T> T runLocked(final Job<T> j) {
-    synchronized (lock) {
+    lock.lock();
+    try {
       return j.call();
+    } finally {
+      lock.unlock();
     }
   }
 
@@ -427,7 +773,16 @@ public abstract class AbstractEviction implements Eviction, EvictionMetrics {
   public String getExtraStatistics() {
     return
       "impl=" + this.getClass().getSimpleName() +
-      ", chunkSize=" + chunkSize;
+      ", chunkSize=" + chunkSize +
+      (admissionFilter != null ?
+        ", admissionRejectCount=" + admissionRejectCount +
+        ", admissionResetCount=" + admissionFilter.getResetCount() : "") +
+      (readBuffer != null ?
+        ", readBufferDrainCount=" + readBuffer.getDrainCount() : "") +
+      (insertBuffer != null ?
+        ", insertBufferDrainCount=" + insertBufferDrainCount : "") +
+      (backgroundEviction ?
+        ", backgroundEvictionCount=" + backgroundEvictionCount : "");
   }
 
 }
@@ -0,0 +1,78 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.configuration.ConfigurationSectionBuilder;
+import org.cache2k.configuration.SingletonConfigurationSection;
+
+/**
+ * Configuration section to enable a frequency based admission filter for the
+ * eviction. When an entry needs to be evicted, the most recently inserted entry is
+ * compared with the eviction candidate. If the new entry was not accessed more
+ * frequently, it is evicted instead of the candidate. This protects frequently used
+ * entries from scans of keys that are requested only once.
+ *
+ * <pre>{@code
+ * Cache2kBuilder.of(Integer.class, String.class)
+ *   .entryCapacity(10000)
+ *   .with(new AdmissionFilterConfiguration.Builder())
+ *   .build();
+ * }</pre>
+ *
+ * @author Jens Wilke
+ * @see FrequencySketch
+ */
+public class AdmissionFilterConfiguration implements SingletonConfigurationSection {
+
+  private int sampleFactor = 10;
+
+  public int getSampleFactor() {
+    return sampleFactor;
+  }
+
+  /**
+   * @see Builder#sampleFactor(int)
+   */
+  public void setSampleFactor(final int v) {
+    sampleFactor = v;
+  }
+
+  public static class Builder implements ConfigurationSectionBuilder<AdmissionFilterConfiguration> {
+
+    private AdmissionFilterConfiguration config = new AdmissionFilterConfiguration();
+
+    /**
+     * Number of recorded accesses, as a multiple of the capacity, after which the
+     * frequency counters are halved. Default is 10.
+     */
+    public Builder sampleFactor(final int v) {
+      config.setSampleFactor(v);
+      return this;
+    }
+
+    @Override
+    public AdmissionFilterConfiguration buildConfigurationSection() {
+      return config;
+    }
+
+  }
+
+}
@@ -0,0 +1,204 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Weigher;
+
+/**
+ * Adaptive replacement cache (ARC) in the clock variant CAR, as described in
+ * <a href="https://www.usenix.org/legacy/publications/library/proceedings/fast04/tech/full_papers/bansal/bansal.pdf">
+ * CAR: Clock with Adaptive Replacement</a>. Cache hits are only counted in the entry, so a clock
+ * is the natural fit. New entries go to the recency clock T1, entries accessed again
+ * move to the frequency clock T2. Ghost lists B1 and B2 remember the hashes of entries
+ * evicted from T1 and T2. A hit on a ghost moves the target size of T1 towards the list
+ * that would have kept the entry.
+ *
+ * <p>Entries in T2 are marked with the hot flag of the entry.
+ *
+ * @author Jens Wilke
+ * @see EvictionPolicyConfiguration
+ */
+@SuppressWarnings("WeakerAccess")
+public class ArcEviction extends AbstractEviction {
+
+  private Entry handT1;
+  private Entry handT2;
+  private long t1Size;
+  private long t2Size;
+  /** Target size of T1 */
+  private long target;
+  private final GhostHash b1 = new GhostHash();
+  private final GhostHash b2 = new GhostHash();
+  private long hits;
+  private long ghostHits;
+
+  public ArcEviction(final HeapCache heapCache, final HeapCacheListener listener,
+                     final long maxSize, final Weigher weigher, final long maxWeight,
+                     final boolean noChunking) {
+    super(heapCache, listener, maxSize, weigher, maxWeight, noChunking);
+  }
+
+  private long getCapacity() {
+    return isWeigherPresent() ? getSize() : getMaxSize();
+  }
+
+  @Override
+  protected void insertIntoReplacementList(final Entry e) {
+    int _hash = e.hashCode;
+    long c = getCapacity();
+    GhostHash.Ghost g = b1.lookup(_hash);
+    if (g != null) {
+      ghostHits++;
+      target = Math.min(c, target + Math.max(1, b2.size() / b1.size()));
+      b1.remove(g);
+      insertT2(e);
+      return;
+    }
+    g = b2.lookup(_hash);
+    if (g != null) {
+      ghostHits++;
+      target = Math.max(0, target - Math.max(1, b1.size() / b2.size()));
+      b2.remove(g);
+      insertT2(e);
+      return;
+    }
+    if (t1Size + b1.size() >= c && b1.size() > 0) {
+      b1.removeEldest();
+    } else if (t1Size + t2Size + b1.size() + b2.size() >= 2 * c && b2.size() > 0) {
+      b2.removeEldest();
+    }
+    t1Size++;
+    handT1 = Entry.insertIntoTailCyclicList(handT1, e);
+  }
+
+  private void insertT2(final Entry e) {
+    e.setHot(true);
+    t2Size++;
+    handT2 = Entry.insertIntoTailCyclicList(handT2, e);
+  }
+
+  @Override
+  protected void removeFromReplacementList(final Entry e) {
+    hits += e.hitCnt;
+    if (e.isHot()) {
+      handT2 = Entry.removeFromCyclicList(handT2, e);
+      t2Size--;
+    } else {
+      handT1 = Entry.removeFromCyclicList(handT1, e);
+      t1Size--;
+    }
+  }
+
+  /**
+   * Remember the hash of the evicted entry in the ghost list of its clock.
+   */
+  @Override
+  protected void removeFromReplacementListOnEvict(final Entry e) {
+    GhostHash _ghosts = e.isHot() ? b2 : b1;
+    if (_ghosts.lookup(e.hashCode) == null) {
+      _ghosts.add(e.hashCode);
+    }
+    removeFromReplacementList(e);
+  }
+
+  @Override
+  protected Entry findEvictionCandidate(final Entry _previous) {
+    for (;;) {
+      if (handT2 == null || (handT1 != null && t1Size >= Math.max(1, target))) {
+        Entry e = handT1;
+        if (e.hitCnt == 0) {
+          handT1 = e.next;
+          return e;
+        }
+        hits += e.hitCnt;
+        e.hitCnt = 0;
+        handT1 = Entry.removeFromCyclicList(handT1, e);
+        t1Size--;
+        insertT2(e);
+      } else {
+        Entry e = handT2;
+        handT2 = e.next;
+        if (e.hitCnt == 0) {
+          return e;
+        }
+        hits += e.hitCnt;
+        e.hitCnt = 0;
+      }
+    }
+  }
+
+  @Override
+  public long removeAll() {
+    long _count = removeAll(handT1) + removeAll(handT2);
+    handT1 = handT2 = null;
+    t1Size = t2Size = 0;
+    return _count;
+  }
+
+  private long removeAll(Entry e) {
+    long _count = 0;
+    if (e != null) {
+      Entry _head = e;
+      do {
+        hits += e.hitCnt;
+        Entry _next = e.next;
+        e.removedFromList();
+        _count++;
+        e = _next;
+      } while (e != _head);
+    }
+    return _count;
+  }
+
+  @Override
+  public long getHitCount() {
+    return hits + LruEviction.sumUpListHits(handT1) + LruEviction.sumUpListHits(handT2);
+  }
+
+  @Override
+  public long getSize() {
+    return t1Size + t2Size;
+  }
+
+  @Override
+  public void checkIntegrity(final IntegrityState is) {
+    is.check("checkCyclicListIntegrity(handT1)", Entry.checkCyclicListIntegrity(handT1))
+      .check("checkCyclicListIntegrity(handT2)", Entry.checkCyclicListIntegrity(handT2))
+      .checkEquals("getCyclicListEntryCount(handT1) == t1Size",
+        Entry.getCyclicListEntryCount(handT1), t1Size)
+      .checkEquals("getCyclicListEntryCount(handT2) == t2Size",
+        Entry.getCyclicListEntryCount(handT2), t2Size)
+      .checkEquals("b1.countInHash() == b1.size()", b1.countInHash(), b1.size())
+      .checkEquals("b2.countInHash() == b2.size()", b2.countInHash(), b2.size());
+  }
+
+  @Override
+  public String getExtraStatistics() {
+    return super.getExtraStatistics() +
+      ", t1Size=" + t1Size +
+      ", t2Size=" + t2Size +
+      ", target=" + target +
+      ", b1Size=" + b1.size() +
+      ", b2Size=" + b2.size() +
+      ", ghostHits=" + ghostHits;
+  }
+
+}
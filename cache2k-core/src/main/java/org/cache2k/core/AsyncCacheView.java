@@ -0,0 +1,211 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.CacheEntry;
+import org.cache2k.core.experimentalApi.AsyncCache;
+import org.cache2k.core.experimentalApi.CompletionFuture;
+import org.cache2k.core.operation.Operations;
+import org.cache2k.core.operation.Semantic;
+import org.cache2k.processor.EntryProcessor;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous view of a cache. Each operation runs as {@link EntryAction} with a completion
+ * callback, the callback completes the future. A fresh entry is returned without
+ * starting an action.
+ *
+ * @author Jens Wilke
+ */
+public class AsyncCacheView<K, V> implements AsyncCache<K, V> {
+
+  @SuppressWarnings("unchecked")
+  private static final Operations OPS = Operations.SINGLETON;
+
+  private final BaseCache<K, V> cache;
+  private final HeapCache<K, V> heapCache;
+  private final Executor loadExecutor;
+  private final Executor mutationExecutor;
+
+  /**
+   * @param _loadExecutor executor to start operations that may call a synchronous loader,
+   *                      or {@code null} to start them in the calling thread
+   * @param _mutationExecutor executor to start operations that may call a synchronous writer,
+   *                          or {@code null} to start them in the calling thread
+   */
+  public AsyncCacheView(final BaseCache<K, V> _cache, final HeapCache<K, V> _heapCache,
+                        final Executor _loadExecutor, final Executor _mutationExecutor) {
+    cache = _cache;
+    heapCache = _heapCache;
+    loadExecutor = _loadExecutor;
+    mutationExecutor = _mutationExecutor;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public CompletionFuture<V> get(final K key) {
+    final CompletionFutureImpl<V> f = new CompletionFutureImpl<V>();
+    Entry<K, V> e = heapCache.lookupEntry(key);
+    if (e != null && e.hasFreshData(heapCache.getClock())) {
+      completeWithValue(f, e.getValueOrException());
+      return f;
+    }
+    execute(key, (Semantic<K, V, V>) OPS.get(key), loadExecutor, new EntryAction.CompletedCallback<K, V, V>() {
+      @Override
+      public void entryActionCompleted(final EntryAction<K, V, V> ea) {
+        if (ea.exceptionToPropagate != null) {
+          f.fail(ea.exceptionToPropagate);
+          return;
+        }
+        completeWithValue(f, ea.result);
+      }
+    }, f);
+    return f;
+  }
+
+  /**
+   * Propagate a loader exception like the cache does.
+   */
+  private void completeWithValue(final CompletionFutureImpl<V> f, final V v) {
+    V _value;
+    try {
+      _value = heapCache.returnValue(v);
+    } catch (RuntimeException ex) {
+      f.fail(ex);
+      return;
+    }
+    f.complete(_value);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public CompletionFuture<Void> put(final K key, final V value) {
+    CompletionFutureImpl<Void> f = new CompletionFutureImpl<Void>();
+    execute(key, (Semantic<K, V, Void>) OPS.put(key, value), mutationExecutor,
+      new CompleteWithResult<K, V, Void>(f), f);
+    return f;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <R> CompletionFuture<R> invoke(final K key, final EntryProcessor<K, V, R> entryProcessor) {
+    if (key == null) {
+      throw new NullPointerException();
+    }
+    CompletionFutureImpl<R> f = new CompletionFutureImpl<R>();
+    Executor ex = loadExecutor != null ? loadExecutor : mutationExecutor;
+    execute(key, (Semantic<K, V, R>) OPS.invoke(key, entryProcessor), ex, new CompleteWithResult<K, V, R>(f), f);
+    return f;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public CompletionFuture<Map<K, V>> getAll(final Iterable<? extends K> keys) {
+    final CompletionFutureImpl<Map<K, V>> f = new CompletionFutureImpl<Map<K, V>>();
+    Set<K> _keys = heapCache.generateKeySet(keys);
+    if (_keys.isEmpty()) {
+      f.complete(new HashMap<K, V>());
+      return f;
+    }
+    final Map<K, CacheEntry<K, V>> _entries = new ConcurrentHashMap<K, CacheEntry<K, V>>();
+    final AtomicInteger _countDown = new AtomicInteger(_keys.size());
+    EntryAction.CompletedCallback<K, V, CacheEntry<K, V>> cb =
+      new EntryAction.CompletedCallback<K, V, CacheEntry<K, V>>() {
+        @Override
+        public void entryActionCompleted(final EntryAction<K, V, CacheEntry<K, V>> ea) {
+          if (ea.exceptionToPropagate != null) {
+            f.fail(ea.exceptionToPropagate);
+          } else if (ea.result != null) {
+            _entries.put(ea.key, ea.result);
+          }
+          if (_countDown.decrementAndGet() == 0) {
+            try {
+              f.complete(heapCache.convertCacheEntry2ValueMap(new HashMap<K, CacheEntry<K, V>>(_entries)));
+            } catch (RuntimeException ex) {
+              f.fail(ex);
+            }
+          }
+        }
+      };
+    for (K k : _keys) {
+      execute(k, (Semantic<K, V, CacheEntry<K, V>>) OPS.getEntry(k), loadExecutor, cb, f);
+    }
+    return f;
+  }
+
+  /**
+   * Start the entry action in the calling thread or in the executor. Exceptions from
+   * starting the action fail the future, e.g. if the cache is closed.
+   */
+  private <R> void execute(final K key, final Semantic<K, V, R> op, final Executor ex,
+                           final EntryAction.CompletedCallback<K, V, R> cb,
+                           final CompletionFutureImpl<?> f) {
+    final EntryAction<K, V, R> _action = cache.createEntryAction(key, null, op, cb);
+    if (ex == null) {
+      try {
+        _action.start();
+      } catch (RuntimeException t) {
+        f.fail(t);
+      }
+      return;
+    }
+    try {
+      ex.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            _action.start();
+          } catch (RuntimeException t) {
+            f.fail(t);
+          }
+        }
+      });
+    } catch (RuntimeException t) {
+      f.fail(t);
+    }
+  }
+
+  static class CompleteWithResult<K, V, R> implements EntryAction.CompletedCallback<K, V, R> {
+
+    private final CompletionFutureImpl<R> future;
+
+    CompleteWithResult(final CompletionFutureImpl<R> _future) {
+      future = _future;
+    }
+
+    @Override
+    public void entryActionCompleted(final EntryAction<K, V, R> ea) {
+      if (ea.exceptionToPropagate != null) {
+        future.fail(ea.exceptionToPropagate);
+        return;
+      }
+      future.complete(ea.result);
+    }
+
+  }
+
+}
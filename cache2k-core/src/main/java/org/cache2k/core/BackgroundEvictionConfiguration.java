@@ -0,0 +1,102 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.configuration.ConfigurationSectionBuilder;
+import org.cache2k.configuration.SingletonConfigurationSection;
+
+/**
+ * Configuration section to do the eviction in a background task instead of in the
+ * thread that inserts an entry. When the capacity is reached, a task in the cache
+ * executor evicts entries until the size is below the low watermark. The cache may
+ * exceed its capacity briefly. Only if the size reaches the high watermark, the
+ * inserting thread evicts as well, so the cache size stays bounded.
+ *
+ * <p>The watermarks are percentages of the entry capacity or the maximum weight.
+ *
+ * <pre>{@code
+ * Cache2kBuilder.of(Integer.class, String.class)
+ *   .entryCapacity(10000)
+ *   .with(new BackgroundEvictionConfiguration.Builder()
+ *     .lowWatermarkPercent(90))
+ *   .build();
+ * }</pre>
+ *
+ * @author Jens Wilke
+ * @see AbstractEviction#setBackgroundEviction(int, int)
+ */
+public class BackgroundEvictionConfiguration implements SingletonConfigurationSection {
+
+  private int lowWatermarkPercent = 95;
+  private int highWatermarkPercent = 110;
+
+  public int getLowWatermarkPercent() {
+    return lowWatermarkPercent;
+  }
+
+  /**
+   * @see Builder#lowWatermarkPercent(int)
+   */
+  public void setLowWatermarkPercent(final int v) {
+    lowWatermarkPercent = v;
+  }
+
+  public int getHighWatermarkPercent() {
+    return highWatermarkPercent;
+  }
+
+  /**
+   * @see Builder#highWatermarkPercent(int)
+   */
+  public void setHighWatermarkPercent(final int v) {
+    highWatermarkPercent = v;
+  }
+
+  public static class Builder implements ConfigurationSectionBuilder<BackgroundEvictionConfiguration> {
+
+    private BackgroundEvictionConfiguration config = new BackgroundEvictionConfiguration();
+
+    /**
+     * The background eviction stops, when the size is at or below this percentage
+     * of the capacity. Default is 95.
+     */
+    public Builder lowWatermarkPercent(final int v) {
+      config.setLowWatermarkPercent(v);
+      return this;
+    }
+
+    /**
+     * Inserting threads evict as well, when the size reaches this percentage
+     * of the capacity. Default is 110.
+     */
+    public Builder highWatermarkPercent(final int v) {
+      config.setHighWatermarkPercent(v);
+      return this;
+    }
+
+    @Override
+    public BackgroundEvictionConfiguration buildConfigurationSection() {
+      return config;
+    }
+
+  }
+
+}
@@ -29,6 +29,7 @@ import org.cache2k.jmx.CacheInfoMXBean;
 import org.cache2k.processor.EntryProcessingException;
 import org.cache2k.processor.EntryProcessor;
 import org.cache2k.processor.EntryProcessingResult;
+import org.cache2k.core.experimentalApi.AsyncCache;
 import org.cache2k.core.operation.Semantic;
 import org.cache2k.core.storageApi.StorageAdapter;
 
@@ -124,6 +125,9 @@ public abstract class BaseCache<K, V> implements InternalCache<K, V> {
       _type.equals(Map.class)) {
       return (X) new ConcurrentMapWrapper<K, V>(this);
     }
+    if (_type.equals(AsyncCache.class)) {
+      return (X) createAsyncCache();
+    }
     if (_type.isAssignableFrom(this.getClass())) {
       return (X) this;
     }
@@ -183,6 +187,15 @@ public abstract class BaseCache<K, V> implements InternalCache<K, V> {
 
   protected abstract <R> EntryAction<K, V, R> createEntryAction(K key, Entry<K, V> e, Semantic<K, V, R> op);
 
+  /**
+   * Create an entry action that reports its completion to the callback and does not
+   * block the calling thread.
+   */
+  protected abstract <R> EntryAction<K, V, R> createEntryAction(K key, Entry<K, V> e, Semantic<K, V, R> op,
+                                                                EntryAction.CompletedCallback<K, V, R> cb);
+
+  protected abstract AsyncCache<K, V> createAsyncCache();
+
   protected <R> R execute(final EntryAction<K, V, R> _action) {
     _action.start();
     return finishExecution(_action);
@@ -0,0 +1,202 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.core.experimentalApi.AsyncCacheWriter;
+import org.cache2k.integration.BulkCacheWriter;
+import org.cache2k.integration.CacheWriterException;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Collects the writer calls of the entry actions of a multi key mutation and
+ * writes them with one call to the {@link BulkCacheWriter}. The collection ends
+ * when all actions are started. An action that was queued behind another
+ * operation on the same entry reaches the writer later, it is written separately,
+ * so a bulk write never waits for entries locked by somebody else.
+ *
+ * @author Jens Wilke
+ */
+class BulkWrite<K, V> implements AsyncCacheWriter<K, V>, EntryAction.CompletedCallback<K, V, Object> {
+
+  private final BulkCacheWriter<K, V> writer;
+  private final Map<K, V> writes = new LinkedHashMap<K, V>();
+  private final Set<K> deletes = new LinkedHashSet<K>();
+  private final Map<K, Callback> callbacks = new LinkedHashMap<K, Callback>();
+  private boolean collecting = true;
+  private int startedCount;
+  private int completedCount;
+  private int failureCount;
+  private RuntimeException firstException;
+
+  BulkWrite(final BulkCacheWriter<K, V> _writer) {
+    writer = _writer;
+  }
+
+  /**
+   * Start the action in the calling thread. The action needs to use this
+   * instance as writer and completion callback.
+   */
+  void start(EntryAction<K, V, ?> _action) {
+    synchronized (this) {
+      startedCount++;
+    }
+    _action.start();
+  }
+
+  @Override
+  public void write(final K key, final V value, final Callback cb, final Executor ex) {
+    synchronized (this) {
+      if (collecting) {
+        writes.put(key, value);
+        callbacks.put(key, cb);
+        return;
+      }
+    }
+    try {
+      writer.write(key, value);
+    } catch (Throwable t) {
+      cb.onWriteFailure(t);
+      return;
+    }
+    cb.onWriteSuccess();
+  }
+
+  @Override
+  public void remove(final K key, final Callback cb, final Executor ex) {
+    synchronized (this) {
+      if (collecting) {
+        deletes.add(key);
+        callbacks.put(key, cb);
+        return;
+      }
+    }
+    try {
+      writer.delete(key);
+    } catch (Throwable t) {
+      cb.onWriteFailure(t);
+      return;
+    }
+    cb.onWriteSuccess();
+  }
+
+  @Override
+  public void entryActionCompleted(final EntryAction<K, V, Object> ea) {
+    synchronized (this) {
+      completedCount++;
+      if (ea.exceptionToPropagate != null) {
+        failureCount++;
+        if (firstException == null) {
+          firstException = ea.exceptionToPropagate;
+        }
+      }
+      notifyAll();
+    }
+  }
+
+  /**
+   * Write the collected entries, wait for all actions to complete and propagate
+   * an exception if an entry failed.
+   */
+  void writeAndComplete() {
+    synchronized (this) {
+      collecting = false;
+    }
+    if (!writes.isEmpty()) {
+      Map<K, Exception> _failures;
+      try {
+        _failures = writer.writeAll(writes);
+      } catch (Throwable t) {
+        failAll(writes.keySet(), t);
+        _failures = null;
+      }
+      complete(writes.keySet(), _failures);
+    }
+    if (!deletes.isEmpty()) {
+      Map<K, Exception> _failures;
+      try {
+        _failures = writer.deleteAll(deletes);
+      } catch (Throwable t) {
+        failAll(deletes, t);
+        _failures = null;
+      }
+      complete(deletes, _failures);
+    }
+    awaitCompletion();
+    propagateException();
+  }
+
+  private void failAll(Set<K> _keys, Throwable t) {
+    for (K k : _keys) {
+      callbacks.remove(k).onWriteFailure(t);
+    }
+  }
+
+  /**
+   * Continue the entry actions, which updates the heap for the successfully written keys.
+   * Keys failed by {@link #failAll} have no callback any more.
+   */
+  private void complete(Set<K> _keys, Map<K, Exception> _failures) {
+    for (K k : _keys) {
+      Callback cb = callbacks.remove(k);
+      if (cb == null) {
+        continue;
+      }
+      Exception ex = _failures != null ? _failures.get(k) : null;
+      if (ex != null) {
+        cb.onWriteFailure(ex);
+      } else {
+        cb.onWriteSuccess();
+      }
+    }
+  }
+
+  private synchronized void awaitCompletion() {
+    boolean _interrupt = false;
+    while (completedCount < startedCount) {
+      try {
+        wait();
+      } catch (InterruptedException ignore) {
+        _interrupt = true;
+      }
+    }
+    if (_interrupt) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private synchronized void propagateException() {
+    if (firstException == null) {
+      return;
+    }
+    if (failureCount == 1) {
+      firstException.fillInStackTrace();
+      throw firstException;
+    }
+    throw new CacheWriterException(
+      failureCount + " of " + startedCount + " entries failed, showing first exception", firstException);
+  }
+
+}
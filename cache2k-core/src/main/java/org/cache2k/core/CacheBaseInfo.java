@@ -71,6 +71,7 @@ class CacheBaseInfo implements InternalCacheInfo {
   private long internalExceptionCnt;
   private long maxWeight;
   private long currentWeight;
+  private long scheduledTimerTaskCnt;
 
   public CacheBaseInfo(HeapCache _heapCache, InternalCache _userCache, long now) {
     infoCreatedTime = now;
@@ -85,6 +86,7 @@ class CacheBaseInfo implements InternalCacheInfo {
     maxWeight = em.getMaxWeight();
     currentWeight = em.getCurrentWeight();
     clearedTime = _heapCache.clearedTime;
+    scheduledTimerTaskCnt = _heapCache.timing.getScheduledTaskCount();
     keyMutationCnt = _heapCache.keyMutationCnt;
     removedCnt = em.getRemovedCount();
     clearRemovedCnt = _heapCache.clearRemovedCnt;
@@ -195,6 +197,8 @@ class CacheBaseInfo implements InternalCacheInfo {
   @Override
   public long getTimerEventCount() { return metrics.getTimerEventCount(); }
   @Override
+  public long getScheduledTimerTaskCount() { return scheduledTimerTaskCnt; }
+  @Override
   public double getHitRate() {
     long cnt = getGetCount();
     return cnt == 0 ? 0.0 : ((cnt - missCnt) * 100D / cnt);
@@ -327,6 +331,7 @@ class CacheBaseInfo implements InternalCacheInfo {
       .append("removeByClear=").append(getClearedEntriesCount()).append(", ")
       .append("evict=").append(getEvictedCount()).append(", ")
       .append("timer=").append(getTimerEventCount()).append(", ")
+      .append("timerTasks=").append(getScheduledTimerTaskCount()).append(", ")
       .append("goneSpin=").append(getGoneSpinCount()).append(", ")
       .append("hitRate=").append(getHitRateString()).append(", ")
       .append("msecs/load=").append(formatMillisPerLoad(getMillisPerLoad())).append(", ")
@@ -103,6 +103,8 @@ public class CacheManagerImpl extends CacheManager {
   private boolean defaultManager;
   private Cache2kCoreProviderImpl provider;
   private boolean closing;
+  private SharedTimerService timerService;
+  private boolean ownTimerService;
 
   public CacheManagerImpl(Cache2kCoreProviderImpl _provider, ClassLoader cl, String _name, boolean _default) {
     provider = _provider;
@@ -304,6 +306,11 @@ public class CacheManagerImpl extends CacheManager {
     } catch (Throwable t) {
       _suppressedExceptions.add(t);
     }
+    synchronized (lock) {
+      if (ownTimerService) {
+        timerService.close();
+      }
+    }
     ((Cache2kCoreProviderImpl) PROVIDER).removeManager(this);
     synchronized (lock) {
       for (Cache c : cacheNames.values()) {
@@ -350,6 +357,34 @@ public class CacheManagerImpl extends CacheManager {
     throw new CacheException(_text, _suppressedExceptions.get(0));
   }
 
+  /**
+   * Timers shared by the caches of this manager. Created on first use, if not set before.
+   */
+  public SharedTimerService getTimerService() {
+    synchronized (lock) {
+      if (timerService == null) {
+        timerService = new SharedTimerService("cache2k-timer-" + name, TimingHandler.getSharedTimerCount());
+        ownTimerService = true;
+      }
+      return timerService;
+    }
+  }
+
+  /**
+   * Use the timer service for the caches of this manager, e.g. to share the timers
+   * with other managers. Needs to be set before the first cache is created. The service
+   * is not closed when the manager is closed.
+   */
+  public void setTimerService(final SharedTimerService v) {
+    synchronized (lock) {
+      if (!cacheNames.isEmpty()) {
+        throw new IllegalStateException("caches already created");
+      }
+      timerService = v;
+      ownTimerService = false;
+    }
+  }
+
   @Override
   public Properties getProperties() {
     return properties;
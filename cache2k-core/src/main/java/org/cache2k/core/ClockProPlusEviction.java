@@ -27,9 +27,14 @@ import org.cache2k.core.util.TunableFactory;
 /**
  * Eviction algorithm inspired from CLOCK Pro with 3 clocks.
  *
- * <p>Uses a static allocation for hot and cold space sizes. No online or dynamic
- * optimization is done yet. However, the hit rate for all measured access traces is better
- * then LRU and it is resistant to scans.
+ * <p>Uses a static allocation for hot and cold space sizes by default. The hit rate for all
+ * measured access traces is better then LRU and it is resistant to scans.
+ *
+ * <p>With {@link Tunable#adaptive} the hot space and the ghost capacity are adapted online,
+ * similar to the target adaptation of ARC: A hit on a ghost of an entry evicted from the
+ * cold space enlarges the cold space, a hit on a ghost of an entry evicted from the hot space
+ * enlarges the hot space. The ghost capacity grows if ghosts are hit while the ghost
+ * list is full and shrinks if no ghost was hit during a period of evictions.
  *
  * <p>From cache2k version 1.2 to version 1.4 the implementation was simplefied and the
  * demotion of hot entries removed. The result achieves similar or better hitrates.
@@ -64,10 +69,17 @@ public class ClockProPlusEviction extends AbstractEviction {
   private Entry handCold;
   private Entry handHot;
 
-  private Ghost[] ghosts;
-  private Ghost ghostHead = new Ghost().shortCircuit();
-  private int ghostSize = 0;
-  private static final int GHOST_LOAD_PERCENT = 63;
+  private final GhostHash ghosts = new GhostHash();
+
+  private boolean adaptive = TUNABLE_CLOCK_PRO.adaptive;
+  /** Current fraction of the capacity for the hot space, if adaptive */
+  private double hotMaxRatio = TUNABLE_CLOCK_PRO.hotMaxPercentage / 100.0;
+  /** Current ghost capacity in percent of the cache size, if adaptive */
+  private int ghostMaxPercentage = 50;
+  private long hotMaxIncreaseCnt;
+  private long hotMaxDecreaseCnt;
+  private long periodEvictionCnt;
+  private long periodGhostHits;
 
   public ClockProPlusEviction(final HeapCache heapCache, final HeapCacheListener listener,
                               final long maxSize, final Weigher weigher, final long maxWeight,
@@ -78,7 +90,6 @@ public class ClockProPlusEviction extends AbstractEviction {
     hotSize = 0;
     handCold = null;
     handHot = null;
-    ghosts = new Ghost[4];
   }
 
   private long sumUpListHits(Entry e) {
@@ -93,15 +104,71 @@ public class ClockProPlusEviction extends AbstractEviction {
   }
 
   public long getHotMax() {
+    if (adaptive) {
+      return (long) ((isWeigherPresent() ? getSize() : getMaxSize()) * hotMaxRatio);
+    }
     return isWeigherPresent() ?
       (getSize() * TUNABLE_CLOCK_PRO.hotMaxPercentage / 100) :
       (getMaxSize() * TUNABLE_CLOCK_PRO.hotMaxPercentage / 100);
   }
 
   public long getGhostMax() {
+    if (adaptive) {
+      return getSize() * ghostMaxPercentage / 100 + 1;
+    }
     return getSize() / 2 + 1;
   }
 
+  /**
+   * Switch the online adaption of the hot space and ghost capacity on or off.
+   * Default is set by {@link Tunable#adaptive}.
+   */
+  public void setAdaptive(final boolean f) {
+    adaptive = f;
+  }
+
+  /**
+   * Move the hot space target by one entry. A ghost hit of an entry that was
+   * evicted from the hot space means the hot space is too small, a ghost hit
+   * of a cold entry means the cold space is too small.
+   */
+  private void adaptOnGhostHit(final boolean _evictedFromHot) {
+    periodGhostHits++;
+    long _capacity = isWeigherPresent() ? getSize() : getMaxSize();
+    double _step = 1.0 / Math.max(1, _capacity);
+    if (_evictedFromHot) {
+      double _max = TUNABLE_CLOCK_PRO.hotMaxPercentage / 100.0;
+      if (hotMaxRatio < _max) {
+        hotMaxRatio = Math.min(_max, hotMaxRatio + _step);
+        hotMaxIncreaseCnt++;
+      }
+    } else {
+      double _min = TUNABLE_CLOCK_PRO.hotMinPercentage / 100.0;
+      if (hotMaxRatio > _min) {
+        hotMaxRatio = Math.max(_min, hotMaxRatio - _step);
+        hotMaxDecreaseCnt++;
+      }
+    }
+    if (ghosts.size() >= getGhostMax() - 1 && ghostMaxPercentage < TUNABLE_CLOCK_PRO.ghostMaxPercentage) {
+      ghostMaxPercentage++;
+    }
+  }
+
+  /**
+   * After evicting as many entries as the cache holds, shrink the ghost
+   * capacity if no ghost was hit.
+   */
+  private void adaptGhostCapacityOnEvict() {
+    if (++periodEvictionCnt < getSize()) {
+      return;
+    }
+    if (periodGhostHits == 0 && ghostMaxPercentage > TUNABLE_CLOCK_PRO.ghostMinPercentage) {
+      ghostMaxPercentage--;
+    }
+    periodEvictionCnt = 0;
+    periodGhostHits = 0;
+  }
+
   @Override
   public long getHitCount() {
     return hotHits + coldHits + sumUpListHits(handCold) + sumUpListHits(handHot);
@@ -149,6 +216,9 @@ public class ClockProPlusEviction extends AbstractEviction {
   public void removeFromReplacementListOnEvict(final Entry e) {
     insertCopyIntoGhosts(e);
     removeFromReplacementList(e);
+    if (adaptive) {
+      adaptGhostCapacityOnEvict();
+    }
   }
 
   /**
@@ -176,21 +246,17 @@ public class ClockProPlusEviction extends AbstractEviction {
 
   private void insertCopyIntoGhosts(Entry e) {
     int hc = e.hashCode;
-    Ghost g = lookupGhost(hc);
+    GhostHash.Ghost g = ghosts.lookup(hc);
     if (g != null) {
-      Ghost.moveToFront(ghostHead, g);
+      g.hot = e.isHot();
+      ghosts.moveToFront(g);
       return;
     }
-    if (ghostSize >= getGhostMax()) {
-      g = ghostHead.prev;
-      Ghost.removeFromList(g);
-      boolean f = removeGhost(g, g.hash);
-    } else {
-      g = new Ghost();
+    while (ghosts.size() >= getGhostMax()) {
+      ghosts.removeEldest();
     }
-    g.hash = hc;
-    insertGhost(g, hc);
-    Ghost.insertInList(ghostHead, g);
+    g = ghosts.add(hc);
+    g.hot = e.isHot();
   }
 
   public long getSize() {
@@ -199,13 +265,16 @@ public class ClockProPlusEviction extends AbstractEviction {
 
   @Override
   protected void insertIntoReplacementList(Entry e) {
-    Ghost g = lookupGhost(e.hashCode);
+    GhostHash.Ghost g = ghosts.lookup(e.hashCode);
     if (g != null) {
       /*
        * don't remove ghosts here, save object allocations.
-       * removeGhost(g, g.hash);  Ghost.removeFromList(g);
+       * ghosts.remove(g);
        */
       ghostHits++;
+      if (adaptive) {
+        adaptOnGhostHit(g.hot);
+      }
     }
     if (g != null || (coldSize == 0 && hotSize < getHotMax())){
       e.setHot(true);
@@ -296,7 +365,7 @@ public class ClockProPlusEviction extends AbstractEviction {
 
   @Override
   public void checkIntegrity(final IntegrityState is) {
-    is.checkEquals("ghostSize == countGhostsInHash()", ghostSize, countGhostsInHash())
+    is.checkEquals("ghosts.size() == ghosts.countInHash()", ghosts.size(), ghosts.countInHash())
       .check("isWeigherPresent() || hotMax <= size", isWeigherPresent() || getHotMax() <= getMaxSize())
       .check("checkCyclicListIntegrity(handHot)", Entry.checkCyclicListIntegrity(handHot))
       .check("checkCyclicListIntegrity(handCold)", Entry.checkCyclicListIntegrity(handCold))
@@ -304,8 +373,8 @@ public class ClockProPlusEviction extends AbstractEviction {
         Entry.getCyclicListEntryCount(handHot), hotSize)
       .checkEquals("getCyclicListEntryCount(handCold) == coldSize",
         Entry.getCyclicListEntryCount(handCold), coldSize)
-      .checkEquals("Ghost.listSize(ghostHead) == ghostSize",
-        Ghost.listSize(ghostHead), ghostSize);
+      .checkEquals("ghosts.countInList() == ghosts.size()",
+        ghosts.countInList(), ghosts.size());
   }
 
   @Override
@@ -314,14 +383,19 @@ public class ClockProPlusEviction extends AbstractEviction {
       ", coldSize=" + coldSize +
       ", hotSize=" + hotSize +
       ", hotMaxSize=" + getHotMax() +
-      ", ghostSize=" + ghostSize +
+      ", ghostSize=" + ghosts.size() +
+      ", ghostMaxSize=" + getGhostMax() +
       ", coldHits=" + (coldHits + sumUpListHits(handCold)) +
       ", hotHits=" + (hotHits + sumUpListHits(handHot)) +
       ", ghostHits=" + ghostHits +
       ", coldRunCnt=" + coldRunCnt +// identical to the evictions anyways
       ", coldScanCnt=" + coldScanCnt +
       ", hotRunCnt=" + hotRunCnt +
-      ", hotScanCnt=" + hotScanCnt;
+      ", hotScanCnt=" + hotScanCnt +
+      (adaptive ?
+        ", hotMaxIncreaseCnt=" + hotMaxIncreaseCnt +
+        ", hotMaxDecreaseCnt=" + hotMaxDecreaseCnt +
+        ", ghostMaxPercentage=" + ghostMaxPercentage : "");
   }
 
   public static class Tunable extends TunableConstants {
@@ -330,134 +404,17 @@ public class ClockProPlusEviction extends AbstractEviction {
 
     int hitCounterDecreaseShift = 6;
 
-  }
+    /** Adapt the hot space and ghost capacity online. */
+    boolean adaptive = false;
 
-  private Ghost lookupGhost(int hash) {
-    Ghost[] tab = ghosts;
-    int n = tab.length;
-    int mask = n - 1;
-    int idx = hash & (mask);
-    Ghost e = tab[idx];
-    while (e != null) {
-      if (e.hash == hash) {
-        return e;
-      }
-      e = e.another;
-    }
-    return null;
-  }
-
-  private void insertGhost(Ghost e2, int hash) {
-    Ghost[] tab = ghosts;
-    int n = tab.length;
-    int mask = n - 1;
-    int idx = hash & (mask);
-    e2.another = tab[idx];
-    tab[idx] = e2;
-    ghostSize++;
-    int maxFill = n * GHOST_LOAD_PERCENT / 100;
-    if (ghostSize > maxFill) {
-      expand();
-    }
-  }
-
-  private void expand() {
-    Ghost[] tab = ghosts;
-    int n = tab.length;
-    int mask;
-    int idx;Ghost[] newTab = new Ghost[n * 2];
-    mask = newTab.length - 1;
-    for (Ghost g : tab) {
-      while (g != null) {
-        idx = g.hash & mask;
-        Ghost next = g.another;
-        g.another = newTab[idx];
-        newTab[idx] = g;
-        g = next;
-      }
-    }
-    ghosts = newTab;
-  }
+    /** Lower limit of the hot space when adaptive. Upper limit is {@link #hotMaxPercentage} */
+    int hotMinPercentage = 50;
 
+    /** Lower limit of the ghost capacity in percent of the cache size when adaptive */
+    int ghostMinPercentage = 25;
 
-  private boolean removeGhost(Ghost g, int hash) {
-    Ghost[] tab = ghosts;
-    int n = tab.length;
-    int mask = n - 1;
-    int idx = hash & (mask);
-    Ghost e = tab[idx];
-    if (e == g) {
-      tab[idx] = e.another;
-      ghostSize--;
-      return true;
-    } else {
-      while (e != null) {
-        Ghost another = e.another;
-        if (another == g) {
-          e.another = another.another;
-          ghostSize--;
-          return true;
-        }
-        e = another;
-      }
-    }
-    return false;
-  }
-
-  private int countGhostsInHash() {
-    int entryCount = 0;
-    for (Ghost e : ghosts) {
-      while (e != null) {
-        entryCount++;
-        e = e.another;
-      }
-    }
-    return entryCount;
-  }
-
-  /**
-   * Ghost representing a entry we have seen and evicted from the cache. We only store
-   * the hash to save memory, since holding the key references may cause a size overhead.
-   */
-  private static class Ghost {
-
-    /** Modified hashcode of the key */
-    int hash;
-    /** Hash table chain */
-    Ghost another;
-    /** LRU double linked list */
-    Ghost next;
-    /** LRU double linked list */
-    Ghost prev;
-
-    Ghost shortCircuit() {
-      return next = prev = this;
-    }
-
-    static void removeFromList(final Ghost e) {
-      e.prev.next = e.next;
-      e.next.prev = e.prev;
-      e.next = e.prev = null;
-    }
-
-    static void insertInList(final Ghost head, final Ghost e) {
-      e.prev = head;
-      e.next = head.next;
-      e.next.prev = e;
-      head.next = e;
-    }
-
-    static void moveToFront(final Ghost head, final Ghost e) {
-      removeFromList(e);
-      insertInList(head, e);
-    }
-
-    static int listSize(final Ghost head) {
-      int count = 0;
-      Ghost e = head;
-      while ((e = e.next) != head) { count++; }
-      return count;
-    }
+    /** Upper limit of the ghost capacity in percent of the cache size when adaptive */
+    int ghostMaxPercentage = 100;
 
   }
 
@@ -0,0 +1,149 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.core.experimentalApi.CompletionFuture;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Future completed by the cache when an asynchronous operation is done.
+ *
+ * @author Jens Wilke
+ */
+public class CompletionFutureImpl<T> implements CompletionFuture<T> {
+
+  private boolean done;
+  private T result;
+  private Throwable exception;
+  private List<Callback<? super T>> callbacks;
+
+  public void complete(T v) {
+    List<Callback<? super T>> _callbacks;
+    synchronized (this) {
+      if (done) {
+        return;
+      }
+      result = v;
+      done = true;
+      _callbacks = callbacks;
+      callbacks = null;
+      notifyAll();
+    }
+    if (_callbacks != null) {
+      for (Callback<? super T> cb : _callbacks) {
+        cb.onSuccess(v);
+      }
+    }
+  }
+
+  public void fail(Throwable t) {
+    List<Callback<? super T>> _callbacks;
+    synchronized (this) {
+      if (done) {
+        return;
+      }
+      exception = t;
+      done = true;
+      _callbacks = callbacks;
+      callbacks = null;
+      notifyAll();
+    }
+    if (_callbacks != null) {
+      for (Callback<? super T> cb : _callbacks) {
+        cb.onFailure(t);
+      }
+    }
+  }
+
+  @Override
+  public void whenComplete(final Callback<? super T> cb) {
+    synchronized (this) {
+      if (!done) {
+        if (callbacks == null) {
+          callbacks = new ArrayList<Callback<? super T>>(2);
+        }
+        callbacks.add(cb);
+        return;
+      }
+    }
+    if (exception != null) {
+      cb.onFailure(exception);
+    } else {
+      cb.onSuccess(result);
+    }
+  }
+
+  @Override
+  public boolean cancel(final boolean mayInterruptIfRunning) {
+    return false;
+  }
+
+  @Override
+  public boolean isCancelled() {
+    return false;
+  }
+
+  @Override
+  public synchronized boolean isDone() {
+    return done;
+  }
+
+  @Override
+  public synchronized T get() throws InterruptedException, ExecutionException {
+    while (!done) {
+      wait();
+    }
+    return getResult();
+  }
+
+  @Override
+  public synchronized T get(final long timeout, final TimeUnit unit)
+    throws InterruptedException, ExecutionException, TimeoutException {
+    long _deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (!done) {
+      long _nanos = _deadline - System.nanoTime();
+      if (_nanos <= 0) {
+        throw new TimeoutException();
+      }
+      TimeUnit.NANOSECONDS.timedWait(this, _nanos);
+    }
+    return getResult();
+  }
+
+  private T getResult() throws ExecutionException {
+    if (exception != null) {
+      throw new ExecutionException(exception);
+    }
+    return result;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "CompletionFuture{" +
+      (done ? (exception != null ? "exception=" + exception : "result=" + result) : "pending") + "}";
+  }
+
+}
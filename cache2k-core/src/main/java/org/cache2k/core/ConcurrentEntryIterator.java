@@ -33,6 +33,9 @@ import java.util.NoSuchElementException;
  * entry is rehashed. In this case it is most likely that entries are missed.
  * If an expansion occurred, the iteration will restart from the beginning. To ensure that every
  * entry is only iterated once, the iterator has an internal bookkeeping, what was previously iterated.
+ * While an incremental expansion is running, the expanded table is scanned after the current
+ * table, since it contains the inserted and the already migrated entries. With segmented hash
+ * tables, the segment tables are scanned one after another.
  *
  * <p>Clear: A clear operation stops current iterations.
  *
@@ -48,6 +51,8 @@ public class ConcurrentEntryIterator<K,V> implements Iterator<Entry<K,V>> {
   private long clearCount;
   private Hash2<K,V> hash;
   private Entry<K,V>[] hashArray;
+  private int hashIndex;
+  private int tableIndex;
   private HashMap<K,K> seen = new HashMap<K, K>();
 
   public ConcurrentEntryIterator(HeapCache<K,V> _cache) {
@@ -120,7 +125,7 @@ public class ConcurrentEntryIterator<K,V> implements Iterator<Entry<K,V>> {
           return e;
         }
       }
-      idx = (cache.extractModifiedHash(lastEntry) & (hashArray.length - 1) ) + 1;
+      idx = hashIndex + 1;
     }
     for (;;) {
       if (idx >= hashArray.length) {
@@ -134,6 +139,7 @@ public class ConcurrentEntryIterator<K,V> implements Iterator<Entry<K,V>> {
         e = checkIteratedOrNext(e);
         if (e != null) {
           lastEntry = e;
+          hashIndex = idx;
           return e;
         }
       }
@@ -181,18 +187,45 @@ public class ConcurrentEntryIterator<K,V> implements Iterator<Entry<K,V>> {
    * @return true, if iteration should abort
    */
   private Boolean switchCheckAndAbortLocked() {
-    if (!hasExpansionOccurred()) {
-      clearOutReferences();
-      return true;
+    for (;;) {
+      Entry<K,V>[] _entries = hash.getEntries(tableIndex);
+      boolean _cacheClosed = _entries == null;
+      if (_cacheClosed) {
+        clearOutReferences();
+        throw new CacheClosedException(cache);
+      }
+      Entry<K,V>[] _nextArray = nextHashArray(_entries, hash.getExpansionEntries());
+      if (_nextArray != null) {
+        hashArray = _nextArray;
+        lastEntry = null;
+        clearCount = hash.getClearOrCloseCount();
+        return false;
+      }
+      if (++tableIndex >= hash.getTableCount()) {
+        clearOutReferences();
+        return true;
+      }
+      hashArray = null;
     }
-    hashArray = hash.getEntries();
-    clearCount = hash.getClearOrCloseCount();
-    boolean _cacheClosed = hashArray == null;
-    if (_cacheClosed) {
-      clearOutReferences();
-      throw new CacheClosedException(cache);
+  }
+
+  /**
+   * Determine the table to scan next. Triggers another
+   * scan over the hash tables if the hash table expanded while iterating.
+   *
+   * @return the next table to scan or {@code null} if the iteration is complete
+   */
+  private Entry<K,V>[] nextHashArray(Entry<K,V>[] _entries, Entry<K,V>[] _expansionEntries) {
+    if (hashArray == null) {
+      return _entries;
+    }
+    if (_expansionEntries != null) {
+      if (hashArray == _expansionEntries) {
+        return null;
+      }
+      return hashArray == _entries ? _expansionEntries : _entries;
     }
-    return false;
+    return hashArray == _entries ? null : _entries;
   }
 
   /**
@@ -206,12 +239,4 @@ public class ConcurrentEntryIterator<K,V> implements Iterator<Entry<K,V>> {
     seen = null;
   }
 
-  /**
-   * True if hash table expanded while iterating. Triggers another
-   * scan over the hash tables. True also before first run.
-   */
-  private boolean hasExpansionOccurred() {
-    return hashArray != hash.getEntries();
-  }
-
 }
@@ -23,6 +23,7 @@ package org.cache2k.core;
 import org.cache2k.CacheEntry;
 import org.cache2k.core.util.InternalClock;
 import org.cache2k.core.util.SimpleTimerTask;
+import org.cache2k.eviction.EvictionEntry;
 import org.cache2k.expiry.ExpiryPolicy;
 import org.cache2k.core.operation.ExaminationEntry;
 import org.cache2k.core.storageApi.StorageEntry;
@@ -147,7 +148,7 @@ class CompactEntry<K, V> {
  */
 @SuppressWarnings("unchecked")
 public class Entry<K, V> extends CompactEntry<K, V>
-  implements CacheEntry<K, V>, StorageEntry, ExaminationEntry<K, V> {
+  implements CacheEntry<K, V>, StorageEntry, ExaminationEntry<K, V>, EvictionEntry {
 
   /**
    * A value greater as means it is a time value.
@@ -184,12 +185,6 @@ public class Entry<K, V> extends CompactEntry<K, V>
   public static final int GONE = 8;
   public static final int GONE_OTHER = 15;
 
-  /**
-   * Usually this contains the reference to the timer task. In some cases, like when exceptions
-   * happen we will link to the PiggyBack object to add more information as needed.
-   */
-  private Object misc;
-
   /**
    * Time the entry was last updated by put or by fetching it from the cache loader.
    * The time is the time in millis times 2. A set bit 1 means the entry is fetched from
@@ -214,6 +209,33 @@ public class Entry<K, V> extends CompactEntry<K, V>
 
   public Entry() { this(null, 0); }
 
+  /**
+   * The compact entry has no field for a timer task, piggy back information or the
+   * running entry action, since a cache without timer, loader and wiring never needs
+   * them. The running action is not recorded, so an asynchronous operation cannot be
+   * queued behind it. Overridden by {@link ExtendedEntry}.
+   */
+  public boolean isCompact() {
+    return true;
+  }
+
+  /**
+   * Usually this contains the reference to the timer task. In some cases, like when exceptions
+   * happen we will link to the PiggyBack object to add more information as needed.
+   *
+   * <p>Always {@code null} for the compact entry, see {@link #isCompact()}.
+   */
+  protected Object getMisc() {
+    return null;
+  }
+
+  /**
+   * Only called with {@code null} for the compact entry, see {@link #isCompact()}.
+   */
+  protected void setMisc(Object v) {
+    assert v == null : "compact entry, no timer task, piggy back or entry action possible";
+  }
+
   private static final int MODIFICATION_TIME_BITS = 44;
   private static final long MODIFICATION_TIME_BASE = 0;
   private static final int MODIFICATION_TIME_SHIFT = 1;
@@ -225,9 +247,11 @@ public class Entry<K, V> extends CompactEntry<K, V>
    * storage attachment. Not used at the moment.
    */
   public void setRefreshTime(long t) {
-    refreshTimeAndState =
-      refreshTimeAndState & ~MODIFICATION_TIME_MASK |
-        ((((t - MODIFICATION_TIME_BASE) << MODIFICATION_TIME_SHIFT)) & MODIFICATION_TIME_MASK);
+    long _bits = (((t - MODIFICATION_TIME_BASE) << MODIFICATION_TIME_SHIFT)) & MODIFICATION_TIME_MASK;
+    long rt;
+    do {
+      rt = refreshTimeAndState;
+    } while (!STATE_UPDATER.compareAndSet(this, rt, rt & ~MODIFICATION_TIME_MASK | _bits));
   }
 
   @Override
@@ -303,8 +327,15 @@ public class Entry<K, V> extends CompactEntry<K, V>
     return (int) ((refreshTimeAndState >> PS_POS) & PS_MASK);
   }
 
+  /**
+   * Update via CAS, since the state may be switched by
+   * {@link #checkAndSwitchProcessingState(int, int)} without holding the entry lock.
+   */
   private void setProcessingState(int v) {
-    refreshTimeAndState = withState(refreshTimeAndState, v);
+    long rt;
+    do {
+      rt = refreshTimeAndState;
+    } while (!STATE_UPDATER.compareAndSet(this, rt, withState(rt, v)));
   }
 
   private long withState(final long _refreshTimeAndState, final long _state) {
@@ -312,13 +343,20 @@ public class Entry<K, V> extends CompactEntry<K, V>
   }
 
   /**
-   * Check and switch the processing state atomically.
+   * Check and switch the processing state atomically. A concurrent update of
+   * the refresh time, which shares the same field, does not let the switch fail.
+   *
+   * @return true if the state was {@code ps0} and is now {@code ps}
    */
   public boolean checkAndSwitchProcessingState(int ps0, int ps) {
-    long rt = refreshTimeAndState;
-    long _expect = withState(rt, ps0);
-    long _update = withState(rt, ps);
-    return STATE_UPDATER.compareAndSet(this, _expect, _update);
+    long rt;
+    do {
+      rt = refreshTimeAndState;
+      if (((rt >> PS_POS) & PS_MASK) != ps0) {
+        return false;
+      }
+    } while (!STATE_UPDATER.compareAndSet(this, rt, withState(rt, ps)));
+    return true;
   }
 
   /**
@@ -326,7 +364,7 @@ public class Entry<K, V> extends CompactEntry<K, V>
    */
   public void startProcessing(int ps, final EntryAction action) {
     setProcessingState(ps);
-    if (action != null) {
+    if (action != null && !isCompact()) {
       setEntryAction(action);
     }
   }
@@ -508,6 +546,15 @@ public class Entry<K, V> extends CompactEntry<K, V>
     return nextRefreshTime < 0;
   }
 
+  @Override
+  public int getKeyHash() {
+    return hashCode;
+  }
+
+  @Override
+  public long getHitCount() {
+    return hitCnt;
+  }
 
   public boolean isHot() { return hotAndWeight < 0; }
 
@@ -617,8 +664,9 @@ public class Entry<K, V> extends CompactEntry<K, V>
   }
 
   public SimpleTimerTask getTask() {
-    if (misc instanceof SimpleTimerTask) {
-      return (SimpleTimerTask) misc;
+    Object _misc = getMisc();
+    if (_misc instanceof SimpleTimerTask) {
+      return (SimpleTimerTask) _misc;
     }
     TaskPiggyBack pb = getPiggyBack(TaskPiggyBack.class);
     if (pb != null) {
@@ -628,7 +676,7 @@ public class Entry<K, V> extends CompactEntry<K, V>
   }
 
   public <X> X getPiggyBack(Class<X> _class) {
-    Object obj = misc;
+    Object obj = getMisc();
     if (!(obj instanceof PiggyBack)) {
       return null;
     }
@@ -643,8 +691,9 @@ public class Entry<K, V> extends CompactEntry<K, V>
   }
 
   public void setTask(SimpleTimerTask v) {
-    if (misc == null || misc instanceof SimpleTimerTask) {
-      misc = v;
+    Object _misc = getMisc();
+    if (_misc == null || _misc instanceof SimpleTimerTask) {
+      setMisc(v);
       return;
     }
     TaskPiggyBack pb = getPiggyBack(TaskPiggyBack.class);
@@ -652,19 +701,20 @@ public class Entry<K, V> extends CompactEntry<K, V>
       pb.task = v;
       return;
     }
-    misc = new TaskPiggyBack(v, (PiggyBack) misc);
+    setMisc(new TaskPiggyBack(v, (PiggyBack) _misc));
   }
 
   public void setEntryAction(EntryAction action) {
     action.next = existingPiggyBackForInserting();
-    misc = action;
+    setMisc(action);
   }
 
   public EntryAction getEntryAction() {
-    if (!(misc instanceof PiggyBack)) {
+    Object _misc = getMisc();
+    if (!(_misc instanceof PiggyBack)) {
       return null;
     }
-    PiggyBack at = ((PiggyBack) misc);
+    PiggyBack at = ((PiggyBack) _misc);
     while (at != null) {
       if (at instanceof EntryAction) {
         return (EntryAction) at;
@@ -675,14 +725,15 @@ public class Entry<K, V> extends CompactEntry<K, V>
   }
 
   public void resetEntryAction() {
-    if (!(misc instanceof PiggyBack)) {
+    Object _misc = getMisc();
+    if (!(_misc instanceof PiggyBack)) {
       return;
     }
-    if (misc instanceof EntryAction) {
-      misc = ((PiggyBack) misc).next;
+    if (_misc instanceof EntryAction) {
+      setMisc(((PiggyBack) _misc).next);
       return;
     }
-    PiggyBack at = ((PiggyBack) misc);
+    PiggyBack at = ((PiggyBack) _misc);
     while (at != null) {
       PiggyBack next = at.next;
       if (next instanceof EntryAction) {
@@ -698,7 +749,7 @@ public class Entry<K, V> extends CompactEntry<K, V>
    * piggy back.
    */
   private PiggyBack existingPiggyBackForInserting() {
-    Object _misc = misc;
+    Object _misc = getMisc();
     if (_misc instanceof SimpleTimerTask) {
       return new TaskPiggyBack((SimpleTimerTask) _misc, null);
     }
@@ -711,7 +762,7 @@ public class Entry<K, V> extends CompactEntry<K, V>
       inf.info = w;
       return;
     }
-    misc = new LoadExceptionPiggyBack(w, existingPiggyBackForInserting());
+    setMisc(new LoadExceptionPiggyBack(w, existingPiggyBackForInserting()));
   }
 
   /**
@@ -735,7 +786,7 @@ public class Entry<K, V> extends CompactEntry<K, V>
       inf.nextRefreshTime = nrt;
       return;
     }
-    misc = new RefreshProbationPiggyBack(nrt, existingPiggyBackForInserting());
+    setMisc(new RefreshProbationPiggyBack(nrt, existingPiggyBackForInserting()));
   }
 
   public long getRefreshProbationNextRefreshTime() {
@@ -248,6 +248,14 @@ public abstract class EntryAction<K, V, R> extends Entry.PiggyBack implements
     return null;
   }
 
+  /**
+   * Provide the asynchronous writer, e.g. write behind, default null.
+   * If present, it is used instead of the {@link #writer()}.
+   */
+  protected AsyncCacheWriter<K, V> asyncWriter() {
+    return null;
+  }
+
   /**
    * True if there is any listener defined. Default false.
    */
@@ -915,6 +923,11 @@ public abstract class EntryAction<K, V, R> extends Entry.PiggyBack implements
    * Entry mutation, call writer if needed or skip to {@link #mutationMayStore()}
    */
   public void mutationMayCallWriter() {
+    AsyncCacheWriter<K, V> _asyncWriter = asyncWriter();
+    if (_asyncWriter != null) {
+      mutationCallAsyncWriter(_asyncWriter);
+      return;
+    }
     CacheWriter<K, V> _writer = writer();
     if (_writer == null) {
       skipWritingNoWriter();
@@ -945,6 +958,29 @@ public abstract class EntryAction<K, V, R> extends Entry.PiggyBack implements
     onWriteSuccess();
   }
 
+  /**
+   * Hand over the mutation to the asynchronous writer. The entry stays in
+   * processing state until the writer calls back.
+   */
+  public void mutationCallAsyncWriter(AsyncCacheWriter<K, V> _writer) {
+    if (!remove && newValueOrException instanceof ExceptionWrapper) {
+      skipWritingForException();
+      return;
+    }
+    heapEntry.nextProcessingStep(WRITE_ASYNC);
+    try {
+      if (remove) {
+        _writer.remove(key, this, executor());
+      } else {
+        _writer.write(key, newValueOrException, this, executor());
+      }
+    } catch (Throwable t) {
+      onWriteFailure(t);
+      return;
+    }
+    asyncExecutionStartedWaitIfSynchronousCall();
+  }
+
   @Override
   public void onWriteSuccess() {
     heapEntry.nextProcessingStep(WRITE_COMPLETE);
@@ -0,0 +1,52 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Weigher;
+
+/**
+ * Creates the eviction data structure for a segment of a cache. Implementations
+ * need a public default constructor and are selected by class name via
+ * {@link EvictionPolicyConfiguration}.
+ *
+ * <p>This is not part of the cache2k API. The parameters and the returned
+ * {@link AbstractEviction} are internal classes of the core implementation, so an
+ * implementation is bound to the exact version of cache2k-core and may break with
+ * any update. A custom policy should implement {@link org.cache2k.eviction.EvictionPolicy}
+ * instead.
+ *
+ * @author Jens Wilke
+ * @see EvictionPolicyConfiguration.Builder#factory(Class)
+ */
+public interface EvictionFactory {
+
+  /**
+   * Create a new eviction instance. Called once for each eviction segment.
+   *
+   * @param maxSize maximum number of entries in the segment or -1 if a weigher is present
+   * @param weigher the weigher or {@code null}
+   * @param maxWeight maximum weight of the segment or -1 if no weigher is present
+   * @param noChunking evict only one entry at a time, for strict eviction
+   */
+  AbstractEviction create(HeapCache heapCache, HeapCacheListener listener,
+                          long maxSize, Weigher weigher, long maxWeight, boolean noChunking);
+
+}
@@ -0,0 +1,116 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.configuration.ConfigurationSectionBuilder;
+import org.cache2k.configuration.SingletonConfigurationSection;
+import org.cache2k.eviction.EvictionPolicy;
+
+/**
+ * Configuration section to select the eviction policy. Built in policies are
+ * {@value #CLOCK_PRO} (default), {@value #LRU}, {@value #SLRU}, {@value #ARC} and
+ * {@value #RANDOM}. Any other value is the class name of an
+ * {@link org.cache2k.eviction.EvictionPolicy} or an {@link EvictionFactory}.
+ *
+ * <pre>{@code
+ * Cache2kBuilder.of(Integer.class, String.class)
+ *   .entryCapacity(10000)
+ *   .with(new EvictionPolicyConfiguration.Builder().policy(EvictionPolicyConfiguration.ARC))
+ *   .build();
+ * }</pre>
+ *
+ * <p>In the XML configuration the section is available by the name {@code evictionPolicy}:
+ *
+ * <pre>{@code
+ * <sections>
+ *   <evictionPolicy>
+ *     <policy>ARC</policy>
+ *   </evictionPolicy>
+ * </sections>
+ * }</pre>
+ *
+ * @author Jens Wilke
+ */
+public class EvictionPolicyConfiguration implements SingletonConfigurationSection {
+
+  /** Clock-Pro+, see {@link ClockProPlusEviction} */
+  public static final String CLOCK_PRO = "CLOCK_PRO";
+  /** LRU approximated by a clock, see {@link LruEviction} */
+  public static final String LRU = "LRU";
+  /** Segmented LRU, see {@link SlruEviction} */
+  public static final String SLRU = "SLRU";
+  /** Adaptive replacement in the clock variant CAR, see {@link ArcEviction} */
+  public static final String ARC = "ARC";
+  /** Random eviction without regard to hits, see {@link RandomEviction} */
+  public static final String RANDOM = "RANDOM";
+
+  private String policy = CLOCK_PRO;
+
+  public String getPolicy() {
+    return policy;
+  }
+
+  /**
+   * @see Builder#policy(String)
+   */
+  public void setPolicy(final String v) {
+    policy = v;
+  }
+
+  public static class Builder implements ConfigurationSectionBuilder<EvictionPolicyConfiguration> {
+
+    private EvictionPolicyConfiguration config = new EvictionPolicyConfiguration();
+
+    /**
+     * Name of a built in policy or the class name of an
+     * {@link org.cache2k.eviction.EvictionPolicy} or an {@link EvictionFactory}.
+     * Default is {@value EvictionPolicyConfiguration#CLOCK_PRO}.
+     */
+    public Builder policy(final String v) {
+      config.setPolicy(v);
+      return this;
+    }
+
+    /**
+     * Use a custom eviction policy. An instance is created for each eviction segment.
+     */
+    public Builder policy(final Class<? extends EvictionPolicy> v) {
+      config.setPolicy(v.getName());
+      return this;
+    }
+
+    /**
+     * Use a custom eviction implementation. The factory depends on internals of the
+     * core implementation, see {@link EvictionFactory}.
+     */
+    public Builder factory(final Class<? extends EvictionFactory> v) {
+      config.setPolicy(v.getName());
+      return this;
+    }
+
+    @Override
+    public EvictionPolicyConfiguration buildConfigurationSection() {
+      return config;
+    }
+
+  }
+
+}
@@ -0,0 +1,180 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/* Credits
+ *
+ * The table layout with four 4 bit counters per long, the seeds and the
+ * indexing of the counters derive from FrequencySketch of the Caffeine project,
+ * https://github.com/ben-manes/caffeine. Original copyright:
+ *
+ * Copyright 2015 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Count-min sketch with 4 bit counters to estimate the access frequency of a key
+ * by its hash code. Each key maps to four counters, located in one long of the
+ * table per row. The estimate is the minimum of the four counters. After a number
+ * of increments proportional to the capacity, all counters are halved, so the
+ * estimate is biased towards recent accesses.
+ *
+ * <p>Not thread safe, used within the eviction lock.
+ *
+ * @author Jens Wilke
+ * @see AdmissionFilterConfiguration
+ */
+public class FrequencySketch {
+
+  public static final int MAXIMUM_FREQUENCY = 15;
+
+  static final long MAXIMUM_CAPACITY = 1 << 24;
+  static final long DEFAULT_CAPACITY = 1024;
+  static final long RESET_MASK = 0x7777777777777777L;
+  static final long ONE_MASK = 0x1111111111111111L;
+  static final long[] SEEDS = {
+    0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+  private final long[] table;
+  private final int tableMask;
+  private final int sampleSize;
+  private int incrementCount;
+  private long resetCount;
+
+  /**
+   * @param _capacity expected number of entries, the table is sized accordingly.
+   *                  A capacity of 0 or less, e.g. for a cache bounded by weight,
+   *                  selects a default.
+   * @param _sampleFactor number of increments per capacity until the counters are halved
+   */
+  public FrequencySketch(long _capacity, int _sampleFactor) {
+    if (_sampleFactor <= 0) {
+      throw new IllegalArgumentException("sample factor must be positive");
+    }
+    if (_capacity <= 0) {
+      _capacity = DEFAULT_CAPACITY;
+    }
+    _capacity = Math.max(16, Math.min(MAXIMUM_CAPACITY, _capacity));
+    int _tableSize = Integer.highestOneBit((int) _capacity - 1) << 1;
+    table = new long[_tableSize];
+    tableMask = _tableSize - 1;
+    sampleSize = (int) Math.min(Integer.MAX_VALUE, _capacity * _sampleFactor);
+  }
+
+  /**
+   * Estimated frequency of the hash code, between 0 and {@link #MAXIMUM_FREQUENCY}.
+   */
+  public int frequency(int _hash) {
+    int _spread = spread(_hash);
+    int _start = (_spread & 3) << 2;
+    int _frequency = MAXIMUM_FREQUENCY;
+    for (int i = 0; i < 4; i++) {
+      int _shift = (_start + i) << 2;
+      int _count = (int) ((table[indexOf(_spread, i)] >>> _shift) & 0xfL);
+      _frequency = Math.min(_frequency, _count);
+    }
+    return _frequency;
+  }
+
+  /**
+   * Count an access of the hash code. Counters that reached the maximum are
+   * not incremented.
+   */
+  public void increment(int _hash) {
+    add(_hash, 1);
+  }
+
+  /**
+   * Count a number of accesses of the hash code in one pass. Counters saturate
+   * at the maximum.
+   */
+  public void add(int _hash, int _count) {
+    if (_count <= 0) {
+      return;
+    }
+    int _spread = spread(_hash);
+    int _start = (_spread & 3) << 2;
+    int _added = 0;
+    for (int i = 0; i < 4; i++) {
+      _added = Math.max(_added, addAt(indexOf(_spread, i), _start + i, _count));
+    }
+    incrementCount += _added;
+    if (incrementCount >= sampleSize) {
+      reset();
+    }
+  }
+
+  /**
+   * @return the amount the counter was incremented by
+   */
+  private int addAt(int _index, int _counter, int _count) {
+    int _shift = _counter << 2;
+    int _value = (int) ((table[_index] >>> _shift) & 0xfL);
+    int _added = Math.min(MAXIMUM_FREQUENCY - _value, _count);
+    table[_index] += (long) _added << _shift;
+    return _added;
+  }
+
+  /**
+   * Halve all counters. The odd counters lose one increment, which is taken into
+   * account for the increment count.
+   */
+  void reset() {
+    int _odd = 0;
+    for (int i = 0; i < table.length; i++) {
+      _odd += Long.bitCount(table[i] & ONE_MASK);
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    incrementCount = (incrementCount >>> 1) - (_odd >>> 2);
+    resetCount++;
+  }
+
+  public long getResetCount() {
+    return resetCount;
+  }
+
+  public int getTableSize() {
+    return table.length;
+  }
+
+  private int indexOf(int _spread, int _row) {
+    long h = (_spread + SEEDS[_row]) * SEEDS[_row];
+    h += h >>> 32;
+    return ((int) h) & tableMask;
+  }
+
+  private static int spread(int _hash) {
+    int h = _hash * 0x9e3779b9;
+    return h ^ (h >>> 16);
+  }
+
+}
@@ -0,0 +1,194 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Ghosts represent entries we have seen and evicted from the cache. Only the hash
+ * is stored to save memory, since holding the key references may cause a size
+ * overhead. The ghosts are kept in a hash table of int hashes and in a LRU list,
+ * so no key is boxed and no map entry is allocated per eviction.
+ *
+ * @author Jens Wilke
+ */
+class GhostHash {
+
+  private static final int LOAD_PERCENT = 63;
+
+  private Ghost[] ghosts = new Ghost[4];
+  private final Ghost head = new Ghost().shortCircuit();
+  private int size = 0;
+  /** Removed ghost, reused on the next insert */
+  private Ghost spare;
+
+  public int size() {
+    return size;
+  }
+
+  public Ghost lookup(int hash) {
+    Ghost[] tab = ghosts;
+    int idx = hash & (tab.length - 1);
+    Ghost e = tab[idx];
+    while (e != null) {
+      if (e.hash == hash) {
+        return e;
+      }
+      e = e.another;
+    }
+    return null;
+  }
+
+  /**
+   * Insert a new ghost as most recently used. Does not check whether a ghost
+   * for the hash is present already.
+   */
+  public Ghost add(int hash) {
+    Ghost g = spare;
+    if (g != null) {
+      spare = null;
+    } else {
+      g = new Ghost();
+    }
+    g.hash = hash;
+    g.hot = false;
+    insertInHash(g);
+    Ghost.insertInList(head, g);
+    return g;
+  }
+
+  public void moveToFront(Ghost g) {
+    Ghost.removeFromList(g);
+    Ghost.insertInList(head, g);
+  }
+
+  public void remove(Ghost g) {
+    Ghost.removeFromList(g);
+    removeFromHash(g);
+    g.another = null;
+    spare = g;
+  }
+
+  /**
+   * Remove the least recently used ghost, if any.
+   */
+  public void removeEldest() {
+    if (size > 0) {
+      remove(head.prev);
+    }
+  }
+
+  private void insertInHash(Ghost g) {
+    Ghost[] tab = ghosts;
+    int idx = g.hash & (tab.length - 1);
+    g.another = tab[idx];
+    tab[idx] = g;
+    size++;
+    if (size > tab.length * LOAD_PERCENT / 100) {
+      expand();
+    }
+  }
+
+  private void expand() {
+    Ghost[] tab = ghosts;
+    Ghost[] newTab = new Ghost[tab.length * 2];
+    int mask = newTab.length - 1;
+    for (Ghost g : tab) {
+      while (g != null) {
+        int idx = g.hash & mask;
+        Ghost next = g.another;
+        g.another = newTab[idx];
+        newTab[idx] = g;
+        g = next;
+      }
+    }
+    ghosts = newTab;
+  }
+
+  private void removeFromHash(Ghost g) {
+    Ghost[] tab = ghosts;
+    int idx = g.hash & (tab.length - 1);
+    Ghost e = tab[idx];
+    if (e == g) {
+      tab[idx] = e.another;
+      size--;
+      return;
+    }
+    while (e != null) {
+      Ghost another = e.another;
+      if (another == g) {
+        e.another = another.another;
+        size--;
+        return;
+      }
+      e = another;
+    }
+  }
+
+  public int countInHash() {
+    int entryCount = 0;
+    for (Ghost e : ghosts) {
+      while (e != null) {
+        entryCount++;
+        e = e.another;
+      }
+    }
+    return entryCount;
+  }
+
+  public int countInList() {
+    int count = 0;
+    Ghost e = head;
+    while ((e = e.next) != head) { count++; }
+    return count;
+  }
+
+  static class Ghost {
+
+    /** Modified hashcode of the key */
+    int hash;
+    /** Entry was in the hot space when evicted */
+    boolean hot;
+    /** Hash table chain */
+    Ghost another;
+    /** LRU double linked list */
+    Ghost next;
+    /** LRU double linked list */
+    Ghost prev;
+
+    Ghost shortCircuit() {
+      return next = prev = this;
+    }
+
+    static void removeFromList(final Ghost e) {
+      e.prev.next = e.next;
+      e.next.prev = e.prev;
+      e.next = e.prev = null;
+    }
+
+    static void insertInList(final Ghost head, final Ghost e) {
+      e.prev = head;
+      e.next = head.next;
+      e.next.prev = e;
+      head.next = e;
+    }
+
+  }
+
+}
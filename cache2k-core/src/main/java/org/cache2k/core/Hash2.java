@@ -25,12 +25,30 @@ import org.cache2k.core.concurrency.Job;
 import org.cache2k.core.concurrency.Locks;
 import org.cache2k.core.concurrency.OptimisticLock;
 
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Simple concurrent hash table implementation using optimistic locking
  * for the segments locks.
  *
+ * <p>Expansion: By default the table is expanded by locking all segments and rehashing
+ * every entry at once. In incremental mode the expanded table is allocated next to the
+ * current one and the buckets are migrated in small chunks, either by an insert into the
+ * segment or by {@link #completeExpansion()}, which is meant to run in the background.
+ * Every bucket index maps to exactly one segment, since the table length is always a
+ * multiple of the lock segment count. When doubling the table, the entries of
+ * one bucket stay within the same segment, so migrating a bucket only needs the
+ * lock of its segment. Only starting and finishing the expansion, which is just
+ * switching the table references, needs all segment locks.
+ *
+ * <p>Segmented tables: Alternatively each lock segment can own a separate table, which
+ * is expanded independently by only holding the segment lock. A segment with many
+ * entries does not cause an expansion of the other segments and the rehash work and the
+ * memory for the expansion is split up. Within a segment table the bucket index is
+ * taken from the hash code bits above the segment bits. Incremental expansion
+ * is not used with segmented tables.
+ *
  * @author Jens Wilke
  * @see OptimisticLock
  */
@@ -39,11 +57,13 @@ public class Hash2<K,V> {
 
   private static final int LOCK_SEGMENTS;
   private static final int LOCK_MASK;
+  private static final int LOCK_BITS;
 
   static {
     int _ncpu = Runtime.getRuntime().availableProcessors();
     LOCK_SEGMENTS = 2 << (31 - Integer.numberOfLeadingZeros(_ncpu));
     LOCK_MASK = LOCK_SEGMENTS - 1;
+    LOCK_BITS = Integer.numberOfTrailingZeros(LOCK_SEGMENTS);
   }
 
   /**
@@ -60,21 +80,78 @@ public class Hash2<K,V> {
    */
   private long segmentMaxFill;
 
+  /**
+   * Table shared by all segments, {@code null} if segmented tables are used
+   * or the hash is closed.
+   */
   private Entry<K,V>[] entries;
+
+  /**
+   * One table per segment, if segmented tables are used. {@code null} if the
+   * shared table is used or the hash is closed. An array element is
+   * guarded by the segment lock.
+   */
+  private Entry<K,V>[][] segmentEntries;
+
+  /**
+   * Maximum size of each segment table, if segmented tables are used.
+   * An array element is guarded by the segment lock.
+   */
+  private long[] segmentTableMaxFill;
+
   private final OptimisticLock[] locks;
   private final AtomicLong[] segmentSize;
 
+  /**
+   * Target table of a running incremental expansion or {@code null} if no expansion
+   * is in progress. New entries are inserted here, while the remaining entries of the
+   * current table get migrated.
+   */
+  private Entry<K,V>[] expansionEntries;
+
+  /**
+   * Per segment count of already migrated buckets of the current table.
+   * Guarded by the segment lock.
+   */
+  private final int[] migrationCursor = new int[LOCK_SEGMENTS];
+
+  /**
+   * Number of segments which still have buckets to migrate.
+   */
+  private final AtomicInteger segmentsToMigrate = new AtomicInteger();
+
   private final Cache cache;
 
+  private final boolean incrementalExpansion;
+
+  private final boolean segmentedTables;
+
+  /**
+   * Right shift of the hash code to calculate the bucket index. Segmented tables
+   * skip the bits used for the segment index.
+   */
+  private final int indexShift;
+
   /**
    *
    * @param _cache Cache reference only needed for the cache name in case of an exception
    */
   public Hash2(final Cache _cache) {
-    cache = _cache;
+    this(_cache, HeapCache.TUNABLE.incrementalHashExpansion, HeapCache.TUNABLE.segmentedHashTables);
   }
 
-  {
+  /**
+   *
+   * @param _cache Cache reference only needed for the cache name in case of an exception
+   * @param _incrementalExpansion expand the table incrementally instead of locking all
+   *                              segments and rehash all entries at once
+   * @param _segmentedTables use a separate table for each lock segment
+   */
+  public Hash2(final Cache _cache, final boolean _incrementalExpansion, final boolean _segmentedTables) {
+    cache = _cache;
+    incrementalExpansion = _incrementalExpansion && !_segmentedTables;
+    segmentedTables = _segmentedTables;
+    indexShift = _segmentedTables ? LOCK_BITS : 0;
     locks = new OptimisticLock[LOCK_SEGMENTS];
     for (int i = 0; i < LOCK_SEGMENTS; i++) {
       locks[i] = Locks.newOptimistic();
@@ -88,20 +165,75 @@ public class Hash2<K,V> {
 
   @SuppressWarnings("unchecked")
   private void initArray() {
+    if (segmentedTables) {
+      int len = Math.max(HeapCache.TUNABLE.initialHashSize / LOCK_SEGMENTS, 4);
+      Entry<K,V>[][] _segmentEntries = new Entry[LOCK_SEGMENTS][];
+      long[] _maxFill = new long[LOCK_SEGMENTS];
+      for (int i = 0; i < LOCK_SEGMENTS; i++) {
+        _segmentEntries[i] = new Entry[len];
+        _maxFill[i] = calcMaxFill(len);
+      }
+      segmentTableMaxFill = _maxFill;
+      segmentEntries = _segmentEntries;
+      return;
+    }
     int len = Math.max(HeapCache.TUNABLE.initialHashSize, LOCK_SEGMENTS * 4);
     entries = new Entry[len];
+    expansionEntries = null;
+    segmentsToMigrate.set(0);
     calcMaxFill();
   }
 
+  /**
+   * Capacity of the table before expanding. While an incremental expansion is running
+   * this is the capacity of the expanded table. With segmented tables this is the sum
+   * of all segment capacities.
+   */
   public long getEntryCapacity() {
-    return entries.length * 1L * HeapCache.TUNABLE.hashLoadPercent / 100;
+    if (segmentedTables) {
+      long _capacity = 0;
+      for (long _maxFill : segmentTableMaxFill) {
+        _capacity += _maxFill;
+      }
+      return _capacity;
+    }
+    Entry<K,V>[] tab = expansionEntries;
+    if (tab == null) {
+      tab = entries;
+    }
+    return tab.length * 1L * HeapCache.TUNABLE.hashLoadPercent / 100;
   }
 
-  /** For testing */
+  /**
+   * For testing. With segmented tables the lowest maximum fill of all
+   * segment tables.
+   */
   public long getSegmentMaxFill() {
+    if (segmentedTables) {
+      long _min = Long.MAX_VALUE;
+      for (long _maxFill : segmentTableMaxFill) {
+        _min = Math.min(_min, _maxFill);
+      }
+      return _min;
+    }
     return segmentMaxFill;
   }
 
+  private static long calcMaxFill(int _tableLength) {
+    return _tableLength * 1L * HeapCache.TUNABLE.hashLoadPercent / 100;
+  }
+
+  /**
+   * The table containing the entries of the segment.
+   */
+  private Entry<K,V>[] table(int _segmentIndex) {
+    Entry<K,V>[][] _segmentEntries = segmentEntries;
+    if (_segmentEntries != null) {
+      return _segmentEntries[_segmentIndex];
+    }
+    return entries;
+  }
+
   private void calcMaxFill() {
     segmentMaxFill = getEntryCapacity() / LOCK_SEGMENTS;
   }
@@ -114,14 +246,14 @@ public class Hash2<K,V> {
     int si = _hash & LOCK_MASK;
     OptimisticLock l = _locks[si];
     long _stamp = l.tryOptimisticRead();
-    Entry<K,V>[] tab = entries;
+    Entry<K,V>[] tab = table(si);
     if (tab == null) {
       throw new CacheClosedException(cache);
     }
     Entry<K,V> e;
     int n = tab.length;
     int _mask = n - 1;
-    int idx = _hash & (_mask);
+    int idx = (_hash >>> indexShift) & (_mask);
     e = tab[idx];
     while (e != null) {
       if (e.hashCode == _keyValue && keyObjIsEqual(key, e)) {
@@ -129,59 +261,92 @@ public class Hash2<K,V> {
       }
       e = e.another;
     }
+    tab = expansionEntries;
+    if (tab != null) {
+      e = lookupInTable(tab, key, _hash, _keyValue);
+      if (e != null) {
+        return e;
+      }
+    }
     if (l.validate(_stamp)) {
       return null;
     }
     _stamp = l.readLock();
     try {
-      tab = entries;
+      tab = table(si);
       if (tab == null) {
         throw new CacheClosedException(cache);
       }
-      n = tab.length;
-      _mask = n - 1;
-      idx = _hash & (_mask);
-      e = tab[idx];
-      while (e != null) {
-        if (e.hashCode == _keyValue && (keyObjIsEqual(key, e))) {
-          return e;
-        }
-        e = e.another;
+      e = lookupInTable(tab, key, _hash, _keyValue);
+      if (e == null && (tab = expansionEntries) != null) {
+        e = lookupInTable(tab, key, _hash, _keyValue);
       }
-      return null;
+      return e;
     } finally {
       l.unlockRead(_stamp);
     }
   }
 
+  private Entry<K,V> lookupInTable(Entry<K,V>[] tab, K key, int _hash, int _keyValue) {
+    Entry<K,V> e = tab[(_hash >>> indexShift) & (tab.length - 1)];
+    while (e != null) {
+      if (e.hashCode == _keyValue && (keyObjIsEqual(key, e))) {
+        return e;
+      }
+      e = e.another;
+    }
+    return null;
+  }
+
   protected boolean keyObjIsEqual(final K key, final Entry e) {
     Object ek;
     return (ek = e.getKeyObj()) == key || (ek.equals(key));
   }
 
+  /**
+   * Compare the keys of the entry to insert and an entry in the table.
+   */
+  protected boolean entryKeyIsEqual(final Entry<K,V> e, final Entry<K,V> f) {
+    return keyObjIsEqual(e.getKeyObj(), f);
+  }
+
 
 
   /**
    * Insert an entry. Checks if an entry already exists.
    */
   public Entry<K,V> insertWithinLock(Entry<K,V> e, int _hash, int _keyValue) {
-    K key = e.getKeyObj();
     int si = _hash & LOCK_MASK;
-    Entry<K,V> f; Object ek; Entry<K,V>[] tab = entries;
+    Entry<K,V> f; Entry<K,V>[] tab = table(si);
     if (tab == null) {
       throw new CacheClosedException(cache);
     }
-    int n = tab.length, _mask = n - 1, idx = _hash & (_mask);
+    int n = tab.length, _mask = n - 1, idx = (_hash >>> indexShift) & (_mask);
     f = tab[idx];
     while (f != null) {
-      if (f.hashCode == _keyValue && ((ek = f.getKeyObj()) == key || (ek.equals(key)))) {
+      if (f.hashCode == _keyValue && entryKeyIsEqual(e, f)) {
         return f;
       }
       f = f.another;
     }
+    Entry<K,V>[] _expansionTab = expansionEntries;
+    if (_expansionTab != null) {
+      tab = _expansionTab;
+      n = tab.length; _mask = n - 1; idx = _hash & (_mask);
+      f = tab[idx];
+      while (f != null) {
+        if (f.hashCode == _keyValue && entryKeyIsEqual(e, f)) {
+          return f;
+        }
+        f = f.another;
+      }
+    }
     e.another = tab[idx];
     tab[idx] = e;
     segmentSize[si].incrementAndGet();
+    if (_expansionTab != null) {
+      migrateWithinLock(si, HeapCache.TUNABLE.hashExpansionChunkSize);
+    }
     return e;
   }
 
@@ -192,13 +357,30 @@ public class Hash2<K,V> {
    *
    * <p>Need for expansion is only checked by comparing whether the associated segment is
    * full. Should be called after insert after giving up the lock.
+   *
+   * @return true, if an incremental expansion was started and the caller should run
+   *         {@link #completeExpansion()} in the background.
    */
-  public void checkExpand(int _hash) {
+  public boolean checkExpand(int _hash) {
     int si = _hash & LOCK_MASK;
+    if (segmentedTables) {
+      long[] _maxFill = segmentTableMaxFill;
+      if (segmentSize[si].get() > _maxFill[si]) {
+        expandSegment(si);
+      }
+      return false;
+    }
+    if (segmentsToMigrate.get() == 0 && expansionEntries != null) {
+      finishExpansion();
+    }
     long _size = segmentSize[si].get();
     if (_size > segmentMaxFill) {
+      if (incrementalExpansion) {
+        return startExpansion(si);
+      }
       eventuallyExpand(si);
     }
+    return false;
   }
 
   public OptimisticLock getSegmentLock(int _hash) {
@@ -217,39 +399,28 @@ public class Hash2<K,V> {
     OptimisticLock l = _locks[si];
     long _stamp = l.writeLock();
     try {
-      Entry<K,V> f; Entry<K,V>[] tab = entries;
-      if (tab == null) {
-        throw new CacheClosedException(cache);
-      }
-      int n = tab.length, _mask = n - 1, idx = _hash & (_mask);
-      f = tab[idx];
-      if (f == e) {
-        tab[idx] = f.another;
-        segmentSize[si].decrementAndGet();
-        return true;
-      }
-      while (f != null) {
-        Entry<K,V> _another = f.another;
-        if (_another == e) {
-          f.another = _another.another;
-          segmentSize[si].decrementAndGet();
-          return true;
-        }
-        f = _another;
-      }
+      return removeWithinLock(e, _hash);
     } finally {
       l.unlockWrite(_stamp);
     }
-    return false;
   }
 
   public boolean removeWithinLock(Entry<K,V> e, int _hash) {
-    int si = _hash & LOCK_MASK;
-    Entry<K,V> f; Entry<K,V>[] tab = entries;
+    Entry<K,V>[] tab = table(_hash & LOCK_MASK);
     if (tab == null) {
       throw new CacheClosedException(cache);
     }
-    int n = tab.length, _mask = n - 1, idx = _hash & (_mask);
+    if (removeFromTable(tab, e, _hash)) {
+      return true;
+    }
+    tab = expansionEntries;
+    return tab != null && removeFromTable(tab, e, _hash);
+  }
+
+  private boolean removeFromTable(Entry<K,V>[] tab, Entry<K,V> e, int _hash) {
+    int si = _hash & LOCK_MASK;
+    Entry<K,V> f;
+    int n = tab.length, _mask = n - 1, idx = (_hash >>> indexShift) & (_mask);
     f = tab[idx];
     if (f == e) {
       tab[idx] = f.another;
@@ -285,6 +456,159 @@ public class Hash2<K,V> {
     }
   }
 
+  /**
+   * Double the size of the segment table and rehash its entries. Only the lock of the
+   * segment is needed.
+   */
+  private void expandSegment(int _segmentIndex) {
+    OptimisticLock l = locks[_segmentIndex];
+    long _stamp = l.writeLock();
+    try {
+      Entry<K,V>[][] _segmentEntries = segmentEntries;
+      if (_segmentEntries == null) {
+        throw new CacheClosedException(cache);
+      }
+      if (segmentSize[_segmentIndex].get() <= segmentTableMaxFill[_segmentIndex]) {
+        return;
+      }
+      rehashSegment(_segmentEntries, _segmentIndex);
+    } finally {
+      l.unlockWrite(_stamp);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void rehashSegment(Entry<K,V>[][] _segmentEntries, int _segmentIndex) {
+    Entry<K,V>[] src = _segmentEntries[_segmentIndex];
+    int i, sl = src.length, n = sl * 2, _mask = n - 1, idx;
+    Entry<K,V>[] tab = new Entry[n];
+    Entry<K,V> _next, e;
+    for (i = 0; i < sl; i++) {
+      e = src[i];
+      while (e != null) {
+        _next = e.another; idx = (modifiedHashCode(e.hashCode) >>> indexShift) & _mask;
+        e.another = tab[idx]; tab[idx] = e;
+        e = _next;
+      }
+    }
+    _segmentEntries[_segmentIndex] = tab;
+    segmentTableMaxFill[_segmentIndex] = calcMaxFill(n);
+  }
+
+  /**
+   * Allocate the expanded table and start the incremental migration. The allocation
+   * is done without holding a lock. All segment locks are only held to publish the table.
+   *
+   * @return true, if the expansion was started by this call
+   */
+  @SuppressWarnings("unchecked")
+  private boolean startExpansion(int _segmentIndex) {
+    Entry<K,V>[] src = entries;
+    if (src == null || expansionEntries != null) {
+      return false;
+    }
+    Entry<K,V>[] tab = new Entry[src.length * 2];
+    long[] _stamps = lockAll();
+    try {
+      if (entries != src || expansionEntries != null ||
+        segmentSize[_segmentIndex].get() <= segmentMaxFill) {
+        return false;
+      }
+      for (int i = 0; i < LOCK_SEGMENTS; i++) {
+        migrationCursor[i] = 0;
+      }
+      segmentsToMigrate.set(LOCK_SEGMENTS);
+      expansionEntries = tab;
+      calcMaxFill();
+      return true;
+    } finally {
+      unlockAll(_stamps);
+    }
+  }
+
+  /**
+   * Move up to the given number of buckets of one segment to the expanded table.
+   * Assumes the segment lock is held.
+   *
+   * @return true, if all buckets of the segment are migrated
+   */
+  private boolean migrateWithinLock(int _segmentIndex, int _bucketCount) {
+    Entry<K,V>[] src = entries;
+    Entry<K,V>[] tab = expansionEntries;
+    if (src == null || tab == null) {
+      return true;
+    }
+    int _bucketsPerSegment = src.length / LOCK_SEGMENTS;
+    int k = migrationCursor[_segmentIndex];
+    if (k >= _bucketsPerSegment) {
+      return true;
+    }
+    int _end = k + Math.min(_bucketsPerSegment - k, _bucketCount);
+    int _mask = tab.length - 1, i, idx;
+    Entry<K,V> e, _next;
+    for (; k < _end; k++) {
+      i = _segmentIndex + k * LOCK_SEGMENTS;
+      e = src[i];
+      while (e != null) {
+        _next = e.another; idx = modifiedHashCode(e.hashCode) & _mask;
+        e.another = tab[idx]; tab[idx] = e;
+        e = _next;
+      }
+      src[i] = null;
+    }
+    migrationCursor[_segmentIndex] = k;
+    if (k >= _bucketsPerSegment) {
+      segmentsToMigrate.decrementAndGet();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Migrate all remaining buckets of a running incremental expansion and switch
+   * to the expanded table. The segment locks are acquired for one chunk of buckets
+   * only, so concurrent operations can proceed. No lock may be hold when calling
+   * this method.
+   */
+  public void completeExpansion() {
+    Entry<K,V>[] tab = expansionEntries;
+    if (tab == null) {
+      return;
+    }
+    int _chunkSize = HeapCache.TUNABLE.hashExpansionChunkSize;
+    for (int si = 0; si < LOCK_SEGMENTS; si++) {
+      boolean _done = false;
+      while (!_done) {
+        OptimisticLock l = locks[si];
+        long _stamp = l.writeLock();
+        try {
+          if (expansionEntries != tab) {
+            return;
+          }
+          _done = migrateWithinLock(si, _chunkSize);
+        } finally {
+          l.unlockWrite(_stamp);
+        }
+      }
+    }
+    finishExpansion();
+  }
+
+  /**
+   * Switch to the expanded table, if all buckets are migrated.
+   */
+  private void finishExpansion() {
+    long[] _stamps = lockAll();
+    try {
+      if (expansionEntries != null && entries != null && segmentsToMigrate.get() == 0) {
+        entries = expansionEntries;
+        expansionEntries = null;
+      }
+    } finally {
+      unlockAll(_stamps);
+    }
+  }
+
   /**
    * Acquire all segment locks and return an array with the lock stamps.
    */
@@ -318,20 +642,39 @@ public class Hash2<K,V> {
 
   /**
    * Double the hash table size and rehash the entries. Assumes total lock.
+   * A running incremental expansion is completed instead.
    */
   @SuppressWarnings("unchecked")
   void rehash() {
+    if (segmentedTables) {
+      Entry<K,V>[][] _segmentEntries = segmentEntries;
+      if (_segmentEntries == null) {
+        throw new CacheClosedException(cache);
+      }
+      for (int si = 0; si < LOCK_SEGMENTS; si++) {
+        rehashSegment(_segmentEntries, si);
+      }
+      return;
+    }
     Entry<K,V>[] src = entries;
     if (src == null) {
       throw new CacheClosedException(cache);
     }
+    if (expansionEntries != null) {
+      for (int si = 0; si < LOCK_SEGMENTS; si++) {
+        migrateWithinLock(si, Integer.MAX_VALUE);
+      }
+      entries = expansionEntries;
+      expansionEntries = null;
+      return;
+    }
     int i, sl = src.length, n = sl * 2, _mask = n - 1, idx;
     Entry<K,V>[] tab = new Entry[n];
-    long _count = 0; Entry _next, e;
+    Entry _next, e;
     for (i = 0; i < sl; i++) {
       e = src[i];
       while (e != null) {
-        _count++; _next = e.another; idx = modifiedHashCode(e.hashCode) & _mask;
+        _next = e.another; idx = modifiedHashCode(e.hashCode) & _mask;
         e.another = tab[idx]; tab[idx] = e;
         e = _next;
       }
@@ -382,10 +725,22 @@ public class Hash2<K,V> {
   public void close() {
     clearOrCloseCount++;
     entries = null;
+    segmentEntries = null;
+    expansionEntries = null;
   }
 
   public void calcHashCollisionInfo(CollisionInfo inf) {
-    for (Entry<K, V> e : entries) {
+    for (int i = 0; i < getTableCount(); i++) {
+      calcHashCollisionInfo(inf, getEntries(i));
+    }
+    Entry<K,V>[] tab = expansionEntries;
+    if (tab != null) {
+      calcHashCollisionInfo(inf, tab);
+    }
+  }
+
+  private static void calcHashCollisionInfo(CollisionInfo inf, Entry[] tab) {
+    for (Entry e : tab) {
       if (e != null) {
         e = e.another;
         if (e != null) {
@@ -411,7 +766,19 @@ public class Hash2<K,V> {
    */
   public long calcEntryCount() {
     long _count = 0;
-    for (Entry e : entries) {
+    for (int i = 0; i < getTableCount(); i++) {
+      _count += calcEntryCount(getEntries(i));
+    }
+    Entry<K,V>[] tab = expansionEntries;
+    if (tab != null) {
+      _count += calcEntryCount(tab);
+    }
+    return _count;
+  }
+
+  private static long calcEntryCount(Entry[] tab) {
+    long _count = 0;
+    for (Entry e : tab) {
       while (e != null) {
         _count++;
         e = e.another;
@@ -420,11 +787,36 @@ public class Hash2<K,V> {
     return _count;
   }
 
+  /**
+   * Number of entry tables. One, if all segments share one table, or the number
+   * of segments with segmented tables.
+   */
+  public int getTableCount() {
+    return segmentedTables ? LOCK_SEGMENTS : 1;
+  }
+
   /**
    * Entry table for used by the iterator.
+   *
+   * @param _tableIndex index of the table, see {@link #getTableCount()}
+   * @return the entry table or {@code null}, if the hash is closed
    */
-  public Entry<K,V>[] getEntries() {
+  public Entry<K,V>[] getEntries(int _tableIndex) {
+    if (segmentedTables) {
+      Entry<K,V>[][] _segmentEntries = segmentEntries;
+      return _segmentEntries != null ? _segmentEntries[_tableIndex] : null;
+    }
     return entries;
   }
 
+  /**
+   * Target table of a running incremental expansion, used by the iterator. Entries
+   * not yet migrated are in the table returned by {@link #getEntries(int)}.
+   *
+   * @return the expanded table or {@code null}, if no expansion is running
+   */
+  public Entry<K,V>[] getExpansionEntries() {
+    return expansionEntries;
+  }
+
 }
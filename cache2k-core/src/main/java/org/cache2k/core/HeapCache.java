@@ -24,10 +24,12 @@ import org.cache2k.*;
 import org.cache2k.configuration.Cache2kConfiguration;
 import org.cache2k.configuration.CacheType;
 import org.cache2k.configuration.CustomizationSupplier;
+import org.cache2k.core.experimentalApi.AsyncCache;
 import org.cache2k.core.operation.ExaminationEntry;
 import org.cache2k.core.operation.ReadOnlyCacheEntry;
 import org.cache2k.core.operation.Semantic;
 import org.cache2k.core.operation.Operations;
+import org.cache2k.core.storageApi.StorageEntry;
 import org.cache2k.core.concurrency.DefaultThreadFactoryProvider;
 import org.cache2k.core.concurrency.Job;
 import org.cache2k.core.concurrency.OptimisticLock;
@@ -38,17 +40,21 @@ import org.cache2k.core.util.Log;
 import org.cache2k.core.util.TunableConstants;
 import org.cache2k.core.util.TunableFactory;
 import org.cache2k.event.CacheClosedListener;
+import org.cache2k.expiry.ExpiryTimeValues;
 import org.cache2k.integration.AdvancedCacheLoader;
+import org.cache2k.integration.BulkCacheLoader;
 import org.cache2k.integration.CacheLoaderException;
 import org.cache2k.integration.ExceptionPropagator;
 import org.cache2k.integration.RefreshedTimeWrapper;
 import org.cache2k.processor.EntryProcessor;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
@@ -99,9 +105,18 @@ public class HeapCache<K, V> extends BaseCache<K, V> {
   protected String name;
   public CacheManagerImpl manager;
   protected AdvancedCacheLoader<K,V> loader;
+
+  /** Loader used for bulk operations, or null. Identical to the loader instance. */
+  protected BulkCacheLoader<K,V> bulkLoader;
   protected InternalClock clock;
   protected TimingHandler<K,V> timing = TimingHandler.ETERNAL;
 
+  /** @see #createEntry(Object, int) */
+  private boolean compactEntries = false;
+
+  /** Records hits instead of the entry hit counter, or null */
+  private ReadBuffer readBuffer;
+
   /**
    * Structure lock of the cache. Every operation that needs a consistent structure
    * of the cache or modifies it needs to synchronize on this. Since this is a global
@@ -126,6 +141,9 @@ public class HeapCache<K, V> extends BaseCache<K, V> {
 
   Eviction eviction;
 
+  /** Optional second tier for evicted entries, or null */
+  StorageTier<K,V> storage;
+
   /** Number of entries removed by clear. Guarded by: lock */
   protected long clearRemovedCnt = 0;
 
@@ -334,6 +352,10 @@ public class HeapCache<K, V> extends BaseCache<K, V> {
     loader = al;
   }
 
+  public void setBulkLoader(final BulkCacheLoader<K,V> l) {
+    bulkLoader = l;
+  }
+
   /**
    * Set the name and configure a logging, used within cache construction.
    */
@@ -399,6 +421,9 @@ public class HeapCache<K, V> extends BaseCache<K, V> {
     clearCnt++;
     initializeHeapCache();
     hash.clearWhenLocked();
+    if (storage != null) {
+      storage.clear();
+    }
     clearedTime = clock.millis();
   }
 
@@ -455,6 +480,9 @@ public class HeapCache<K, V> extends BaseCache<K, V> {
       public Void call() {
         eviction.close();
         timing.shutdown();
+        if (storage != null) {
+          storage.close();
+        }
         hash.close();
         closeCustomization(loader, "loader");
         for (CustomizationSupplier<CacheClosedListener> s : cacheClosedListeners) {
@@ -556,8 +584,16 @@ public class HeapCache<K, V> extends BaseCache<K, V> {
    *
    * <p>Using a 64 bit counter per entry is basically a big waste of memory. When reducing
    * to a 32 bit value is has approximately a negative performance impact of 30%.
+   *
+   * <p>If a read buffer is configured, the hit is recorded in the buffer and transferred
+   * to the counter later, so no shared entry memory is written on a hit.
    */
   protected void recordHit(Entry e) {
+    ReadBuffer _buffer = readBuffer;
+    if (_buffer != null) {
+      _buffer.recordAndDrainEventually(e);
+      return;
+    }
     e.hitCnt++;
   }
 
@@ -1074,7 +1110,11 @@ public class HeapCache<K, V> extends BaseCache<K, V> {
       _listener.onCompleted();
       return;
     }
-    Set<K> _keysToLoad = checkAllPresent(_keys);
+    final Set<K> _keysToLoad = checkAllPresent(_keys);
+    if (bulkLoader != null) {
+      executeBulkLoad(getPrefetchExecutor(), true, _keysToLoad, false, _listener);
+      return;
+    }
     final AtomicInteger _count = new AtomicInteger(2);
     try {
       for (K k : _keysToLoad) {
@@ -1112,6 +1152,10 @@ public class HeapCache<K, V> extends BaseCache<K, V> {
       _listener.onCompleted();
       return;
     }
+    if (bulkLoader != null) {
+      executeBulkLoad(loaderExecutor, false, _keysToLoad, false, _listener);
+      return;
+    }
     final AtomicInteger _countDown = new AtomicInteger(_keysToLoad.size());
     for (K k : _keysToLoad) {
       final K key = k;
@@ -1140,6 +1184,10 @@ public class HeapCache<K, V> extends BaseCache<K, V> {
     checkLoaderPresent();
     final CacheOperationCompletionListener _listener= l != null ? l : DUMMY_LOAD_COMPLETED_LISTENER;
     Set<K> _keySet = generateKeySet(_keys);
+    if (bulkLoader != null) {
+      executeBulkLoad(loaderExecutor, false, _keySet, true, _listener);
+      return;
+    }
     final AtomicInteger _countDown = new AtomicInteger(_keySet.size());
     for (K k : _keySet) {
       final K key = k;
@@ -1164,6 +1212,142 @@ public class HeapCache<K, V> extends BaseCache<K, V> {
     }
   }
 
+  /**
+   * Run the bulk load as one task in the executor. If the executor rejects the
+   * task, prefetch does nothing and load runs in the calling thread.
+   */
+  private void executeBulkLoad(final Executor _executor, final boolean _prefetch,
+                               final Set<K> _keys, final boolean _reload,
+                               final CacheOperationCompletionListener _listener) {
+    if (_keys.isEmpty()) {
+      _listener.onCompleted();
+      return;
+    }
+    Runnable r = new RunWithCatch(this) {
+      @Override
+      public void action() {
+        try {
+          // already in the loader executor, more tasks could wait for a free thread forever
+          bulkLoad(_keys, _reload, BulkCacheLoader.CALLER_RUNS);
+        } finally {
+          _listener.onCompleted();
+        }
+      }
+    };
+    try {
+      _executor.execute(r);
+    } catch (RejectedExecutionException ex) {
+      if (_prefetch) {
+        _listener.onCompleted();
+        return;
+      }
+      r.run();
+    }
+  }
+
+  /**
+   * Load the keys with the bulk loader. The entries are put in processing state before
+   * the load, so concurrent operations on the same keys wait for the result. Entries
+   * processed by another thread at the same time are not part of the bulk request. These
+   * are handled after the bulk load via the single key operations, which wait for the
+   * other thread and may load again.
+   *
+   * <p>Entries are locked one by one and not waited for while other entries are locked,
+   * to prevent deadlocks between concurrent bulk operations.
+   *
+   * @param _reload load even if the entry has fresh data
+   * @param _loadExecutor executor passed to the bulk loader
+   * @return entries of all keys, the value of an entry is null if null values are rejected
+   */
+  Map<K, Entry<K, V>> bulkLoad(final Set<K> _keys, final boolean _reload,
+                               final Executor _loadExecutor) {
+    Map<K, Entry<K, V>> _result = new HashMap<K, Entry<K, V>>();
+    Map<K, Entry<K, V>> _entriesToLoad = new HashMap<K, Entry<K, V>>();
+    List<K> _processedConcurrently = new ArrayList<K>();
+    for (K key : _keys) {
+      Entry<K, V> e;
+      for (;;) {
+        e = lookupOrNewEntry(key);
+        if (!_reload && e.hasFreshData(clock)) {
+          _result.put(key, e);
+          break;
+        }
+        synchronized (e) {
+          if (e.isGone()) {
+            metrics.goneSpin();
+            continue;
+          }
+          if (e.isProcessing() || e.getNextRefreshTime() == Entry.EXPIRED_REFRESHED) {
+            _processedConcurrently.add(key);
+          } else if (!_reload && e.hasFreshData(clock)) {
+            _result.put(key, e);
+          } else {
+            e.startProcessing(Entry.ProcessingState.LOAD, null);
+            _entriesToLoad.put(key, e);
+          }
+          break;
+        }
+      }
+    }
+    boolean _finished = false;
+    try {
+      if (!_entriesToLoad.isEmpty()) {
+        bulkLoadEntries(_entriesToLoad, _loadExecutor);
+        _result.putAll(_entriesToLoad);
+      }
+      _finished = true;
+    } finally {
+      if (!_finished) {
+        for (Entry<K, V> e : _entriesToLoad.values()) {
+          e.ensureAbort(false);
+        }
+      }
+    }
+    for (K key : _processedConcurrently) {
+      if (_reload) {
+        loadAndReplace(key);
+      } else {
+        _result.put(key, getEntryInternal(key));
+      }
+    }
+    return _result;
+  }
+
+  /**
+   * Call the bulk loader and insert the results. Counterpart of {@link #load(Entry)}.
+   * An exception from the loader is handled for every entry.
+   */
+  private void bulkLoadEntries(final Map<K, Entry<K, V>> _entries, final Executor _loadExecutor) {
+    long t0 = !isUpdateTimeNeeded() ? 0 : clock.millis();
+    Map<K, V> _values;
+    try {
+      _values = bulkLoader.loadAll(_entries.keySet(), t0, _loadExecutor);
+    } catch (Throwable _ouch) {
+      long t = t0;
+      if (!metrics.isDisabled() && isUpdateTimeNeeded()) {
+        t = clock.millis();
+      }
+      for (Entry<K, V> e : _entries.values()) {
+        loadGotException(e, t0, t, _ouch);
+      }
+      return;
+    }
+    long t = t0;
+    if (!metrics.isDisabled() && isUpdateTimeNeeded()) {
+      t = clock.millis();
+    }
+    for (Map.Entry<K, Entry<K, V>> me : _entries.entrySet()) {
+      V v = _values.get(me.getKey());
+      long _refreshTime = t0;
+      if (v instanceof RefreshedTimeWrapper) {
+        RefreshedTimeWrapper wr = RefreshedTimeWrapper.class.cast(v);
+        _refreshTime = wr.getRefreshTime();
+        v = (V) wr.getValue();
+      }
+      insertOrUpdateAndCalculateExpiry(me.getValue(), v, t0, t, _refreshTime, INSERT_STAT_LOAD);
+    }
+  }
+
   public static abstract class RunWithCatch implements Runnable {
 
     InternalCache cache;
@@ -1302,32 +1486,98 @@ public class HeapCache<K, V> extends BaseCache<K, V> {
     return null;
   }
 
+  /**
+   * Lookup the entry in the hash. If not present and the storage holds a mapping,
+   * the entry is moved back to the heap.
+   */
   protected final Entry<K, V> lookupEntryNoHitRecord(K key, int hc, int val) {
-    return hash.lookup(extractIntKeyObj(key), hc, val);
+    Entry<K, V> e = hash.lookup(extractIntKeyObj(key), hc, val);
+    if (e == null && storage != null && storage.contains(key)) {
+      return insertNewEntry(key, hc, val);
+    }
+    return e;
+  }
+
+  protected Entry<K, V> insertNewEntry(K key, int hc, int val) {
+    return insertNewEntry(createEntry(key, val), hc, val);
   }
 
   /**
    * Insert new entry in all structures (hash and eviction). The insert at the eviction
    * needs to be done under the same lock, to allow a check of the consistency.
    */
-  protected Entry<K, V> insertNewEntry(K key, int hc, int val) {
-    Entry<K,V> e = new Entry<K,V>(extractIntKeyObj(key), val);
+  private Entry<K, V> insertNewEntry(Entry<K, V> e, int hc, int val) {
     Entry<K, V> e2;
     eviction.evictEventually(hc);
-    final OptimisticLock l = hash.getSegmentLock(hc);
-    final long _stamp = l.writeLock();
-    try {
-      e2 = hash.insertWithinLock(e, hc, val);
-      if (e == e2) {
-        eviction.submitWithoutEviction(e);
+    if (storage != null) {
+      e2 = insertNewEntryAndTakeFromStorage(e, hc, val);
+    } else {
+      final OptimisticLock l = hash.getSegmentLock(hc);
+      final long _stamp = l.writeLock();
+      try {
+        e2 = hash.insertWithinLock(e, hc, val);
+        if (e == e2) {
+          eviction.submitWithoutEviction(e);
+        }
+      } finally {
+        l.unlockWrite(_stamp);
       }
-    } finally {
-      l.unlockWrite(_stamp);
     }
-    hash.checkExpand(hc);
+    if (hash.checkExpand(hc)) {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          hash.completeExpansion();
+        }
+      });
+    }
     return e2;
   }
 
+  /**
+   * Insert the new entry and move a mapping from the storage into it. The entry is locked
+   * before it gets visible in the hash, so other threads wait until the value is present.
+   * The storage is read after the segment lock is released, but while the entry is locked:
+   * an entry with the same key can only have been written to the storage before it was
+   * removed from the hash, and this entry cannot be evicted while locked, so no newer
+   * mapping can be overwritten by older storage contents.
+   */
+  private Entry<K, V> insertNewEntryAndTakeFromStorage(Entry<K, V> e, int hc, int val) {
+    synchronized (e) {
+      final OptimisticLock l = hash.getSegmentLock(hc);
+      final long _stamp = l.writeLock();
+      try {
+        Entry<K, V> e2 = hash.insertWithinLock(e, hc, val);
+        if (e != e2) {
+          return e2;
+        }
+        eviction.submitWithoutEviction(e);
+      } finally {
+        l.unlockWrite(_stamp);
+      }
+      StorageEntry se = storage.take(extractKeyObj(e));
+      if (se != null) {
+        insertFromStorage(e, se);
+      }
+    }
+    return e;
+  }
+
+  /**
+   * Set value and expiry from the storage contents. If expired in the meantime, the
+   * entry stays virgin.
+   */
+  private void insertFromStorage(Entry<K, V> e, StorageEntry se) {
+    long _expiryTime = se.getValueExpiryTime();
+    if (_expiryTime != ExpiryTimeValues.ETERNAL && _expiryTime <= clock.millis()) {
+      return;
+    }
+    e.setValueOrException((V) se.getValueOrException());
+    e.setRefreshTime(se.getCreatedOrUpdated());
+    e.setNextRefreshTime(timing.stopStartTimer(_expiryTime, e));
+    eviction.updateWeight(e);
+  }
+
   /**
    * Remove the entry from the hash table. The entry is already removed from the replacement list.
    * Stop the timer, if needed. The remove races with a clear. The clear
@@ -1349,9 +1599,13 @@ public class HeapCache<K, V> extends BaseCache<K, V> {
    * Check whether the key was modified during the stay of the entry in the cache.
    * We only need to check this when the entry is removed, since we expect that if
    * the key has changed, the stored hash code in the cache will not match any more and
-   * the item is evicted very fast.
+   * the item is evicted very fast. Primitive keys of the int and long cache
+   * cannot change and are not boxed for the check.
    */
   private void checkForHashCodeChange(Entry<K, V> e) {
+    if (e.getKeyObj() == null) {
+      return;
+    }
     K key = extractKeyObj(e);
     if (extractIntKeyValue(key, modifiedHash(key.hashCode())) != e.hashCode) {
       if (keyMutationCnt ==  0) {
@@ -1679,6 +1933,14 @@ public class HeapCache<K, V> extends BaseCache<K, V> {
    */
   public Map<K, V> getAll(final Iterable<? extends K> _inputKeys) {
     Map<K, ExaminationEntry<K, V>> map = new HashMap<K, ExaminationEntry<K, V>>();
+    if (bulkLoader != null) {
+      for (Entry<K, V> e : bulkLoad(generateKeySet(_inputKeys), false, loaderExecutor).values()) {
+        if (e != null && !(e.getValueOrException() == null && isRejectNullValues())) {
+          map.put(extractKeyObj(e), ReadOnlyCacheEntry.of(e));
+        }
+      }
+      return convertValueMap(map);
+    }
     for (K k : _inputKeys) {
       Entry<K,V> e = getEntryInternal(k);
       if (e != null) {
@@ -1730,11 +1992,22 @@ public class HeapCache<K, V> extends BaseCache<K, V> {
     return new MyEntryAction<R>(op, key, e);
   }
 
+  @Override
+  protected <R> EntryAction<K, V, R> createEntryAction(final K key, final Entry<K, V> e, final Semantic<K, V, R> op,
+                                                       final EntryAction.CompletedCallback<K, V, R> cb) {
+    return new MyEntryAction<R>(op, key, e, cb);
+  }
+
   @Override
   protected <R> MyEntryAction<R> createFireAndForgetAction(final Entry<K, V> e, final Semantic<K, V, R> op) {
     return new MyEntryAction<R>(op, e.getKey(), e, EntryAction.NOOP_CALLBACK);
   }
 
+  @Override
+  protected AsyncCache<K, V> createAsyncCache() {
+    return new AsyncCacheView<K, V>(this, this, loader != null ? loaderExecutor : null, null);
+  }
+
   @Override
   public Executor getExecutor() {
     return executor;
@@ -1993,6 +2266,42 @@ public class HeapCache<K, V> extends BaseCache<K, V> {
 
   public K extractKeyObj(Entry<K,V> e) { return e.getKeyObj(); }
 
+  /**
+   * Construct a new entry for the key. Specialized caches may store the key differently.
+   * Compact entries have no field for a timer task or piggy back information.
+   */
+  protected Entry<K, V> createEntry(K key, int val) {
+    if (compactEntries) {
+      return new Entry<K, V>(extractIntKeyObj(key), val);
+    }
+    return new ExtendedEntry<K, V>(extractIntKeyObj(key), val);
+  }
+
+  /**
+   * Use entries without timer task or piggy back field. Only possible if the cache has
+   * no timer, no loader and is not wired. A cache with a weigher is always wired.
+   * Needs to be set before the first entry is created. Not used if the cache is
+   * configured for the async view.
+   *
+   * @see org.cache2k.core.experimentalApi.AsyncCacheConfiguration
+   */
+  public void setCompactEntries(final boolean f) {
+    compactEntries = f;
+  }
+
+  public boolean isCompactEntries() {
+    return compactEntries;
+  }
+
+  /**
+   * Record hits in the buffer. The eviction needs to drain the same buffer.
+   *
+   * @see ReadBufferConfiguration
+   */
+  public void setReadBuffer(final ReadBuffer v) {
+    readBuffer = v;
+  }
+
   public Hash2<K,V> createHashTable() {
     return new Hash2<K, V>(this);
   }
@@ -2011,6 +2320,29 @@ public class HeapCache<K, V> extends BaseCache<K, V> {
      */
     public int hashLoadPercent = 64;
 
+    /**
+     * Expand the hash table incrementally. The expanded table is allocated next to the
+     * current one and the entries are migrated in chunks by inserts and a background task,
+     * instead of locking the whole table and rehashing all entries at once. This avoids
+     * latency spikes with big caches, at the cost of a second table lookup for misses
+     * while the expansion is running. Default: false.
+     */
+    public boolean incrementalHashExpansion = false;
+
+    /**
+     * Number of hash table buckets migrated under one segment lock, when the hash table is
+     * expanded incrementally. Default: 64.
+     */
+    public int hashExpansionChunkSize = 64;
+
+    /**
+     * Use a separate hash table for each lock segment, which is expanded independently
+     * when the segment is full. The rehash work and the memory peak of an expansion
+     * is split up by the number of segments. Incremental expansion is not used
+     * with segmented tables. Default: false.
+     */
+    public boolean segmentedHashTables = false;
+
     /**
      * When sharp expiry is enabled, the expiry timer goes
      * before the actual expiry to switch back to a time checking
@@ -0,0 +1,78 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.configuration.ConfigurationSectionBuilder;
+import org.cache2k.configuration.SingletonConfigurationSection;
+
+/**
+ * Configuration section to buffer inserts and removals to the eviction data structure.
+ * A thread that inserts or removes an entry appends it to a lock free queue and
+ * applies the queued entries only if the eviction lock is available, so inserts do
+ * not block on each other. The queue is applied completely before an eviction
+ * is done and before statistics are retrieved.
+ *
+ * <pre>{@code
+ * Cache2kBuilder.of(Integer.class, String.class)
+ *   .entryCapacity(1000000)
+ *   .with(new InsertBufferConfiguration.Builder())
+ *   .build();
+ * }</pre>
+ *
+ * @author Jens Wilke
+ * @see AbstractEviction#setInsertBuffer(int)
+ */
+public class InsertBufferConfiguration implements SingletonConfigurationSection {
+
+  private int batchSize = 256;
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * @see Builder#batchSize(int)
+   */
+  public void setBatchSize(final int v) {
+    batchSize = v;
+  }
+
+  public static class Builder implements ConfigurationSectionBuilder<InsertBufferConfiguration> {
+
+    private InsertBufferConfiguration config = new InsertBufferConfiguration();
+
+    /**
+     * Maximum number of queued entries a thread applies after its own insert
+     * or removal. Default is 256.
+     */
+    public Builder batchSize(final int v) {
+      config.setBatchSize(v);
+      return this;
+    }
+
+    @Override
+    public InsertBufferConfiguration buildConfigurationSection() {
+      return config;
+    }
+
+  }
+
+}
@@ -0,0 +1,50 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Entry of the {@link IntHeapCache}. The key is stored as primitive in the
+ * {@link Entry#hashCode} field, so no boxed key object is kept per mapping and
+ * the entry has the same size as a normal entry. The key object reference of the
+ * entry stays {@code null}.
+ *
+ * @author Jens Wilke
+ */
+public class IntEntry<V> extends Entry<Integer, V> {
+
+  public IntEntry(final int _key) {
+    super(null, _key);
+  }
+
+  public int getIntKey() {
+    return hashCode;
+  }
+
+  /**
+   * Boxes the key on each call. The access path of the cache compares the
+   * primitive key and does not call this.
+   */
+  @Override
+  public Integer getKey() {
+    return hashCode;
+  }
+
+}
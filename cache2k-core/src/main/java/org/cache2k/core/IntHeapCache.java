@@ -24,7 +24,7 @@ import org.cache2k.IntCache;
 
 /**
  * Overwrite methods so the integer value gets stored directly in the
- * {@link Entry#hashCode} field and {@link Entry#key} is set to null.
+ * {@link Entry#hashCode} field of an {@link IntEntry} and the key object is null.
  * Defines methods from {@link IntCache} so no autoboxing needs to be done
  * in the access path.
  *
@@ -49,7 +49,15 @@ public class IntHeapCache<V> extends HeapCache<Integer, V> implements IntCache<V
 
   @Override
   public Integer extractKeyObj(final Entry<Integer, V> e) {
-    return e.hashCode;
+    return ((IntEntry) e).getIntKey();
+  }
+
+  @Override
+  protected Entry<Integer, V> createEntry(final Integer key, final int val) {
+    if (isCompactEntries()) {
+      return new IntEntry<V>(val);
+    }
+    return new ExtendedIntEntry<V>(val);
   }
 
   /**
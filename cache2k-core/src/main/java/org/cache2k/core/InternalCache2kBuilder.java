@@ -24,10 +24,18 @@ import org.cache2k.Cache2kBuilder;
 import org.cache2k.CacheEntry;
 import org.cache2k.Weigher;
 import org.cache2k.configuration.CustomizationSupplier;
+import org.cache2k.configuration.CustomizationSupplierByClassName;
 import org.cache2k.core.operation.ExaminationEntry;
+import org.cache2k.core.loader.CoalescingBulkLoader;
+import org.cache2k.core.loader.LoaderCoalescingConfiguration;
+import org.cache2k.core.storage.StorageConfiguration;
+import org.cache2k.core.storageApi.CacheStorage;
 import org.cache2k.core.util.ClockDefaultImpl;
 import org.cache2k.core.util.InternalClock;
+import org.cache2k.eviction.EvictionPolicy;
+import org.cache2k.event.CacheEntryBatchListener;
 import org.cache2k.event.CacheEntryCreatedListener;
+import org.cache2k.event.CacheEntryEvent;
 import org.cache2k.event.CacheEntryEvictedListener;
 import org.cache2k.event.CacheEntryExpiredListener;
 import org.cache2k.event.CacheEntryOperationListener;
@@ -37,9 +45,13 @@ import org.cache2k.Cache;
 import org.cache2k.configuration.Cache2kConfiguration;
 import org.cache2k.CacheManager;
 import org.cache2k.core.event.AsyncDispatcher;
+import org.cache2k.core.event.AsyncDispatcherConfiguration;
+import org.cache2k.core.event.BatchedAsyncEvent;
 import org.cache2k.core.event.AsyncEvent;
+import org.cache2k.core.experimentalApi.AsyncCacheConfiguration;
 import org.cache2k.integration.AdvancedCacheLoader;
 import org.cache2k.integration.AsyncCacheLoader;
+import org.cache2k.integration.BulkCacheLoader;
 import org.cache2k.integration.CacheLoader;
 import org.cache2k.integration.CacheWriter;
 import org.cache2k.integration.FunctionalCacheLoader;
@@ -47,7 +59,10 @@ import org.cache2k.integration.FunctionalCacheLoader;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -111,6 +126,9 @@ public class InternalCache2kBuilder<K, V> {
   @SuppressWarnings("unchecked")
   private void configureViaSettersDirect(HeapCache<K,V> c) {
     if (config.getLoader() != null) {
+      if (config.getSections().getSection(LoaderCoalescingConfiguration.class) != null) {
+        throw new IllegalArgumentException("load coalescing requires a BulkCacheLoader");
+      }
       Object obj =  c.createCustomization(config.getLoader());
       if (obj instanceof CacheLoader) {
         final CacheLoader<K,V> _loader = (CacheLoader) obj;
@@ -131,9 +149,17 @@ public class InternalCache2kBuilder<K, V> {
       }
     }
     if (config.getAdvancedLoader() != null) {
-      final AdvancedCacheLoader<K,V> _loader = c.createCustomization(config.getAdvancedLoader());
-      AdvancedCacheLoader<K,V> _wrappedLoader = new WrappedAdvancedCacheLoader<K, V>(c, _loader);
-      c.setAdvancedLoader(_wrappedLoader);
+      final AdvancedCacheLoader<K,V> _loader = eventuallyCoalesceLoads(c,
+        (AdvancedCacheLoader<K, V>) c.createCustomization(config.getAdvancedLoader()));
+      WrappedAdvancedCacheLoader<K,V> _wrappedLoader = new WrappedAdvancedCacheLoader<K, V>(c, _loader);
+      if (_loader instanceof BulkCacheLoader) {
+        WrappedBulkCacheLoader<K,V> _wrappedBulkLoader =
+          new WrappedBulkCacheLoader<K, V>(_wrappedLoader, (BulkCacheLoader<K, V>) _loader);
+        c.setAdvancedLoader(_wrappedBulkLoader);
+        c.setBulkLoader(_wrappedBulkLoader);
+      } else {
+        c.setAdvancedLoader(_wrappedLoader);
+      }
     }
     if (config.getExceptionPropagator() != null) {
       c.setExceptionPropagator(c.createCustomization(config.getExceptionPropagator()));
@@ -141,6 +167,23 @@ public class InternalCache2kBuilder<K, V> {
     c.setCacheConfig(config);
   }
 
+  /**
+   * Wrap the loader if single key loads should be coalesced into bulk loads.
+   */
+  private AdvancedCacheLoader<K, V> eventuallyCoalesceLoads(HeapCache<K, V> c,
+                                                            AdvancedCacheLoader<K, V> _loader) {
+    LoaderCoalescingConfiguration _coalescing =
+      config.getSections().getSection(LoaderCoalescingConfiguration.class);
+    if (_coalescing == null) {
+      return _loader;
+    }
+    if (!(_loader instanceof BulkCacheLoader)) {
+      throw new IllegalArgumentException("load coalescing requires a BulkCacheLoader");
+    }
+    return new CoalescingBulkLoader<K, V>((BulkCacheLoader<K, V>) _loader, c.getClock(),
+      _coalescing.getMaxDelayMillis(), _coalescing.getMaxBatchSize());
+  }
+
   private static class WrappedAdvancedCacheLoader<K,V> extends AdvancedCacheLoader<K,V> implements Closeable {
 
     HeapCache<K,V> heapCache;
@@ -168,6 +211,36 @@ public class InternalCache2kBuilder<K, V> {
     }
   }
 
+  /**
+   * Single loads go through the wrapped loader, bulk loads are forwarded.
+   */
+  private static class WrappedBulkCacheLoader<K,V> extends BulkCacheLoader<K,V> implements Closeable {
+
+    private final WrappedAdvancedCacheLoader<K,V> single;
+    private final BulkCacheLoader<K,V> forward;
+
+    public WrappedBulkCacheLoader(final WrappedAdvancedCacheLoader<K, V> _single,
+                                  final BulkCacheLoader<K, V> _forward) {
+      single = _single;
+      forward = _forward;
+    }
+
+    @Override
+    public void close() throws IOException {
+      single.close();
+    }
+
+    @Override
+    public V load(final K key, final long startTime, final CacheEntry<K, V> currentEntry) throws Exception {
+      return single.load(key, startTime, currentEntry);
+    }
+
+    @Override
+    public Map<K, V> loadAll(final Set<K> keys, final long startTime, final Executor executor) throws Exception {
+      return forward.loadAll(keys, startTime, executor);
+    }
+  }
+
   @SuppressWarnings("unchecked")
   private HeapCache<K, V> constructImplementationAndFillParameters(Class<?> cls) {
     if (!HeapCache.class.isAssignableFrom(cls)) {
@@ -217,8 +290,8 @@ public class InternalCache2kBuilder<K, V> {
     if (config.hasCacheClosedListeners()) {
       bc.setCacheClosedListeners(config.getCacheClosedListeners());
     }
-    configureViaSettersDirect(bc);
     bc.setClock(_timeReference);
+    configureViaSettersDirect(bc);
 
     if (config.isRefreshAhead() && !(
           config.getAsyncLoader() != null ||
@@ -226,6 +299,10 @@ public class InternalCache2kBuilder<K, V> {
           config.getAdvancedLoader() != null)) {
       throw new IllegalArgumentException("refresh ahead enabled, but no loader defined");
     }
+    if (config.getWriter() == null &&
+      config.getSections().getSection(WriteBehindConfiguration.class) != null) {
+      throw new IllegalArgumentException("write behind configured, but no writer defined");
+    }
 
     boolean _wrap =
       config.getWeigher() != null ||
@@ -253,6 +330,10 @@ public class InternalCache2kBuilder<K, V> {
     if (_wrap) {
       wc.loader = bc.loader;
       wc.writer = (CacheWriter<K, V>) bc.createCustomization(config.getWriter());
+      WriteBehindConfiguration _writeBehind = config.getSections().getSection(WriteBehindConfiguration.class);
+      if (_writeBehind != null) {
+        wc.writeBehind = new WriteBehind<K, V>(bc, wc.writer, _writeBehind);
+      }
       wc.asyncLoader = (AsyncCacheLoader<K, V>) bc.createCustomization(config.getAsyncLoader());
       List<CacheEntryCreatedListener<K, V>> _syncCreatedListeners = new ArrayList<CacheEntryCreatedListener<K, V>>();
       List<CacheEntryUpdatedListener<K, V>> _syncUpdatedListeners = new ArrayList<CacheEntryUpdatedListener<K, V>>();
@@ -262,6 +343,9 @@ public class InternalCache2kBuilder<K, V> {
       if (config.hasListeners()) {
         for (CustomizationSupplier<CacheEntryOperationListener<K, V>> f : config.getListeners()) {
           CacheEntryOperationListener<K, V> el = ( CacheEntryOperationListener<K, V>) bc.createCustomization(f);
+          if (el instanceof CacheEntryBatchListener) {
+            throw new IllegalArgumentException("batch listener needs to be added as async listener");
+          }
           if (el instanceof CacheEntryCreatedListener) {
             _syncCreatedListeners.add((CacheEntryCreatedListener) el);
           }
@@ -284,14 +368,25 @@ public class InternalCache2kBuilder<K, V> {
         if (config.getAsyncListenerExecutor() != null) {
           _executor = _cache.createCustomization(config.getAsyncListenerExecutor());
         }
-        AsyncDispatcher<K> _asyncDispatcher = new AsyncDispatcher<K>(wc, _executor);
+        AsyncDispatcherConfiguration _dispatcherConfig =
+          config.getSections().getSection(AsyncDispatcherConfiguration.class);
+        if (_dispatcherConfig == null) {
+          _dispatcherConfig = new AsyncDispatcherConfiguration();
+        }
+        AsyncDispatcher<K> _asyncDispatcher = new AsyncDispatcher<K>(wc, _executor, _dispatcherConfig);
+        wc.asyncDispatcher = _asyncDispatcher;
         List<CacheEntryCreatedListener<K, V>> cll = new ArrayList<CacheEntryCreatedListener<K, V>>();
         List<CacheEntryUpdatedListener<K, V>> ull = new ArrayList<CacheEntryUpdatedListener<K, V>>();
         List<CacheEntryRemovedListener<K, V>> rll = new ArrayList<CacheEntryRemovedListener<K, V>>();
         List<CacheEntryExpiredListener<K, V>> ell = new ArrayList<CacheEntryExpiredListener<K, V>>();
         List<CacheEntryEvictedListener<K, V>> evl = new ArrayList<CacheEntryEvictedListener<K, V>>();
+        List<CacheEntryBatchListener<K, V>> bll = new ArrayList<CacheEntryBatchListener<K, V>>();
         for (CustomizationSupplier<CacheEntryOperationListener<K, V>> f : config.getAsyncListeners()) {
           CacheEntryOperationListener<K, V> el = (CacheEntryOperationListener<K, V>) bc.createCustomization(f);
+          if (el instanceof CacheEntryBatchListener) {
+            bll.add((CacheEntryBatchListener) el);
+            continue;
+          }
           if (el instanceof CacheEntryCreatedListener) {
             cll.add((CacheEntryCreatedListener) el);
           }
@@ -323,6 +418,21 @@ public class InternalCache2kBuilder<K, V> {
         for (CacheEntryEvictedListener l : evl) {
           _syncEvictedListeners.add(new AsyncEvictedListener<K, V>(_asyncDispatcher, l));
         }
+        if (!bll.isEmpty()) {
+          List<AsyncDispatcher<K>> _batchDispatchers = new ArrayList<AsyncDispatcher<K>>();
+          for (CacheEntryBatchListener<K, V> l : bll) {
+            AsyncDispatcher<K> _batchDispatcher =
+              new AsyncDispatcher<K>(wc, _executor, _dispatcherConfig, _dispatcherConfig.getBatchWindowMillis());
+            _batchDispatchers.add(_batchDispatcher);
+            AsyncBatchListener<K, V> bl = new AsyncBatchListener<K, V>(_batchDispatcher, l);
+            _syncCreatedListeners.add(bl);
+            _syncUpdatedListeners.add(bl);
+            _syncRemovedListeners.add(bl);
+            _syncExpiredListeners.add(bl);
+            _syncEvictedListeners.add(bl);
+          }
+          wc.batchDispatchers = _batchDispatchers.toArray(new AsyncDispatcher[0]);
+        }
       }
       if (!_syncCreatedListeners.isEmpty()) {
         wc.syncEntryCreatedListeners = _syncCreatedListeners.toArray(new CacheEntryCreatedListener[0]);
@@ -339,20 +449,38 @@ public class InternalCache2kBuilder<K, V> {
       if (!_syncEvictedListeners.isEmpty()) {
         wc.syncEntryEvictedListeners = _syncEvictedListeners.toArray(new CacheEntryEvictedListener[0]);
       }
-      bc.eviction = constructEviction(bc, wc, config);
+      bc.eviction = constructEviction(bc, eventuallyAddStorage(bc, wc), config);
       TimingHandler rh = TimingHandler.of(_timeReference, config);
       bc.setTiming(rh);
       wc.init();
     } else {
       TimingHandler rh = TimingHandler.of(_timeReference, config);
       bc.setTiming(rh);
-       bc.eviction = constructEviction(bc, HeapCacheListener.NO_OPERATION, config);
+      // not wired, so there is no weigher, no listener and no writer
+      bc.setCompactEntries(rh instanceof TimingHandler.TimeAgnostic && bc.loader == null &&
+        config.getSections().getSection(AsyncCacheConfiguration.class) == null);
+      bc.eviction = constructEviction(bc, eventuallyAddStorage(bc, HeapCacheListener.NO_OPERATION), config);
       bc.init();
     }
     manager.sendCreatedEvent(_cache, config);
     return _cache;
   }
 
+  /**
+   * If a storage is configured, evicted entries are written to it before the
+   * listener is called.
+   */
+  @SuppressWarnings("unchecked")
+  private HeapCacheListener<K, V> eventuallyAddStorage(HeapCache<K, V> bc, HeapCacheListener<K, V> l) {
+    StorageConfiguration _storageConfig = config.getSections().getSection(StorageConfiguration.class);
+    if (_storageConfig == null || _storageConfig.getStorage() == null) {
+      return l;
+    }
+    CacheStorage _storage = bc.createCustomization(_storageConfig.getStorage());
+    bc.storage = new StorageTier<K, V>(bc, _storage, l);
+    return bc.storage;
+  }
+
   /**
    * Construct segmented or queued eviction. For the moment hard coded.
    * If capacity is at least 1000 we use 2 segments if 2 or more CPUs are available.
@@ -374,8 +502,35 @@ public class InternalCache2kBuilder<K, V> {
     long _maxSize = determineMaxSize(_entryCapacity, _segmentCount);
     long _maxWeight = determineMaxWeight(_maximumWeight, _segmentCount);
     final Weigher _weigher = (Weigher) hc.createCustomization(config.getWeigher());
+    AdmissionFilterConfiguration _admissionFilter =
+      config.getSections().getSection(AdmissionFilterConfiguration.class);
+    ReadBufferConfiguration _readBufferConfig =
+      config.getSections().getSection(ReadBufferConfiguration.class);
+    InsertBufferConfiguration _insertBuffer =
+      config.getSections().getSection(InsertBufferConfiguration.class);
+    BackgroundEvictionConfiguration _backgroundEviction =
+      config.getSections().getSection(BackgroundEvictionConfiguration.class);
+    EvictionPolicyConfiguration _policy =
+      config.getSections().getSection(EvictionPolicyConfiguration.class);
+    EvictionFactory _factory = constructEvictionFactory(hc, _policy);
+    ReadBuffer _readBuffer = null;
+    if (_readBufferConfig != null) {
+      _readBuffer = new ReadBuffer(_readBufferConfig.getStripeCount(), _readBufferConfig.getStripeSize());
+      hc.setReadBuffer(_readBuffer);
+    }
     for (int i = 0; i < _segments.length; i++) {
-      Eviction ev = new ClockProPlusEviction(hc, l, _maxSize, _weigher, _maxWeight, _strictEviction);
+      AbstractEviction ev = _factory.create(hc, l, _maxSize, _weigher, _maxWeight, _strictEviction);
+      if (_admissionFilter != null && _maxSize != Long.MAX_VALUE) {
+        ev.setAdmissionFilter(new FrequencySketch(_maxSize, _admissionFilter.getSampleFactor()));
+      }
+      ev.setReadBuffer(_readBuffer);
+      if (_insertBuffer != null) {
+        ev.setInsertBuffer(_insertBuffer.getBatchSize());
+      }
+      if (_backgroundEviction != null) {
+        ev.setBackgroundEviction(
+          _backgroundEviction.getLowWatermarkPercent(), _backgroundEviction.getHighWatermarkPercent());
+      }
       _segments[i] = ev;
     }
     if (_segmentCount == 1) {
@@ -384,6 +539,96 @@ public class InternalCache2kBuilder<K, V> {
     return new SegmentedEviction(_segments);
   }
 
+  /**
+   * Built in policies are constructed directly, otherwise the policy is the class name
+   * of an {@link EvictionPolicy} or an {@link EvictionFactory}.
+   */
+  static EvictionFactory constructEvictionFactory(HeapCache<?, ?> hc, EvictionPolicyConfiguration _config) {
+    String _policy = _config != null ? _config.getPolicy() : null;
+    if (_policy == null) {
+      _policy = EvictionPolicyConfiguration.CLOCK_PRO;
+    }
+    if (BuiltInEvictionFactory.POLICIES.contains(_policy)) {
+      return new BuiltInEvictionFactory(_policy);
+    }
+    CustomizationSupplier<Object> _supplier = new CustomizationSupplierByClassName<Object>(_policy);
+    Object _factory = hc.createCustomization(_supplier);
+    if (_factory instanceof EvictionPolicy) {
+      return new PolicyEvictionFactory(_supplier, (EvictionPolicy) _factory);
+    }
+    if (!(_factory instanceof EvictionFactory)) {
+      throw new IllegalArgumentException(
+        "Eviction policy unknown or not an EvictionPolicy or EvictionFactory: " + _policy);
+    }
+    return (EvictionFactory) _factory;
+  }
+
+  /**
+   * Creates an instance of the custom policy for each segment. The instance created
+   * to check the type is used for the first segment.
+   */
+  static class PolicyEvictionFactory implements EvictionFactory {
+
+    private final CustomizationSupplier<Object> supplier;
+    private EvictionPolicy firstPolicy;
+
+    PolicyEvictionFactory(final CustomizationSupplier<Object> _supplier, final EvictionPolicy _firstPolicy) {
+      supplier = _supplier;
+      firstPolicy = _firstPolicy;
+    }
+
+    @Override
+    public AbstractEviction create(final HeapCache heapCache, final HeapCacheListener listener,
+                                   final long maxSize, final Weigher weigher, final long maxWeight,
+                                   final boolean noChunking) {
+      EvictionPolicy _policy = firstPolicy;
+      if (_policy != null) {
+        firstPolicy = null;
+      } else {
+        _policy = (EvictionPolicy) ((HeapCache<?, ?>) heapCache).createCustomization(supplier);
+      }
+      return new PolicyEviction(heapCache, listener, maxSize, weigher, maxWeight, noChunking, _policy);
+    }
+
+  }
+
+  /**
+   * Constructs the eviction of a built in policy.
+   */
+  static class BuiltInEvictionFactory implements EvictionFactory {
+
+    static final List<String> POLICIES = Arrays.asList(
+      EvictionPolicyConfiguration.CLOCK_PRO, EvictionPolicyConfiguration.LRU,
+      EvictionPolicyConfiguration.SLRU, EvictionPolicyConfiguration.ARC,
+      EvictionPolicyConfiguration.RANDOM);
+
+    private final String policy;
+
+    BuiltInEvictionFactory(final String _policy) {
+      policy = _policy;
+    }
+
+    @Override
+    public AbstractEviction create(final HeapCache heapCache, final HeapCacheListener listener,
+                                   final long maxSize, final Weigher weigher, final long maxWeight,
+                                   final boolean noChunking) {
+      if (EvictionPolicyConfiguration.LRU.equals(policy)) {
+        return new LruEviction(heapCache, listener, maxSize, weigher, maxWeight, noChunking);
+      }
+      if (EvictionPolicyConfiguration.SLRU.equals(policy)) {
+        return new SlruEviction(heapCache, listener, maxSize, weigher, maxWeight, noChunking);
+      }
+      if (EvictionPolicyConfiguration.ARC.equals(policy)) {
+        return new ArcEviction(heapCache, listener, maxSize, weigher, maxWeight, noChunking);
+      }
+      if (EvictionPolicyConfiguration.RANDOM.equals(policy)) {
+        return new RandomEviction(heapCache, listener, maxSize, weigher, maxWeight, noChunking);
+      }
+      return new ClockProPlusEviction(heapCache, listener, maxSize, weigher, maxWeight, noChunking);
+    }
+
+  }
+
   static long determineMaxSize(final long _entryCapacity, final int _segmentCount) {
     if (_entryCapacity < 0) {
       return -1;
@@ -463,6 +708,11 @@ public class InternalCache2kBuilder<K, V> {
         public void execute() {
           listener.onEntryCreated(c, e);
         }
+
+        @Override
+        public Object getListener() {
+          return listener;
+        }
       });
     }
 
@@ -489,6 +739,11 @@ public class InternalCache2kBuilder<K, V> {
         public void execute() {
           listener.onEntryUpdated(cache, currentEntry, entryWithNewData);
         }
+
+        @Override
+        public Object getListener() {
+          return listener;
+        }
       });
     }
 
@@ -515,6 +770,11 @@ public class InternalCache2kBuilder<K, V> {
         public void execute() {
           listener.onEntryRemoved(c, e);
         }
+
+        @Override
+        public Object getListener() {
+          return listener;
+        }
       });
     }
   }
@@ -540,6 +800,11 @@ public class InternalCache2kBuilder<K, V> {
         public void execute() {
           listener.onEntryExpired(c, e);
         }
+
+        @Override
+        public Object getListener() {
+          return listener;
+        }
       });
     }
   }
@@ -565,8 +830,111 @@ public class InternalCache2kBuilder<K, V> {
         public void execute() {
           listener.onEntryEvicted(c, e);
         }
+
+        @Override
+        public Object getListener() {
+          return listener;
+        }
       });
     }
   }
 
+  /**
+   * Queues the events for a batch listener. The batch dispatcher passes consecutive
+   * events of one stripe in one call.
+   */
+  private static class AsyncBatchListener<K,V> implements
+    CacheEntryCreatedListener<K,V>, CacheEntryUpdatedListener<K,V>, CacheEntryRemovedListener<K,V>,
+    CacheEntryExpiredListener<K,V>, CacheEntryEvictedListener<K,V> {
+    AsyncDispatcher<K> dispatcher;
+    CacheEntryBatchListener<K,V> listener;
+
+    public AsyncBatchListener(final AsyncDispatcher<K> _dispatcher, final CacheEntryBatchListener<K, V> _listener) {
+      dispatcher = _dispatcher;
+      listener = _listener;
+    }
+
+    @Override
+    public void onEntryCreated(final Cache<K, V> c, final CacheEntry<K, V> e) {
+      dispatcher.queue(new BatchEvent<K, V>(listener, c, CacheEntryEvent.Type.CREATED, e, null));
+    }
+
+    @Override
+    public void onEntryUpdated(final Cache<K, V> c, final CacheEntry<K, V> currentEntry, final CacheEntry<K, V> entryWithNewData) {
+      dispatcher.queue(new BatchEvent<K, V>(listener, c, CacheEntryEvent.Type.UPDATED, entryWithNewData, currentEntry));
+    }
+
+    @Override
+    public void onEntryRemoved(final Cache<K, V> c, final CacheEntry<K, V> e) {
+      dispatcher.queue(new BatchEvent<K, V>(listener, c, CacheEntryEvent.Type.REMOVED, e, null));
+    }
+
+    @Override
+    public void onEntryExpired(final Cache<K, V> c, final CacheEntry<K, V> e) {
+      dispatcher.queue(new BatchEvent<K, V>(listener, c, CacheEntryEvent.Type.EXPIRED, e, null));
+    }
+
+    @Override
+    public void onEntryEvicted(final Cache<K, V> c, final CacheEntry<K, V> e) {
+      dispatcher.queue(new BatchEvent<K, V>(listener, c, CacheEntryEvent.Type.EVICTED, e, null));
+    }
+  }
+
+  private static class BatchEvent<K,V> extends BatchedAsyncEvent<K> implements CacheEntryEvent<K,V> {
+    final CacheEntryBatchListener<K,V> listener;
+    final Cache<K,V> cache;
+    final Type type;
+    final CacheEntry<K,V> entry;
+    final CacheEntry<K,V> previousEntry;
+
+    public BatchEvent(final CacheEntryBatchListener<K, V> _listener, final Cache<K, V> _cache,
+                      final Type _type, final CacheEntry<K, V> _entry, final CacheEntry<K, V> _previousEntry) {
+      listener = _listener;
+      cache = _cache;
+      type = _type;
+      entry = _entry;
+      previousEntry = _previousEntry;
+    }
+
+    @Override
+    public K getKey() {
+      return entry.getKey();
+    }
+
+    @Override
+    public Object getListener() {
+      return listener;
+    }
+
+    @Override
+    public Type getType() {
+      return type;
+    }
+
+    @Override
+    public CacheEntry<K, V> getEntry() {
+      return entry;
+    }
+
+    @Override
+    public CacheEntry<K, V> getPreviousEntry() {
+      return previousEntry;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void executeBatch(final List<AsyncEvent<K>> _events) {
+      List<CacheEntryEvent<K, V>> _list = new ArrayList<CacheEntryEvent<K, V>>(_events.size());
+      for (AsyncEvent<K> e : _events) {
+        _list.add((CacheEntryEvent<K, V>) e);
+      }
+      listener.onEntryEvents(cache, _list);
+    }
+
+    @Override
+    public String toString() {
+      return type + "(" + getKey() + ")";
+    }
+  }
+
 }
@@ -218,6 +218,11 @@ public interface InternalCacheInfo {
    */
   long getTimerEventCount();
 
+  /**
+   * Timer tasks of this cache, which are scheduled and not yet executed or cancelled.
+   */
+  long getScheduledTimerTaskCount();
+
   /**
    * Hit rate of the cache
    */
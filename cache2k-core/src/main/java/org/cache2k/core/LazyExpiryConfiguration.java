@@ -0,0 +1,100 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.configuration.ConfigurationSectionBuilder;
+import org.cache2k.configuration.SingletonConfigurationSection;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration section to expire entries without a timer task per entry. The
+ * expiry time is checked on access and expired entries are removed by a sweeper,
+ * which scans a part of the hash table in each run. Expiry listeners are called
+ * when the sweeper reaches the entry.
+ *
+ * <p>Not possible with sharp expiry or refresh ahead, which need exact timer events.
+ *
+ * <pre>{@code
+ * Cache2kBuilder.of(Integer.class, String.class)
+ *   .expireAfterWrite(5, TimeUnit.MINUTES)
+ *   .with(new LazyExpiryConfiguration.Builder()
+ *     .sweepInterval(1, TimeUnit.SECONDS))
+ *   .build();
+ * }</pre>
+ *
+ * @author Jens Wilke
+ */
+public class LazyExpiryConfiguration implements SingletonConfigurationSection {
+
+  private long sweepIntervalMillis = 1000;
+  private int sweepChunkSize = 1024;
+
+  public long getSweepIntervalMillis() {
+    return sweepIntervalMillis;
+  }
+
+  /**
+   * @see Builder#sweepInterval(long, TimeUnit)
+   */
+  public void setSweepIntervalMillis(final long v) {
+    sweepIntervalMillis = v;
+  }
+
+  public int getSweepChunkSize() {
+    return sweepChunkSize;
+  }
+
+  /**
+   * @see Builder#sweepChunkSize(int)
+   */
+  public void setSweepChunkSize(final int v) {
+    sweepChunkSize = v;
+  }
+
+  public static class Builder implements ConfigurationSectionBuilder<LazyExpiryConfiguration> {
+
+    private LazyExpiryConfiguration config = new LazyExpiryConfiguration();
+
+    /**
+     * Time between two sweeper runs. Default is one second.
+     */
+    public Builder sweepInterval(final long v, final TimeUnit u) {
+      config.setSweepIntervalMillis(u.toMillis(v));
+      return this;
+    }
+
+    /**
+     * Number of hash table slots scanned in one sweeper run. Default is 1024.
+     */
+    public Builder sweepChunkSize(final int v) {
+      config.setSweepChunkSize(v);
+      return this;
+    }
+
+    @Override
+    public LazyExpiryConfiguration buildConfigurationSection() {
+      return config;
+    }
+
+  }
+
+}
@@ -0,0 +1,52 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Entry of the {@link LongHeapCache}. The key is stored as primitive, so no
+ * boxed key object is kept per mapping. The key object reference of the entry
+ * stays {@code null}.
+ *
+ * @author Jens Wilke
+ */
+public class LongEntry<V> extends Entry<Long, V> {
+
+  private final long longKey;
+
+  public LongEntry(final long _key, final int _hashCode) {
+    super(null, _hashCode);
+    longKey = _key;
+  }
+
+  public long getLongKey() {
+    return longKey;
+  }
+
+  /**
+   * Boxes the key on each call, like {@link Entry#getKey()} for the int cache. The
+   * access path of the cache compares the primitive key and does not call this.
+   */
+  @Override
+  public Long getKey() {
+    return longKey;
+  }
+
+}
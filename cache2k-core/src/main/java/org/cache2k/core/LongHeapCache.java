@@ -23,12 +23,42 @@ package org.cache2k.core;
 import org.cache2k.LongCache;
 
 /**
- * Just delegate to the non specialized versions for now.
+ * Stores the key as primitive in a {@link LongEntry}, so no key object is kept
+ * per mapping. The access methods of {@link LongCache} delegate to the non
+ * specialized versions for now.
  *
  * @author Jens Wilke
  */
 public class LongHeapCache<V> extends HeapCache<Long, V> implements LongCache<V> {
 
+  @Override
+  protected Entry<Long, V> createEntry(final Long key, final int val) {
+    if (isCompactEntries()) {
+      return new LongEntry<V>(key, val);
+    }
+    return new ExtendedLongEntry<V>(key, val);
+  }
+
+  @Override
+  public Long extractKeyObj(final Entry<Long, V> e) {
+    return e.getKey();
+  }
+
+  @Override
+  public Hash2<Long, V> createHashTable() {
+    return new Hash2<Long, V>(this) {
+      @Override
+      protected boolean keyObjIsEqual(final Long key, final Entry e) {
+        return ((LongEntry) e).getLongKey() == key;
+      }
+
+      @Override
+      protected boolean entryKeyIsEqual(final Entry<Long, V> e, final Entry<Long, V> f) {
+        return ((LongEntry) e).getLongKey() == ((LongEntry) f).getLongKey();
+      }
+    };
+  }
+
   @Override
   public V peek(final long key) {
     return super.peek(key);
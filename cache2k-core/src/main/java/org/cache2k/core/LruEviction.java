@@ -0,0 +1,127 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Weigher;
+
+/**
+ * LRU eviction approximated by a clock. Cache hits are only counted in the entry, so the
+ * list is not reordered on each access. The hand skips entries that were accessed since it
+ * passed the last time and resets their hit counter, which is like moving them to the
+ * head of an LRU list. The first entry without a hit is evicted.
+ *
+ * @author Jens Wilke
+ * @see EvictionPolicyConfiguration
+ */
+@SuppressWarnings("WeakerAccess")
+public class LruEviction extends AbstractEviction {
+
+  private Entry hand;
+  private long size;
+  private long hits;
+  private long scanCnt;
+
+  public LruEviction(final HeapCache heapCache, final HeapCacheListener listener,
+                     final long maxSize, final Weigher weigher, final long maxWeight,
+                     final boolean noChunking) {
+    super(heapCache, listener, maxSize, weigher, maxWeight, noChunking);
+  }
+
+  @Override
+  protected void insertIntoReplacementList(final Entry e) {
+    size++;
+    hand = Entry.insertIntoTailCyclicList(hand, e);
+  }
+
+  @Override
+  protected void removeFromReplacementList(final Entry e) {
+    hits += e.hitCnt;
+    hand = Entry.removeFromCyclicList(hand, e);
+    size--;
+  }
+
+  @Override
+  protected Entry findEvictionCandidate(final Entry _previous) {
+    Entry e = hand;
+    while (e.hitCnt > 0) {
+      hits += e.hitCnt;
+      e.hitCnt = 0;
+      e = e.next;
+      scanCnt++;
+    }
+    hand = e.next;
+    return e;
+  }
+
+  @Override
+  public long removeAll() {
+    long _count = 0;
+    Entry e = hand;
+    if (e != null) {
+      Entry _head = e;
+      do {
+        hits += e.hitCnt;
+        Entry _next = e.next;
+        e.removedFromList();
+        _count++;
+        e = _next;
+      } while (e != _head);
+    }
+    hand = null;
+    size = 0;
+    return _count;
+  }
+
+  @Override
+  public long getHitCount() {
+    return hits + sumUpListHits(hand);
+  }
+
+  @Override
+  public long getSize() {
+    return size;
+  }
+
+  static long sumUpListHits(Entry e) {
+    if (e == null) { return 0; }
+    long cnt = 0;
+    Entry _head = e;
+    do {
+      cnt += e.hitCnt;
+      e = e.next;
+    } while (e != _head);
+    return cnt;
+  }
+
+  @Override
+  public void checkIntegrity(final IntegrityState is) {
+    is.check("checkCyclicListIntegrity(hand)", Entry.checkCyclicListIntegrity(hand))
+      .checkEquals("getCyclicListEntryCount(hand) == size", Entry.getCyclicListEntryCount(hand), size);
+  }
+
+  @Override
+  public String getExtraStatistics() {
+    return super.getExtraStatistics() +
+      ", size=" + size +
+      ", scanCnt=" + scanCnt;
+  }
+
+}
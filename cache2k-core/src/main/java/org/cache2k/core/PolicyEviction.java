@@ -0,0 +1,117 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Weigher;
+import org.cache2k.eviction.EvictionPolicy;
+
+/**
+ * Adapts a custom {@link EvictionPolicy} to the eviction of the cache. The entries are
+ * kept in a list as well, to know the entries held by the policy when the cache is
+ * cleared.
+ *
+ * @author Jens Wilke
+ * @see EvictionPolicyConfiguration.Builder#policy(Class)
+ */
+public class PolicyEviction extends AbstractEviction {
+
+  private final EvictionPolicy policy;
+  private final Entry head = new Entry().shortCircuit();
+  private long size = 0;
+  private long hits = 0;
+
+  public PolicyEviction(final HeapCache _heapCache, final HeapCacheListener _listener,
+                        final long _maxSize, final Weigher _weigher, final long _maxWeight,
+                        final boolean _noChunking, final EvictionPolicy _policy) {
+    super(_heapCache, _listener, _maxSize, _weigher, _maxWeight, _noChunking);
+    policy = _policy;
+  }
+
+  public EvictionPolicy getPolicy() {
+    return policy;
+  }
+
+  @Override
+  protected void insertIntoReplacementList(final Entry e) {
+    size++;
+    Entry.insertInList(head, e);
+    policy.insert(e);
+  }
+
+  @Override
+  protected void removeFromReplacementList(final Entry e) {
+    hits += e.hitCnt;
+    policy.remove(e);
+    Entry.removeFromList(e);
+    size--;
+  }
+
+  @Override
+  protected Entry findEvictionCandidate(final Entry _previous) {
+    return (Entry) policy.selectVictim();
+  }
+
+  @Override
+  public long removeAll() {
+    long _count = 0;
+    Entry _head = head;
+    Entry e = head.prev;
+    while (e != _head) {
+      Entry _next = e.prev;
+      hits += e.hitCnt;
+      policy.remove(e);
+      e.removedFromList();
+      _count++;
+      e = _next;
+    }
+    head.shortCircuit();
+    size = 0;
+    return _count;
+  }
+
+  @Override
+  public long getHitCount() {
+    long _hits = hits;
+    for (Entry e = head.next; e != head; e = e.next) {
+      _hits += e.hitCnt;
+    }
+    return _hits;
+  }
+
+  @Override
+  public long getSize() {
+    return size;
+  }
+
+  @Override
+  public void checkIntegrity(final IntegrityState _integrityState) {
+    _integrityState.check("checkCyclicListIntegrity(head)", Entry.checkCyclicListIntegrity(head))
+      .checkEquals("getCyclicListEntryCount(head) == size + 1", Entry.getCyclicListEntryCount(head), size + 1);
+  }
+
+  @Override
+  public String getExtraStatistics() {
+    return super.getExtraStatistics() +
+      ", size=" + size +
+      ", policy=" + policy.getClass().getName();
+  }
+
+}
@@ -23,6 +23,9 @@ package org.cache2k.core;
 import org.cache2k.Weigher;
 
 /**
+ * Evicts an entry at a pseudo random position of the hash table. Recorded hits are
+ * ignored. Selected with {@link EvictionPolicyConfiguration#RANDOM}.
+ *
  * @author Jens Wilke
  */
 public class RandomEviction extends AbstractEviction {
@@ -33,17 +36,19 @@ public class RandomEviction extends AbstractEviction {
 
   public RandomEviction(final HeapCache _heapCache, final HeapCacheListener _listener,
                         final long _maxSize, final Weigher _weigher, final long _maxWeight) {
-    super(_heapCache, _listener, _maxSize, _weigher, _maxWeight, false);
+    this(_heapCache, _listener, _maxSize, _weigher, _maxWeight, false);
   }
 
-  @Override
-  public void updateWeight(final Entry e) {
-
+  public RandomEviction(final HeapCache _heapCache, final HeapCacheListener _listener,
+                        final long _maxSize, final Weigher _weigher, final long _maxWeight,
+                        final boolean _noChunking) {
+    super(_heapCache, _listener, _maxSize, _weigher, _maxWeight, _noChunking);
   }
 
   @Override
   protected void removeFromReplacementList(Entry e) {
     Entry.removeFromList(e);
+    size--;
   }
 
   @Override
@@ -54,13 +59,26 @@ public class RandomEviction extends AbstractEviction {
 
   @Override
   protected Entry findEvictionCandidate(Entry _previous) {
-    Entry[] h0 = heapCache.hash.getEntries();
-    int idx = evictionIndex % (h0.length);
+    Hash2 _hash = heapCache.hash;
+    int _tableCount = _hash.getTableCount();
     Entry e;
-    while ((e = h0[idx]) == null) {
-      idx++;
-      if (idx >= h0.length) {
-        idx = 0;
+    if (_tableCount > 1) {
+      int _tableIndex = evictionIndex % _tableCount;
+      do {
+        Entry[] tab = _hash.getEntries(_tableIndex);
+        e = scanForEntry(tab, tab.length);
+        _tableIndex = (_tableIndex + 1) % _tableCount;
+      } while (e == null);
+    } else {
+      Entry[] h0 = _hash.getEntries(0);
+      Entry[] h1 = _hash.getExpansionEntries();
+      if (h1 != null) {
+        e = scanForEntry(h0, h0.length);
+        if (e == null) {
+          e = scanForEntry(h1, Integer.MAX_VALUE);
+        }
+      } else {
+        e = scanForEntry(h0, Integer.MAX_VALUE);
       }
     }
     evictionIndex += e.hashCode;
@@ -70,6 +88,26 @@ public class RandomEviction extends AbstractEviction {
     return e;
   }
 
+  /**
+   * Scan the table from the eviction index for the next occupied slot. While an incremental
+   * hash expansion is running the current table might be empty, and segment tables
+   * might be empty, so the scan is limited.
+   */
+  private Entry scanForEntry(Entry[] tab, int _maxSteps) {
+    int idx = evictionIndex % (tab.length);
+    Entry e;
+    while ((e = tab[idx]) == null) {
+      if (--_maxSteps <= 0) {
+        return null;
+      }
+      idx++;
+      if (idx >= tab.length) {
+        idx = 0;
+      }
+    }
+    return e;
+  }
+
   @Override
   public void checkIntegrity(final IntegrityState _integrityState) {
 
@@ -86,12 +124,15 @@ public class RandomEviction extends AbstractEviction {
       _count++;
       e = _next;
     }
+    head.shortCircuit();
+    size = 0;
     return _count;
   }
 
   @Override
   public String getExtraStatistics() {
-    return "";
+    return super.getExtraStatistics() +
+      ", size=" + size;
   }
 
   @Override
@@ -0,0 +1,189 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped and lossy buffer of entry accesses. A hit records the entry in the stripe
+ * selected by the current thread, instead of incrementing the hit counter in the
+ * entry. The buffer is drained in batches into the entry hit counters, which
+ * are used by the eviction. If a stripe is full or a concurrent thread records
+ * in the same stripe, the access is dropped. Dropping some accesses does not
+ * change the eviction quality significantly, since frequently accessed entries
+ * are still recorded more often.
+ *
+ * <p>The drain is done by one thread at a time. The hit counters are dirty counters
+ * anyway, so a drain does not need to hold the eviction lock.
+ *
+ * @author Jens Wilke
+ * @see ReadBufferConfiguration
+ * @see HeapCache#recordHit(Entry)
+ */
+public class ReadBuffer {
+
+  static final int MAXIMUM_STRIPE_COUNT = 1 << 10;
+
+  private final Stripe[] stripes;
+  private final int stripeMask;
+  private final int stripeSize;
+  private final int slotMask;
+  private final ReentrantLock drainLock = new ReentrantLock();
+  private long drainCount;
+
+  /**
+   * @param _stripeCount number of stripes, rounded to the next power of two.
+   *                     0 or less selects the number of available processors.
+   * @param _stripeSize number of entries per stripe, rounded to the next power of two.
+   */
+  public ReadBuffer(int _stripeCount, int _stripeSize) {
+    if (_stripeSize <= 0) {
+      throw new IllegalArgumentException("stripe size must be positive");
+    }
+    if (_stripeCount <= 0) {
+      _stripeCount = Runtime.getRuntime().availableProcessors();
+    }
+    _stripeCount = Math.min(MAXIMUM_STRIPE_COUNT, powerOfTwo(_stripeCount));
+    stripeSize = powerOfTwo(_stripeSize);
+    slotMask = stripeSize - 1;
+    stripeMask = _stripeCount - 1;
+    stripes = new Stripe[_stripeCount];
+    for (int i = 0; i < _stripeCount; i++) {
+      stripes[i] = new Stripe(stripeSize);
+    }
+  }
+
+  private static int powerOfTwo(int v) {
+    return v <= 1 ? 1 : Integer.highestOneBit(v - 1) << 1;
+  }
+
+  /**
+   * Record an access of the entry.
+   *
+   * @return true, if the stripe is full and the buffer should be drained
+   */
+  public boolean record(Entry e) {
+    Stripe s = stripes[stripeIndex()];
+    long _tail = s.tail;
+    long _fill = _tail - s.head;
+    if (_fill >= stripeSize) {
+      return true;
+    }
+    if (!Stripe.TAIL_UPDATER.compareAndSet(s, _tail, _tail + 1)) {
+      return false;
+    }
+    s.slots.lazySet((int) (_tail & slotMask), e);
+    return _fill + 1 >= stripeSize;
+  }
+
+  /**
+   * Record the access and drain, if the stripe is full and no other thread is draining.
+   */
+  public void recordAndDrainEventually(Entry e) {
+    if (record(e)) {
+      tryDrain();
+    }
+  }
+
+  /**
+   * Drain the buffer if no other thread is draining at the moment.
+   */
+  public void tryDrain() {
+    if (drainLock.tryLock()) {
+      try {
+        drainInLock();
+      } finally {
+        drainLock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Drain the buffer. Waits for a concurrent drain to complete, so all accesses
+   * recorded before the call are transferred afterwards.
+   */
+  public void drain() {
+    drainLock.lock();
+    try {
+      drainInLock();
+    } finally {
+      drainLock.unlock();
+    }
+  }
+
+  private void drainInLock() {
+    drainCount++;
+    for (Stripe s : stripes) {
+      long _head = s.head;
+      long _tail = s.tail;
+      for (; _head < _tail; _head++) {
+        int idx = (int) (_head & slotMask);
+        Entry e = s.slots.get(idx);
+        if (e != null) {
+          s.slots.lazySet(idx, null);
+          e.hitCnt++;
+        }
+      }
+      s.head = _head;
+    }
+  }
+
+  /**
+   * Spread the thread id, so consecutive ids do not share a stripe.
+   */
+  private int stripeIndex() {
+    long id = Thread.currentThread().getId();
+    int h = (int) (id ^ (id >>> 32)) * 0x9e3779b9;
+    return (h ^ (h >>> 16)) & stripeMask;
+  }
+
+  public int getStripeCount() {
+    return stripes.length;
+  }
+
+  public int getStripeSize() {
+    return stripeSize;
+  }
+
+  public long getDrainCount() {
+    return drainCount;
+  }
+
+  static final class Stripe {
+
+    static final AtomicLongFieldUpdater<Stripe> TAIL_UPDATER =
+      AtomicLongFieldUpdater.newUpdater(Stripe.class, "tail");
+
+    /** Position of the next drain, only modified by the draining thread */
+    volatile long head;
+    /** Position of the next record */
+    volatile long tail;
+    final AtomicReferenceArray<Entry> slots;
+
+    Stripe(final int _size) {
+      slots = new AtomicReferenceArray<Entry>(_size);
+    }
+
+  }
+
+}
@@ -0,0 +1,99 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.configuration.ConfigurationSectionBuilder;
+import org.cache2k.configuration.SingletonConfigurationSection;
+
+/**
+ * Configuration section to record cache hits in a striped, lossy buffer instead of
+ * incrementing the hit counter in the entry directly. This avoids that concurrent
+ * threads write to the memory of popular entries on each hit. The recorded hits are
+ * transferred to the entries in batches, before the eviction runs and before
+ * statistics are retrieved. Since the buffer may drop accesses under contention,
+ * the hit counts in the statistics are approximate.
+ *
+ * <pre>{@code
+ * Cache2kBuilder.of(Integer.class, String.class)
+ *   .entryCapacity(10000)
+ *   .with(new ReadBufferConfiguration.Builder())
+ *   .build();
+ * }</pre>
+ *
+ * @author Jens Wilke
+ * @see ReadBuffer
+ */
+public class ReadBufferConfiguration implements SingletonConfigurationSection {
+
+  private int stripeCount = 0;
+  private int stripeSize = 16;
+
+  public int getStripeCount() {
+    return stripeCount;
+  }
+
+  /**
+   * @see Builder#stripeCount(int)
+   */
+  public void setStripeCount(final int v) {
+    stripeCount = v;
+  }
+
+  public int getStripeSize() {
+    return stripeSize;
+  }
+
+  /**
+   * @see Builder#stripeSize(int)
+   */
+  public void setStripeSize(final int v) {
+    stripeSize = v;
+  }
+
+  public static class Builder implements ConfigurationSectionBuilder<ReadBufferConfiguration> {
+
+    private ReadBufferConfiguration config = new ReadBufferConfiguration();
+
+    /**
+     * Number of stripes. Threads are assigned to a stripe by their id. Default is 0,
+     * which means the number of available processors.
+     */
+    public Builder stripeCount(final int v) {
+      config.setStripeCount(v);
+      return this;
+    }
+
+    /**
+     * Number of accesses a stripe holds before it is drained. Default is 16.
+     */
+    public Builder stripeSize(final int v) {
+      config.setStripeSize(v);
+      return this;
+    }
+
+    @Override
+    public ReadBufferConfiguration buildConfigurationSection() {
+      return config;
+    }
+
+  }
+
+}
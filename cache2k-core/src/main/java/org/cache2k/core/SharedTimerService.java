@@ -0,0 +1,130 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.core.util.InternalClock;
+import org.cache2k.core.util.SimpleTimer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Timers shared by the caches of a cache manager. Caches with the same clock use
+ * the same timer threads. The timers of a clock are started when the first cache
+ * acquires them and stopped when the last cache releases them. The service may be
+ * shared by multiple cache managers via {@link CacheManagerImpl#setTimerService}.
+ *
+ * @author Jens Wilke
+ * @see TimingHandler
+ */
+public class SharedTimerService {
+
+  private final String name;
+  private final int timerCount;
+  private final Map<InternalClock, SharedTimers> clock2timers =
+    new HashMap<InternalClock, SharedTimers>();
+  private boolean closed;
+
+  /**
+   * @param _name name of the timer threads
+   * @param _timerCount number of timers per clock, must be a power of two
+   */
+  public SharedTimerService(final String _name, final int _timerCount) {
+    if (Integer.bitCount(_timerCount) != 1) {
+      throw new IllegalArgumentException("timer count must be a power of two");
+    }
+    name = _name;
+    timerCount = _timerCount;
+  }
+
+  public int getTimerCount() {
+    return timerCount;
+  }
+
+  /**
+   * Number of clocks with active timers.
+   */
+  public synchronized int getClockCount() {
+    return clock2timers.size();
+  }
+
+  /**
+   * Timers for the clock. Each call needs to be followed by a call of {@link #release}.
+   */
+  public synchronized SimpleTimer[] acquire(final InternalClock _clock) {
+    if (closed) {
+      throw new IllegalStateException("timer service closed");
+    }
+    SharedTimers st = clock2timers.get(_clock);
+    if (st == null) {
+      SimpleTimer[] _timers = new SimpleTimer[timerCount];
+      for (int i = 0; i < timerCount; i++) {
+        _timers[i] = new SimpleTimer(_clock, name, true);
+      }
+      st = new SharedTimers(_timers);
+      clock2timers.put(_clock, st);
+    }
+    st.users++;
+    return st.timers;
+  }
+
+  /**
+   * Release the timers. If the timers of the clock are not used any more, they
+   * are stopped. The releasing cache needs to remove its tasks before.
+   */
+  public synchronized void release(final InternalClock _clock) {
+    SharedTimers st = clock2timers.get(_clock);
+    if (st == null) {
+      return;
+    }
+    if (--st.users == 0) {
+      clock2timers.remove(_clock);
+      for (SimpleTimer t : st.timers) {
+        t.cancel();
+      }
+    }
+  }
+
+  /**
+   * Stop all timers.
+   */
+  public synchronized void close() {
+    closed = true;
+    for (SharedTimers st : clock2timers.values()) {
+      for (SimpleTimer t : st.timers) {
+        t.cancel();
+      }
+    }
+    clock2timers.clear();
+  }
+
+  static class SharedTimers {
+
+    final SimpleTimer[] timers;
+    int users;
+
+    SharedTimers(final SimpleTimer[] _timers) {
+      timers = _timers;
+    }
+
+  }
+
+}
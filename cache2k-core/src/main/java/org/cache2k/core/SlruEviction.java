@@ -0,0 +1,196 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Weigher;
+import org.cache2k.core.util.TunableConstants;
+import org.cache2k.core.util.TunableFactory;
+
+/**
+ * Segmented LRU eviction. New entries are inserted into the probation segment. An entry
+ * that is accessed again while in probation is moved to the protected segment when the
+ * hand passes. If the protected segment exceeds its maximum size, its least recently used
+ * entry is moved back to probation. Entries are only evicted from probation.
+ * As in {@link LruEviction}, the recency within a segment is approximated by a clock.
+ *
+ * <p>Protected entries are marked with the hot flag of the entry.
+ *
+ * @author Jens Wilke
+ * @see EvictionPolicyConfiguration
+ */
+@SuppressWarnings("WeakerAccess")
+public class SlruEviction extends AbstractEviction {
+
+  public static final Tunable TUNABLE_SLRU = TunableFactory.get(Tunable.class);
+
+  private Entry handProbation;
+  private Entry handProtected;
+  private long probationSize;
+  private long protectedSize;
+  private long hits;
+  private long promoteCnt;
+  private long demoteCnt;
+
+  public SlruEviction(final HeapCache heapCache, final HeapCacheListener listener,
+                      final long maxSize, final Weigher weigher, final long maxWeight,
+                      final boolean noChunking) {
+    super(heapCache, listener, maxSize, weigher, maxWeight, noChunking);
+  }
+
+  public long getProtectedMax() {
+    return isWeigherPresent() ?
+      (getSize() * TUNABLE_SLRU.protectedPercentage / 100) :
+      (getMaxSize() * TUNABLE_SLRU.protectedPercentage / 100);
+  }
+
+  @Override
+  protected void insertIntoReplacementList(final Entry e) {
+    probationSize++;
+    handProbation = Entry.insertIntoTailCyclicList(handProbation, e);
+  }
+
+  @Override
+  protected void removeFromReplacementList(final Entry e) {
+    hits += e.hitCnt;
+    if (e.isHot()) {
+      handProtected = Entry.removeFromCyclicList(handProtected, e);
+      protectedSize--;
+    } else {
+      handProbation = Entry.removeFromCyclicList(handProbation, e);
+      probationSize--;
+    }
+  }
+
+  @Override
+  protected Entry findEvictionCandidate(final Entry _previous) {
+    if (handProbation == null) {
+      demote();
+    }
+    Entry e = handProbation;
+    while (e.hitCnt > 0) {
+      hits += e.hitCnt;
+      e.hitCnt = 0;
+      Entry _next = e.next != e ? e.next : null;
+      promote(e);
+      if (protectedSize > getProtectedMax()) {
+        demote();
+      }
+      if (_next == null) {
+        if (handProbation == null) {
+          demote();
+        }
+        _next = handProbation;
+      }
+      e = _next;
+    }
+    handProbation = e.next;
+    return e;
+  }
+
+  private void promote(final Entry e) {
+    handProbation = Entry.removeFromCyclicList(handProbation, e);
+    probationSize--;
+    e.setHot(true);
+    handProtected = Entry.insertIntoTailCyclicList(handProtected, e);
+    protectedSize++;
+    promoteCnt++;
+  }
+
+  /**
+   * Move the least recently used protected entry to the tail of the probation segment.
+   * Entries with hits get another round in the protected segment.
+   */
+  private void demote() {
+    Entry e = handProtected;
+    while (e.hitCnt > 0) {
+      hits += e.hitCnt;
+      e.hitCnt = 0;
+      e = e.next;
+    }
+    handProtected = Entry.removeFromCyclicList(e.next, e);
+    protectedSize--;
+    e.setHot(false);
+    handProbation = Entry.insertIntoTailCyclicList(handProbation, e);
+    probationSize++;
+    demoteCnt++;
+  }
+
+  @Override
+  public long removeAll() {
+    long _count = removeAll(handProbation) + removeAll(handProtected);
+    handProbation = handProtected = null;
+    probationSize = protectedSize = 0;
+    return _count;
+  }
+
+  private long removeAll(Entry e) {
+    long _count = 0;
+    if (e != null) {
+      Entry _head = e;
+      do {
+        hits += e.hitCnt;
+        Entry _next = e.next;
+        e.removedFromList();
+        _count++;
+        e = _next;
+      } while (e != _head);
+    }
+    return _count;
+  }
+
+  @Override
+  public long getHitCount() {
+    return hits + LruEviction.sumUpListHits(handProbation) + LruEviction.sumUpListHits(handProtected);
+  }
+
+  @Override
+  public long getSize() {
+    return probationSize + protectedSize;
+  }
+
+  @Override
+  public void checkIntegrity(final IntegrityState is) {
+    is.check("checkCyclicListIntegrity(handProbation)", Entry.checkCyclicListIntegrity(handProbation))
+      .check("checkCyclicListIntegrity(handProtected)", Entry.checkCyclicListIntegrity(handProtected))
+      .checkEquals("getCyclicListEntryCount(handProbation) == probationSize",
+        Entry.getCyclicListEntryCount(handProbation), probationSize)
+      .checkEquals("getCyclicListEntryCount(handProtected) == protectedSize",
+        Entry.getCyclicListEntryCount(handProtected), protectedSize);
+  }
+
+  @Override
+  public String getExtraStatistics() {
+    return super.getExtraStatistics() +
+      ", probationSize=" + probationSize +
+      ", protectedSize=" + protectedSize +
+      ", protectedMaxSize=" + getProtectedMax() +
+      ", promoteCnt=" + promoteCnt +
+      ", demoteCnt=" + demoteCnt;
+  }
+
+  public static class Tunable extends TunableConstants {
+
+    /** Maximum size of the protected segment in percent of the capacity */
+    int protectedPercentage = 80;
+
+  }
+
+}
@@ -0,0 +1,148 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.core.storage.SimpleStorageEntry;
+import org.cache2k.core.storageApi.CacheStorage;
+import org.cache2k.core.storageApi.PersistentStorage;
+import org.cache2k.core.storageApi.StorageEntry;
+
+/**
+ * Connects the heap cache with a {@link CacheStorage} as second tier. Entries evicted
+ * from the heap are written to the storage. When a new entry is inserted in the heap,
+ * the storage contents for the key are moved back, see {@link HeapCache#insertNewEntry}.
+ * Thus a mapping is either held by the heap or by the storage, but never by both.
+ *
+ * <p>Storage exceptions are logged and counted as internal exceptions, the
+ * cache continues as if the storage would not hold a mapping.
+ *
+ * @author Jens Wilke
+ */
+class StorageTier<K,V> implements HeapCacheListener<K,V> {
+
+  private final HeapCache<K,V> heapCache;
+  private final CacheStorage storage;
+  private final HeapCacheListener<K,V> next;
+
+  /**
+   * @param _next listener called after the entry was written to the storage
+   */
+  StorageTier(final HeapCache<K, V> _heapCache, final CacheStorage _storage,
+              final HeapCacheListener<K, V> _next) {
+    heapCache = _heapCache;
+    storage = _storage;
+    next = _next;
+  }
+
+  /**
+   * Write the entry to the storage if it holds a valid value. Exceptions and
+   * entries without an expiry time, e.g. while a refresh is pending, are dropped.
+   * The entry is still in the heap and in processing state, so an access to the key
+   * waits until the entry is removed from the heap and the data is in the storage.
+   */
+  @Override
+  public void onEvictionFromHeap(final Entry<K, V> e) {
+    put(e);
+    next.onEvictionFromHeap(e);
+  }
+
+  private void put(final Entry<K, V> e) {
+    V v = e.getValueOrException();
+    long _expiryTime = e.getValueExpiryTime();
+    if (!(v instanceof ExceptionWrapper) && _expiryTime > 0 && e.hasFreshData(heapCache.clock)) {
+      try {
+        storage.put(
+          new SimpleStorageEntry(heapCache.extractKeyObj(e), v, e.getRefreshTime(), _expiryTime));
+      } catch (Throwable t) {
+        heapCache.logAndCountInternalException("storage put", t);
+      }
+    }
+  }
+
+  boolean contains(final Object key) {
+    try {
+      return storage.contains(key);
+    } catch (Throwable t) {
+      heapCache.logAndCountInternalException("storage contains", t);
+      return false;
+    }
+  }
+
+  /**
+   * Remove the mapping from the storage and return the contents or null.
+   */
+  StorageEntry take(final Object key) {
+    try {
+      StorageEntry se = storage.get(key);
+      if (se != null) {
+        storage.remove(key);
+      }
+      return se;
+    } catch (Throwable t) {
+      heapCache.logAndCountInternalException("storage get", t);
+      try {
+        storage.remove(key);
+      } catch (Throwable ignore) { }
+      return null;
+    }
+  }
+
+  void clear() {
+    try {
+      storage.clear();
+    } catch (Throwable t) {
+      heapCache.logAndCountInternalException("storage clear", t);
+    }
+  }
+
+  /**
+   * Close the storage. A persistent storage receives the heap contents before.
+   * Called under the global lock, before the hash is closed.
+   */
+  void close() {
+    if (storage instanceof PersistentStorage) {
+      Hash2<K, V> hash = heapCache.hash;
+      for (int i = 0; i < hash.getTableCount(); i++) {
+        putAll(hash.getEntries(i));
+      }
+      putAll(hash.getExpansionEntries());
+    }
+    try {
+      storage.close();
+    } catch (Throwable t) {
+      heapCache.logAndCountInternalException("storage close", t);
+    }
+  }
+
+  private void putAll(final Entry<K, V>[] tab) {
+    if (tab == null) {
+      return;
+    }
+    for (Entry<K, V> e : tab) {
+      for (; e != null; e = e.another) {
+        if (!e.isProcessing()) {
+          put(e);
+        }
+      }
+    }
+  }
+
+}
@@ -37,6 +37,10 @@ import org.cache2k.core.util.TunableFactory;
 import org.cache2k.integration.ExceptionInformation;
 import org.cache2k.integration.ResiliencePolicy;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Encapsulates logic for expiry times calculation and timer handling.
  *
@@ -50,7 +54,8 @@ public abstract class TimingHandler<K,V>  {
   final static TimingHandler ETERNAL_IMMEDIATE = new EternalImmediate();
 
   private final static TimingHandler IMMEDIATE = new Immediate();
-  private final static int PURGE_INTERVAL = TunableFactory.get(Tunable.class).purgeInterval;
+  private final static Tunable TUNABLE = TunableFactory.get(Tunable.class);
+  private final static int PURGE_INTERVAL = TUNABLE.purgeInterval;
   private final static long SAFETY_GAP_MILLIS = HeapCache.TUNABLE.sharpExpirySafetyGapMillis;
 
   /**
@@ -66,6 +71,16 @@ public abstract class TimingHandler<K,V>  {
       }
     };
 
+  /**
+   * Number of timers per clock in the {@link SharedTimerService}.
+   */
+  static int getSharedTimerCount() {
+    if (TUNABLE.sharedTimerCount > 0) {
+      return Integer.highestOneBit(TUNABLE.sharedTimerCount);
+    }
+    return Integer.highestOneBit(Runtime.getRuntime().availableProcessors());
+  }
+
   static boolean realDuration(long t) {
     return t > 0 && t < Long.MAX_VALUE;
   }
@@ -120,6 +135,11 @@ public abstract class TimingHandler<K,V>  {
    */
   public void shutdown() { }
 
+  /**
+   * Number of timer tasks scheduled and not yet executed or cancelled.
+   */
+  public long getScheduledTaskCount() { return 0; }
+
   public void close() { shutdown(); }
 
   /**
@@ -249,6 +269,19 @@ public abstract class TimingHandler<K,V>  {
     int timerMask;
     long maxLinger;
     InternalCache cache;
+    /** Timers shared with other caches or null if the cache has its own timers */
+    SharedTimerService timerService;
+    /** Scope of the currently scheduled tasks, replaced on reset */
+    volatile TaskScope scope = new TaskScope();
+    /** No timer task per entry, expired entries are removed by the sweeper */
+    boolean lazyExpiry;
+    long sweepIntervalMillis;
+    int sweepChunkSize;
+    /** Position of the sweeper, only modified by the sweeper task */
+    int sweepTable;
+    int sweepSlot;
+    /** The sweeper is idle while the cache is empty and started by the next insert */
+    volatile boolean sweepScheduled;
     /** Dirty counter, intentionally only 32 bit */
     int timerCancelCount = 0;
     int purgeIndex = 0;
@@ -308,28 +341,83 @@ public abstract class TimingHandler<K,V>  {
       }
       timer = new SimpleTimer[_timerCount];
       timerMask = _timerCount - 1;
+      LazyExpiryConfiguration _lazyExpiry = c.getSections().getSection(LazyExpiryConfiguration.class);
+      if (_lazyExpiry != null) {
+        if (sharpExpiry || refreshAhead) {
+          throw new IllegalArgumentException("lazy expiry not possible with sharp expiry or refresh ahead");
+        }
+        lazyExpiry = true;
+        sweepIntervalMillis = _lazyExpiry.getSweepIntervalMillis();
+        sweepChunkSize = _lazyExpiry.getSweepChunkSize();
+      }
     }
 
     @Override
     public synchronized void init(InternalCache<K,V> c) {
       cache = c;
+      if (TUNABLE.sharedTimer && !clock.isJobSchedulable() &&
+        c.getCacheManager() instanceof CacheManagerImpl) {
+        timerService = ((CacheManagerImpl) c.getCacheManager()).getTimerService();
+      }
       if (resiliencePolicy == null) {
         resiliencePolicy = c.createCustomization(resiliencePolicyFactory);
       }
       resiliencePolicyFactory = null;
     }
 
+    /**
+     * Drop the scheduled tasks by switching to a new scope. Shared timers stay acquired,
+     * tasks of the old scope are removed from them.
+     */
     @Override
     public synchronized  void reset() {
-      shutdown();
-      for (int i = 0; i <= timerMask; i++) {
-        if (timer[i] != null) { continue; }
-        timer[i] =  new SimpleTimer(clock, cache.getName(), true);
+      cancelScope();
+      scope = new TaskScope();
+      if (timerService != null) {
+        if (timer[0] == null) {
+          timer = timerService.acquire(clock);
+          timerMask = timer.length - 1;
+        }
+      } else {
+        cancelOwnTimers();
+        for (int i = 0; i <= timerMask; i++) {
+          if (timer[i] != null) { continue; }
+          timer[i] = new SimpleTimer(clock, cache.getName(), true);
+        }
       }
+      sweepScheduled = false;
     }
 
     @Override
     public synchronized void shutdown() {
+      cancelScope();
+      if (timerService != null) {
+        if (timer[0] != null) {
+          timer = new SimpleTimer[timer.length];
+          timerService.release(clock);
+        }
+        return;
+      }
+      cancelOwnTimers();
+    }
+
+    /**
+     * Cancel the tasks of the current scope. Shared timers are purged, since the
+     * tasks reference the entries and the cache until they are removed.
+     */
+    private void cancelScope() {
+      scope.cancelled = true;
+      if (timerService == null || scope.taskCount.get() == 0) {
+        return;
+      }
+      for (SimpleTimer t : timer) {
+        if (t != null) {
+          t.purge();
+        }
+      }
+    }
+
+    private void cancelOwnTimers() {
       SimpleTimer _timer;
       for (int i = 0; i <= timerMask; i++) {
         if ((_timer = timer[i]) == null) { continue; }
@@ -338,9 +426,13 @@ public abstract class TimingHandler<K,V>  {
       }
     }
 
+    /**
+     * The key is only needed for an expiry policy, so it is not extracted from the
+     * entry, which would box the key of the int and long cache.
+     */
     @Override
     public long calculateNextRefreshTime(final Entry<K,V> e, final V v, final long _loadTime) {
-      return calcNextRefreshTime(e.getKey(), v, _loadTime, e, null, maxLinger, sharpExpiry);
+      return calcNextRefreshTime(null, v, _loadTime, e, null, maxLinger, sharpExpiry);
     }
 
     @Override
@@ -403,6 +495,12 @@ public abstract class TimingHandler<K,V>  {
       if (Math.abs(_expiryTime) <= now) {
         return expiredEventuallyStartBackgroundRefresh(e, _expiryTime < 0);
       }
+      if (lazyExpiry) {
+        if (!sweepScheduled) {
+          startSweep();
+        }
+        return -Math.abs(_expiryTime);
+      }
       if (_expiryTime < 0) {
         long _timerTime = -_expiryTime - SAFETY_GAP_MILLIS;
         if (_timerTime >= now) {
@@ -440,6 +538,9 @@ public abstract class TimingHandler<K,V>  {
     @Override
     public void scheduleFinalTimerForSharpExpiry(final Entry<K, V> e) {
       cancelExpiryTimer(e);
+      if (lazyExpiry) {
+        return;
+      }
       scheduleFinalExpireWithOptionalRefresh(e, e.getNextRefreshTime());
     }
 
@@ -456,15 +557,102 @@ public abstract class TimingHandler<K,V>  {
     }
 
     void scheduleTask(final long _nextRefreshTime, final Entry e) {
-      SimpleTimer _timer = timer[e.hashCode & timerMask];
+      scheduleTask(timer[e.hashCode & timerMask], (CommonTimerTask) e.getTask(), _nextRefreshTime);
+    }
+
+    void scheduleTask(final SimpleTimer _timer, final CommonTimerTask _task, final long _time) {
       if (_timer != null) {
+        TaskScope _scope = scope;
+        _task.scope = _scope;
+        _scope.taskCount.incrementAndGet();
         try {
-          _timer.schedule(e.getTask(), _nextRefreshTime);
+          _timer.schedule(_task, _time);
         } catch (IllegalStateException ignore) {
+          _scope.taskCount.decrementAndGet();
         }
       }
     }
 
+    synchronized void startSweep() {
+      if (!sweepScheduled) {
+        sweepScheduled = true;
+        scheduleSweep();
+      }
+    }
+
+    void scheduleSweep() {
+      scheduleTask(timer[0], new SweepTask().to(cache, null), clock.millis() + sweepIntervalMillis);
+    }
+
+    HeapCache<K, V> getHeapCache() {
+      return cache instanceof WiredCache ? ((WiredCache<K, V>) cache).getHeapCache() : (HeapCache<K, V>) cache;
+    }
+
+    /**
+     * Scan the next chunk of the hash table and expire entries whose expiry time
+     * is reached. Entries moved by a concurrent expansion of the hash table may
+     * be missed and are reached in one of the next sweeps.
+     */
+    void sweep() {
+      Hash2<K, V> _hash = getHeapCache().hash;
+      if (sweepTable >= _hash.getTableCount()) {
+        sweepTable = 0;
+      }
+      Entry<K, V>[] _entries = _hash.getEntries(sweepTable);
+      if (_entries == null) {
+        return;
+      }
+      if (sweepSlot >= _entries.length) {
+        sweepSlot = 0;
+      }
+      long now = clock.millis();
+      List<Entry<K, V>> _expired = new ArrayList<Entry<K, V>>();
+      int _end = Math.min(_entries.length, sweepSlot + sweepChunkSize);
+      for (int i = sweepSlot; i < _end; i++) {
+        for (Entry<K, V> e = _entries[i]; e != null; e = e.another) {
+          if (e.needsTimeCheck() && now >= -e.getNextRefreshTime()) {
+            _expired.add(e);
+          }
+        }
+      }
+      sweepSlot = _end;
+      if (_end == _entries.length) {
+        sweepSlot = 0;
+        sweepTable++;
+      }
+      for (Entry<K, V> e : _expired) {
+        cache.timerEventExpireEntry(e, null);
+      }
+    }
+
+    /**
+     * Runs the sweeper and schedules the next run, unless the scope was replaced by
+     * a reset or the cache is empty.
+     */
+    class SweepTask extends CommonTimerTask<K, V> {
+      @Override
+      public void fire() {
+        try {
+          sweep();
+        } finally {
+          synchronized (Static.this) {
+            if (scope == SweepTask.this.scope && !scope.cancelled) {
+              sweepScheduled = false;
+              if (getHeapCache().hash.getSize() > 0) {
+                sweepScheduled = true;
+                scheduleSweep();
+              }
+            }
+          }
+        }
+      }
+    }
+
+    @Override
+    public long getScheduledTaskCount() {
+      return scope.taskCount.get();
+    }
+
     public void cancelExpiryTimer(Entry<K, V> e) {
       CommonTimerTask tsk = (CommonTimerTask) e.getTask();
       if (tsk != null && tsk.cancel()) {
@@ -482,9 +670,19 @@ public abstract class TimingHandler<K,V>  {
 
   }
 
+  /**
+   * Tasks scheduled by a cache between two resets. Cancelling the scope cancels
+   * all its tasks, which is needed if the timers are shared with other caches.
+   */
+  static class TaskScope {
+    volatile boolean cancelled;
+    final AtomicLong taskCount = new AtomicLong();
+  }
+
   static abstract class CommonTimerTask<K,V> extends SimpleTimerTask {
     private Entry<K,V> entry;
     private InternalCache<K,V> cache;
+    TaskScope scope;
 
     CommonTimerTask<K,V> to(final InternalCache<K,V> c, final Entry<K, V> e) {
       cache = c;
@@ -500,17 +698,26 @@ public abstract class TimingHandler<K,V>  {
       if (super.cancel()) {
         cache = null;
         entry = null;
+        if (scope != null) {
+          scope.taskCount.decrementAndGet();
+        }
         return true;
       }
       return false;
     }
 
+    @Override
+    public boolean isCancelled() {
+      return super.isCancelled() || (scope != null && scope.cancelled);
+    }
+
     protected InternalCache<K,V> getCache() { return cache; }
     protected Entry<K,V> getEntry() { return entry; }
 
     public abstract void fire() throws Exception;
 
     public final void run() {
+      scope.taskCount.decrementAndGet();
       try {
         fire();
       } catch (CacheClosedException ignore) {
@@ -645,6 +852,19 @@ public abstract class TimingHandler<K,V>  {
      */
     public int purgeInterval = 10000;
 
+    /**
+     * Use the timers of the {@link SharedTimerService} of the cache manager, instead
+     * of separate timer threads for each cache. Not used for a clock which schedules
+     * the timer events itself, since no threads are needed in this case.
+     */
+    public boolean sharedTimer = true;
+
+    /**
+     * Number of timers per clock in the shared timer service. 0 means the number of
+     * available processors. Rounded down to a power of two.
+     */
+    public int sharedTimerCount = 0;
+
   }
 
 }
@@ -32,8 +32,12 @@ import org.cache2k.processor.EntryProcessor;
 import org.cache2k.event.CacheEntryRemovedListener;
 import org.cache2k.event.CacheEntryUpdatedListener;
 import org.cache2k.CacheManager;
+import org.cache2k.integration.BulkCacheWriter;
 import org.cache2k.integration.CacheWriter;
 import org.cache2k.CacheOperationCompletionListener;
+import org.cache2k.core.event.AsyncDispatcher;
+import org.cache2k.core.experimentalApi.AsyncCache;
+import org.cache2k.core.experimentalApi.AsyncCacheWriter;
 import org.cache2k.core.operation.ExaminationEntry;
 import org.cache2k.core.operation.Progress;
 import org.cache2k.core.operation.Semantic;
@@ -45,6 +49,7 @@ import org.cache2k.core.storageApi.StorageEntry;
 
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
@@ -70,6 +75,10 @@ public class WiredCache<K, V> extends BaseCache<K, V>
   AdvancedCacheLoader<K,V> loader;
   AsyncCacheLoader<K,V> asyncLoader;
   CacheWriter<K, V> writer;
+  WriteBehind<K, V> writeBehind;
+  AsyncDispatcher<K> asyncDispatcher;
+  /** One dispatcher per batch listener, so a stripe only holds events of one listener */
+  AsyncDispatcher<K>[] batchDispatchers;
   CacheEntryRemovedListener<K,V>[] syncEntryRemovedListeners;
   CacheEntryCreatedListener<K,V>[] syncEntryCreatedListeners;
   CacheEntryUpdatedListener<K,V>[] syncEntryUpdatedListeners;
@@ -142,6 +151,10 @@ public class WiredCache<K, V> extends BaseCache<K, V>
 
   @Override
   public CacheEntry<K, V> peekEntry(K key) {
+    Entry<K, V> e = lookupQuick(key);
+    if (e != null && e.hasFreshData(getClock())) {
+      return heapCache.returnEntry(e);
+    }
     return execute(key, OPS.peekEntry(key));
   }
 
@@ -214,6 +227,11 @@ public class WiredCache<K, V> extends BaseCache<K, V>
 
   @Override
   public boolean containsKey(K key) {
+    Entry<K, V> e = lookupQuick(key);
+    if (e != null && e.hasFreshData(getClock())) {
+      metrics().heapHitButNoRead();
+      return true;
+    }
     return execute(key, OPS.contains(key));
   }
 
@@ -229,9 +247,60 @@ public class WiredCache<K, V> extends BaseCache<K, V>
 
   @Override
   public void putAll(Map<? extends K, ? extends V> m) {
+    BulkCacheWriter<K, V> _bulkWriter = bulkWriter();
+    if (_bulkWriter == null || m.size() <= 1) {
+      for (Map.Entry<? extends K, ? extends V> e : m.entrySet()) {
+        put(e.getKey(), e.getValue());
+      }
+      return;
+    }
+    BulkWrite<K, V> _bulkWrite = new BulkWrite<K, V>(_bulkWriter);
     for (Map.Entry<? extends K, ? extends V> e : m.entrySet()) {
-      put(e.getKey(), e.getValue());
+      _bulkWrite.start(createBulkWriteAction(e.getKey(), OPS.put(e.getKey(), e.getValue()), _bulkWrite));
     }
+    _bulkWrite.writeAndComplete();
+  }
+
+  /**
+   * Remove the keys with one call to the bulk writer, if present.
+   */
+  @Override
+  public void removeAll(Iterable<? extends K> _keys) {
+    BulkCacheWriter<K, V> _bulkWriter = bulkWriter();
+    if (_bulkWriter == null) {
+      super.removeAll(_keys);
+      return;
+    }
+    Set<K> _keySet = new LinkedHashSet<K>();
+    for (K k : _keys) {
+      _keySet.add(k);
+    }
+    BulkWrite<K, V> _bulkWrite = new BulkWrite<K, V>(_bulkWriter);
+    for (K k : _keySet) {
+      _bulkWrite.start(createBulkWriteAction(k, OPS.remove(k), _bulkWrite));
+    }
+    _bulkWrite.writeAndComplete();
+  }
+
+  /**
+   * The bulk writer, if the writer supports bulk operations and is not used by the write behind.
+   */
+  private BulkCacheWriter<K, V> bulkWriter() {
+    if (writeBehind == null && writer instanceof BulkCacheWriter) {
+      return (BulkCacheWriter<K, V>) writer;
+    }
+    return null;
+  }
+
+  @SuppressWarnings("unchecked")
+  private <R> EntryAction<K, V, R> createBulkWriteAction(
+    final K key, final Semantic<K, V, R> op, final BulkWrite<K, V> _bulkWrite) {
+    return new MyEntryAction<R>(op, key, null, _bulkWrite) {
+      @Override
+      protected AsyncCacheWriter<K, V> asyncWriter() {
+        return _bulkWrite;
+      }
+    };
   }
 
   @Override
@@ -460,6 +529,10 @@ public class WiredCache<K, V> extends BaseCache<K, V>
 
   @Override
   public CacheEntry<K, V> getEntry(K key) {
+    Entry<K, V> e = lookupQuick(key);
+    if (e != null && e.hasFreshData(getClock())) {
+      return heapCache.returnEntry(e);
+    }
     return execute(key, OPS.getEntry(key));
   }
 
@@ -608,6 +681,14 @@ public class WiredCache<K, V> extends BaseCache<K, V>
     } catch (CacheClosedException ex) {
       return;
     }
+    if (writeBehind != null) {
+      writeBehind.close();
+    }
+    if (batchDispatchers != null) {
+      for (AsyncDispatcher<K> d : batchDispatchers) {
+        d.close();
+      }
+    }
     Future<Void> _waitForStorage = null;
     if (storage != null) {
       _waitForStorage = storage.shutdown();
@@ -696,6 +777,23 @@ public class WiredCache<K, V> extends BaseCache<K, V>
     return new MyEntryAction<R>(op, key, e);
   }
 
+  @Override
+  protected <R> EntryAction<K, V, R> createEntryAction(final K key, final Entry<K, V> e, final Semantic<K, V, R> op,
+                                                       final EntryAction.CompletedCallback<K, V, R> cb) {
+    return new MyEntryAction<R>(op, key, e, cb);
+  }
+
+  /**
+   * A synchronous loader runs in the loader executor, a synchronous writer in the executor.
+   * With write behind, mutations complete without calling the writer and need no executor.
+   */
+  @Override
+  protected AsyncCache<K, V> createAsyncCache() {
+    return new AsyncCacheView<K, V>(this, heapCache,
+      asyncLoader == null && loader != null ? heapCache.loaderExecutor : null,
+      writer != null && writeBehind == null ? heapCache.getExecutor() : null);
+  }
+
   @Override
   public String getEntryState(final K key) {
     return heapCache.getEntryState(key);
@@ -807,6 +905,11 @@ public class WiredCache<K, V> extends BaseCache<K, V>
       return writer;
     }
 
+    @Override
+    protected AsyncCacheWriter<K, V> asyncWriter() {
+      return writeBehind;
+    }
+
     @Override
     protected TimingHandler<K, V> timing() {
       return heapCache.timing;
@@ -830,6 +933,25 @@ public class WiredCache<K, V> extends BaseCache<K, V>
     @Override
     protected Executor executor() { return heapCache.getExecutor(); }
 
+    /**
+     * The entry is unlocked. A synchronous caller waits here, if the queue of the
+     * async listeners is full.
+     */
+    @Override
+    public void ready() {
+      if (syncThread != Thread.currentThread()) {
+        return;
+      }
+      if (asyncDispatcher != null) {
+        asyncDispatcher.awaitRoom(key);
+      }
+      if (batchDispatchers != null) {
+        for (AsyncDispatcher<K> d : batchDispatchers) {
+          d.awaitRoom(key);
+        }
+      }
+    }
+
     /**
      * Provides async loader context
      *
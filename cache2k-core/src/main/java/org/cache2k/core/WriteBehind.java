@@ -0,0 +1,375 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.core.experimentalApi.AsyncCacheWriter;
+import org.cache2k.core.util.InternalClock;
+import org.cache2k.core.util.Log;
+import org.cache2k.core.util.SimpleTimer;
+import org.cache2k.core.util.SimpleTimerTask;
+import org.cache2k.integration.BulkCacheWriter;
+import org.cache2k.integration.CacheWriter;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Write behind on top of a {@link CacheWriter}. Mutations are queued per key and
+ * acknowledged immediately, so the entry action continues and updates the heap.
+ * A later mutation of a queued key replaces the queued one. The queue is written
+ * when it reaches the batch size or the time window has passed, and on close.
+ * A {@link BulkCacheWriter} gets one call for all updates and one for all deletes
+ * of a batch.
+ *
+ * <p>The queue holds at most {@code maxQueueSize} keys. A mutation of a new key
+ * beyond that limit is acknowledged after a batch was written, which blocks the
+ * calling thread. This way the queue grows at most by the number of concurrently
+ * mutating threads.
+ *
+ * @author Jens Wilke
+ * @see WriteBehindConfiguration
+ */
+public class WriteBehind<K, V> implements AsyncCacheWriter<K, V> {
+
+  private static final Object REMOVED = new Object();
+  private static final Object NULL_VALUE = new Object();
+
+  private final CacheWriter<K, V> writer;
+  private final Executor executor;
+  private final InternalClock clock;
+  private final Log log;
+  private final String name;
+  private final SharedTimerService timerService;
+  private final long windowMillis;
+  private final int batchSize;
+  private final int maxQueueSize;
+
+  /** Serializes the writes, so the mutations of a key are written in order */
+  private final Object flushLock = new Object();
+
+  private final Runnable flushRunnable = new Runnable() {
+    @Override
+    public void run() {
+      flush();
+    }
+  };
+
+  /** Queued mutations in arrival order, guarded by this */
+  private final Map<K, Object> queue = new LinkedHashMap<K, Object>();
+  /** Mutations not yet acknowledged because the queue was full, guarded by this */
+  private final List<Callback> waiting = new ArrayList<Callback>();
+  private SimpleTimer timer;
+  private SimpleTimerTask flushTask;
+  private boolean flushRunning;
+  private boolean closed;
+
+  private long queuedCount;
+  private long coalescedCount;
+  private long writtenCount;
+  private long failureCount;
+  private long batchCount;
+  private long backPressureCount;
+
+  public WriteBehind(HeapCache<K, V> _heapCache, CacheWriter<K, V> _writer, WriteBehindConfiguration cfg) {
+    if (cfg.getBatchSize() <= 0 || cfg.getMaxQueueSize() <= 0 || cfg.getWindowMillis() < 0) {
+      throw new IllegalArgumentException("write behind: batchSize and maxQueueSize must be positive");
+    }
+    writer = _writer;
+    executor = _heapCache.getExecutor();
+    clock = _heapCache.getClock();
+    log = _heapCache.getLog();
+    name = _heapCache.getName();
+    windowMillis = cfg.getWindowMillis();
+    batchSize = cfg.getBatchSize();
+    maxQueueSize = cfg.getMaxQueueSize();
+    if (!clock.isJobSchedulable() && _heapCache.getCacheManager() instanceof CacheManagerImpl) {
+      timerService = ((CacheManagerImpl) _heapCache.getCacheManager()).getTimerService();
+    } else {
+      timerService = null;
+    }
+  }
+
+  @Override
+  public void write(final K key, final V value, final Callback callback, final Executor ex) {
+    enqueue(key, value == null ? NULL_VALUE : value, callback);
+  }
+
+  @Override
+  public void remove(final K key, final Callback callback, final Executor ex) {
+    enqueue(key, REMOVED, callback);
+  }
+
+  private void enqueue(K key, Object v, Callback cb) {
+    boolean _acknowledge = true;
+    boolean _flushNow = false;
+    synchronized (this) {
+      if (closed) {
+        throw new IllegalStateException("write behind closed");
+      }
+      queuedCount++;
+      if (queue.put(key, v) != null) {
+        coalescedCount++;
+      } else if (queue.size() > maxQueueSize) {
+        backPressureCount++;
+        waiting.add(cb);
+        _acknowledge = false;
+      }
+      if (!flushRunning) {
+        if (queue.size() >= batchSize || !_acknowledge) {
+          cancelFlushTask();
+          flushRunning = _flushNow = true;
+        } else if (flushTask == null) {
+          scheduleFlushTask();
+        }
+      }
+    }
+    if (_flushNow) {
+      executor.execute(flushRunnable);
+    }
+    if (_acknowledge) {
+      cb.onWriteSuccess();
+    }
+  }
+
+  private void scheduleFlushTask() {
+    if (timer == null) {
+      timer = timerService != null ?
+        timerService.acquire(clock)[0] : new SimpleTimer(clock, name + ":writeBehind", true);
+    }
+    flushTask = new SimpleTimerTask() {
+      @Override
+      public void run() {
+        synchronized (WriteBehind.this) {
+          if (flushTask != this || flushRunning) {
+            return;
+          }
+          flushTask = null;
+          flushRunning = true;
+        }
+        executor.execute(flushRunnable);
+      }
+    };
+    timer.schedule(flushTask, clock.millis() + windowMillis);
+  }
+
+  private void cancelFlushTask() {
+    if (flushTask != null) {
+      flushTask.cancel();
+      flushTask = null;
+    }
+  }
+
+  /**
+   * Write out the queue in batches until it is empty. Waiting mutations are
+   * acknowledged as the queue shrinks.
+   */
+  void flush() {
+    synchronized (flushLock) {
+      for (;;) {
+        Map<K, Object> _batch = new LinkedHashMap<K, Object>();
+        List<Callback> _release = new ArrayList<Callback>();
+        synchronized (this) {
+          Iterator<Map.Entry<K, Object>> it = queue.entrySet().iterator();
+          while (it.hasNext() && _batch.size() < batchSize) {
+            Map.Entry<K, Object> e = it.next();
+            _batch.put(e.getKey(), e.getValue());
+            it.remove();
+          }
+          if (_batch.isEmpty()) {
+            flushRunning = false;
+            _release.addAll(waiting);
+            waiting.clear();
+          }
+        }
+        if (_batch.isEmpty()) {
+          acknowledge(_release);
+          return;
+        }
+        writeBatch(_batch);
+        synchronized (this) {
+          int _count = Math.min(waiting.size(), _batch.size());
+          for (int i = 0; i < _count; i++) {
+            _release.add(waiting.remove(0));
+          }
+        }
+        acknowledge(_release);
+      }
+    }
+  }
+
+  private void writeBatch(Map<K, Object> _batch) {
+    long _failures;
+    if (writer instanceof BulkCacheWriter) {
+      _failures = writeBulk((BulkCacheWriter<K, V>) writer, _batch);
+    } else {
+      _failures = writeEach(_batch);
+    }
+    synchronized (this) {
+      batchCount++;
+      writtenCount += _batch.size() - _failures;
+      failureCount += _failures;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private long writeEach(Map<K, Object> _batch) {
+    long _failures = 0;
+    for (Map.Entry<K, Object> e : _batch.entrySet()) {
+      Object v = e.getValue();
+      try {
+        if (v == REMOVED) {
+          writer.delete(e.getKey());
+        } else {
+          writer.write(e.getKey(), v == NULL_VALUE ? null : (V) v);
+        }
+      } catch (Throwable t) {
+        _failures++;
+        log.warn("write behind failed, key=" + e.getKey(), t);
+      }
+    }
+    return _failures;
+  }
+
+  /**
+   * Write the batch with one call for all updates and one call for all deletes.
+   * Within the batch each key occurs once, so the order does not matter.
+   */
+  @SuppressWarnings("unchecked")
+  private long writeBulk(BulkCacheWriter<K, V> _writer, Map<K, Object> _batch) {
+    Map<K, V> _writes = new LinkedHashMap<K, V>();
+    Set<K> _deletes = new LinkedHashSet<K>();
+    for (Map.Entry<K, Object> e : _batch.entrySet()) {
+      Object v = e.getValue();
+      if (v == REMOVED) {
+        _deletes.add(e.getKey());
+      } else {
+        _writes.put(e.getKey(), v == NULL_VALUE ? null : (V) v);
+      }
+    }
+    long _failures = 0;
+    if (!_writes.isEmpty()) {
+      try {
+        _failures += logFailures(_writer.writeAll(_writes));
+      } catch (Throwable t) {
+        _failures += _writes.size();
+        log.warn("write behind failed, keys=" + _writes.keySet(), t);
+      }
+    }
+    if (!_deletes.isEmpty()) {
+      try {
+        _failures += logFailures(_writer.deleteAll(_deletes));
+      } catch (Throwable t) {
+        _failures += _deletes.size();
+        log.warn("write behind failed, keys=" + _deletes, t);
+      }
+    }
+    return _failures;
+  }
+
+  private long logFailures(Map<K, Exception> _failures) {
+    if (_failures == null) {
+      return 0;
+    }
+    for (Map.Entry<K, Exception> e : _failures.entrySet()) {
+      log.warn("write behind failed, key=" + e.getKey(), e.getValue());
+    }
+    return _failures.size();
+  }
+
+  private static void acknowledge(List<Callback> _callbacks) {
+    for (Callback cb : _callbacks) {
+      cb.onWriteSuccess();
+    }
+  }
+
+  /**
+   * Write out all queued mutations and stop the timer. Called by the cache
+   * close before the writer is closed.
+   */
+  public void close() {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      cancelFlushTask();
+    }
+    flush();
+    synchronized (this) {
+      if (timer != null) {
+        if (timerService != null) {
+          timerService.release(clock);
+        } else {
+          timer.cancel();
+        }
+        timer = null;
+      }
+    }
+  }
+
+  public synchronized int getQueueSize() {
+    return queue.size();
+  }
+
+  public synchronized long getQueuedCount() {
+    return queuedCount;
+  }
+
+  public synchronized long getCoalescedCount() {
+    return coalescedCount;
+  }
+
+  public synchronized long getWrittenCount() {
+    return writtenCount;
+  }
+
+  public synchronized long getFailureCount() {
+    return failureCount;
+  }
+
+  public synchronized long getBatchCount() {
+    return batchCount;
+  }
+
+  public synchronized long getBackPressureCount() {
+    return backPressureCount;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "WriteBehind(" +
+      "queueSize=" + queue.size() +
+      ", queued=" + queuedCount +
+      ", coalesced=" + coalescedCount +
+      ", written=" + writtenCount +
+      ", failures=" + failureCount +
+      ", batches=" + batchCount +
+      ", backPressure=" + backPressureCount +
+      ")";
+  }
+
+}
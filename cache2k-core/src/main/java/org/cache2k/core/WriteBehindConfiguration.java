@@ -0,0 +1,122 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.configuration.ConfigurationSectionBuilder;
+import org.cache2k.configuration.SingletonConfigurationSection;
+
+/**
+ * Enables write behind for a cache with a {@link org.cache2k.integration.CacheWriter}.
+ * A mutation is acknowledged as soon as it is applied in the cache. The writer is
+ * called later in batches. Multiple mutations to the same key within the time window
+ * are coalesced, only the last one is written.
+ *
+ * <pre>{@code
+ * Cache2kBuilder.of(Integer.class, String.class)
+ *   .writer(writer)
+ *   .with(new WriteBehindConfiguration.Builder().windowMillis(500).batchSize(1000))
+ *   .build();
+ * }</pre>
+ *
+ * <p>Write behind means that a failure of the writer cannot be propagated to the
+ * caller. Failures are logged and counted.
+ *
+ * @author Jens Wilke
+ * @see WriteBehind
+ */
+public class WriteBehindConfiguration implements SingletonConfigurationSection {
+
+  private long windowMillis = 1000;
+  private int batchSize = 100;
+  private int maxQueueSize = 10000;
+
+  public long getWindowMillis() {
+    return windowMillis;
+  }
+
+  /**
+   * @see Builder#windowMillis(long)
+   */
+  public void setWindowMillis(final long v) {
+    windowMillis = v;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * @see Builder#batchSize(int)
+   */
+  public void setBatchSize(final int v) {
+    batchSize = v;
+  }
+
+  public int getMaxQueueSize() {
+    return maxQueueSize;
+  }
+
+  /**
+   * @see Builder#maxQueueSize(int)
+   */
+  public void setMaxQueueSize(final int v) {
+    maxQueueSize = v;
+  }
+
+  public static class Builder implements ConfigurationSectionBuilder<WriteBehindConfiguration> {
+
+    private WriteBehindConfiguration config = new WriteBehindConfiguration();
+
+    /**
+     * Maximum time a mutation stays in the queue before it is written. Default is one second.
+     */
+    public Builder windowMillis(final long v) {
+      config.setWindowMillis(v);
+      return this;
+    }
+
+    /**
+     * Number of queued keys that triggers a write before the time window
+     * has passed. This is also the maximum number of keys written in one go.
+     * Default is 100.
+     */
+    public Builder batchSize(final int v) {
+      config.setBatchSize(v);
+      return this;
+    }
+
+    /**
+     * Maximum number of distinct keys in the queue. If exceeded, a mutating
+     * operation does not complete until a batch was written. Default is 10000.
+     */
+    public Builder maxQueueSize(final int v) {
+      config.setMaxQueueSize(v);
+      return this;
+    }
+
+    @Override
+    public WriteBehindConfiguration buildConfigurationSection() {
+      return config;
+    }
+
+  }
+
+}
@@ -20,97 +20,465 @@ package org.cache2k.core.event;
  * #L%
  */
 
+import org.cache2k.core.CacheManagerImpl;
 import org.cache2k.core.InternalCache;
+import org.cache2k.core.SharedTimerService;
+import org.cache2k.core.util.InternalClock;
+import org.cache2k.core.util.SimpleTimer;
+import org.cache2k.core.util.SimpleTimerTask;
 
-import java.util.LinkedList;
-import java.util.Map;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Executor;
 
 /**
- * Dispatch events via the executor. Executes in parallel or serializes them, if
- * for the identical key.
+ * Dispatch events via the executor. Events are queued in a fixed set of stripes
+ * selected by the key hash. Each stripe is a ring buffer which is drained by one
+ * task at a time, so events for the identical key are executed in the order of
+ * arrival, while different stripes run in parallel. No allocation happens per
+ * key and only one task is submitted per burst of events in a stripe.
+ *
+ * <p>Consecutive {@link BatchedAsyncEvent}s of the same listener are delivered
+ * in one call. With a batch window, the task of an idle stripe is started after
+ * the window has passed or when a full batch is queued.
  *
  * @author Jens Wilke
+ * @see AsyncDispatcherConfiguration
  */
 public class AsyncDispatcher<K> {
 
-  private static final int KEY_LOCKS_MASK =
-    2 << (31 - Integer.numberOfLeadingZeros(Runtime.getRuntime().availableProcessors())) - 1;
-  private static Object[] KEY_LOCKS;
+  private final Stripe[] stripes;
+  private final int mask;
+  private final AsyncDispatcherConfiguration.Overflow overflow;
+  private final Executor executor;
+  private final InternalCache cache;
+  private final int batchSize;
+  private final long windowMillis;
+  private volatile boolean closed;
+  /** Timer for the batch window, guarded by this */
+  private SimpleTimer timer;
+  private SharedTimerService timerService;
+
+  public AsyncDispatcher(InternalCache _cache, final Executor _executor) {
+    this(_cache, _executor, new AsyncDispatcherConfiguration());
+  }
+
+  public AsyncDispatcher(InternalCache _cache, final Executor _executor,
+                         final AsyncDispatcherConfiguration _config) {
+    this(_cache, _executor, _config, 0);
+  }
 
-  static {
-    KEY_LOCKS = new Object[KEY_LOCKS_MASK + 1];
-    for (int i = 0; i < KEY_LOCKS.length; i++) {
-      KEY_LOCKS[i] = new Object();
+  /**
+   * @param _windowMillis time an idle stripe waits for more events, before the
+   *                      delivery starts, 0 starts immediately
+   */
+  @SuppressWarnings("unchecked")
+  public AsyncDispatcher(InternalCache _cache, final Executor _executor,
+                         final AsyncDispatcherConfiguration _config, final long _windowMillis) {
+    if (_config.getQueueCapacity() <= 0 || _config.getBatchSize() <= 0 || _windowMillis < 0) {
+      throw new IllegalArgumentException("queueCapacity and batchSize need to be positive");
     }
+    cache = _cache;
+    executor = _executor;
+    overflow = _config.getOverflow();
+    batchSize = _config.getBatchSize();
+    windowMillis = _windowMillis;
+    int _stripeCount = _config.getStripes();
+    if (_stripeCount <= 0) {
+      _stripeCount = Runtime.getRuntime().availableProcessors() * 2;
+    }
+    _stripeCount = _stripeCount == 1 ? 1 : Integer.highestOneBit(_stripeCount - 1) << 1;
+    mask = _stripeCount - 1;
+    stripes = new AsyncDispatcher.Stripe[_stripeCount];
+    for (int i = 0; i < _stripeCount; i++) {
+      stripes[i] = new Stripe(_config.getQueueCapacity());
+    }
+  }
+
+  /**
+   * Queue the event in the stripe of the key. If no task is running for the stripe,
+   * submit one to the executor. If the stripe is full, the configured overflow
+   * behaviour applies. Never waits, since the cache calls this while the entry
+   * is locked, see {@link #awaitRoom(Object)}.
+   */
+  public void queue(final AsyncEvent<K> _event) {
+    stripe(_event.getKey()).queue(_event);
   }
 
   /**
-   * Simulate locking by key, use the hash code to spread and avoid lock contention.
-   * The additional locking we introduce here is currently run synchronously inside the
-   * entry mutation operation.
+   * With {@link AsyncDispatcherConfiguration.Overflow#BLOCK} wait until the stripe of
+   * the key is below its capacity. Called by the mutating thread after the entry is
+   * unlocked, so a listener operating on the same entry can proceed. Does not wait,
+   * if called by a task delivering events of this dispatcher.
    */
-  private static Object getLockObject(Object key) {
+  public void awaitRoom(final K key) {
+    if (overflow != AsyncDispatcherConfiguration.Overflow.BLOCK || isDeliveringThread()) {
+      return;
+    }
+    stripe(key).awaitRoom();
+  }
+
+  private Stripe stripe(final K key) {
     int hc = key.hashCode();
-    return KEY_LOCKS[hc & KEY_LOCKS_MASK];
+    hc ^= hc >>> 16;
+    return stripes[hc & mask];
   }
 
-  private Map<K, Queue<AsyncEvent<K>>> keyQueue = new ConcurrentHashMap<K, Queue<AsyncEvent<K>>>();
-  private Executor executor;
-  private InternalCache cache;
+  private boolean isDeliveringThread() {
+    Thread t = Thread.currentThread();
+    for (Stripe s : stripes) {
+      if (s.drainThread == t) {
+        return true;
+      }
+    }
+    return false;
+  }
 
-  public AsyncDispatcher(InternalCache _cache, final Executor _executor) {
-    cache = _cache;
-    executor = _executor;
+  /**
+   * Start the delivery of events waiting for the batch window and stop the timer.
+   * Events queued afterwards are delivered without delay.
+   */
+  public void close() {
+    closed = true;
+    for (Stripe s : stripes) {
+      s.startDelayed();
+    }
+    synchronized (this) {
+      if (timer != null) {
+        if (timerService != null) {
+          timerService.release(cache.getClock());
+        } else {
+          timer.cancel();
+        }
+        timer = null;
+      }
+    }
   }
 
   /**
-   * Immediately executes an event with the provided executor. If an event
-   * is already executing for the identical key, queue the event and execute
-   * the event with FIFO scheme, preserving the order of the arrival.
+   * The timer for the batch window, acquired on first use.
+   * Returns {@code null} if closed.
    */
-  public void queue(final AsyncEvent<K> _event) {
-    final K key = _event.getKey();
-    synchronized (getLockObject(key)) {
-      Queue<AsyncEvent<K>> q = keyQueue.get(key);
-      if (q != null) {
-        q.add(_event);
-        return;
+  private synchronized SimpleTimer timer() {
+    if (closed) {
+      return null;
+    }
+    if (timer == null) {
+      InternalClock _clock = cache.getClock();
+      if (!_clock.isJobSchedulable() && cache.getCacheManager() instanceof CacheManagerImpl) {
+        timerService = ((CacheManagerImpl) cache.getCacheManager()).getTimerService();
+        timer = timerService.acquire(_clock)[0];
+      } else {
+        timer = new SimpleTimer(_clock, cache.getName() + ":asyncDispatcher", true);
+      }
+    }
+    return timer;
+  }
+
+  public int getStripeCount() {
+    return stripes.length;
+  }
+
+  /**
+   * Events currently queued in all stripes.
+   */
+  public int getQueueSize() {
+    int _sum = 0;
+    for (Stripe s : stripes) {
+      synchronized (s) {
+        _sum += s.size;
+      }
+    }
+    return _sum;
+  }
+
+  /**
+   * Highest number of events queued in one stripe.
+   */
+  public int getMaxQueueSize() {
+    int _max = 0;
+    for (Stripe s : stripes) {
+      synchronized (s) {
+        _max = Math.max(_max, s.maxSize);
+      }
+    }
+    return _max;
+  }
+
+  /**
+   * Events discarded with {@link AsyncDispatcherConfiguration.Overflow#DROP_OLDEST}.
+   */
+  public long getDroppedCount() {
+    long _sum = 0;
+    for (Stripe s : stripes) {
+      synchronized (s) {
+        _sum += s.droppedCount;
+      }
+    }
+    return _sum;
+  }
+
+  /**
+   * Events replaced with {@link AsyncDispatcherConfiguration.Overflow#COALESCE}.
+   */
+  public long getCoalescedCount() {
+    long _sum = 0;
+    for (Stripe s : stripes) {
+      synchronized (s) {
+        _sum += s.coalescedCount;
       }
-      q = new LinkedList<AsyncEvent<K>>();
-      keyQueue.put(key, q);
     }
-    Runnable r = new Runnable() {
-      @Override
-      public void run() {
-        runMoreOrStop(_event);
+    return _sum;
+  }
+
+  /**
+   * Number of times a mutating thread waited, because the stripe was full.
+   */
+  public long getBlockedCount() {
+    long _sum = 0;
+    for (Stripe s : stripes) {
+      synchronized (s) {
+        _sum += s.blockedCount;
       }
-    };
-    executor.execute(r);
+    }
+    return _sum;
   }
 
   /**
-   * Run as long there is still an event for the key.
+   * Ring buffer of events and the task draining it. All fields are guarded by
+   * the stripe monitor.
    */
-  public void runMoreOrStop(AsyncEvent<K> _event) {
-    for (;;) {
-      try {
-        _event.execute();
-      } catch (Throwable t) {
-        cache.getLog().warn("Async event exception", t);
-      }
-      final K key = _event.getKey();
-      synchronized (getLockObject(key)) {
-        Queue<AsyncEvent<K>> q = keyQueue.get(key);
-        if (q.isEmpty()) {
-          keyQueue.remove(key);
+  private class Stripe implements Runnable {
+
+    private final int capacity;
+    private AsyncEvent<K>[] ring;
+    private int head;
+    private int size;
+    private boolean running;
+    private SimpleTimerTask delayTask;
+    /** Thread running the task, volatile since checked without the stripe monitor */
+    private volatile Thread drainThread;
+    private int maxSize;
+    private long droppedCount;
+    private long coalescedCount;
+    private long blockedCount;
+
+    @SuppressWarnings("unchecked")
+    Stripe(int _capacity) {
+      capacity = _capacity;
+      ring = new AsyncEvent[_capacity];
+    }
+
+    void queue(AsyncEvent<K> _event) {
+      synchronized (this) {
+        if (size >= capacity && !makeRoom(_event)) {
+          return;
+        }
+        ring[(head + size) % ring.length] = _event;
+        size++;
+        if (size > maxSize) {
+          maxSize = size;
+        }
+        if (running) {
+          return;
+        }
+        if (windowMillis > 0 && size < Math.min(batchSize, capacity) && scheduleDelayed()) {
           return;
         }
-        _event = q.remove();
+        cancelDelayed();
+        running = true;
+      }
+      executor.execute(this);
+    }
+
+    /**
+     * Start the task after the batch window, if not scheduled already.
+     *
+     * @return false, if the timer is not available, because the dispatcher is closed
+     */
+    private boolean scheduleDelayed() {
+      if (delayTask != null) {
+        return true;
       }
+      SimpleTimer _timer = timer();
+      if (_timer == null) {
+        return false;
+      }
+      delayTask = new SimpleTimerTask() {
+        @Override
+        public void run() {
+          synchronized (Stripe.this) {
+            if (delayTask != this || running) {
+              return;
+            }
+            delayTask = null;
+            running = true;
+          }
+          executor.execute(Stripe.this);
+        }
+      };
+      _timer.schedule(delayTask, cache.getClock().millis() + windowMillis);
+      return true;
     }
+
+    private void cancelDelayed() {
+      if (delayTask != null) {
+        delayTask.cancel();
+        delayTask = null;
+      }
+    }
+
+    /**
+     * Start the task now, if events wait for the batch window.
+     */
+    void startDelayed() {
+      synchronized (this) {
+        if (delayTask == null) {
+          return;
+        }
+        cancelDelayed();
+        running = true;
+      }
+      executor.execute(this);
+    }
+
+    /**
+     * Remove the oldest event and wake up threads waiting for room.
+     */
+    private AsyncEvent<K> take() {
+      AsyncEvent<K> _event = ring[head];
+      ring[head] = null;
+      head = (head + 1) % ring.length;
+      if (size-- == capacity) {
+        notifyAll();
+      }
+      return _event;
+    }
+
+    /**
+     * Apply the overflow behaviour, the stripe has reached its capacity.
+     *
+     * @return true, if the event needs to be added, false if it was coalesced
+     */
+    private boolean makeRoom(AsyncEvent<K> _event) {
+      if (overflow == AsyncDispatcherConfiguration.Overflow.DROP_OLDEST) {
+        take();
+        droppedCount++;
+        return true;
+      }
+      if (overflow == AsyncDispatcherConfiguration.Overflow.COALESCE && coalesce(_event)) {
+        coalescedCount++;
+        return false;
+      }
+      if (size == ring.length) {
+        grow();
+      }
+      return true;
+    }
+
+    /**
+     * Replace the last queued event for the same key and listener. Events of this
+     * key that are queued earlier keep their position, so the order is preserved.
+     */
+    private boolean coalesce(AsyncEvent<K> _event) {
+      Object _listener = _event.getListener();
+      if (_listener == null) {
+        return false;
+      }
+      K key = _event.getKey();
+      for (int i = size - 1; i >= 0; i--) {
+        int idx = (head + i) % ring.length;
+        AsyncEvent<K> e = ring[idx];
+        if (e.getListener() == _listener && key.equals(e.getKey())) {
+          ring[idx] = _event;
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void grow() {
+      AsyncEvent<K>[] _ring = new AsyncEvent[ring.length * 2];
+      for (int i = 0; i < size; i++) {
+        _ring[i] = ring[(head + i) % ring.length];
+      }
+      ring = _ring;
+      head = 0;
+    }
+
+    /**
+     * Wait until the draining task took events and the stripe is below its capacity.
+     */
+    synchronized void awaitRoom() {
+      if (size < capacity) {
+        return;
+      }
+      blockedCount++;
+      boolean _interrupt = false;
+      while (size >= capacity) {
+        try {
+          wait();
+        } catch (InterruptedException ignore) {
+          _interrupt = true;
+        }
+      }
+      if (_interrupt) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    /**
+     * Execute queued events until the stripe is empty. After a full ring of events
+     * the task is submitted again, so a busy stripe does not occupy an executor
+     * thread forever.
+     */
+    @Override
+    public void run() {
+      int _budget;
+      synchronized (this) {
+        _budget = capacity;
+        drainThread = Thread.currentThread();
+      }
+      for (;;) {
+        AsyncEvent<K> _event;
+        List<AsyncEvent<K>> _batch = null;
+        synchronized (this) {
+          if (size == 0) {
+            running = false;
+            drainThread = null;
+            return;
+          }
+          if (_budget <= 0) {
+            drainThread = null;
+            break;
+          }
+          _event = take();
+          _budget--;
+          if (_event instanceof BatchedAsyncEvent) {
+            _batch = new ArrayList<AsyncEvent<K>>();
+            _batch.add(_event);
+            Object _listener = _event.getListener();
+            while (size > 0 && _batch.size() < batchSize &&
+              ring[head] instanceof BatchedAsyncEvent && ring[head].getListener() == _listener) {
+              _batch.add(take());
+              _budget--;
+            }
+          }
+        }
+        try {
+          if (_batch != null) {
+            ((BatchedAsyncEvent<K>) _event).executeBatch(_batch);
+          } else {
+            _event.execute();
+          }
+        } catch (Throwable t) {
+          cache.getLog().warn("Async event exception", t);
+        }
+      }
+      executor.execute(this);
+    }
+
   }
 
 }
@@ -0,0 +1,196 @@
+package org.cache2k.core.event;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.configuration.ConfigurationSectionBuilder;
+import org.cache2k.configuration.SingletonConfigurationSection;
+
+/**
+ * Queue sizing and overflow behaviour for the delivery of events to asynchronous
+ * listeners. Events are queued in a fixed number of stripes selected by the key hash,
+ * each stripe is a ring buffer with a capacity. The batch size and window
+ * apply to listeners implementing {@link org.cache2k.event.CacheEntryBatchListener}.
+ *
+ * <pre>{@code
+ * Cache2kBuilder.of(Integer.class, String.class)
+ *   .addAsyncListener(listener)
+ *   .with(new AsyncDispatcherConfiguration.Builder()
+ *     .queueCapacity(10000)
+ *     .overflow(AsyncDispatcherConfiguration.Overflow.COALESCE))
+ *   .build();
+ * }</pre>
+ *
+ * @author Jens Wilke
+ * @see AsyncDispatcher
+ */
+public class AsyncDispatcherConfiguration implements SingletonConfigurationSection {
+
+  /**
+   * What happens when an event is queued and the stripe is full.
+   */
+  public enum Overflow {
+
+    /**
+     * The stripe grows, so the mutating operation never waits. The capacity is
+     * the initial size of the stripe.
+     */
+    GROW,
+
+    /**
+     * The stripe grows and the mutating operation waits after the entry is unlocked,
+     * until the listener has taken events and the stripe is below its capacity.
+     * A listener that mutates the cache itself never waits.
+     */
+    BLOCK,
+
+    /**
+     * The oldest queued event of the stripe is discarded.
+     */
+    DROP_OLDEST,
+
+    /**
+     * The last queued event of the same key and listener is replaced with the new one,
+     * so the listener only sees the latest event. If there is none, the stripe grows
+     * as with {@link #GROW}.
+     */
+    COALESCE
+
+  }
+
+  private int stripes = 0;
+  private int queueCapacity = 1000;
+  private Overflow overflow = Overflow.GROW;
+  private int batchSize = 100;
+  private long batchWindowMillis = 0;
+
+  public int getStripes() {
+    return stripes;
+  }
+
+  /**
+   * @see Builder#stripes(int)
+   */
+  public void setStripes(final int v) {
+    stripes = v;
+  }
+
+  public int getQueueCapacity() {
+    return queueCapacity;
+  }
+
+  /**
+   * @see Builder#queueCapacity(int)
+   */
+  public void setQueueCapacity(final int v) {
+    queueCapacity = v;
+  }
+
+  public Overflow getOverflow() {
+    return overflow;
+  }
+
+  /**
+   * @see Builder#overflow(Overflow)
+   */
+  public void setOverflow(final Overflow v) {
+    overflow = v;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * @see Builder#batchSize(int)
+   */
+  public void setBatchSize(final int v) {
+    batchSize = v;
+  }
+
+  public long getBatchWindowMillis() {
+    return batchWindowMillis;
+  }
+
+  /**
+   * @see Builder#batchWindowMillis(long)
+   */
+  public void setBatchWindowMillis(final long v) {
+    batchWindowMillis = v;
+  }
+
+  public static class Builder implements ConfigurationSectionBuilder<AsyncDispatcherConfiguration> {
+
+    private AsyncDispatcherConfiguration config = new AsyncDispatcherConfiguration();
+
+    /**
+     * Number of stripes, rounded up to a power of two. Events of different keys in
+     * the same stripe are delivered one after the other. Default is 0, which means
+     * twice the number of available processors.
+     */
+    public Builder stripes(final int v) {
+      config.setStripes(v);
+      return this;
+    }
+
+    /**
+     * Number of queued events per stripe, before the overflow behaviour applies.
+     * Default is 1000.
+     */
+    public Builder queueCapacity(final int v) {
+      config.setQueueCapacity(v);
+      return this;
+    }
+
+    /**
+     * Behaviour when a stripe is full. Default is {@link Overflow#GROW}.
+     */
+    public Builder overflow(final Overflow v) {
+      config.setOverflow(v);
+      return this;
+    }
+
+    /**
+     * Maximum number of events passed to a
+     * {@link org.cache2k.event.CacheEntryBatchListener} in one call. Default is 100.
+     */
+    public Builder batchSize(final int v) {
+      config.setBatchSize(v);
+      return this;
+    }
+
+    /**
+     * Time to wait for more events before a batch listener is called with less than
+     * {@link #batchSize(int)} events. Default is 0, which means the listener is
+     * called with the events that are queued when the delivery starts.
+     */
+    public Builder batchWindowMillis(final long v) {
+      config.setBatchWindowMillis(v);
+      return this;
+    }
+
+    @Override
+    public AsyncDispatcherConfiguration buildConfigurationSection() {
+      return config;
+    }
+
+  }
+
+}
@@ -29,4 +29,13 @@ public abstract class AsyncEvent<K> {
 
   public abstract void execute();
 
+  /**
+   * The listener the event is delivered to. Events with the same key and listener
+   * may be coalesced by the dispatcher. Default is {@code null}, the event is
+   * never coalesced.
+   */
+  public Object getListener() {
+    return null;
+  }
+
 }
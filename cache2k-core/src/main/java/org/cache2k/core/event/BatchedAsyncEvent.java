@@ -0,0 +1,45 @@
+package org.cache2k.core.event;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An event that can be delivered together with other events. The dispatcher
+ * passes consecutive events of the same listener from one stripe in one call.
+ *
+ * @author Jens Wilke
+ */
+public abstract class BatchedAsyncEvent<K> extends AsyncEvent<K> {
+
+  /**
+   * Deliver the events. The list starts with this event, all events have the
+   * identical {@link #getListener()}.
+   */
+  public abstract void executeBatch(List<AsyncEvent<K>> _events);
+
+  @Override
+  public void execute() {
+    executeBatch(Collections.<AsyncEvent<K>>singletonList(this));
+  }
+
+}
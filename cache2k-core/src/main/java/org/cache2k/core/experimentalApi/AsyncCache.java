@@ -0,0 +1,65 @@
+package org.cache2k.core.experimentalApi;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.processor.EntryProcessor;
+
+import java.util.Map;
+
+/**
+ * Asynchronous view of a cache, available via {@code cache.requestInterface(AsyncCache.class)}.
+ * The operations return immediately and complete the future when the operation on the
+ * entry is done. With an {@link org.cache2k.integration.AsyncCacheLoader} the future
+ * completes within the loader callback, so no thread waits for the load. A synchronous
+ * loader or writer is called in the loader executor or the cache executor instead of the
+ * calling thread.
+ *
+ * <p>Operations on the same key are queued and executed in order, if an entry
+ * is already processing.
+ *
+ * @author Jens Wilke
+ */
+public interface AsyncCache<K, V> {
+
+  /**
+   * @see org.cache2k.Cache#get(Object)
+   */
+  CompletionFuture<V> get(K key);
+
+  /**
+   * @see org.cache2k.Cache#put(Object, Object)
+   */
+  CompletionFuture<Void> put(K key, V value);
+
+  /**
+   * @see org.cache2k.Cache#invoke(Object, EntryProcessor)
+   */
+  <R> CompletionFuture<R> invoke(K key, EntryProcessor<K, V, R> entryProcessor);
+
+  /**
+   * Completes when all entries are present. Fails with the first exception if one
+   * of the loads fails.
+   *
+   * @see org.cache2k.Cache#getAll(Iterable)
+   */
+  CompletionFuture<Map<K, V>> getAll(Iterable<? extends K> keys);
+
+}
@@ -0,0 +1,58 @@
+package org.cache2k.core.experimentalApi;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.configuration.ConfigurationSectionBuilder;
+import org.cache2k.configuration.SingletonConfigurationSection;
+
+/**
+ * Configuration section for a cache that is used via the {@link AsyncCache} view.
+ * The entries keep a reference to the running operation, so an asynchronous operation
+ * on an entry that is processing is queued and does not wait in the calling thread.
+ *
+ * <p>Without this section a cache without timer, loader and listeners uses compact
+ * entries. The async view is available for this cache as well, but an operation on a
+ * processing entry waits for the running operation in the calling thread.
+ *
+ * <pre>{@code
+ * Cache<Integer, String> cache = Cache2kBuilder.of(Integer.class, String.class)
+ *   .eternal(true)
+ *   .with(new AsyncCacheConfiguration.Builder())
+ *   .build();
+ * AsyncCache<Integer, String> asyncCache = cache.requestInterface(AsyncCache.class);
+ * }</pre>
+ *
+ * @author Jens Wilke
+ */
+public class AsyncCacheConfiguration implements SingletonConfigurationSection {
+
+  public static class Builder implements ConfigurationSectionBuilder<AsyncCacheConfiguration> {
+
+    private AsyncCacheConfiguration config = new AsyncCacheConfiguration();
+
+    @Override
+    public AsyncCacheConfiguration buildConfigurationSection() {
+      return config;
+    }
+
+  }
+
+}
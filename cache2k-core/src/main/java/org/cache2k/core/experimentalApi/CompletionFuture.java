@@ -0,0 +1,50 @@
+package org.cache2k.core.experimentalApi;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.EventListener;
+import java.util.concurrent.Future;
+
+/**
+ * Future that notifies a callback on completion. The operation cannot be cancelled.
+ *
+ * @author Jens Wilke
+ */
+public interface CompletionFuture<T> extends Future<T> {
+
+  /**
+   * Call back when the operation is complete. If the operation is already complete,
+   * the callback is called immediately in the current thread, otherwise in the thread
+   * that completes the operation. The callback should not block.
+   */
+  void whenComplete(Callback<? super T> callback);
+
+  /**
+   * @author Jens Wilke
+   */
+  interface Callback<T> extends EventListener {
+
+    void onSuccess(T result);
+    void onFailure(Throwable t);
+
+  }
+
+}
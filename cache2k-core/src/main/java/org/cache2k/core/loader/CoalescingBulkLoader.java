@@ -0,0 +1,178 @@
+package org.cache2k.core.loader;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.CacheEntry;
+import org.cache2k.core.util.InternalClock;
+import org.cache2k.integration.BulkCacheLoader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Collects single key loads from concurrent threads and loads them in one bulk
+ * request. The first thread of a batch waits until the maximum batch size is
+ * reached or the maximum delay passed and then calls the bulk loader. The other
+ * threads wait for the result of the batch that contains their key.
+ *
+ * <p>Bulk requests are passed on directly.
+ *
+ * @author Jens Wilke
+ * @see LoaderCoalescingConfiguration
+ */
+public class CoalescingBulkLoader<K, V> extends BulkCacheLoader<K, V> implements Closeable {
+
+  private final BulkCacheLoader<K, V> forward;
+  private final InternalClock clock;
+  private final long maxDelayMillis;
+  private final int maxBatchSize;
+
+  /** The batch collecting keys, guarded by this */
+  private Batch<K, V> current;
+
+  /**
+   * @param _clock clock of the cache, for the maximum delay
+   */
+  public CoalescingBulkLoader(final BulkCacheLoader<K, V> _forward, final InternalClock _clock,
+                              final long _maxDelayMillis, final int _maxBatchSize) {
+    if (_maxBatchSize < 1) {
+      throw new IllegalArgumentException("maximum batch size needs to be at least 1");
+    }
+    forward = _forward;
+    clock = _clock;
+    maxDelayMillis = _maxDelayMillis;
+    maxBatchSize = _maxBatchSize;
+  }
+
+  @Override
+  public V load(final K key, final long startTime, final CacheEntry<K, V> currentEntry) throws Exception {
+    Batch<K, V> b;
+    boolean _leader = false;
+    synchronized (this) {
+      b = current;
+      if (b == null) {
+        b = current = new Batch<K, V>(startTime);
+        _leader = true;
+      }
+      b.keys.add(key);
+      if (b.keys.size() >= maxBatchSize) {
+        current = null;
+        notifyAll();
+      }
+    }
+    if (_leader) {
+      awaitBatchComplete(b);
+      b.load(forward);
+    }
+    return b.awaitResult(key);
+  }
+
+  /**
+   * Wait until the batch is full or the maximum delay passed. Afterwards no
+   * more keys are added. On interruption the batch is loaded immediately, since
+   * other threads are waiting for it.
+   */
+  private synchronized void awaitBatchComplete(final Batch<K, V> b) {
+    long _deadline = clock.millis() + maxDelayMillis;
+    long _delta = maxDelayMillis;
+    try {
+      while (current == b && _delta > 0) {
+        wait(_delta);
+        _delta = _deadline - clock.millis();
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    if (current == b) {
+      current = null;
+    }
+  }
+
+  @Override
+  public Map<K, V> loadAll(final Set<K> keys, final long startTime, final Executor executor) throws Exception {
+    return forward.loadAll(keys, startTime, executor);
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (forward instanceof Closeable) {
+      ((Closeable) forward).close();
+    }
+  }
+
+  public long getMaxDelayMillis() {
+    return maxDelayMillis;
+  }
+
+  public int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  static class Batch<K, V> {
+
+    final Set<K> keys = new HashSet<K>();
+    final long startTime;
+    private boolean done;
+    private Map<K, V> result;
+    private Exception exception;
+
+    Batch(final long _startTime) {
+      startTime = _startTime;
+    }
+
+    /**
+     * Call the loader. An exception is propagated to every thread waiting for the batch.
+     */
+    void load(final BulkCacheLoader<K, V> _loader) {
+      Map<K, V> _result = null;
+      Exception _exception = null;
+      try {
+        _result = _loader.loadAll(keys, startTime, CALLER_RUNS);
+      } catch (Exception ex) {
+        _exception = ex;
+      } catch (Throwable t) {
+        _exception = new RuntimeException(t);
+      }
+      synchronized (this) {
+        result = _result;
+        exception = _exception;
+        done = true;
+        notifyAll();
+      }
+    }
+
+    synchronized V awaitResult(final K key) throws Exception {
+      while (!done) {
+        wait();
+      }
+      if (exception != null) {
+        throw exception;
+      }
+      return result.get(key);
+    }
+
+  }
+
+}
@@ -0,0 +1,99 @@
+package org.cache2k.core.loader;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.configuration.ConfigurationSectionBuilder;
+import org.cache2k.configuration.SingletonConfigurationSection;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration section to coalesce concurrent single key loads into bulk loads.
+ * Requires a {@link org.cache2k.integration.BulkCacheLoader}. A load waits at most
+ * the maximum delay for other loads to join the batch.
+ *
+ * <pre>{@code
+ * Cache2kBuilder.of(Integer.class, String.class)
+ *   .loader(bulkLoader)
+ *   .with(new LoaderCoalescingConfiguration.Builder()
+ *     .maxDelay(5, TimeUnit.MILLISECONDS)
+ *     .maxBatchSize(50))
+ *   .build();
+ * }</pre>
+ *
+ * @author Jens Wilke
+ * @see CoalescingBulkLoader
+ */
+public class LoaderCoalescingConfiguration implements SingletonConfigurationSection {
+
+  private long maxDelayMillis = 10;
+  private int maxBatchSize = 100;
+
+  public long getMaxDelayMillis() {
+    return maxDelayMillis;
+  }
+
+  /**
+   * @see Builder#maxDelay(long, TimeUnit)
+   */
+  public void setMaxDelayMillis(final long v) {
+    maxDelayMillis = v;
+  }
+
+  public int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  /**
+   * @see Builder#maxBatchSize(int)
+   */
+  public void setMaxBatchSize(final int v) {
+    maxBatchSize = v;
+  }
+
+  public static class Builder implements ConfigurationSectionBuilder<LoaderCoalescingConfiguration> {
+
+    private LoaderCoalescingConfiguration config = new LoaderCoalescingConfiguration();
+
+    /**
+     * Time the first load of a batch waits for more keys. Default is 10 milliseconds.
+     */
+    public Builder maxDelay(final long v, final TimeUnit u) {
+      config.setMaxDelayMillis(u.toMillis(v));
+      return this;
+    }
+
+    /**
+     * Number of keys after which the batch is loaded without further waiting. Default is 100.
+     */
+    public Builder maxBatchSize(final int v) {
+      config.setMaxBatchSize(v);
+      return this;
+    }
+
+    @Override
+    public LoaderCoalescingConfiguration buildConfigurationSection() {
+      return config;
+    }
+
+  }
+
+}
@@ -0,0 +1,55 @@
+package org.cache2k.core.storage;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * Default serializer using Java serialization. Values need to implement
+ * {@link java.io.Serializable}.
+ *
+ * @author Jens Wilke
+ */
+public class JavaValueSerializer implements ValueSerializer {
+
+  @Override
+  public byte[] serialize(final Object _value) throws Exception {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    ObjectOutputStream oos = new ObjectOutputStream(bos);
+    oos.writeObject(_value);
+    oos.close();
+    return bos.toByteArray();
+  }
+
+  @Override
+  public Object deserialize(final byte[] _data) throws Exception {
+    ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(_data));
+    try {
+      return ois.readObject();
+    } finally {
+      ois.close();
+    }
+  }
+
+}
@@ -0,0 +1,508 @@
+package org.cache2k.core.storage;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.core.storageApi.PersistentStorage;
+import org.cache2k.core.storageApi.StorageEntry;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Persistent storage in a memory mapped file. The file contains a header, an open
+ * addressing hash table with the positions of the records and a data area which is used
+ * as a ring, like in {@link OffHeapStorage}. When the data area or the hash table is
+ * exhausted the oldest entries are dropped.
+ *
+ * <p>Opening an existing file only reads the header, entries are read when requested.
+ * Keys and values are serialized with the {@link ValueSerializer}. Keys are compared by
+ * their serialized form and located by {@link Object#hashCode()}, so keys need
+ * a deterministic serialization and a hash code that is stable between JVM runs,
+ * like strings and numbers.
+ *
+ * <p>Writes are durable after {@link #flush()} or {@link #close()}. After a crash, records
+ * written after the last flush may be missing. The file can only be opened by one
+ * storage instance at a time and is limited to 2GB.
+ *
+ * @author Jens Wilke
+ */
+public class MappedFileStorage implements PersistentStorage {
+
+  static final int MAGIC = 0x63326b4d;
+  static final int VERSION = 1;
+
+  static final int HEADER_SIZE = 64;
+  static final int HEADER_SLOT_COUNT = 8;
+  static final int HEADER_DATA_CAPACITY = 12;
+  static final int HEADER_WRITE_POSITION = 16;
+  static final int HEADER_VALID_FROM = 24;
+  static final int HEADER_USED_SLOTS = 32;
+
+  /** Slot: hash code and position of the record plus one */
+  static final int SLOT_SIZE = 4 + 8;
+  static final long SLOT_EMPTY = 0;
+  static final long SLOT_DELETED = -1;
+
+  /** Record header: key length, value length, created or updated time and value expiry time */
+  static final int RECORD_HEADER_SIZE = 4 + 4 + 8 + 8;
+
+  /** Average record size to derive the number of slots from the capacity */
+  static final int ESTIMATED_RECORD_SIZE = 128;
+
+  private final File file;
+  private final ValueSerializer serializer;
+  private RandomAccessFile randomAccessFile;
+  private FileLock fileLock;
+  private MappedByteBuffer buffer;
+  private int slotCount;
+  private int dataCapacity;
+  private int dataStart;
+
+  /** Absolute position of the next record, the offset in the data area is position modulo capacity */
+  private long writePosition;
+
+  /** Records before this position are removed, moved forward when slots are needed */
+  private long validFrom;
+
+  /** Slots not empty, including deleted and overwritten ones */
+  private int usedSlots;
+
+  public MappedFileStorage(final File _file, final long _capacityInBytes) throws IOException {
+    this(_file, (int) Math.min(Integer.MAX_VALUE, _capacityInBytes / ESTIMATED_RECORD_SIZE),
+      _capacityInBytes, new JavaValueSerializer());
+  }
+
+  /**
+   * Open an existing file or create a new one. If the file was created by this class
+   * before, the sizes stored in the file are used.
+   *
+   * @param _maximumEntries maximum number of entries
+   * @param _dataCapacityInBytes size of the data area
+   */
+  public MappedFileStorage(final File _file, final int _maximumEntries, final long _dataCapacityInBytes,
+                           final ValueSerializer _serializer) throws IOException {
+    file = _file;
+    serializer = _serializer;
+    randomAccessFile = new RandomAccessFile(_file, "rw");
+    try {
+      try {
+        fileLock = randomAccessFile.getChannel().tryLock();
+      } catch (OverlappingFileLockException ex) {
+        fileLock = null;
+      }
+      if (fileLock == null) {
+        throw new IOException("storage file in use: " + _file);
+      }
+      if (!openExisting()) {
+        create(_maximumEntries, _dataCapacityInBytes);
+      }
+    } catch (IOException ex) {
+      randomAccessFile.close();
+      throw ex;
+    }
+  }
+
+  /**
+   * Map the file if it has a valid header. Only the header is read.
+   */
+  private boolean openExisting() throws IOException {
+    long _length = randomAccessFile.length();
+    if (_length < HEADER_SIZE || _length > Integer.MAX_VALUE) {
+      return false;
+    }
+    buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, _length);
+    if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+      return false;
+    }
+    slotCount = buffer.getInt(HEADER_SLOT_COUNT);
+    dataCapacity = buffer.getInt(HEADER_DATA_CAPACITY);
+    dataStart = HEADER_SIZE + slotCount * SLOT_SIZE;
+    if (slotCount <= 0 || Integer.bitCount(slotCount) != 1 || dataCapacity <= 0 ||
+      (long) dataStart + dataCapacity != _length) {
+      return false;
+    }
+    writePosition = buffer.getLong(HEADER_WRITE_POSITION);
+    validFrom = buffer.getLong(HEADER_VALID_FROM);
+    usedSlots = buffer.getInt(HEADER_USED_SLOTS);
+    return true;
+  }
+
+  private void create(final int _maximumEntries, final long _dataCapacityInBytes) throws IOException {
+    int _slots = 16;
+    while (_slots < _maximumEntries * 2L && _slots < (1 << 28)) {
+      _slots <<= 1;
+    }
+    long _length = HEADER_SIZE + (long) _slots * SLOT_SIZE + _dataCapacityInBytes;
+    if (_dataCapacityInBytes <= RECORD_HEADER_SIZE || _length > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("data capacity out of range: " + _dataCapacityInBytes);
+    }
+    buffer = null;
+    randomAccessFile.setLength(0);
+    randomAccessFile.setLength(_length);
+    buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, _length);
+    slotCount = _slots;
+    dataCapacity = (int) _dataCapacityInBytes;
+    dataStart = HEADER_SIZE + slotCount * SLOT_SIZE;
+    writePosition = validFrom = 0;
+    usedSlots = 0;
+    buffer.putInt(HEADER_SLOT_COUNT, slotCount);
+    buffer.putInt(HEADER_DATA_CAPACITY, dataCapacity);
+    writeHeader();
+    buffer.putInt(4, VERSION);
+    buffer.putInt(0, MAGIC);
+  }
+
+  private void writeHeader() {
+    buffer.putLong(HEADER_WRITE_POSITION, writePosition);
+    buffer.putLong(HEADER_VALID_FROM, validFrom);
+    buffer.putInt(HEADER_USED_SLOTS, usedSlots);
+  }
+
+  @Override
+  public StorageEntry get(final Object key) throws Exception {
+    byte[] _keyBytes = serializer.serialize(key);
+    long _createdOrUpdated;
+    long _valueExpiryTime;
+    byte[] _data;
+    synchronized (this) {
+      if (buffer == null) {
+        return null;
+      }
+      int _slot = findSlot(key.hashCode(), _keyBytes);
+      if (_slot < 0) {
+        return null;
+      }
+      int off = dataOffset(slotPosition(_slot));
+      _createdOrUpdated = buffer.getLong(off + 8);
+      _valueExpiryTime = buffer.getLong(off + 16);
+      _data = read(off + RECORD_HEADER_SIZE + _keyBytes.length, buffer.getInt(off + 4));
+    }
+    return new SimpleStorageEntry(key, serializer.deserialize(_data), _createdOrUpdated, _valueExpiryTime);
+  }
+
+  /**
+   * Append the record and point the slot of the key to it. Entries that do not fit
+   * into the data area are not stored.
+   */
+  @Override
+  public void put(final StorageEntry e) throws Exception {
+    Object key = e.getKey();
+    byte[] _keyBytes = serializer.serialize(key);
+    byte[] _valueBytes;
+    try {
+      _valueBytes = serializer.serialize(e.getValueOrException());
+    } catch (Exception ex) {
+      remove(key);
+      throw ex;
+    }
+    long _size = (long) RECORD_HEADER_SIZE + _keyBytes.length + _valueBytes.length;
+    int _hash = key.hashCode();
+    synchronized (this) {
+      if (buffer == null) {
+        return;
+      }
+      if (_size > dataCapacity) {
+        removeSlot(findSlot(_hash, _keyBytes));
+        return;
+      }
+      long pos = writePosition;
+      int _offset = (int) (pos % dataCapacity);
+      if (_offset + _size > dataCapacity) {
+        pos += dataCapacity - _offset;
+      }
+      int off = dataOffset(pos);
+      buffer.putInt(off, _keyBytes.length);
+      buffer.putInt(off + 4, _valueBytes.length);
+      buffer.putLong(off + 8, e.getCreatedOrUpdated());
+      buffer.putLong(off + 16, e.getValueExpiryTime());
+      write(off + RECORD_HEADER_SIZE, _keyBytes);
+      write(off + RECORD_HEADER_SIZE + _keyBytes.length, _valueBytes);
+      writePosition = pos + _size;
+      writeHeader();
+      int _slot = findSlot(_hash, _keyBytes);
+      if (_slot < 0) {
+        _slot = findFreeSlot(_hash);
+        usedSlots++;
+      }
+      setSlot(_slot, _hash, pos + 1);
+      if (usedSlots > slotCount / 4 * 3) {
+        rebuildSlots();
+      }
+      writeHeader();
+    }
+  }
+
+  private int slotOffset(final int _slot) {
+    return HEADER_SIZE + _slot * SLOT_SIZE;
+  }
+
+  private long slotPosition(final int _slot) {
+    return buffer.getLong(slotOffset(_slot) + 4) - 1;
+  }
+
+  private void setSlot(final int _slot, final int _hash, final long v) {
+    buffer.putInt(slotOffset(_slot), _hash);
+    buffer.putLong(slotOffset(_slot) + 4, v);
+  }
+
+  private int dataOffset(final long pos) {
+    return dataStart + (int) (pos % dataCapacity);
+  }
+
+  private static int spread(final int _hash) {
+    return _hash ^ (_hash >>> 16);
+  }
+
+  /**
+   * The record is valid if it was not removed and not overwritten by later records.
+   * Positions beyond the write position may show up after a crash.
+   */
+  private boolean isValid(final long pos) {
+    return pos >= validFrom && pos >= writePosition - dataCapacity && pos < writePosition;
+  }
+
+  /**
+   * Slot of the key or -1.
+   */
+  private int findSlot(final int _hash, final byte[] _keyBytes) {
+    int _mask = slotCount - 1;
+    int idx = spread(_hash) & _mask;
+    for (int i = 0; i < slotCount; i++, idx = (idx + 1) & _mask) {
+      int off = slotOffset(idx);
+      long v = buffer.getLong(off + 4);
+      if (v == SLOT_EMPTY) {
+        return -1;
+      }
+      if (v != SLOT_DELETED && buffer.getInt(off) == _hash && isValid(v - 1) &&
+        keyEquals(v - 1, _keyBytes)) {
+        return idx;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * A slot that is empty, deleted or points to an invalid record. The table is never
+   * full, since it is rebuilt when three quarters are used.
+   */
+  private int findFreeSlot(final int _hash) {
+    int _mask = slotCount - 1;
+    int idx = spread(_hash) & _mask;
+    for (;;) {
+      long v = buffer.getLong(slotOffset(idx) + 4);
+      if (v == SLOT_EMPTY || v == SLOT_DELETED || !isValid(v - 1)) {
+        return idx;
+      }
+      idx = (idx + 1) & _mask;
+    }
+  }
+
+  private void removeSlot(final int _slot) {
+    if (_slot >= 0) {
+      setSlot(_slot, 0, SLOT_DELETED);
+    }
+  }
+
+  private boolean keyEquals(final long pos, final byte[] _keyBytes) {
+    int off = dataOffset(pos);
+    if (buffer.getInt(off) != _keyBytes.length) {
+      return false;
+    }
+    return Arrays.equals(_keyBytes, read(off + RECORD_HEADER_SIZE, _keyBytes.length));
+  }
+
+  private byte[] read(final int off, final int _length) {
+    byte[] ba = new byte[_length];
+    buffer.position(off);
+    buffer.get(ba);
+    return ba;
+  }
+
+  private void write(final int off, final byte[] ba) {
+    buffer.position(off);
+    buffer.put(ba);
+  }
+
+  /**
+   * Remove deleted and overwritten slots. If more than half of the slots are still in use
+   * drop the oldest half of the data.
+   */
+  private void rebuildSlots() {
+    long _validFrom = Math.max(validFrom, writePosition - dataCapacity);
+    int[] _hashes = new int[slotCount];
+    long[] _positions = new long[slotCount];
+    int _count = collectValidSlots(_hashes, _positions);
+    if (_count > slotCount / 2) {
+      validFrom = writePosition - (writePosition - _validFrom) / 2;
+      _count = collectValidSlots(_hashes, _positions);
+    }
+    for (int i = 0; i < slotCount; i++) {
+      setSlot(i, 0, SLOT_EMPTY);
+    }
+    for (int i = 0; i < _count; i++) {
+      setSlot(findFreeSlot(_hashes[i]), _hashes[i], _positions[i] + 1);
+    }
+    usedSlots = _count;
+  }
+
+  private int collectValidSlots(final int[] _hashes, final long[] _positions) {
+    int _count = 0;
+    for (int i = 0; i < slotCount; i++) {
+      long v = buffer.getLong(slotOffset(i) + 4);
+      if (v != SLOT_EMPTY && v != SLOT_DELETED && isValid(v - 1)) {
+        _hashes[_count] = buffer.getInt(slotOffset(i));
+        _positions[_count++] = v - 1;
+      }
+    }
+    return _count;
+  }
+
+  /**
+   * The space is reclaimed when the ring position passes the record.
+   */
+  @Override
+  public boolean remove(final Object key) throws Exception {
+    byte[] _keyBytes = serializer.serialize(key);
+    synchronized (this) {
+      if (buffer == null) {
+        return false;
+      }
+      int _slot = findSlot(key.hashCode(), _keyBytes);
+      removeSlot(_slot);
+      return _slot >= 0;
+    }
+  }
+
+  @Override
+  public boolean contains(final Object key) throws Exception {
+    byte[] _keyBytes = serializer.serialize(key);
+    synchronized (this) {
+      return buffer != null && findSlot(key.hashCode(), _keyBytes) >= 0;
+    }
+  }
+
+  @Override
+  public synchronized void clear() {
+    if (buffer == null) {
+      return;
+    }
+    for (int i = 0; i < slotCount; i++) {
+      setSlot(i, 0, SLOT_EMPTY);
+    }
+    validFrom = writePosition;
+    usedSlots = 0;
+    writeHeader();
+  }
+
+  @Override
+  public synchronized void flush() {
+    if (buffer != null) {
+      buffer.force();
+    }
+  }
+
+  /**
+   * Flush and close the file. The mapping is released by the garbage collector.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (buffer == null) {
+      return;
+    }
+    buffer.force();
+    buffer = null;
+    fileLock.release();
+    randomAccessFile.close();
+  }
+
+  /**
+   * Visits all entries within the calling thread. The visit context is ignored.
+   */
+  @Override
+  public void visit(final VisitContext ctx, final EntryFilter f, final EntryVisitor v) throws Exception {
+    List<byte[]> _keys = new ArrayList<byte[]>();
+    synchronized (this) {
+      if (buffer == null) {
+        return;
+      }
+      for (int i = 0; i < slotCount; i++) {
+        long pos = slotPosition(i);
+        if (pos >= 0 && isValid(pos)) {
+          int off = dataOffset(pos);
+          _keys.add(read(off + RECORD_HEADER_SIZE, buffer.getInt(off)));
+        }
+      }
+    }
+    for (byte[] _keyBytes : _keys) {
+      Object key = serializer.deserialize(_keyBytes);
+      if (f != null && !f.shouldInclude(key)) {
+        continue;
+      }
+      StorageEntry e = get(key);
+      if (e != null) {
+        v.visit(e);
+      }
+    }
+  }
+
+  /**
+   * Counts the valid slots, so reads the hash table but not the data.
+   */
+  @Override
+  public synchronized int getEntryCount() {
+    if (buffer == null) {
+      return 0;
+    }
+    int _count = 0;
+    for (int i = 0; i < slotCount; i++) {
+      long pos = slotPosition(i);
+      if (pos >= 0 && isValid(pos)) {
+        _count++;
+      }
+    }
+    return _count;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "MappedFileStorage{" +
+      "file=" + file +
+      ", slotCount=" + slotCount +
+      ", dataCapacity=" + dataCapacity +
+      ", usedSlots=" + usedSlots +
+      ", writePosition=" + writePosition +
+      ", validFrom=" + validFrom +
+      '}';
+  }
+
+}
@@ -0,0 +1,527 @@
+package org.cache2k.core.storage;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.core.concurrency.Locks;
+import org.cache2k.core.concurrency.OptimisticLock;
+import org.cache2k.core.storageApi.CacheStorage;
+import org.cache2k.core.storageApi.StorageEntry;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps serialized keys and values outside the Java heap in direct byte buffers. The
+ * buffers are used as a ring: records are appended at the write position and,
+ * when the capacity is exhausted, the oldest records are overwritten. This way the
+ * storage needs no free space management and works well as a victim tier for
+ * entries evicted from the heap.
+ *
+ * <p>The index is an open addressing hash table with the hash code and the position
+ * of the record, also kept in a direct buffer, like in {@link MappedFileStorage}.
+ * No heap memory is used per entry. Keys are compared by their serialized form,
+ * so keys need a deterministic serialization. The buffers are split into chunks, to
+ * allow capacities beyond 2GB and to allocate the off heap memory only when it is
+ * actually used. A record never spans two chunks, so a record needs to fit into one
+ * chunk, otherwise it is not stored.
+ *
+ * <p>The storage is thread safe. The bytes are copied within a short
+ * critical section, serialization happens outside of it. {@link #contains(Object)}
+ * probes the hash codes in the table with an optimistic read and only locks
+ * if a slot with an identical hash code is present.
+ *
+ * @author Jens Wilke
+ */
+public class OffHeapStorage implements CacheStorage {
+
+  /**
+   * Record header: hash code, key length, value length, created or updated time and
+   * value expiry time. A negative key length marks the unused end of a chunk.
+   */
+  static final int HEADER_SIZE = 4 + 4 + 4 + 8 + 8;
+
+  /** Slot: hash code and position of the record plus one */
+  static final int SLOT_SIZE = 4 + 8;
+  static final long SLOT_EMPTY = 0;
+  static final long SLOT_DELETED = -1;
+
+  /** Average record size to derive the number of slots from the capacity */
+  static final int ESTIMATED_RECORD_SIZE = 128;
+
+  static final int MAXIMUM_SLOT_COUNT = 1 << 27;
+
+  public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+  private final ValueSerializer serializer;
+  private final int chunkSize;
+  private final long capacity;
+  private final int slotCount;
+
+  /** Chunks are allocated when written to the first time. Null after close. */
+  private ByteBuffer[] chunks;
+
+  /** Hash table with the record positions, allocated with the first write */
+  private ByteBuffer slots;
+
+  /** Incremented on every modification of the hash table, for the optimistic read */
+  private final OptimisticLock lock = Locks.newOptimistic();
+
+  /** Absolute write position, increasing, the buffer offset is the position modulo capacity */
+  private long writePosition = 0;
+
+  /** Position of the oldest record that is not overwritten yet */
+  private long tailPosition = 0;
+
+  /** Slots not empty, including deleted ones */
+  private int usedSlots;
+
+  private int entryCount;
+
+  private long overwriteCount = 0;
+
+  public OffHeapStorage(final long _capacityInBytes) {
+    this(_capacityInBytes, DEFAULT_CHUNK_SIZE, new JavaValueSerializer());
+  }
+
+  /**
+   * @param _capacityInBytes maximum off heap memory to use for the data, rounded up to
+   *                         a multiple of the chunk size
+   * @param _chunkSize size of a single direct buffer, limits the size of a serialized
+   *                   key and value
+   * @param _serializer serializer for the keys and values
+   */
+  public OffHeapStorage(final long _capacityInBytes, final int _chunkSize,
+                        final ValueSerializer _serializer) {
+    if (_chunkSize <= HEADER_SIZE) {
+      throw new IllegalArgumentException("chunk size too small: " + _chunkSize);
+    }
+    if (_capacityInBytes <= 0) {
+      throw new IllegalArgumentException("capacity must be positive: " + _capacityInBytes);
+    }
+    long _chunkCount = (_capacityInBytes + _chunkSize - 1) / _chunkSize;
+    if (_chunkCount > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("capacity too big for chunk size");
+    }
+    serializer = _serializer;
+    chunkSize = _chunkSize;
+    chunks = new ByteBuffer[(int) _chunkCount];
+    capacity = _chunkCount * _chunkSize;
+    int _slots = 16;
+    while (_slots < capacity / ESTIMATED_RECORD_SIZE * 2 && _slots < MAXIMUM_SLOT_COUNT) {
+      _slots <<= 1;
+    }
+    slotCount = _slots;
+  }
+
+  @Override
+  public StorageEntry get(final Object key) throws Exception {
+    byte[] _keyBytes = serializer.serialize(key);
+    long _createdOrUpdated;
+    long _valueExpiryTime;
+    byte[] _data;
+    synchronized (this) {
+      int _slot = findSlot(key.hashCode(), _keyBytes);
+      if (_slot < 0) {
+        return null;
+      }
+      long pos = slotPosition(_slot);
+      ByteBuffer buf = chunk(pos);
+      int _offset = offset(pos);
+      _createdOrUpdated = buf.getLong(_offset + 12);
+      _valueExpiryTime = buf.getLong(_offset + 20);
+      _data = new byte[buf.getInt(_offset + 8)];
+      buf.position(_offset + HEADER_SIZE + _keyBytes.length);
+      buf.get(_data);
+    }
+    return new SimpleStorageEntry(key, serializer.deserialize(_data), _createdOrUpdated, _valueExpiryTime);
+  }
+
+  /**
+   * Append the entry. Entries that do not fit into a chunk are not stored.
+   */
+  @Override
+  public void put(final StorageEntry e) throws Exception {
+    Object key = e.getKey();
+    byte[] _keyBytes = serializer.serialize(key);
+    byte[] _data;
+    try {
+      _data = serializer.serialize(e.getValueOrException());
+    } catch (Exception ex) {
+      remove(key);
+      throw ex;
+    }
+    long _size = (long) HEADER_SIZE + _keyBytes.length + _data.length;
+    int _hash = key.hashCode();
+    synchronized (this) {
+      if (chunks == null) {
+        return;
+      }
+      long _stamp = lock.writeLock();
+      try {
+        if (slots == null) {
+          slots = ByteBuffer.allocateDirect(slotCount * SLOT_SIZE);
+        }
+        if (_size > chunkSize) {
+          removeSlot(findSlot(_hash, _keyBytes));
+          return;
+        }
+        long pos = writePosition;
+        int _offset = offset(pos);
+        if (_offset + _size > chunkSize) {
+          pos += chunkSize - _offset;
+        }
+        long _end = pos + _size;
+        while (tailPosition < _end - capacity && tailPosition < writePosition) {
+          dropOldest();
+        }
+        if (pos != writePosition && _offset + HEADER_SIZE <= chunkSize) {
+          chunk(writePosition).putInt(_offset + 4, -1);
+        }
+        _offset = offset(pos);
+        ByteBuffer buf = chunk(pos);
+        buf.putInt(_offset, _hash);
+        buf.putInt(_offset + 4, _keyBytes.length);
+        buf.putInt(_offset + 8, _data.length);
+        buf.putLong(_offset + 12, e.getCreatedOrUpdated());
+        buf.putLong(_offset + 20, e.getValueExpiryTime());
+        buf.position(_offset + HEADER_SIZE);
+        buf.put(_keyBytes);
+        buf.put(_data);
+        writePosition = _end;
+        int _slot = findSlot(_hash, _keyBytes);
+        if (_slot < 0) {
+          _slot = findFreeSlot(_hash);
+          if (slotValue(_slot) == SLOT_EMPTY) {
+            usedSlots++;
+          }
+          entryCount++;
+        }
+        setSlot(_slot, _hash, pos + 1);
+        if (usedSlots > slotCount / 4 * 3) {
+          rebuildSlots();
+        }
+      } finally {
+        lock.unlockWrite(_stamp);
+      }
+    }
+  }
+
+  /**
+   * Advance the tail over the oldest record. If the record is still referenced by the
+   * hash table, the entry is dropped.
+   */
+  private void dropOldest() {
+    long pos = tailPosition;
+    int _offset = offset(pos);
+    ByteBuffer buf = chunk(pos);
+    if (_offset + HEADER_SIZE > chunkSize || buf.getInt(_offset + 4) < 0) {
+      tailPosition = pos + chunkSize - _offset;
+      return;
+    }
+    int _slot = findSlotOfPosition(buf.getInt(_offset), pos);
+    if (_slot >= 0) {
+      removeSlot(_slot);
+      overwriteCount++;
+    }
+    tailPosition = pos + HEADER_SIZE + buf.getInt(_offset + 4) + buf.getInt(_offset + 8);
+  }
+
+  /**
+   * Remove deleted slots. If more than half of the slots are still in use,
+   * drop the oldest entries.
+   */
+  private void rebuildSlots() {
+    while (entryCount > slotCount / 2 && tailPosition < writePosition) {
+      dropOldest();
+    }
+    int[] _hashes = new int[entryCount];
+    long[] _values = new long[entryCount];
+    int _count = 0;
+    for (int i = 0; i < slotCount; i++) {
+      long v = slotValue(i);
+      if (v != SLOT_EMPTY && v != SLOT_DELETED) {
+        _hashes[_count] = slots.getInt(i * SLOT_SIZE);
+        _values[_count++] = v;
+      }
+      setSlot(i, 0, SLOT_EMPTY);
+    }
+    for (int i = 0; i < _count; i++) {
+      setSlot(findFreeSlot(_hashes[i]), _hashes[i], _values[i]);
+    }
+    usedSlots = _count;
+  }
+
+  private ByteBuffer chunk(final long pos) {
+    int idx = (int) ((pos % capacity) / chunkSize);
+    ByteBuffer buf = chunks[idx];
+    if (buf == null) {
+      buf = chunks[idx] = ByteBuffer.allocateDirect(chunkSize);
+    }
+    return buf;
+  }
+
+  private int offset(final long pos) {
+    return (int) (pos % chunkSize);
+  }
+
+  private long slotValue(final int _slot) {
+    return slots.getLong(_slot * SLOT_SIZE + 4);
+  }
+
+  private long slotPosition(final int _slot) {
+    return slotValue(_slot) - 1;
+  }
+
+  private void setSlot(final int _slot, final int _hash, final long v) {
+    slots.putInt(_slot * SLOT_SIZE, _hash);
+    slots.putLong(_slot * SLOT_SIZE + 4, v);
+  }
+
+  private void removeSlot(final int _slot) {
+    if (_slot >= 0) {
+      setSlot(_slot, 0, SLOT_DELETED);
+      entryCount--;
+    }
+  }
+
+  private static int spread(final int _hash) {
+    return _hash ^ (_hash >>> 16);
+  }
+
+  /**
+   * Slot of the key or -1.
+   */
+  private int findSlot(final int _hash, final byte[] _keyBytes) {
+    if (slots == null) {
+      return -1;
+    }
+    int _mask = slotCount - 1;
+    int idx = spread(_hash) & _mask;
+    for (int i = 0; i < slotCount; i++, idx = (idx + 1) & _mask) {
+      long v = slotValue(idx);
+      if (v == SLOT_EMPTY) {
+        return -1;
+      }
+      if (v != SLOT_DELETED && slots.getInt(idx * SLOT_SIZE) == _hash && keyEquals(v - 1, _keyBytes)) {
+        return idx;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Slot pointing to the record at the position or -1.
+   */
+  private int findSlotOfPosition(final int _hash, final long pos) {
+    int _mask = slotCount - 1;
+    int idx = spread(_hash) & _mask;
+    for (int i = 0; i < slotCount; i++, idx = (idx + 1) & _mask) {
+      long v = slotValue(idx);
+      if (v == SLOT_EMPTY) {
+        return -1;
+      }
+      if (v == pos + 1) {
+        return idx;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * An empty or deleted slot. The table is never full, since it is rebuilt when
+   * three quarters are used.
+   */
+  private int findFreeSlot(final int _hash) {
+    int _mask = slotCount - 1;
+    int idx = spread(_hash) & _mask;
+    for (;;) {
+      long v = slotValue(idx);
+      if (v == SLOT_EMPTY || v == SLOT_DELETED) {
+        return idx;
+      }
+      idx = (idx + 1) & _mask;
+    }
+  }
+
+  private boolean keyEquals(final long pos, final byte[] _keyBytes) {
+    ByteBuffer buf = chunk(pos);
+    int _offset = offset(pos);
+    if (buf.getInt(_offset + 4) != _keyBytes.length) {
+      return false;
+    }
+    for (int i = 0; i < _keyBytes.length; i++) {
+      if (buf.get(_offset + HEADER_SIZE + i) != _keyBytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Probe the hash table without locking.
+   *
+   * @return true, if a slot with the hash code is present or the read was not consistent
+   */
+  private boolean mightContain(final int _hash) {
+    long _stamp = lock.tryOptimisticRead();
+    ByteBuffer _slots = slots;
+    if (_slots == null) {
+      return !lock.validate(_stamp);
+    }
+    int _mask = slotCount - 1;
+    int idx = spread(_hash) & _mask;
+    for (int i = 0; i < slotCount; i++, idx = (idx + 1) & _mask) {
+      long v = _slots.getLong(idx * SLOT_SIZE + 4);
+      if (v == SLOT_EMPTY) {
+        break;
+      }
+      if (v != SLOT_DELETED && _slots.getInt(idx * SLOT_SIZE) == _hash) {
+        return true;
+      }
+    }
+    return !lock.validate(_stamp);
+  }
+
+  /**
+   * The space is reclaimed when the ring position passes the record.
+   */
+  @Override
+  public boolean remove(final Object key) throws Exception {
+    byte[] _keyBytes = serializer.serialize(key);
+    synchronized (this) {
+      int _slot = findSlot(key.hashCode(), _keyBytes);
+      if (_slot < 0) {
+        return false;
+      }
+      long _stamp = lock.writeLock();
+      try {
+        removeSlot(_slot);
+      } finally {
+        lock.unlockWrite(_stamp);
+      }
+      return true;
+    }
+  }
+
+  @Override
+  public boolean contains(final Object key) throws Exception {
+    int _hash = key.hashCode();
+    if (!mightContain(_hash)) {
+      return false;
+    }
+    byte[] _keyBytes = serializer.serialize(key);
+    synchronized (this) {
+      return findSlot(_hash, _keyBytes) >= 0;
+    }
+  }
+
+  @Override
+  public synchronized void clear() {
+    long _stamp = lock.writeLock();
+    try {
+      if (slots != null) {
+        for (int i = 0; i < slotCount; i++) {
+          setSlot(i, 0, SLOT_EMPTY);
+        }
+      }
+      usedSlots = entryCount = 0;
+      writePosition = tailPosition = 0;
+    } finally {
+      lock.unlockWrite(_stamp);
+    }
+  }
+
+  /**
+   * Drop the references to the buffers, the memory is freed by the garbage collector.
+   */
+  @Override
+  public synchronized void close() {
+    clear();
+    long _stamp = lock.writeLock();
+    chunks = null;
+    slots = null;
+    lock.unlockWrite(_stamp);
+  }
+
+  /**
+   * Visits all entries within the calling thread. The visit context is ignored.
+   */
+  @Override
+  public void visit(final VisitContext ctx, final EntryFilter f, final EntryVisitor v) throws Exception {
+    List<byte[]> _keys = new ArrayList<byte[]>();
+    synchronized (this) {
+      if (slots == null) {
+        return;
+      }
+      for (int i = 0; i < slotCount; i++) {
+        long pos = slotPosition(i);
+        if (pos >= 0) {
+          ByteBuffer buf = chunk(pos);
+          int _offset = offset(pos);
+          byte[] ba = new byte[buf.getInt(_offset + 4)];
+          buf.position(_offset + HEADER_SIZE);
+          buf.get(ba);
+          _keys.add(ba);
+        }
+      }
+    }
+    for (byte[] _keyBytes : _keys) {
+      Object key = serializer.deserialize(_keyBytes);
+      if (f != null && !f.shouldInclude(key)) {
+        continue;
+      }
+      StorageEntry e = get(key);
+      if (e != null) {
+        v.visit(e);
+      }
+    }
+  }
+
+  @Override
+  public synchronized int getEntryCount() {
+    return entryCount;
+  }
+
+  public long getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Number of entries which were dropped, because their space was needed for new entries.
+   */
+  public synchronized long getOverwriteCount() {
+    return overwriteCount;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "OffHeapStorage{" +
+      "capacity=" + capacity +
+      ", chunkSize=" + chunkSize +
+      ", slotCount=" + slotCount +
+      ", entryCount=" + entryCount +
+      ", writePosition=" + writePosition +
+      ", overwriteCount=" + overwriteCount +
+      '}';
+  }
+
+}
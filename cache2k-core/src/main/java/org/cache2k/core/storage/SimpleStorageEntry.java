@@ -0,0 +1,82 @@
+package org.cache2k.core.storage;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.core.storageApi.StorageEntry;
+
+/**
+ * Immutable storage entry used for transferring data from and to a storage.
+ *
+ * @author Jens Wilke
+ */
+public class SimpleStorageEntry implements StorageEntry {
+
+  private final Object key;
+  private final Object valueOrException;
+  private final long createdOrUpdated;
+  private final long valueExpiryTime;
+
+  public SimpleStorageEntry(final Object _key, final Object _valueOrException,
+                            final long _createdOrUpdated, final long _valueExpiryTime) {
+    key = _key;
+    valueOrException = _valueOrException;
+    createdOrUpdated = _createdOrUpdated;
+    valueExpiryTime = _valueExpiryTime;
+  }
+
+  @Override
+  public Object getKey() {
+    return key;
+  }
+
+  @Override
+  public Object getValueOrException() {
+    return valueOrException;
+  }
+
+  @Override
+  public long getCreatedOrUpdated() {
+    return createdOrUpdated;
+  }
+
+  @Override
+  public long getValueExpiryTime() {
+    return valueExpiryTime;
+  }
+
+  /**
+   * Not supported, always 0.
+   */
+  @Override
+  public long getEntryExpiryTime() {
+    return 0;
+  }
+
+  @Override
+  public String toString() {
+    return "SimpleStorageEntry{" +
+      "key=" + key +
+      ", createdOrUpdated=" + createdOrUpdated +
+      ", valueExpiryTime=" + valueExpiryTime +
+      '}';
+  }
+
+}
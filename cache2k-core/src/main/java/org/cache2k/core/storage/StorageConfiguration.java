@@ -0,0 +1,169 @@
+package org.cache2k.core.storage;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.CacheManager;
+import org.cache2k.configuration.ConfigurationSectionBuilder;
+import org.cache2k.configuration.CustomizationReferenceSupplier;
+import org.cache2k.configuration.CustomizationSupplier;
+import org.cache2k.configuration.SingletonConfigurationSection;
+import org.cache2k.core.storageApi.CacheStorage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Configuration section to add a storage tier to a cache. Entries evicted from
+ * the heap are written to the storage and moved back to the heap on the next access.
+ * The storage is consulted for operations on a key, iterations cover only the
+ * entries in the heap.
+ *
+ * <pre>{@code
+ * Cache2kBuilder.of(Integer.class, String.class)
+ *   .entryCapacity(10000)
+ *   .with(new StorageConfiguration.Builder().offHeap(512 * 1024 * 1024))
+ *   .build();
+ * }</pre>
+ *
+ * @author Jens Wilke
+ */
+public class StorageConfiguration implements SingletonConfigurationSection {
+
+  private CustomizationSupplier<? extends CacheStorage> storage;
+
+  public CustomizationSupplier<? extends CacheStorage> getStorage() {
+    return storage;
+  }
+
+  /**
+   * @see Builder#storage(CustomizationSupplier)
+   */
+  public void setStorage(final CustomizationSupplier<? extends CacheStorage> v) {
+    storage = v;
+  }
+
+  public static class Builder implements ConfigurationSectionBuilder<StorageConfiguration> {
+
+    private StorageConfiguration config = new StorageConfiguration();
+
+    /**
+     * Supplier for the storage. A storage instance may only be used by one cache.
+     */
+    public Builder storage(CustomizationSupplier<? extends CacheStorage> v) {
+      config.setStorage(v);
+      return this;
+    }
+
+    /**
+     * Use the storage instance. A storage instance may only be used by one cache.
+     */
+    public Builder storage(CacheStorage v) {
+      config.setStorage(new CustomizationReferenceSupplier<CacheStorage>(v));
+      return this;
+    }
+
+    /**
+     * Keep evicted entries in an {@link OffHeapStorage} with the given capacity,
+     * values are serialized with Java serialization.
+     */
+    public Builder offHeap(final long _capacityInBytes) {
+      config.setStorage(new OffHeapStorageSupplier(_capacityInBytes));
+      return this;
+    }
+
+    /**
+     * Keep evicted entries in a {@link MappedFileStorage}. When the cache is closed, the
+     * heap contents are written to the file as well and are available again after
+     * the next start. The file must only be used by one cache.
+     */
+    public Builder file(final File _file, final long _capacityInBytes) {
+      config.setStorage(new MappedFileStorageSupplier(_file, _capacityInBytes));
+      return this;
+    }
+
+    @Override
+    public StorageConfiguration buildConfigurationSection() {
+      return config;
+    }
+
+  }
+
+  /**
+   * Creates a new storage for each cache.
+   */
+  static class OffHeapStorageSupplier implements CustomizationSupplier<CacheStorage>, Serializable {
+
+    private final long capacity;
+
+    OffHeapStorageSupplier(final long _capacity) {
+      capacity = _capacity;
+    }
+
+    @Override
+    public CacheStorage supply(final CacheManager manager) {
+      return new OffHeapStorage(capacity);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      return o instanceof OffHeapStorageSupplier && ((OffHeapStorageSupplier) o).capacity == capacity;
+    }
+
+    @Override
+    public int hashCode() {
+      return (int) (capacity ^ (capacity >>> 32));
+    }
+
+  }
+
+  static class MappedFileStorageSupplier implements CustomizationSupplier<CacheStorage>, Serializable {
+
+    private final File file;
+    private final long capacity;
+
+    MappedFileStorageSupplier(final File _file, final long _capacity) {
+      file = _file;
+      capacity = _capacity;
+    }
+
+    @Override
+    public CacheStorage supply(final CacheManager manager) throws IOException {
+      return new MappedFileStorage(file, capacity);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (!(o instanceof MappedFileStorageSupplier)) {
+        return false;
+      }
+      MappedFileStorageSupplier other = (MappedFileStorageSupplier) o;
+      return file.equals(other.file) && capacity == other.capacity;
+    }
+
+    @Override
+    public int hashCode() {
+      return file.hashCode() * 31 + (int) (capacity ^ (capacity >>> 32));
+    }
+
+  }
+
+}
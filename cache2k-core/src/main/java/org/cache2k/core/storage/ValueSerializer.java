@@ -0,0 +1,36 @@
+package org.cache2k.core.storage;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Converts cache values to bytes and back, for storages that keep the
+ * data outside the Java heap.
+ *
+ * @author Jens Wilke
+ * @see OffHeapStorage
+ */
+public interface ValueSerializer {
+
+  byte[] serialize(Object _value) throws Exception;
+
+  Object deserialize(byte[] _data) throws Exception;
+
+}
@@ -0,0 +1,37 @@
+package org.cache2k.core.storageApi;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * A storage that keeps its contents after it is closed. When the cache is
+ * closed, the entries still held in the heap are written to the storage as well,
+ * so the cache starts with the complete contents on the next use.
+ *
+ * @author Jens Wilke
+ */
+public interface PersistentStorage extends CacheStorage {
+
+  /**
+   * Make all written entries durable.
+   */
+  void flush() throws Exception;
+
+}
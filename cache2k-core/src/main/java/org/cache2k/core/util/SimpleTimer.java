@@ -76,9 +76,9 @@ import java.util.concurrent.locks.ReentrantLock;
  * {@code Timer}.
  *
  * <p>Implementation note: This class scales to large numbers of concurrently
- * scheduled tasks (thousands should present no problem).  Internally,
- * it uses a binary heap to represent its task queue, so the cost to schedule
- * a task is O(log n), where n is the number of concurrently scheduled tasks.
+ * scheduled tasks.  Internally, it uses a hierarchical timer wheel with a
+ * resolution of one millisecond, so the cost to schedule and cancel a task
+ * is O(1). Cancelled tasks are removed when their slot is reached.
  *
  * <p>Implementation note: All constructors start a timer thread.
  *
@@ -100,7 +100,7 @@ public class SimpleTimer {
    * and the timer thread consumes, executing timer tasks as appropriate,
    * and removing them from the queue when they're obsolete.
    */
-  private final TaskQueue queue = new TaskQueue();
+  private final TimerWheel queue;
 
   /**
    * The timer thread.
@@ -139,6 +139,7 @@ public class SimpleTimer {
    */
   public SimpleTimer(InternalClock c, String name, boolean isDaemon) {
     this.clock = c;
+    queue = new TimerWheel(c.millis());
     thread = new TimerThread(clock, lock, condition, queue);
     if (!c.isJobSchedulable()) {
       thread.setName(name);
@@ -180,11 +181,12 @@ public class SimpleTimer {
     try {
       if (!thread.newTasksMayBeScheduled)
         throw new IllegalStateException("Timer already cancelled.");
+      long _nextTime = queue.nextTime();
       queue.add(task);
-      if (queue.getMin() == task) {
+      if (queue.nextTime() < _nextTime) {
         condition.signal();
         if (reachedJob != null) {
-          clock.schedule(reachedJob, time);
+          clock.schedule(reachedJob, queue.nextTime());
         }
       }
     } finally {
@@ -230,9 +232,8 @@ public class SimpleTimer {
    * <p>Most programs will have no need to call this method.
    * It is designed for use by the rare application that cancels a large
    * number of tasks.  Calling this method trades time for space: the
-   * runtime of the method may be proportional to n + c log n, where n
-   * is the number of tasks in the queue and c is the number of cancelled
-   * tasks.
+   * runtime of the method is proportional to the number of tasks in
+   * the queue.
    *
    * <p>Note that it is permissible to call this method from within a
    * a task scheduled on this timer.
@@ -243,17 +244,7 @@ public class SimpleTimer {
   public int purge() {
     lock.lock();
     try {
-      int count = 0;
-      for (int i = queue.size(); i > 0; i--) {
-        if (queue.get(i).isCancelled()) {
-          queue.quickRemove(i);
-          count++;
-        }
-      }
-      if (count != 0) {
-        queue.heapify();
-      }
-      return count;
+      return queue.purge();
     } finally {
       lock.unlock();
     }
@@ -263,25 +254,21 @@ public class SimpleTimer {
     while (true) {
       SimpleTimerTask task;
       boolean fired = false;
+      long _nextTime = 0;
       lock.lock();
       try {
         while (true) {
           if (queue.isEmpty()) {
             return;
           }
-          task = queue.getMin();
-          if (task.isCancelled()) {
-            queue.removeMin();
-            continue;
-          }
-          long executionTime = task.executionTime;
-          boolean reached = executionTime <= currentTime;
-          if (reached) {
-            queue.removeMin();
+          task = queue.pollDue(currentTime);
+          if (task != null) {
             if (!task.execute()) {
               continue;
             }
             fired = true;
+          } else {
+            _nextTime = queue.nextTime();
           }
           break;
         }
@@ -291,7 +278,7 @@ public class SimpleTimer {
       if (fired) {
         task.run();
       } else {
-        clock.schedule(reachedJob, task.scheduledExecutionTime());
+        clock.schedule(reachedJob, _nextTime);
         break;
       }
     }
@@ -319,14 +306,14 @@ class TimerThread extends Thread {
    * Otherwise, the Timer would never be garbage-collected and this
    * thread would never go away.
    */
-  private TaskQueue queue;
+  private TimerWheel queue;
 
   private final InternalClock clock;
 
   private final Lock lock;
   private final Condition condition;
 
-  TimerThread(InternalClock clock, Lock l, Condition c, TaskQueue queue) {
+  TimerThread(InternalClock clock, Lock l, Condition c, TimerWheel queue) {
     lock = l;
     condition = c;
     this.clock = clock;
@@ -365,23 +352,16 @@ class TimerThread extends Thread {
             if (!newTasksMayBeScheduled) {
               return;
             }
-            SimpleTimerTask task = queue.getMin();
-            if (task.isCancelled()) {
-              queue.removeMin();
-              continue;
-            }
             long currentTime = clock.millis();
-            long executionTime = task.executionTime;
-            boolean fired = executionTime <= currentTime;
-            if (fired) {
-              queue.removeMin();
+            SimpleTimerTask task = queue.pollDue(currentTime);
+            if (task != null) {
               if (!task.execute()) {
                 continue;
               }
               firedTask = task;
               break;
             }
-            condition.await(executionTime - currentTime, TimeUnit.MILLISECONDS);
+            condition.await(queue.nextTime() - currentTime, TimeUnit.MILLISECONDS);
           } catch (InterruptedException ignore) {
           }
         }
@@ -394,150 +374,245 @@ class TimerThread extends Thread {
 }
 
 /**
- * This class represents a timer task queue: a priority queue of TimerTasks,
- * ordered on nextExecutionTime.  Each Timer object has one of these, which it
- * shares with its TimerThread.  Internally this class uses a heap, which
- * offers log(n) performance for the add, removeMin and rescheduleMin
- * operations, and constant time performance for the getMin operation.
+ * Hierarchical timer wheel with a resolution of one millisecond. Each level has
+ * 64 slots, a slot on level {@code n} covers {@code 64^n} milliseconds. A task is
+ * placed on the level of the highest bit in which its execution time differs
+ * from the current wheel time. When the wheel time reaches a slot on a higher
+ * level, the tasks of the slot are moved to the lower levels. Occupied slots are
+ * tracked in a bit map per level, so the next slot is found without scanning.
+ *
+ * <p>Tasks in a slot are kept in a single linked list. Adding a task is O(1),
+ * cancelled tasks are dropped when their slot is reached or by {@link #purge()}.
+ * Tasks not after the wheel time are kept in a separate list. If the clock goes
+ * backwards, the wheel is rebuilt.
  */
-class TaskQueue {
-  /**
-   * Priority queue represented as a balanced binary heap: the two children
-   * of queue[n] are queue[2*n] and queue[2*n+1].  The priority queue is
-   * ordered on the nextExecutionTime field: The TimerTask with the lowest
-   * nextExecutionTime is in queue[1] (assuming the queue is nonempty).  For
-   * each node n in the heap, and each descendant of n, d,
-   * n.nextExecutionTime <= d.nextExecutionTime.
-   */
-  private SimpleTimerTask[] queue = new SimpleTimerTask[128];
+static class TimerWheel {
+
+  static final int BITS = 6;
+  static final int SLOTS = 1 << BITS;
+  static final long MASK = SLOTS - 1;
+  /** Enough levels to cover all positive long values */
+  static final int LEVELS = (63 + BITS - 1) / BITS;
+
+  private final SimpleTimerTask[] slots = new SimpleTimerTask[LEVELS * SLOTS];
+  private final long[] occupied = new long[LEVELS];
+
+  /** Tasks with an execution time not after the wheel time */
+  private SimpleTimerTask due;
+
+  /** Earliest execution time in the due list */
+  private long dueTime = Long.MAX_VALUE;
 
   /**
-   * The number of tasks in the priority queue.  (The tasks are stored in
-   * queue[1] up to queue[size]).
+   * Time of the wheel. All tasks in the slots have an execution time after it.
    */
+  private long now;
+
+  /** Number of tasks in the wheel, including cancelled tasks. */
   private int size = 0;
 
-  /**
-   * Returns the number of tasks currently on the queue.
-   */
+  TimerWheel(long _startTime) {
+    now = _startTime;
+  }
+
   int size() {
     return size;
   }
 
-  /**
-   * Adds a new task to the priority queue.
-   */
-  void add(SimpleTimerTask task) {
-    if (size + 1 == queue.length)
-      queue = Arrays.copyOf(queue, 2*queue.length);
-
-    queue[++size] = task;
-    fixUp(size);
+  boolean isEmpty() {
+    return size == 0;
   }
 
-  /**
-   * Return the "head task" of the priority queue.  (The head task is an
-   * task with the lowest nextExecutionTime.)
-   */
-  SimpleTimerTask getMin() {
-    return queue[1];
+  void add(SimpleTimerTask task) {
+    insert(task);
+    size++;
   }
 
-  /**
-   * Return the ith task in the priority queue, where i ranges from 1 (the
-   * head task, which is returned by getMin) to the number of tasks on the
-   * queue, inclusive.
-   */
-  SimpleTimerTask get(int i) {
-    return queue[i];
+  private void insert(SimpleTimerTask task) {
+    long time = task.executionTime;
+    if (time <= now) {
+      task.next = due;
+      due = task;
+      dueTime = Math.min(dueTime, time);
+      return;
+    }
+    int _level = (63 - Long.numberOfLeadingZeros(time ^ now)) / BITS;
+    int _slot = (int) ((time >>> (_level * BITS)) & MASK);
+    int idx = _level * SLOTS + _slot;
+    task.next = slots[idx];
+    slots[idx] = task;
+    occupied[_level] |= 1L << _slot;
   }
 
   /**
-   * Remove the head task from the priority queue.
+   * Time of the next task or {@code Long.MAX_VALUE} if empty. On the lowest
+   * level this is the execution time of the slot tasks, on the higher levels
+   * this is the time the tasks need to be moved to a lower level.
    */
-  void removeMin() {
-    queue[1] = queue[size];
-    queue[size--] = null;
-    fixDown(1);
+  long nextTime() {
+    if (due != null) {
+      return dueTime;
+    }
+    for (int _level = 0; _level < LEVELS; _level++) {
+      long _bits = occupied[_level];
+      if (_bits != 0) {
+        return slotStartTime(_level, Long.numberOfTrailingZeros(_bits));
+      }
+    }
+    return Long.MAX_VALUE;
   }
 
-  /**
-   * Removes the ith element from queue without regard for maintaining
-   * the heap invariant.  Recall that queue is one-based, so
-   * 1 <= i <= size.
-   */
-  void quickRemove(int i) {
-
-    queue[i] = queue[size];
-    queue[size--] = null;
+  private long slotStartTime(int _level, int _slot) {
+    int _shift = _level * BITS;
+    int _upperShift = _shift + BITS;
+    long _upper = _upperShift >= 63 ? 0 : (now >>> _upperShift) << _upperShift;
+    return _upper | ((long) _slot << _shift);
   }
 
   /**
-   * Returns true if the priority queue contains no elements.
+   * Advance the wheel up to the current time and remove the next task that
+   * is due. Cancelled tasks are dropped.
+   *
+   * @return a task to be executed or {@code null}, if no task is due
    */
-  boolean isEmpty() {
-    return size==0;
+  SimpleTimerTask pollDue(long currentTime) {
+    if (currentTime < now) {
+      rebuild(currentTime);
+    }
+    while (true) {
+      if (due != null) {
+        SimpleTimerTask task = due;
+        due = task.next;
+        task.next = null;
+        if (due == null) {
+          dueTime = Long.MAX_VALUE;
+        }
+        size--;
+        if (task.isCancelled()) {
+          continue;
+        }
+        return task;
+      }
+      int _level = 0;
+      while (_level < LEVELS && occupied[_level] == 0) {
+        _level++;
+      }
+      if (_level == LEVELS) {
+        return null;
+      }
+      int _slot = Long.numberOfTrailingZeros(occupied[_level]);
+      long _startTime = slotStartTime(_level, _slot);
+      if (_startTime > currentTime) {
+        return null;
+      }
+      now = _startTime;
+      int idx = _level * SLOTS + _slot;
+      SimpleTimerTask task = slots[idx];
+      slots[idx] = null;
+      occupied[_level] &= ~(1L << _slot);
+      while (task != null) {
+        SimpleTimerTask _next = task.next;
+        task.next = null;
+        if (task.isCancelled()) {
+          size--;
+        } else {
+          insert(task);
+        }
+        task = _next;
+      }
+    }
   }
 
   /**
-   * Removes all elements from the priority queue.
+   * The clock went backwards. Insert all tasks again relative to the new time.
    */
-  void clear() {
-    for (int i=1; i<=size; i++)
-      queue[i] = null;
-
-    size = 0;
+  private void rebuild(long _time) {
+    SimpleTimerTask _all = due;
+    for (int idx = 0; idx < slots.length; idx++) {
+      SimpleTimerTask task = slots[idx];
+      while (task != null) {
+        SimpleTimerTask _next = task.next;
+        task.next = _all;
+        _all = task;
+        task = _next;
+      }
+    }
+    Arrays.fill(slots, null);
+    Arrays.fill(occupied, 0);
+    due = null;
+    dueTime = Long.MAX_VALUE;
+    now = _time;
+    while (_all != null) {
+      SimpleTimerTask _next = _all.next;
+      insert(_all);
+      _all = _next;
+    }
   }
 
   /**
-   * Establishes the heap invariant (described above) assuming the heap
-   * satisfies the invariant except possibly for the leaf-node indexed by k
-   * (which may have a nextExecutionTime less than its parent's).
+   * Remove all cancelled tasks.
    *
-   * This method functions by "promoting" queue[k] up the hierarchy
-   * (by swapping it with its parent) repeatedly until queue[k]'s
-   * nextExecutionTime is greater than or equal to that of its parent.
+   * @return number of removed tasks
    */
-  private void fixUp(int k) {
-    while (k > 1) {
-      int j = k >> 1;
-      if (queue[j].executionTime <= queue[k].executionTime)
-        break;
-      SimpleTimerTask tmp = queue[j];  queue[j] = queue[k]; queue[k] = tmp;
-      k = j;
+  int purge() {
+    int _sizeBefore = size;
+    for (int idx = 0; idx < slots.length; idx++) {
+      slots[idx] = removeCancelled(slots[idx]);
+      if (slots[idx] == null) {
+        occupied[idx / SLOTS] &= ~(1L << (idx % SLOTS));
+      }
+    }
+    due = removeCancelled(due);
+    if (due == null) {
+      dueTime = Long.MAX_VALUE;
     }
+    return _sizeBefore - size;
   }
 
   /**
-   * Establishes the heap invariant (described above) in the subtree
-   * rooted at k, which is assumed to satisfy the heap invariant except
-   * possibly for node k itself (which may have a nextExecutionTime greater
-   * than its children's).
+   * Unlink cancelled tasks from the list.
    *
-   * This method functions by "demoting" queue[k] down the hierarchy
-   * (by swapping it with its smaller child) repeatedly until queue[k]'s
-   * nextExecutionTime is less than or equal to those of its children.
+   * @return new head of the list
    */
-  private void fixDown(int k) {
-    int j;
-    while ((j = k << 1) <= size && j > 0) {
-      if (j < size &&
-        queue[j].executionTime > queue[j+1].executionTime)
-        j++; // j indexes smallest kid
-      if (queue[k].executionTime <= queue[j].executionTime)
-        break;
-      SimpleTimerTask tmp = queue[j];  queue[j] = queue[k]; queue[k] = tmp;
-      k = j;
+  private SimpleTimerTask removeCancelled(SimpleTimerTask _head) {
+    SimpleTimerTask _previous = null;
+    SimpleTimerTask task = _head;
+    while (task != null) {
+      SimpleTimerTask _next = task.next;
+      if (task.isCancelled()) {
+        task.next = null;
+        if (_previous == null) {
+          _head = _next;
+        } else {
+          _previous.next = _next;
+        }
+        size--;
+      } else {
+        _previous = task;
+      }
+      task = _next;
     }
+    return _head;
   }
 
-  /**
-   * Establishes the heap invariant (described above) in the entire tree,
-   * assuming nothing about the order of the elements prior to the call.
-   */
-  void heapify() {
-    for (int i = size/2; i >= 1; i--)
-      fixDown(i);
+  void clear() {
+    for (SimpleTimerTask task : slots) {
+      unlink(task);
+    }
+    unlink(due);
+    Arrays.fill(slots, null);
+    Arrays.fill(occupied, 0);
+    due = null;
+    dueTime = Long.MAX_VALUE;
+    size = 0;
+  }
+
+  private static void unlink(SimpleTimerTask task) {
+    while (task != null) {
+      SimpleTimerTask _next = task.next;
+      task.next = null;
+      task = _next;
+    }
   }
 
 }
@@ -67,6 +67,11 @@ public abstract class SimpleTimerTask implements Runnable {
    */
   volatile long executionTime;
 
+  /**
+   * Next task in the same slot of the timer wheel, guarded by the timer lock.
+   */
+  SimpleTimerTask next;
+
   /**
    * Creates a new timer task.
    */
@@ -24,6 +24,9 @@ import org.cache2k.CacheException;
 import org.cache2k.CacheManager;
 import org.cache2k.configuration.Cache2kConfiguration;
 import org.cache2k.configuration.CustomizationSupplierByClassName;
+import org.cache2k.core.EvictionPolicyConfiguration;
+import org.cache2k.core.WriteBehindConfiguration;
+import org.cache2k.core.event.AsyncDispatcherConfiguration;
 import org.cache2k.core.spi.CacheConfigurationProvider;
 import org.cache2k.impl.xmlConfiguration.generic.ConfigurationException;
 import org.cache2k.impl.xmlConfiguration.generic.ConfigurationParser;
@@ -56,6 +59,9 @@ public class CacheConfigurationProviderImpl
     {
       put("jcache", JCacheConfiguration.class.getName());
       put("byClassName", CustomizationSupplierByClassName.class.getName());
+      put("evictionPolicy", EvictionPolicyConfiguration.class.getName());
+      put("writeBehind", WriteBehindConfiguration.class.getName());
+      put("asyncDispatcher", AsyncDispatcherConfiguration.class.getName());
     }
   };
 
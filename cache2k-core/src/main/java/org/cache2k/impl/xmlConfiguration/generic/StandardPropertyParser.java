@@ -48,8 +48,12 @@ public class StandardPropertyParser implements PropertyParser {
     put("d", 1000L * 60 * 60 * 24);
   }};
 
+  @SuppressWarnings("unchecked")
   public Object parse(Class<?> targetType, String value) throws Exception {
     ValueConverter p = type2parser.get(targetType);
+    if (p == null && targetType.isEnum()) {
+      return Enum.valueOf((Class<Enum>) targetType, value);
+    }
     if (p == null) {
       throw new IllegalArgumentException("Unknown target type: " + targetType);
     }
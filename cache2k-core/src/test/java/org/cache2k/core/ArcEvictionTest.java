@@ -0,0 +1,78 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.junit.Assert.*;
+
+/**
+ * Run the clock pro eviction tests with the ARC policy.
+ *
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class ArcEvictionTest extends ClockProEvictionTest {
+
+  protected Cache<Integer, Integer> provideCache(long _size) {
+    return builder(Integer.class, Integer.class)
+      .eternal(true)
+      .entryCapacity(_size)
+      .with(new EvictionPolicyConfiguration.Builder().policy(EvictionPolicyConfiguration.ARC))
+      .build();
+  }
+
+  @Test
+  public void ghostHitInsertsIntoT2() {
+    ArcEviction ev = new ArcEviction(null, HeapCacheListener.NO_OPERATION, 4, null, -1, true);
+    for (int i = 0; i < 4; i++) {
+      ev.insertIntoReplacementList(new Entry(i, i));
+    }
+    Entry e = ev.findEvictionCandidate(null);
+    assertEquals(0, e.hashCode);
+    ev.removeFromReplacementListOnEvict(e);
+    assertTrue(ev.getExtraStatistics().contains("b1Size=1"));
+    Entry _again = new Entry(0, 0);
+    ev.insertIntoReplacementList(_again);
+    assertTrue(_again.isHot());
+    assertTrue(ev.getExtraStatistics().contains("target=1"));
+    assertTrue(ev.getExtraStatistics().contains("b1Size=0"));
+    assertTrue(ev.getExtraStatistics().contains("ghostHits=1"));
+  }
+
+  @Test
+  public void hitMovesToT2() {
+    ArcEviction ev = new ArcEviction(null, HeapCacheListener.NO_OPERATION, 4, null, -1, true);
+    Entry e0 = new Entry(0, 0);
+    ev.insertIntoReplacementList(e0);
+    ev.insertIntoReplacementList(new Entry(1, 1));
+    e0.hitCnt++;
+    Entry e = ev.findEvictionCandidate(null);
+    assertEquals(1, e.hashCode);
+    assertTrue(e0.isHot());
+    assertTrue(ev.getExtraStatistics().contains("t2Size=1"));
+    assertEquals(1, ev.getHitCount());
+  }
+
+}
@@ -0,0 +1,263 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.core.experimentalApi.AsyncCache;
+import org.cache2k.core.experimentalApi.AsyncCacheConfiguration;
+import org.cache2k.core.experimentalApi.CompletionFuture;
+import org.cache2k.integration.AsyncCacheLoader;
+import org.cache2k.integration.CacheLoader;
+import org.cache2k.integration.CacheLoaderException;
+import org.cache2k.processor.EntryProcessor;
+import org.cache2k.processor.MutableCacheEntry;
+import org.cache2k.test.util.TestingBase;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test the asynchronous cache view. The async loader keeps the callbacks, so the test
+ * completes the loads.
+ *
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class AsyncCacheViewTest extends TestingBase {
+
+  final List<AsyncCacheLoader.Callback<Integer>> callbacks =
+    Collections.synchronizedList(new ArrayList<AsyncCacheLoader.Callback<Integer>>());
+
+  @SuppressWarnings("unchecked")
+  AsyncCache<Integer, Integer> asyncCacheWithAsyncLoader() {
+    Cache<Integer, Integer> c = builder(Integer.class, Integer.class)
+      .loader(new AsyncCacheLoader<Integer, Integer>() {
+        @Override
+        public void load(final Integer key, final Context<Integer, Integer> ctx, final Callback<Integer> cb) {
+          callbacks.add(cb);
+        }
+      })
+      .build();
+    return c.requestInterface(AsyncCache.class);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void putAndGet() throws Exception {
+    Cache<Integer, Integer> c = builder(Integer.class, Integer.class).build();
+    AsyncCache<Integer, Integer> ac = c.requestInterface(AsyncCache.class);
+    CompletionFuture<Void> f = ac.put(1, 2);
+    assertTrue(f.isDone());
+    assertNull(f.get());
+    assertEquals((Integer) 2, ac.get(1).get());
+    assertNull(ac.get(3).get());
+    assertEquals((Integer) 2, c.peek(1));
+  }
+
+  @Test
+  public void completesOnLoaderCallback() throws Exception {
+    AsyncCache<Integer, Integer> ac = asyncCacheWithAsyncLoader();
+    CompletionFuture<Integer> f = ac.get(1);
+    final AtomicReference<Integer> _result = new AtomicReference<Integer>();
+    f.whenComplete(new CompletionFuture.Callback<Integer>() {
+      @Override
+      public void onSuccess(final Integer result) {
+        _result.set(result);
+      }
+
+      @Override
+      public void onFailure(final Throwable t) { }
+    });
+    assertFalse(f.isDone());
+    assertEquals(1, callbacks.size());
+    callbacks.get(0).onLoadSuccess(47);
+    assertTrue(f.isDone());
+    assertEquals((Integer) 47, f.get());
+    assertEquals((Integer) 47, _result.get());
+    assertEquals((Integer) 47, ac.get(1).get());
+    assertEquals(1, callbacks.size());
+  }
+
+  @Test
+  public void loaderFailure() throws Exception {
+    AsyncCache<Integer, Integer> ac = asyncCacheWithAsyncLoader();
+    CompletionFuture<Integer> f = ac.get(1);
+    callbacks.get(0).onLoadFailure(new IOException());
+    try {
+      f.get();
+      fail("exception expected");
+    } catch (ExecutionException ex) {
+      assertTrue(ex.getCause() instanceof CacheLoaderException);
+    }
+  }
+
+  /**
+   * The second request is queued while the entry is loading and does not start another load.
+   */
+  @Test
+  public void secondRequestWaitsForLoad() throws Exception {
+    AsyncCache<Integer, Integer> ac = asyncCacheWithAsyncLoader();
+    CompletionFuture<Integer> f1 = ac.get(1);
+    CompletionFuture<Integer> f2 = ac.get(1);
+    assertEquals(1, callbacks.size());
+    callbacks.get(0).onLoadSuccess(47);
+    assertEquals((Integer) 47, f1.get());
+    assertEquals((Integer) 47, f2.get());
+    assertEquals(1, callbacks.size());
+  }
+
+  @Test
+  public void getAll() throws Exception {
+    AsyncCache<Integer, Integer> ac = asyncCacheWithAsyncLoader();
+    CompletionFuture<Map<Integer, Integer>> f = ac.getAll(Arrays.asList(1, 2, 3));
+    assertEquals(3, callbacks.size());
+    callbacks.get(0).onLoadSuccess(11);
+    callbacks.get(1).onLoadSuccess(12);
+    assertFalse(f.isDone());
+    callbacks.get(2).onLoadSuccess(13);
+    assertEquals(3, f.get().size());
+    assertTrue(f.get().containsValue(12));
+  }
+
+  @Test
+  public void invoke() throws Exception {
+    AsyncCache<Integer, Integer> ac = asyncCacheWithAsyncLoader();
+    CompletionFuture<Boolean> f = ac.invoke(1, new EntryProcessor<Integer, Integer, Boolean>() {
+      @Override
+      public Boolean process(final MutableCacheEntry<Integer, Integer> e) {
+        e.setValue(4711);
+        return true;
+      }
+    });
+    assertTrue(f.get());
+    assertEquals((Integer) 4711, ac.get(1).get());
+    assertEquals(0, callbacks.size());
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void synchronousLoaderRunsInLoaderExecutor() throws Exception {
+    final AtomicReference<Thread> _loaderThread = new AtomicReference<Thread>();
+    Cache<Integer, Integer> c = builder(Integer.class, Integer.class)
+      .loader(new CacheLoader<Integer, Integer>() {
+        @Override
+        public Integer load(final Integer key) {
+          _loaderThread.set(Thread.currentThread());
+          return key * 2;
+        }
+      })
+      .build();
+    AsyncCache<Integer, Integer> ac = c.requestInterface(AsyncCache.class);
+    assertEquals((Integer) 10, ac.get(5).get());
+    assertNotSame(Thread.currentThread(), _loaderThread.get());
+  }
+
+  /**
+   * Async operations on a processing entry of a cache that is not wired do not wait
+   * in the calling thread, if the cache is configured for the async view.
+   */
+  @SuppressWarnings("unchecked")
+  @Test
+  public void concurrentOperationsOnProcessingEntry() throws Exception {
+    Cache<Integer, Integer> c = builder(Integer.class, Integer.class)
+      .eternal(true)
+      .with(new AsyncCacheConfiguration.Builder())
+      .build();
+    assertFalse(c.requestInterface(HeapCache.class).isCompactEntries());
+    AsyncCache<Integer, Integer> ac = c.requestInterface(AsyncCache.class);
+    c.put(1, 1);
+    putWhileProcessing(ac, 1);
+    assertEquals((Integer) 8, c.peek(1));
+  }
+
+  /**
+   * The entry layout is decided when the cache is built and does not change when
+   * the async view is requested.
+   */
+  @SuppressWarnings("unchecked")
+  @Test
+  public void compactEntriesWithoutConfiguration() throws Exception {
+    Cache<Integer, Integer> c = builder(Integer.class, Integer.class).eternal(true).build();
+    AsyncCache<Integer, Integer> ac = c.requestInterface(AsyncCache.class);
+    assertTrue(c.requestInterface(HeapCache.class).isCompactEntries());
+    ac.put(1, 1).get();
+    assertEquals((Integer) 1, c.peek(1));
+  }
+
+  /**
+   * Block an entry processor while the entry is locked and put the same key.
+   */
+  private void putWhileProcessing(final AsyncCache<Integer, Integer> ac, final int key) throws Exception {
+    final CountDownLatch _processing = new CountDownLatch(1);
+    final CountDownLatch _release = new CountDownLatch(1);
+    final AtomicInteger _calls = new AtomicInteger();
+    Thread _invoker = new Thread() {
+      @Override
+      public void run() {
+        ac.invoke(key, new EntryProcessor<Integer, Integer, Void>() {
+          @Override
+          public Void process(final MutableCacheEntry<Integer, Integer> e) throws Exception {
+            e.getValue();
+            e.setValue(7);
+            if (_calls.incrementAndGet() == 2) {
+              _processing.countDown();
+              _release.await();
+            }
+            return null;
+          }
+        });
+      }
+    };
+    _invoker.start();
+    final AtomicReference<CompletionFuture<Void>> _future = new AtomicReference<CompletionFuture<Void>>();
+    try {
+      _processing.await();
+      Thread _putter = new Thread() {
+        @Override
+        public void run() {
+          _future.set(ac.put(key, 8));
+        }
+      };
+      _putter.start();
+      _putter.join(10000);
+      assertFalse("put waits for the processing entry", _putter.isAlive());
+      assertFalse(_future.get().isDone());
+    } finally {
+      _release.countDown();
+    }
+    _invoker.join();
+    _future.get().get();
+  }
+
+}
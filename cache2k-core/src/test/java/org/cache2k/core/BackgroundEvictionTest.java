@@ -0,0 +1,110 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.test.util.TestingBase;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class BackgroundEvictionTest extends TestingBase {
+
+  static final int SIZE = 1000;
+
+  /**
+   * Run the background tasks in the test thread, so the outcome does not depend on the
+   * timing of a concurrent executor.
+   */
+  @Test
+  public void evictsToLowWatermark() {
+    final List<Runnable> _tasks = new ArrayList<Runnable>();
+    Cache<Integer, Integer> c = builder(Integer.class, Integer.class)
+      .eternal(true)
+      .entryCapacity(SIZE)
+      .executor(new Executor() {
+        @Override
+        public void execute(final Runnable command) {
+          _tasks.add(command);
+        }
+      })
+      .with(new BackgroundEvictionConfiguration.Builder().lowWatermarkPercent(90))
+      .build();
+    for (int i = 0; i < SIZE * 5; i++) {
+      c.put(i, i);
+    }
+    assertFalse(_tasks.isEmpty());
+    while (!_tasks.isEmpty()) {
+      _tasks.remove(0).run();
+    }
+    assertTrue(getInfo().getSize() <= SIZE * 90 / 100);
+    assertTrue(getInfo().getExtraStatistics().contains("backgroundEvictionCount="));
+  }
+
+  /**
+   * If the background task does not run, the inserting thread evicts at the high watermark.
+   */
+  @Test
+  public void callerEvictsAtHighWatermark() {
+    final List<Runnable> _tasks = new ArrayList<Runnable>();
+    Cache<Integer, Integer> c = builder(Integer.class, Integer.class)
+      .eternal(true)
+      .entryCapacity(SIZE)
+      .executor(new Executor() {
+        @Override
+        public void execute(final Runnable command) {
+          _tasks.add(command);
+        }
+      })
+      .with(new BackgroundEvictionConfiguration.Builder().highWatermarkPercent(120))
+      .build();
+    for (int i = 0; i < SIZE * 5; i++) {
+      c.put(i, i);
+    }
+    assertFalse(_tasks.isEmpty());
+    long _size = getInfo().getSize();
+    assertTrue(_size > SIZE);
+    assertTrue(_size <= SIZE * 120 / 100 + AbstractEviction.MAXIMAL_CHUNK_SIZE);
+    for (Runnable r : new ArrayList<Runnable>(_tasks)) {
+      r.run();
+    }
+    assertTrue(getInfo().getSize() <= SIZE * 95 / 100);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void illegalHighWatermark() {
+    builder(Integer.class, Integer.class)
+      .entryCapacity(SIZE)
+      .with(new BackgroundEvictionConfiguration.Builder().highWatermarkPercent(90))
+      .build();
+  }
+
+}
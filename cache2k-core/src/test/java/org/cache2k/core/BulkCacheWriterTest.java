@@ -0,0 +1,155 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.integration.BulkCacheWriter;
+import org.cache2k.integration.CacheWriterException;
+import org.cache2k.test.util.TestingBase;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test the bulk writer with putAll and removeAll. The writer records each call.
+ *
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class BulkCacheWriterTest extends TestingBase {
+
+  final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+
+  class RecordingWriter extends BulkCacheWriter<Integer, Integer> {
+
+    /**
+     * Keys that fail when written or deleted.
+     */
+    final Set<Integer> failing;
+
+    RecordingWriter(Integer... _failing) {
+      failing = new HashSet<Integer>(Arrays.asList(_failing));
+    }
+
+    @Override
+    public Map<Integer, Exception> writeAll(final Map<Integer, Integer> entries) throws Exception {
+      calls.add("writeAll " + entries);
+      return failures(entries.keySet());
+    }
+
+    @Override
+    public Map<Integer, Exception> deleteAll(final Set<Integer> keys) throws Exception {
+      calls.add("deleteAll " + keys);
+      return failures(keys);
+    }
+
+    Map<Integer, Exception> failures(Set<Integer> _keys) {
+      Map<Integer, Exception> _failures = new HashMap<Integer, Exception>();
+      for (Integer k : _keys) {
+        if (failing.contains(k)) {
+          _failures.put(k, new Exception("ouch " + k));
+        }
+      }
+      return _failures;
+    }
+  }
+
+  Cache<Integer, Integer> cache(BulkCacheWriter<Integer, Integer> w) {
+    return builder(Integer.class, Integer.class).writer(w).build();
+  }
+
+  static Map<Integer, Integer> map(int... _keyValues) {
+    Map<Integer, Integer> m = new LinkedHashMap<Integer, Integer>();
+    for (int i = 0; i < _keyValues.length; i += 2) {
+      m.put(_keyValues[i], _keyValues[i + 1]);
+    }
+    return m;
+  }
+
+  @Test
+  public void putAllAndRemoveAllInOneCall() {
+    Cache<Integer, Integer> c = cache(new RecordingWriter());
+    c.putAll(map(1, 1, 2, 2, 3, 3));
+    assertEquals(Arrays.asList("writeAll {1=1, 2=2, 3=3}"), calls);
+    assertEquals((Integer) 2, c.peek(2));
+    c.removeAll(Arrays.asList(1, 2, 2));
+    assertEquals("deleteAll [1, 2]", calls.get(1));
+    assertFalse(c.containsKey(1));
+    assertFalse(c.containsKey(2));
+    assertTrue(c.containsKey(3));
+    c.close();
+  }
+
+  @Test
+  public void singleMutationUsesBulkWithOneKey() {
+    Cache<Integer, Integer> c = cache(new RecordingWriter());
+    c.put(1, 1);
+    c.remove(1);
+    assertEquals(Arrays.asList("writeAll {1=1}", "deleteAll [1]"), calls);
+    c.close();
+  }
+
+  @Test
+  public void partialFailureUpdatesOnlyWrittenEntries() {
+    Cache<Integer, Integer> c = cache(new RecordingWriter(2));
+    try {
+      c.putAll(map(1, 1, 2, 2, 3, 3));
+      fail("exception expected");
+    } catch (CacheWriterException expected) {
+    }
+    assertEquals((Integer) 1, c.peek(1));
+    assertFalse(c.containsKey(2));
+    assertEquals((Integer) 3, c.peek(3));
+    c.close();
+  }
+
+  @Test
+  public void exceptionAbortsAll() {
+    Cache<Integer, Integer> c = cache(new RecordingWriter() {
+      @Override
+      public Map<Integer, Exception> writeAll(final Map<Integer, Integer> entries) throws Exception {
+        throw new Exception("ouch");
+      }
+    });
+    try {
+      c.putAll(map(1, 1, 2, 2));
+      fail("exception expected");
+    } catch (CacheWriterException expected) {
+      assertTrue(expected.getMessage().startsWith("2 of 2 entries failed"));
+    }
+    assertFalse(c.containsKey(1));
+    assertFalse(c.containsKey(2));
+    c.close();
+  }
+
+}
@@ -0,0 +1,178 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.core.event.AsyncDispatcherConfiguration;
+import org.cache2k.event.CacheEntryBatchListener;
+import org.cache2k.event.CacheEntryEvent;
+import org.cache2k.test.util.Condition;
+import org.cache2k.test.util.TestingBase;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test the delivery of events to a batch listener. The listener records the
+ * events and the size of each batch.
+ *
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class CacheEntryBatchListenerTest extends TestingBase {
+
+  final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+  final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+
+  final CacheEntryBatchListener<Integer, Integer> listener = new CacheEntryBatchListener<Integer, Integer>() {
+    @Override
+    public void onEntryEvents(final Cache<Integer, Integer> cache,
+                              final List<CacheEntryEvent<Integer, Integer>> _events) {
+      batchSizes.add(_events.size());
+      for (CacheEntryEvent<Integer, Integer> e : _events) {
+        String s = e.getType() + " " + e.getKey() + "=" + e.getEntry().getValue();
+        if (e.getPreviousEntry() != null) {
+          s += " was " + e.getPreviousEntry().getValue();
+        }
+        events.add(s);
+      }
+    }
+  };
+
+  Cache<Integer, Integer> cache(AsyncDispatcherConfiguration.Builder b) {
+    return builder(Integer.class, Integer.class).addAsyncListener(listener).with(b).build();
+  }
+
+  void awaitEvents(final int _count) {
+    await("events " + _count, new Condition() {
+      @Override
+      public boolean check() throws Exception {
+        return events.size() >= _count;
+      }
+    });
+  }
+
+  @Test
+  public void deliverOnClose() {
+    Cache<Integer, Integer> c = cache(new AsyncDispatcherConfiguration.Builder()
+      .stripes(1).batchWindowMillis(Long.MAX_VALUE / 2));
+    c.put(1, 1);
+    c.put(1, 2);
+    c.remove(1);
+    assertTrue(events.isEmpty());
+    c.close();
+    awaitEvents(3);
+    assertEquals(Arrays.asList("CREATED 1=1", "UPDATED 1=2 was 1", "REMOVED 1=2"), events);
+    assertEquals(Arrays.asList(3), batchSizes);
+  }
+
+  @Test
+  public void fullBatchStartsDelivery() {
+    Cache<Integer, Integer> c = cache(new AsyncDispatcherConfiguration.Builder()
+      .stripes(1).batchSize(3).batchWindowMillis(Long.MAX_VALUE / 2));
+    c.put(1, 1);
+    c.put(2, 1);
+    c.put(3, 1);
+    awaitEvents(3);
+    assertEquals(Arrays.asList(3), batchSizes);
+    c.close();
+  }
+
+  @Test
+  public void deliverAfterWindow() {
+    Cache<Integer, Integer> c = cache(new AsyncDispatcherConfiguration.Builder()
+      .batchWindowMillis(1));
+    c.put(1, 1);
+    awaitEvents(1);
+    c.close();
+  }
+
+  /**
+   * Events of a key arrive in order, also if split into many batches.
+   */
+  @Test
+  public void orderPerKey() {
+    Cache<Integer, Integer> c = cache(new AsyncDispatcherConfiguration.Builder().batchSize(7));
+    for (int i = 0; i < 100; i++) {
+      c.put(i % 3, i);
+    }
+    awaitEvents(100);
+    int[] _last = new int[] {-1, -1, -1};
+    for (String s : events) {
+      int k = Integer.parseInt(s.substring(s.indexOf(' ') + 1, s.indexOf('=')));
+      int v = Integer.parseInt(s.split("[= ]")[2]);
+      assertTrue(v > _last[k]);
+      _last[k] = v;
+    }
+    for (int n : batchSizes) {
+      assertTrue(n <= 7);
+    }
+    c.close();
+  }
+
+  /**
+   * Each batch listener gets batches of its own events, also if events of the
+   * other listener are queued at the same time.
+   */
+  @Test
+  public void twoListeners() {
+    final List<Integer> _otherBatchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+    CacheEntryBatchListener<Integer, Integer> _otherListener = new CacheEntryBatchListener<Integer, Integer>() {
+      @Override
+      public void onEntryEvents(final Cache<Integer, Integer> cache,
+                                final List<CacheEntryEvent<Integer, Integer>> _events) {
+        _otherBatchSizes.add(_events.size());
+      }
+    };
+    Cache<Integer, Integer> c = builder(Integer.class, Integer.class)
+      .addAsyncListener(listener)
+      .addAsyncListener(_otherListener)
+      .with(new AsyncDispatcherConfiguration.Builder()
+        .stripes(1).batchSize(3).batchWindowMillis(Long.MAX_VALUE / 2))
+      .build();
+    c.put(1, 1);
+    c.put(2, 1);
+    c.put(3, 1);
+    awaitEvents(3);
+    await("other listener called", new Condition() {
+      @Override
+      public boolean check() throws Exception {
+        return !_otherBatchSizes.isEmpty();
+      }
+    });
+    assertEquals(Arrays.asList(3), batchSizes);
+    assertEquals(Arrays.asList(3), _otherBatchSizes);
+    c.close();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void syncRegistrationNotSupported() {
+    builder(Integer.class, Integer.class).addListener(listener).build();
+  }
+
+}
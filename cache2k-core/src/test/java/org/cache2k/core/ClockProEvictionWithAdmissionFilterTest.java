@@ -0,0 +1,99 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.junit.Assert.*;
+
+/**
+ * Run the clock pro eviction tests with the admission filter enabled.
+ *
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class ClockProEvictionWithAdmissionFilterTest extends ClockProEvictionTest {
+
+  protected Cache<Integer, Integer> provideCache(long _size) {
+    return builder(Integer.class, Integer.class)
+      .eternal(true)
+      .entryCapacity(_size)
+      .strictEviction(true)
+      .with(new AdmissionFilterConfiguration.Builder())
+      .build();
+  }
+
+  /**
+   * A new entry that is not accessed after the insert is evicted when the
+   * next entry needs space.
+   */
+  @Test
+  public void newEntryRejected() {
+    final int _SIZE = 10;
+    Cache<Integer, Integer> c = provideCache(_SIZE);
+    for (int i = 0; i < _SIZE; i++) {
+      c.put(i, i);
+    }
+    for (int j = 0; j < 5; j++) {
+      for (int i = 0; i < _SIZE; i++) {
+        c.get(i);
+      }
+    }
+    c.put(100, 100);
+    c.put(101, 101);
+    assertFalse(c.containsKey(100));
+    assertTrue(c.containsKey(101));
+    assertEquals(_SIZE, countEntriesViaIteration());
+    assertTrue(getInfo().getExtraStatistics().contains("admissionRejectCount="));
+  }
+
+  /**
+   * Frequently used entries survive a scan of keys that are used only once.
+   */
+  @Test
+  public void scanResistant() {
+    final int _SIZE = 100;
+    final int _HOT = _SIZE / 2;
+    Cache<Integer, Integer> c = provideCache(_SIZE);
+    for (int i = 0; i < _HOT; i++) {
+      c.put(i, i);
+    }
+    for (int j = 0; j < 5; j++) {
+      for (int i = 0; i < _HOT; i++) {
+        c.get(i);
+      }
+    }
+    for (int i = 1000; i < 1000 + _SIZE * 10; i++) {
+      c.put(i, i);
+    }
+    int _hotPresent = 0;
+    for (int i = 0; i < _HOT; i++) {
+      if (c.containsKey(i)) {
+        _hotPresent++;
+      }
+    }
+    assertEquals(_HOT, _hotPresent);
+  }
+
+}
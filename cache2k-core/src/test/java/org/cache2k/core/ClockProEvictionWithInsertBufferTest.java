@@ -0,0 +1,138 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.core.concurrency.Job;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * Run the clock pro eviction tests with buffered inserts and removals.
+ *
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class ClockProEvictionWithInsertBufferTest extends ClockProEvictionTest {
+
+  protected Cache<Integer, Integer> provideCache(long _size) {
+    return builder(Integer.class, Integer.class)
+      .eternal(true)
+      .entryCapacity(_size)
+      .with(new InsertBufferConfiguration.Builder().batchSize(4))
+      .build();
+  }
+
+  @Test
+  public void removeBeforeApplied() {
+    Cache<Integer, Integer> c = provideCache(100);
+    for (int i = 0; i < 10; i++) {
+      c.put(i, i);
+      c.remove(i);
+    }
+    assertEquals(0, countEntriesViaIteration());
+    assertEquals(0, getInfo().getSize());
+    assertTrue(getInfo().getExtraStatistics().contains("insertBufferDrainCount="));
+  }
+
+  /**
+   * Concurrent inserts leave the cache in a consistent state, which is checked
+   * after the test.
+   */
+  @Test
+  public void concurrentInserts() throws Exception {
+    final int _SIZE = 1000;
+    final int _THREADS = 4;
+    final Cache<Integer, Integer> c = provideCache(_SIZE);
+    Thread[] _threads = new Thread[_THREADS];
+    for (int i = 0; i < _THREADS; i++) {
+      final int _offset = i * _SIZE * 3;
+      _threads[i] = new Thread() {
+        @Override
+        public void run() {
+          for (int k = _offset; k < _offset + _SIZE * 3; k++) {
+            c.put(k, k);
+          }
+        }
+      };
+    }
+    for (Thread t : _threads) {
+      t.start();
+    }
+    for (Thread t : _threads) {
+      t.join();
+    }
+    assertTrue(getInfo().getSize() <= _SIZE + _THREADS * 64);
+  }
+
+  /**
+   * An insert does not wait for the eviction lock, also when the capacity is reached.
+   */
+  @Test
+  public void insertWhileEvictionLocked() throws Exception {
+    final Cache<Integer, Integer> c = provideCache(10);
+    for (int i = 0; i < 10; i++) {
+      c.put(i, i);
+    }
+    final CountDownLatch _locked = new CountDownLatch(1);
+    final CountDownLatch _release = new CountDownLatch(1);
+    Thread _holder = new Thread() {
+      @Override
+      public void run() {
+        c.requestInterface(HeapCache.class).eviction.runLocked(new Job<Void>() {
+          @Override
+          public Void call() {
+            _locked.countDown();
+            try {
+              _release.await();
+            } catch (InterruptedException ex) {
+              Thread.currentThread().interrupt();
+            }
+            return null;
+          }
+        });
+      }
+    };
+    _holder.start();
+    _locked.await();
+    Thread _inserter = new Thread() {
+      @Override
+      public void run() {
+        for (int i = 10; i < 20; i++) {
+          c.put(i, i);
+        }
+      }
+    };
+    _inserter.start();
+    _inserter.join(10000);
+    boolean _blocked = _inserter.isAlive();
+    _release.countDown();
+    _holder.join();
+    _inserter.join();
+    assertFalse("insert blocked by eviction lock", _blocked);
+  }
+
+}
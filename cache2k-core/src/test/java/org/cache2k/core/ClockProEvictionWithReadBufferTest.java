@@ -0,0 +1,65 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.junit.Assert.*;
+
+/**
+ * Run the clock pro eviction tests with hits recorded in the read buffer.
+ *
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class ClockProEvictionWithReadBufferTest extends ClockProEvictionTest {
+
+  protected Cache<Integer, Integer> provideCache(long _size) {
+    return builder(Integer.class, Integer.class)
+      .eternal(true)
+      .entryCapacity(_size)
+      .with(new ReadBufferConfiguration.Builder())
+      .build();
+  }
+
+  /**
+   * Within one thread no hit is lost. Retrieving the statistics drains the buffer.
+   */
+  @Test
+  public void hitsTransferredToEntries() {
+    final int _SIZE = 10;
+    Cache<Integer, Integer> c = provideCache(_SIZE);
+    for (int i = 0; i < _SIZE; i++) {
+      c.put(i, i);
+    }
+    for (int j = 0; j < 5; j++) {
+      for (int i = 0; i < _SIZE; i++) {
+        c.get(i);
+      }
+    }
+    assertEquals(_SIZE * 5, getInfo().getHeapHitCount());
+    assertTrue(getInfo().getExtraStatistics().contains("readBufferDrainCount="));
+  }
+
+}
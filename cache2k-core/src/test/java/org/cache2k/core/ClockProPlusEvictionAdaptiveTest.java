@@ -0,0 +1,109 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test the adaption of the hot space and ghost capacity directly on the eviction
+ * data structure.
+ *
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class ClockProPlusEvictionAdaptiveTest {
+
+  static final int SIZE = 100;
+
+  ClockProPlusEviction eviction = new ClockProPlusEviction(
+    null, HeapCacheListener.NO_OPERATION, SIZE, null, -1, true);
+
+  {
+    eviction.setAdaptive(true);
+  }
+
+  private void insert(int _hashCode) {
+    eviction.insertIntoReplacementList(new Entry(_hashCode, _hashCode));
+  }
+
+  private Entry evict() {
+    Entry e = eviction.findEvictionCandidate(null);
+    eviction.removeFromReplacementListOnEvict(e);
+    return e;
+  }
+
+  private void fill() {
+    for (int i = 0; i < SIZE; i++) {
+      insert(i);
+    }
+  }
+
+  @Test
+  public void coldGhostHitShrinksHotSpace() {
+    fill();
+    assertEquals(97, eviction.getHotMax());
+    Entry e = evict();
+    assertFalse(e.isHot());
+    insert(e.hashCode);
+    assertEquals(96, eviction.getHotMax());
+    assertTrue(eviction.getExtraStatistics().contains("hotMaxDecreaseCnt=1"));
+  }
+
+  @Test
+  public void hotGhostHitEnlargesHotSpace() {
+    fill();
+    Entry e = evict();
+    insert(e.hashCode);
+    assertEquals(96, eviction.getHotMax());
+    e = evict();
+    assertTrue(e.isHot());
+    insert(e.hashCode);
+    assertEquals(97, eviction.getHotMax());
+    assertTrue(eviction.getExtraStatistics().contains("hotMaxIncreaseCnt=1"));
+  }
+
+  @Test
+  public void ghostCapacityShrinksWithoutGhostHits() {
+    fill();
+    assertEquals(SIZE / 2 + 1, eviction.getGhostMax());
+    for (int i = 0; i < SIZE; i++) {
+      evict();
+      insert(SIZE + i);
+    }
+    assertTrue(eviction.getExtraStatistics().contains("ghostMaxPercentage=49"));
+    assertTrue(eviction.getGhostMax() < SIZE / 2 + 1);
+  }
+
+  @Test
+  public void staticWhenNotAdaptive() {
+    eviction.setAdaptive(false);
+    fill();
+    Entry e = evict();
+    insert(e.hashCode);
+    assertEquals(97, eviction.getHotMax());
+    assertFalse(eviction.getExtraStatistics().contains("hotMaxDecreaseCnt"));
+  }
+
+}
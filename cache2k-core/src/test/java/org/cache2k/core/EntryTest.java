@@ -87,6 +87,26 @@ public class EntryTest {
     assertEquals(Entry.ProcessingState.DONE, e.getProcessingState());
   }
 
+  @Test
+  public void checkAndSwitchProcessingState() {
+    Entry e = new Entry();
+    assertFalse(e.checkAndSwitchProcessingState(Entry.ProcessingState.LOAD, Entry.ProcessingState.LOAD_COMPLETE));
+    assertTrue(e.checkAndSwitchProcessingState(Entry.ProcessingState.DONE, Entry.ProcessingState.LOAD_ASYNC));
+    assertEquals(Entry.ProcessingState.LOAD_ASYNC, e.getProcessingState());
+    assertTrue(e.checkAndSwitchProcessingState(Entry.ProcessingState.LOAD_ASYNC, Entry.ProcessingState.LOAD_COMPLETE));
+    assertEquals(Entry.ProcessingState.LOAD_COMPLETE, e.getProcessingState());
+  }
+
+  @Test
+  public void checkAndSwitchProcessingStateKeepsRefreshTime() {
+    Entry e = new Entry();
+    e.setRefreshTime(4711);
+    assertTrue(e.checkAndSwitchProcessingState(Entry.ProcessingState.DONE, Entry.ProcessingState.WRITE));
+    assertEquals(4711, e.getRefreshTime());
+    e.setRefreshTime(123456);
+    assertEquals(Entry.ProcessingState.WRITE, e.getProcessingState());
+  }
+
   @Test
   public void testHot() {
     Entry e = new Entry();
@@ -0,0 +1,210 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Weigher;
+import org.cache2k.core.concurrency.OptimisticLock;
+import org.cache2k.eviction.EvictionPolicy;
+
+import java.io.File;
+
+/**
+ * Replays a trace against an eviction implementation without the cache. Entries live in
+ * the hash table of an uninitialized heap cache, so eviction implementations that scan
+ * the hash, like {@link RandomEviction}, work as well. A hit increments the hit counter
+ * of the entry, like the cache does. A miss evicts one entry if the capacity is reached
+ * and inserts a new one. Chunking, the admission filter and the buffers of
+ * {@link AbstractEviction} are not used.
+ *
+ * <p>Command line usage, e.g. via the exec plugin with {@code -Dexec.classpathScope=test}:
+ *
+ * <pre>{@code
+ * EvictionSimulator <ARC|LIRS|WIKIPEDIA|PLAIN> <traceFile[.gz]> <capacity,...> [policy,...]
+ * }</pre>
+ *
+ * <p>Policies are the names known by {@link EvictionPolicyConfiguration} or the class name
+ * of an {@link EvictionPolicy} or an {@link EvictionFactory}. Default is all built in policies.
+ *
+ * @author Jens Wilke
+ */
+public class EvictionSimulator {
+
+  public static final String RANDOM = EvictionPolicyConfiguration.RANDOM;
+
+  private final EvictionFactory factory;
+
+  public EvictionSimulator(final EvictionFactory _factory) {
+    factory = _factory;
+  }
+
+  public Result run(final Trace t, final long _capacity) {
+    HeapCache<Integer, Object> hc = new HeapCache<Integer, Object>();
+    Hash2<Integer, Object> _hash = hc.hash;
+    AbstractEviction _eviction =
+      factory.create(hc, HeapCacheListener.NO_OPERATION, _capacity, null, -1, true);
+    long _size = 0;
+    long _hits = 0;
+    long _evictions = 0;
+    int _length = t.getLength();
+    long t0 = System.nanoTime();
+    for (int i = 0; i < _length; i++) {
+      Integer key = t.get(i);
+      int _hashCode = HeapCache.modifiedHash(key.hashCode());
+      Entry<Integer, Object> e = _hash.lookup(key, _hashCode, _hashCode);
+      if (e != null) {
+        e.hitCnt++;
+        _hits++;
+        continue;
+      }
+      if (_size >= _capacity) {
+        @SuppressWarnings("unchecked")
+        Entry<Integer, Object> _victim = _eviction.findEvictionCandidate(null);
+        _eviction.removeFromReplacementListOnEvict(_victim);
+        _hash.remove(_victim);
+        _size--;
+        _evictions++;
+      }
+      e = new Entry<Integer, Object>(key, _hashCode);
+      OptimisticLock l = _hash.getSegmentLock(_hashCode);
+      long _stamp = l.writeLock();
+      try {
+        _hash.insertWithinLock(e, _hashCode, _hashCode);
+      } finally {
+        l.unlockWrite(_stamp);
+      }
+      _eviction.insertIntoReplacementList(e);
+      _size++;
+      if (_hash.checkExpand(_hashCode)) {
+        _hash.completeExpansion();
+      }
+    }
+    long _nanos = System.nanoTime() - t0;
+    return new Result(_eviction.getClass().getSimpleName(), t.getName(), _capacity,
+      _length, _hits, _evictions, _nanos);
+  }
+
+  /**
+   * Factory for the policy name. Built in names or the class name of an
+   * {@link EvictionPolicy} or an {@link EvictionFactory}.
+   */
+  public static EvictionFactory factoryFor(final String _policy) throws Exception {
+    if (_policy.indexOf('.') >= 0) {
+      final Class<?> _class = Class.forName(_policy);
+      if (EvictionPolicy.class.isAssignableFrom(_class)) {
+        return new EvictionFactory() {
+          @Override
+          public AbstractEviction create(final HeapCache heapCache, final HeapCacheListener listener,
+                                         final long maxSize, final Weigher weigher, final long maxWeight,
+                                         final boolean noChunking) {
+            try {
+              return new PolicyEviction(heapCache, listener, maxSize, weigher, maxWeight, noChunking,
+                (EvictionPolicy) _class.newInstance());
+            } catch (Exception ex) {
+              throw new IllegalArgumentException(ex);
+            }
+          }
+        };
+      }
+      return (EvictionFactory) _class.newInstance();
+    }
+    EvictionPolicyConfiguration cfg = new EvictionPolicyConfiguration();
+    cfg.setPolicy(_policy);
+    return InternalCache2kBuilder.constructEvictionFactory(null, cfg);
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 3) {
+      System.err.println(
+        "Usage: EvictionSimulator <ARC|LIRS|WIKIPEDIA|PLAIN> <traceFile[.gz]> <capacity,...> [policy,...]");
+      System.exit(1);
+    }
+    Trace t = Trace.read(new File(args[1]), Trace.Format.valueOf(args[0]));
+    String _policies = args.length > 3 ? args[3] :
+      EvictionPolicyConfiguration.CLOCK_PRO + "," + EvictionPolicyConfiguration.LRU + "," +
+      EvictionPolicyConfiguration.SLRU + "," + EvictionPolicyConfiguration.ARC + "," + RANDOM;
+    for (String _capacity : args[2].split(",")) {
+      for (String _policy : _policies.split(",")) {
+        System.out.println(
+          new EvictionSimulator(factoryFor(_policy.trim())).run(t, Long.parseLong(_capacity.trim())));
+      }
+    }
+  }
+
+  public static class Result {
+
+    private final String implementation;
+    private final String trace;
+    private final long capacity;
+    private final long accessCount;
+    private final long hitCount;
+    private final long evictionCount;
+    private final long nanos;
+
+    public Result(final String _implementation, final String _trace, final long _capacity,
+                  final long _accessCount, final long _hitCount, final long _evictionCount,
+                  final long _nanos) {
+      implementation = _implementation;
+      trace = _trace;
+      capacity = _capacity;
+      accessCount = _accessCount;
+      hitCount = _hitCount;
+      evictionCount = _evictionCount;
+      nanos = _nanos;
+    }
+
+    public long getAccessCount() {
+      return accessCount;
+    }
+
+    public long getHitCount() {
+      return hitCount;
+    }
+
+    public long getEvictionCount() {
+      return evictionCount;
+    }
+
+    /**
+     * Hit rate in percent.
+     */
+    public double getHitRate() {
+      return accessCount == 0 ? 0 : hitCount * 100D / accessCount;
+    }
+
+    public long getAccessesPerSecond() {
+      return nanos == 0 ? 0 : (long) (accessCount * 1000000000D / nanos);
+    }
+
+    @Override
+    public String toString() {
+      return
+        "implementation=" + implementation +
+        ", trace=" + trace +
+        ", capacity=" + capacity +
+        ", accessCount=" + accessCount +
+        ", hitRate=" + String.format("%.2f", getHitRate()) +
+        ", evictionCount=" + evictionCount +
+        ", accessesPerSecond=" + getAccessesPerSecond();
+    }
+
+  }
+
+}
@@ -0,0 +1,167 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.testing.category.FastTests;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test the trace formats and check the hit rates of the eviction implementations on
+ * synthetic traces, so a change in eviction quality gets noticed.
+ *
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class EvictionSimulatorTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static Trace read(String _content, Trace.Format _format) throws Exception {
+    return Trace.read("test", new ByteArrayInputStream(_content.getBytes("UTF-8")), _format);
+  }
+
+  @Test
+  public void arcFormat() throws Exception {
+    Trace t = read("10 3 0 1\n20 1 0 2\n", Trace.Format.ARC);
+    assertEquals(4, t.getLength());
+    assertEquals(10, t.get(0));
+    assertEquals(12, t.get(2));
+    assertEquals(20, t.get(3));
+  }
+
+  @Test
+  public void lirsFormat() throws Exception {
+    Trace t = read("5\n*\n6\n\n5\n", Trace.Format.LIRS);
+    assertEquals(3, t.getLength());
+    assertEquals(6, t.get(1));
+  }
+
+  @Test
+  public void wikipediaFormat() throws Exception {
+    Trace t = read(
+      "1 1190146243.324 http://en.wikipedia.org/wiki/A -\n" +
+      "2 1190146243.326 http://en.wikipedia.org/wiki/B -\n" +
+      "3 1190146243.330 http://en.wikipedia.org/wiki/A -\n", Trace.Format.WIKIPEDIA);
+    assertEquals(3, t.getLength());
+    assertEquals(t.get(0), t.get(2));
+    assertNotEquals(t.get(0), t.get(1));
+  }
+
+  @Test
+  public void plainFormat() throws Exception {
+    Trace t = read("a\n4711\na\n", Trace.Format.PLAIN);
+    assertEquals(3, t.getLength());
+    assertEquals("a".hashCode(), t.get(0));
+    assertEquals(4711, t.get(1));
+  }
+
+  @Test
+  public void gzip() throws Exception {
+    File f = folder.newFile("trace.gz");
+    OutputStream out = new GZIPOutputStream(new FileOutputStream(f));
+    for (int i = 0; i < 1000; i++) {
+      out.write((i + "\n").getBytes("UTF-8"));
+    }
+    out.close();
+    Trace t = Trace.read(f, Trace.Format.LIRS);
+    assertEquals(1000, t.getLength());
+    assertEquals(999, t.get(999));
+  }
+
+  private static EvictionSimulator.Result run(String _policy, Trace t, long _capacity) throws Exception {
+    return new EvictionSimulator(EvictionSimulator.factoryFor(_policy)).run(t, _capacity);
+  }
+
+  private static void assertHitRate(String _policy, Trace t, long _capacity, double _min, double _max)
+    throws Exception {
+    EvictionSimulator.Result r = run(_policy, t, _capacity);
+    assertTrue(r + " >= " + _min, r.getHitRate() >= _min);
+    assertTrue(r + " <= " + _max, r.getHitRate() <= _max);
+    assertEquals(t.getLength() - r.getHitCount() - _capacity, r.getEvictionCount());
+  }
+
+  /**
+   * Hot set of 100 keys, accessed in 80 percent of the requests, within 10000 cold keys.
+   */
+  static Trace hotAndCold() {
+    Random r = new Random(1802);
+    int[] _keys = new int[100000];
+    for (int i = 0; i < _keys.length; i++) {
+      _keys[i] = r.nextInt(10) < 8 ? r.nextInt(100) : 100 + r.nextInt(10000);
+    }
+    return Trace.of("hotAndCold", _keys);
+  }
+
+  /**
+   * Loop over 150 keys, longer than the capacity.
+   */
+  static Trace loop() {
+    int[] _keys = new int[15000];
+    for (int i = 0; i < _keys.length; i++) {
+      _keys[i] = i % 150;
+    }
+    return Trace.of("loop", _keys);
+  }
+
+  @Test
+  public void hotAndColdHitRates() throws Exception {
+    Trace t = hotAndCold();
+    assertHitRate(EvictionPolicyConfiguration.CLOCK_PRO, t, 100, 72, 82);
+    assertHitRate(EvictionPolicyConfiguration.LRU, t, 100, 54, 64);
+    assertHitRate(EvictionPolicyConfiguration.SLRU, t, 100, 65, 75);
+    assertHitRate(EvictionPolicyConfiguration.ARC, t, 100, 73, 83);
+    assertHitRate(EvictionSimulator.RANDOM, t, 100, 33, 44);
+  }
+
+  /**
+   * LRU and its variants miss on each access of a loop. Random eviction keeps some entries.
+   */
+  @Test
+  public void loopHitRates() throws Exception {
+    Trace t = loop();
+    assertHitRate(EvictionPolicyConfiguration.CLOCK_PRO, t, 100, 0, 5);
+    assertHitRate(EvictionPolicyConfiguration.LRU, t, 100, 0, 0);
+    assertHitRate(EvictionPolicyConfiguration.SLRU, t, 100, 0, 0);
+    assertHitRate(EvictionPolicyConfiguration.ARC, t, 100, 0, 0);
+    assertHitRate(EvictionSimulator.RANDOM, t, 100, 45, 60);
+  }
+
+  @Test
+  public void noEvictionBelowCapacity() throws Exception {
+    EvictionSimulator.Result r = run(EvictionPolicyConfiguration.CLOCK_PRO, loop(), 150);
+    assertEquals(0, r.getEvictionCount());
+    assertEquals(15000 - 150, r.getHitCount());
+  }
+
+}
@@ -0,0 +1,108 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class FrequencySketchTest {
+
+  @Test
+  public void tableSize() {
+    assertEquals(16, new FrequencySketch(1, 10).getTableSize());
+    assertEquals(1024, new FrequencySketch(-1, 10).getTableSize());
+    assertEquals(1024, new FrequencySketch(1000, 10).getTableSize());
+    assertEquals(1024, new FrequencySketch(1024, 10).getTableSize());
+  }
+
+  @Test
+  public void incrementAndSaturate() {
+    FrequencySketch s = new FrequencySketch(1000, 10);
+    assertEquals(0, s.frequency(4711));
+    s.increment(4711);
+    assertEquals(1, s.frequency(4711));
+    for (int i = 0; i < 20; i++) {
+      s.increment(4711);
+    }
+    assertEquals(FrequencySketch.MAXIMUM_FREQUENCY, s.frequency(4711));
+  }
+
+  @Test
+  public void addSameAsIncrements() {
+    FrequencySketch s = new FrequencySketch(1000, 10);
+    FrequencySketch s2 = new FrequencySketch(1000, 10);
+    s.increment(1);
+    s2.increment(1);
+    s.add(4711, 7);
+    for (int i = 0; i < 7; i++) {
+      s2.increment(4711);
+    }
+    assertEquals(7, s.frequency(4711));
+    assertEquals(s2.frequency(1), s.frequency(1));
+    s.add(4711, 100);
+    assertEquals(FrequencySketch.MAXIMUM_FREQUENCY, s.frequency(4711));
+    s.add(4711, 0);
+    assertEquals(FrequencySketch.MAXIMUM_FREQUENCY, s.frequency(4711));
+  }
+
+  @Test
+  public void estimateSeparatesKeys() {
+    FrequencySketch s = new FrequencySketch(1000, 10);
+    for (int i = 0; i < 500; i++) {
+      s.increment(i);
+    }
+    for (int i = 0; i < 5; i++) {
+      s.increment(4711);
+    }
+    assertEquals(5, s.frequency(4711));
+    int _overEstimated = 0;
+    for (int i = 0; i < 500; i++) {
+      int f = s.frequency(i);
+      assertTrue(f >= 1);
+      if (f > 1) {
+        _overEstimated++;
+      }
+    }
+    assertTrue("over estimated: " + _overEstimated, _overEstimated < 50);
+  }
+
+  @Test
+  public void agingHalvesCounters() {
+    FrequencySketch s = new FrequencySketch(16, 1);
+    for (int i = 0; i < 8; i++) {
+      s.increment(4711);
+    }
+    assertEquals(8, s.frequency(4711));
+    assertEquals(0, s.getResetCount());
+    for (int i = 0; s.getResetCount() == 0; i++) {
+      s.increment(i + 10000);
+    }
+    assertTrue(s.frequency(4711) <= 4);
+  }
+
+}
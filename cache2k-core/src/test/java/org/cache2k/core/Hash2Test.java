@@ -23,10 +23,14 @@ package org.cache2k.core;
 import static org.junit.Assert.*;
 
 import org.cache2k.core.concurrency.Job;
+import org.cache2k.core.concurrency.OptimisticLock;
 import org.cache2k.testing.category.FastTests;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * @author Jens Wilke
  */
@@ -53,4 +57,173 @@ public class Hash2Test {
     }
   }
 
+  /**
+   * Insert entries with incremental expansion enabled. Every entry must stay reachable
+   * while the migration is running and after it completes.
+   */
+  @Test
+  public void testIncrementalExpansion() {
+    Hash2<Integer, Integer> ht = new Hash2<Integer, Integer>(null, true, false);
+    final int _count = 10000;
+    boolean _expansionSeen = false;
+    for (int i = 0; i < _count; i++) {
+      insert(ht, i);
+      _expansionSeen |= ht.getExpansionEntries() != null;
+      if (i % 97 == 0) {
+        for (int j = 0; j <= i; j++) {
+          assertNotNull(lookup(ht, j));
+        }
+      }
+    }
+    assertTrue("expansion running during inserts", _expansionSeen);
+    assertEquals(_count, ht.getSize());
+    assertEquals(_count, ht.calcEntryCount());
+    ht.completeExpansion();
+    assertNull(ht.getExpansionEntries());
+    assertEquals(_count, ht.calcEntryCount());
+    for (int i = 0; i < _count; i++) {
+      Entry<Integer, Integer> e = lookup(ht, i);
+      assertNotNull(e);
+      assertTrue(ht.remove(e));
+    }
+    assertEquals(0, ht.getSize());
+    assertEquals(0, ht.calcEntryCount());
+  }
+
+  /**
+   * Insert entries with segmented tables. Each segment table expands on its own.
+   */
+  @Test
+  public void testSegmentedTables() {
+    final Hash2<Integer, Integer> ht = new Hash2<Integer, Integer>(null, false, true);
+    assertTrue(ht.getTableCount() > 1);
+    long _initialCapacity = ht.getEntryCapacity();
+    final int _count = 10000;
+    for (int i = 0; i < _count; i++) {
+      insert(ht, i);
+    }
+    assertTrue(ht.getEntryCapacity() > _initialCapacity);
+    assertEquals(_count, ht.getSize());
+    assertEquals(_count, ht.calcEntryCount());
+    for (int i = 0; i < _count; i++) {
+      assertNotNull(lookup(ht, i));
+    }
+    assertNull(lookup(ht, _count));
+    ht.runTotalLocked(new Job() {
+      @Override
+      public Object call() {
+        ht.rehash();
+        return null;
+      }
+    });
+    for (int i = 0; i < _count; i++) {
+      Entry<Integer, Integer> e = lookup(ht, i);
+      assertNotNull(e);
+      assertTrue(ht.remove(e));
+    }
+    assertEquals(0, ht.calcEntryCount());
+  }
+
+  /**
+   * Rehash while an incremental expansion is running and the migration of the
+   * segments has already started.
+   */
+  @Test
+  public void testRehashDuringIncrementalExpansion() {
+    int _chunkSize = HeapCache.TUNABLE.hashExpansionChunkSize;
+    HeapCache.TUNABLE.hashExpansionChunkSize = 1;
+    try {
+      final Hash2<Integer, Integer> ht = new Hash2<Integer, Integer>(null, true, false);
+      int _count = 0;
+      while (ht.getExpansionEntries() == null) {
+        insert(ht, _count++);
+      }
+      insert(ht, _count++);
+      assertNotNull(ht.getExpansionEntries());
+      ht.runTotalLocked(new Job() {
+        @Override
+        public Object call() {
+          ht.rehash();
+          return null;
+        }
+      });
+      assertNull(ht.getExpansionEntries());
+      assertEquals(_count, ht.calcEntryCount());
+      for (int i = 0; i < _count; i++) {
+        assertNotNull(lookup(ht, i));
+      }
+    } finally {
+      HeapCache.TUNABLE.hashExpansionChunkSize = _chunkSize;
+    }
+  }
+
+  /**
+   * Optimistic lookups in parallel to inserts that migrate buckets of a running
+   * incremental expansion. Every existing key must be found.
+   */
+  @Test
+  public void testLookupDuringIncrementalExpansion() throws Exception {
+    int _chunkSize = HeapCache.TUNABLE.hashExpansionChunkSize;
+    HeapCache.TUNABLE.hashExpansionChunkSize = 1;
+    try {
+      final Hash2<Integer, Integer> ht = new Hash2<Integer, Integer>(null, true, false);
+      final int _existing = 1000;
+      for (int i = 0; i < _existing; i++) {
+        insert(ht, i);
+      }
+      final AtomicBoolean _stop = new AtomicBoolean();
+      final AtomicInteger _misses = new AtomicInteger();
+      Thread[] _readers = new Thread[4];
+      for (int t = 0; t < _readers.length; t++) {
+        _readers[t] = new Thread() {
+          @Override
+          public void run() {
+            while (!_stop.get()) {
+              for (int i = 0; i < _existing; i++) {
+                if (lookup(ht, i) == null) {
+                  _misses.incrementAndGet();
+                }
+              }
+            }
+          }
+        };
+        _readers[t].start();
+      }
+      boolean _expansionSeen = false;
+      for (int i = _existing; i < 100000; i++) {
+        insert(ht, i);
+        _expansionSeen |= ht.getExpansionEntries() != null;
+      }
+      ht.completeExpansion();
+      _stop.set(true);
+      for (Thread t : _readers) {
+        t.join();
+      }
+      assertTrue("expansion running during inserts", _expansionSeen);
+      assertEquals(0, _misses.get());
+    } finally {
+      HeapCache.TUNABLE.hashExpansionChunkSize = _chunkSize;
+    }
+  }
+
+  private static void insert(Hash2<Integer, Integer> ht, int k) {
+    Integer key = k;
+    int hc = HeapCache.modifiedHash(key.hashCode());
+    Entry<Integer, Integer> e = new Entry<Integer, Integer>(key, hc);
+    OptimisticLock l = ht.getSegmentLock(hc);
+    long _stamp = l.writeLock();
+    try {
+      assertSame(e, ht.insertWithinLock(e, hc, hc));
+    } finally {
+      l.unlockWrite(_stamp);
+    }
+    ht.checkExpand(hc);
+  }
+
+  private static Entry<Integer, Integer> lookup(Hash2<Integer, Integer> ht, int k) {
+    Integer key = k;
+    int hc = HeapCache.modifiedHash(key.hashCode());
+    return ht.lookup(key, hc, hc);
+  }
+
 }
@@ -20,8 +20,13 @@ package org.cache2k.core;
  * #L%
  */
 
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.integration.CacheLoader;
 import org.junit.Test;
 
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.Assert.*;
 
 /**
@@ -83,4 +88,40 @@ public class InternalCache2kBuilderTest {
     assertEquals(32, _segs);
   }
 
+  @Test
+  public void compactEntries_eternal() {
+    Cache<Long, String> c = Cache2kBuilder.of(Long.class, String.class)
+      .eternal(true)
+      .build();
+    assertTrue(c.requestInterface(HeapCache.class).isCompactEntries());
+    c.put(1L, "one");
+    assertEquals("one", c.peek(1L));
+    c.close();
+  }
+
+  @Test
+  public void compactEntries_notWithExpiry() {
+    Cache<Integer, String> c = Cache2kBuilder.of(Integer.class, String.class)
+      .expireAfterWrite(5, TimeUnit.MINUTES)
+      .build();
+    assertFalse(c.requestInterface(HeapCache.class).isCompactEntries());
+    c.close();
+  }
+
+  @Test
+  public void compactEntries_notWithLoader() {
+    Cache<Integer, String> c = Cache2kBuilder.of(Integer.class, String.class)
+      .eternal(true)
+      .loader(new CacheLoader<Integer, String>() {
+        @Override
+        public String load(final Integer key) {
+          return key.toString();
+        }
+      })
+      .build();
+    assertFalse(c.requestInterface(HeapCache.class).isCompactEntries());
+    assertEquals("1", c.get(1));
+    c.close();
+  }
+
 }
@@ -0,0 +1,89 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.Weigher;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.junit.Assert.*;
+
+/**
+ * Run the clock pro eviction tests with the LRU policy and test selecting a custom
+ * eviction factory.
+ *
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class LruEvictionTest extends ClockProEvictionTest {
+
+  protected Cache<Integer, Integer> provideCache(long _size) {
+    return builder(Integer.class, Integer.class)
+      .eternal(true)
+      .entryCapacity(_size)
+      .with(new EvictionPolicyConfiguration.Builder().policy(EvictionPolicyConfiguration.LRU))
+      .build();
+  }
+
+  @Test
+  public void accessedEntrySurvives() {
+    LruEviction ev = new LruEviction(null, HeapCacheListener.NO_OPERATION, 3, null, -1, true);
+    Entry e0 = new Entry(0, 0);
+    ev.insertIntoReplacementList(e0);
+    ev.insertIntoReplacementList(new Entry(1, 1));
+    ev.insertIntoReplacementList(new Entry(2, 2));
+    e0.hitCnt++;
+    Entry e = ev.findEvictionCandidate(null);
+    assertEquals(1, e.hashCode);
+    ev.removeFromReplacementListOnEvict(e);
+    assertEquals(2, ev.getSize());
+    assertEquals(1, ev.getHitCount());
+    assertEquals(0, e0.hitCnt);
+  }
+
+  @Test
+  public void customFactory() {
+    Cache<Integer, Integer> c = builder(Integer.class, Integer.class)
+      .eternal(true)
+      .entryCapacity(10)
+      .with(new EvictionPolicyConfiguration.Builder().factory(MyFactory.class))
+      .build();
+    for (int i = 0; i < 20; i++) {
+      c.put(i, i);
+    }
+    assertEquals(10, countEntriesViaIteration());
+    assertTrue(getInfo().getExtraStatistics().contains("impl=LruEviction"));
+  }
+
+  public static class MyFactory implements EvictionFactory {
+
+    @Override
+    public AbstractEviction create(final HeapCache heapCache, final HeapCacheListener listener,
+                                   final long maxSize, final Weigher weigher, final long maxWeight,
+                                   final boolean noChunking) {
+      return new LruEviction(heapCache, listener, maxSize, weigher, maxWeight, noChunking);
+    }
+
+  }
+
+}
@@ -0,0 +1,108 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import org.cache2k.Cache;
+import org.cache2k.eviction.EvictionEntry;
+import org.cache2k.eviction.EvictionPolicy;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Run the clock pro eviction tests with a custom policy plugged in via the
+ * eviction SPI.
+ *
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class PolicyEvictionTest extends ClockProEvictionTest {
+
+  protected Cache<Integer, Integer> provideCache(long _size) {
+    return builder(Integer.class, Integer.class)
+      .eternal(true)
+      .entryCapacity(_size)
+      .with(new EvictionPolicyConfiguration.Builder().policy(FifoPolicy.class))
+      .build();
+  }
+
+  @Test
+  public void evictsFirstInserted() {
+    Cache<Integer, Integer> c = provideCache(10);
+    for (int i = 0; i < 20; i++) {
+      c.put(i, i);
+    }
+    assertEquals(10, countEntriesViaIteration());
+    for (int i = 10; i < 20; i++) {
+      assertTrue(c.containsKey(i));
+    }
+    assertTrue(getInfo().getExtraStatistics().contains("policy=" + FifoPolicy.class.getName()));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void hitCountOfEntry() {
+    Cache<Integer, Integer> c = provideCache(10);
+    c.put(1, 1);
+    c.get(1);
+    c.get(1);
+    HeapCache<Integer, Integer> hc = c.requestInterface(HeapCache.class);
+    Entry<Integer, Integer> e = hc.lookupEntryNoHitRecord(1);
+    assertEquals(2, e.getHitCount());
+    assertEquals(HeapCache.modifiedHash(Integer.valueOf(1).hashCode()), e.getKeyHash());
+  }
+
+  /**
+   * Evicts in insertion order. Consecutive selections without a removal in between
+   * continue the iteration, so each returns a different entry.
+   */
+  public static class FifoPolicy implements EvictionPolicy {
+
+    private final LinkedHashSet<EvictionEntry> entries = new LinkedHashSet<EvictionEntry>();
+    private Iterator<EvictionEntry> hand;
+
+    @Override
+    public void insert(final EvictionEntry e) {
+      entries.add(e);
+      hand = null;
+    }
+
+    @Override
+    public void remove(final EvictionEntry e) {
+      entries.remove(e);
+      hand = null;
+    }
+
+    @Override
+    public EvictionEntry selectVictim() {
+      if (hand == null || !hand.hasNext()) {
+        hand = entries.iterator();
+      }
+      return hand.next();
+    }
+
+  }
+
+}
@@ -0,0 +1,55 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import org.cache2k.Cache;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.junit.Assert.*;
+
+/**
+ * Run the clock pro eviction tests with the random policy.
+ *
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class RandomEvictionTest extends ClockProEvictionTest {
+
+  protected Cache<Integer, Integer> provideCache(long _size) {
+    return builder(Integer.class, Integer.class)
+      .eternal(true)
+      .entryCapacity(_size)
+      .with(new EvictionPolicyConfiguration.Builder().policy(EvictionPolicyConfiguration.RANDOM))
+      .build();
+  }
+
+  @Test
+  public void selected() {
+    Cache<Integer, Integer> c = provideCache(10);
+    for (int i = 0; i < 20; i++) {
+      c.put(i, i);
+    }
+    assertEquals(10, countEntriesViaIteration());
+    assertTrue(getInfo().getExtraStatistics().contains("impl=RandomEviction"));
+  }
+
+}
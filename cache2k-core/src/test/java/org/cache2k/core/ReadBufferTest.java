@@ -0,0 +1,94 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class ReadBufferTest {
+
+  @Test
+  public void sizes() {
+    ReadBuffer b = new ReadBuffer(3, 10);
+    assertEquals(4, b.getStripeCount());
+    assertEquals(16, b.getStripeSize());
+    b = new ReadBuffer(1, 1);
+    assertEquals(1, b.getStripeCount());
+    assertEquals(1, b.getStripeSize());
+    b = new ReadBuffer(0, 16);
+    assertTrue(b.getStripeCount() >= Runtime.getRuntime().availableProcessors());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void illegalStripeSize() {
+    new ReadBuffer(1, 0);
+  }
+
+  @Test
+  public void recordAndDrain() {
+    ReadBuffer b = new ReadBuffer(1, 4);
+    Entry e = new Entry();
+    assertFalse(b.record(e));
+    assertFalse(b.record(e));
+    assertEquals(0, e.hitCnt);
+    b.drain();
+    assertEquals(2, e.hitCnt);
+    assertEquals(1, b.getDrainCount());
+    b.drain();
+    assertEquals(2, e.hitCnt);
+  }
+
+  /**
+   * A full stripe drops further accesses until drained.
+   */
+  @Test
+  public void lossyWhenFull() {
+    ReadBuffer b = new ReadBuffer(1, 4);
+    Entry e = new Entry();
+    assertFalse(b.record(e));
+    assertFalse(b.record(e));
+    assertFalse(b.record(e));
+    assertTrue(b.record(e));
+    assertTrue(b.record(e));
+    b.tryDrain();
+    assertEquals(4, e.hitCnt);
+    assertFalse(b.record(e));
+  }
+
+  @Test
+  public void recordAndDrainEventually() {
+    ReadBuffer b = new ReadBuffer(1, 4);
+    Entry e = new Entry();
+    for (int i = 0; i < 10; i++) {
+      b.recordAndDrainEventually(e);
+    }
+    assertEquals(8, e.hitCnt);
+    assertEquals(2, b.getDrainCount());
+  }
+
+}
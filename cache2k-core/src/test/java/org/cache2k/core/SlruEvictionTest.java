@@ -0,0 +1,69 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.junit.Assert.*;
+
+/**
+ * Run the clock pro eviction tests with the segmented LRU policy.
+ *
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class SlruEvictionTest extends ClockProEvictionTest {
+
+  protected Cache<Integer, Integer> provideCache(long _size) {
+    return builder(Integer.class, Integer.class)
+      .eternal(true)
+      .entryCapacity(_size)
+      .with(new EvictionPolicyConfiguration.Builder().policy(EvictionPolicyConfiguration.SLRU))
+      .build();
+  }
+
+  @Test
+  public void promoteAndDemote() {
+    SlruEviction ev = new SlruEviction(null, HeapCacheListener.NO_OPERATION, 10, null, -1, true);
+    assertEquals(8, ev.getProtectedMax());
+    Entry[] _entries = new Entry[10];
+    for (int i = 0; i < _entries.length; i++) {
+      _entries[i] = new Entry(i, i);
+      ev.insertIntoReplacementList(_entries[i]);
+    }
+    for (int i = 0; i < 9; i++) {
+      _entries[i].hitCnt++;
+    }
+    Entry e = ev.findEvictionCandidate(null);
+    assertEquals(9, e.hashCode);
+    assertTrue(ev.getExtraStatistics().contains("protectedSize=8"));
+    assertTrue(ev.getExtraStatistics().contains("demoteCnt=1"));
+    assertFalse(_entries[0].isHot());
+    assertTrue(_entries[1].isHot());
+    ev.removeFromReplacementListOnEvict(e);
+    assertEquals(9, ev.getSize());
+    assertEquals(9, ev.getHitCount());
+  }
+
+}
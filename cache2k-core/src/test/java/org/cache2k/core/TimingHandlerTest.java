@@ -23,8 +23,10 @@ package org.cache2k.core;
 import org.cache2k.Cache;
 import org.cache2k.Cache2kBuilder;
 import org.cache2k.CacheEntry;
+import org.cache2k.CacheManager;
 import org.cache2k.core.util.ClockDefaultImpl;
 import org.cache2k.core.util.InternalClock;
+import org.cache2k.core.util.SimpleTimer;
 import org.cache2k.core.util.TunableFactory;
 import org.cache2k.expiry.ExpiryPolicy;
 import org.cache2k.integration.CacheLoader;
@@ -33,6 +35,7 @@ import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import java.lang.ref.WeakReference;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
@@ -282,4 +285,78 @@ public class TimingHandlerTest {
     c.close();
   }
 
+  /**
+   * Caches of one manager share the timers, tasks are accounted per cache.
+   */
+  @Test
+  public void sharedTimer() {
+    CacheManager cm = CacheManager.getInstance(TimingHandlerTest.class.getName() + "-sharedTimer");
+    Cache<Integer, Integer> c1 = Cache2kBuilder.of(Integer.class, Integer.class)
+      .manager(cm)
+      .expireAfterWrite(5, TimeUnit.MINUTES)
+      .build();
+    Cache<Integer, Integer> c2 = Cache2kBuilder.of(Integer.class, Integer.class)
+      .manager(cm)
+      .expireAfterWrite(5, TimeUnit.MINUTES)
+      .build();
+    TimingHandler.Static h1 = (TimingHandler.Static) c1.requestInterface(HeapCache.class).timing;
+    TimingHandler.Static h2 = (TimingHandler.Static) c2.requestInterface(HeapCache.class).timing;
+    assertSame(h1.timer, h2.timer);
+    c1.put(1, 1);
+    c2.put(1, 1);
+    c2.put(2, 2);
+    assertEquals(1, h1.getScheduledTaskCount());
+    assertEquals(2, h2.getScheduledTaskCount());
+    SharedTimerService _service = ((CacheManagerImpl) cm).getTimerService();
+    assertEquals(1, _service.getClockCount());
+    c1.close();
+    c2.remove(1);
+    assertEquals(1, h2.getScheduledTaskCount());
+    assertEquals(1, _service.getClockCount());
+    SimpleTimer[] _timers = h2.timer;
+    c2.clear();
+    assertEquals(0, h2.getScheduledTaskCount());
+    assertSame("timers kept after clear", _timers, h2.timer);
+    c2.put(3, 3);
+    assertEquals(1, h2.getScheduledTaskCount());
+    c2.close();
+    assertEquals(0, _service.getClockCount());
+    cm.close();
+  }
+
+  /**
+   * Tasks of a closed or cleared cache are removed from the shared timers, so the
+   * entries do not stay reachable until their expiry time.
+   */
+  @Test
+  public void sharedTimerReleasesEntries() {
+    CacheManager cm = CacheManager.getInstance(TimingHandlerTest.class.getName() + "-sharedTimerReleasesEntries");
+    Cache<Integer, Object> c1 = Cache2kBuilder.of(Integer.class, Object.class)
+      .manager(cm)
+      .expireAfterWrite(5, TimeUnit.MINUTES)
+      .build();
+    Cache<Integer, Object> c2 = Cache2kBuilder.of(Integer.class, Object.class)
+      .manager(cm)
+      .expireAfterWrite(5, TimeUnit.MINUTES)
+      .build();
+    WeakReference<Object> _closedValue = putAndReference(c1);
+    WeakReference<Object> _clearedValue = putAndReference(c2);
+    c1.close();
+    c1 = null;
+    c2.clear();
+    c2.put(1, new Object());
+    for (int i = 0; i < 100 && (_closedValue.get() != null || _clearedValue.get() != null); i++) {
+      System.gc();
+    }
+    assertNull("value of closed cache unreachable", _closedValue.get());
+    assertNull("value of cleared cache unreachable", _clearedValue.get());
+    cm.close();
+  }
+
+  private static WeakReference<Object> putAndReference(Cache<Integer, Object> c) {
+    Object _value = new Object();
+    c.put(1, _value);
+    return new WeakReference<Object>(_value);
+  }
+
 }
@@ -0,0 +1,188 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Sequence of requested keys read from a trace file. Keys are folded to integers.
+ * The complete trace is kept in memory, so the replay does not measure the parsing.
+ *
+ * @author Jens Wilke
+ * @see EvictionSimulator
+ */
+public class Trace {
+
+  private final String name;
+  private final int[] keys;
+  private final int length;
+
+  Trace(final String _name, final int[] _keys, final int _length) {
+    name = _name;
+    keys = _keys;
+    length = _length;
+  }
+
+  public static Trace of(final String _name, final int... _keys) {
+    return new Trace(_name, _keys, _keys.length);
+  }
+
+  /**
+   * Read a trace file. Files ending with {@code .gz} are decompressed while reading.
+   */
+  public static Trace read(final File f, final Format _format) throws IOException {
+    InputStream in = new FileInputStream(f);
+    try {
+      if (f.getName().endsWith(".gz")) {
+        in = new GZIPInputStream(in);
+      }
+      return read(f.getName(), in, _format);
+    } finally {
+      in.close();
+    }
+  }
+
+  public static Trace read(final String _name, final InputStream in, final Format _format) throws IOException {
+    BufferedReader r = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+    Builder b = new Builder(_name);
+    String _line;
+    while ((_line = r.readLine()) != null) {
+      _line = _line.trim();
+      if (_line.length() > 0) {
+        _format.parse(_line, b);
+      }
+    }
+    return b.build();
+  }
+
+  static int fold(long v) {
+    return (int) (v ^ (v >>> 32));
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getLength() {
+    return length;
+  }
+
+  public int get(int idx) {
+    return keys[idx];
+  }
+
+  public enum Format {
+
+    /**
+     * Traces from the ARC paper: {@code startBlock blockCount ignore requestNumber}.
+     * Each block of the request is an access.
+     */
+    ARC {
+      @Override
+      void parse(final String _line, final Builder b) {
+        String[] sa = _line.split(" ");
+        long _start = Long.parseLong(sa[0]);
+        int _count = Integer.parseInt(sa[1]);
+        for (int i = 0; i < _count; i++) {
+          b.add(fold(_start + i));
+        }
+      }
+    },
+
+    /**
+     * Traces from the LIRS paper: one block number per line, lines with {@code *} are ignored.
+     */
+    LIRS {
+      @Override
+      void parse(final String _line, final Builder b) {
+        if (_line.startsWith("*")) {
+          return;
+        }
+        b.add(fold(Long.parseLong(_line)));
+      }
+    },
+
+    /**
+     * Wikipedia access traces: {@code counter timestamp url saveFlag}. The key is the hash of the URL.
+     */
+    WIKIPEDIA {
+      @Override
+      void parse(final String _line, final Builder b) {
+        String[] sa = _line.split(" ");
+        if (sa.length < 3) {
+          return;
+        }
+        b.add(sa[2].hashCode());
+      }
+    },
+
+    /**
+     * One key per line. Numbers are used as they are, other keys by their hash code.
+     */
+    PLAIN {
+      @Override
+      void parse(final String _line, final Builder b) {
+        long v;
+        try {
+          v = Long.parseLong(_line);
+        } catch (NumberFormatException ex) {
+          b.add(_line.hashCode());
+          return;
+        }
+        b.add(fold(v));
+      }
+    };
+
+    abstract void parse(String _line, Builder b);
+
+  }
+
+  static class Builder {
+
+    private final String name;
+    private int[] keys = new int[1024];
+    private int length;
+
+    Builder(final String _name) {
+      name = _name;
+    }
+
+    void add(int _key) {
+      if (length == keys.length) {
+        keys = Arrays.copyOf(keys, keys.length * 2);
+      }
+      keys[length++] = _key;
+    }
+
+    Trace build() {
+      return new Trace(name, keys, length);
+    }
+
+  }
+
+}
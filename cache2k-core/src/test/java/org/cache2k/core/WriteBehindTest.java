@@ -0,0 +1,195 @@
+package org.cache2k.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.integration.CacheWriter;
+import org.cache2k.test.util.Condition;
+import org.cache2k.test.util.TestingBase;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test write behind. The writer records the operations in order.
+ *
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class WriteBehindTest extends TestingBase {
+
+  final List<String> written = Collections.synchronizedList(new ArrayList<String>());
+
+  class RecordingWriter extends CacheWriter<Integer, Integer> {
+
+    @Override
+    public void write(final Integer key, final Integer value) throws Exception {
+      written.add(key + "=" + value);
+    }
+
+    @Override
+    public void delete(final Integer key) throws Exception {
+      written.add(key + " deleted");
+    }
+  }
+
+  Cache<Integer, Integer> cache(CacheWriter<Integer, Integer> w, WriteBehindConfiguration.Builder b) {
+    return builder(Integer.class, Integer.class).writer(w).with(b).build();
+  }
+
+  static WriteBehind<?, ?> writeBehind(Cache<?, ?> c) {
+    return ((WiredCache<?, ?>) c).writeBehind;
+  }
+
+  void awaitWritten(final int _count) {
+    await("written " + _count, new Condition() {
+      @Override
+      public boolean check() throws Exception {
+        return written.size() >= _count;
+      }
+    });
+  }
+
+  @Test
+  public void coalesceAndFlushOnClose() {
+    Cache<Integer, Integer> c = cache(new RecordingWriter(),
+      new WriteBehindConfiguration.Builder().windowMillis(Long.MAX_VALUE / 2));
+    c.put(1, 1);
+    c.put(1, 2);
+    c.put(2, 1);
+    c.remove(2);
+    c.put(3, 1);
+    assertEquals((Integer) 2, c.peek(1));
+    assertFalse(c.containsKey(2));
+    assertTrue(written.isEmpty());
+    WriteBehind<?, ?> wb = writeBehind(c);
+    assertEquals(3, wb.getQueueSize());
+    assertEquals(2, wb.getCoalescedCount());
+    c.close();
+    assertEquals(Arrays.asList("1=2", "2 deleted", "3=1"), written);
+    assertEquals(3, wb.getWrittenCount());
+    assertEquals(1, wb.getBatchCount());
+  }
+
+  @Test
+  public void flushOnBatchSize() {
+    Cache<Integer, Integer> c = cache(new RecordingWriter(),
+      new WriteBehindConfiguration.Builder().windowMillis(Long.MAX_VALUE / 2).batchSize(3));
+    c.put(1, 1);
+    c.put(2, 1);
+    assertTrue(written.isEmpty());
+    c.put(3, 1);
+    awaitWritten(3);
+    assertEquals(Arrays.asList("1=1", "2=1", "3=1"), written);
+    c.close();
+  }
+
+  @Test
+  public void flushAfterWindow() {
+    Cache<Integer, Integer> c = cache(new RecordingWriter(),
+      new WriteBehindConfiguration.Builder().windowMillis(1));
+    c.put(1, 1);
+    awaitWritten(1);
+    c.put(1, 2);
+    awaitWritten(2);
+    assertEquals(Arrays.asList("1=1", "1=2"), written);
+    c.close();
+  }
+
+  /**
+   * A new key beyond the queue limit starts a flush and blocks until
+   * a batch was written.
+   */
+  @Test
+  public void backPressure() throws Exception {
+    final CountDownLatch _release = new CountDownLatch(1);
+    final Cache<Integer, Integer> c = cache(new RecordingWriter() {
+        @Override
+        public void write(final Integer key, final Integer value) throws Exception {
+          _release.await();
+          super.write(key, value);
+        }
+      },
+      new WriteBehindConfiguration.Builder().windowMillis(Long.MAX_VALUE / 2).maxQueueSize(2));
+    c.put(1, 1);
+    c.put(2, 1);
+    c.put(1, 2);
+    Thread t = new Thread() {
+      @Override
+      public void run() {
+        c.put(3, 1);
+      }
+    };
+    t.start();
+    final WriteBehind<?, ?> wb = writeBehind(c);
+    await("back pressure", new Condition() {
+      @Override
+      public boolean check() throws Exception {
+        return wb.getBackPressureCount() == 1;
+      }
+    });
+    t.join(50);
+    assertTrue("put blocks", t.isAlive());
+    _release.countDown();
+    t.join();
+    awaitWritten(3);
+    assertEquals(Arrays.asList("1=2", "2=1", "3=1"), written);
+    assertEquals((Integer) 1, c.peek(3));
+    c.close();
+  }
+
+  @Test
+  public void writerFailureIsCounted() {
+    Cache<Integer, Integer> c = cache(new RecordingWriter() {
+        @Override
+        public void write(final Integer key, final Integer value) throws Exception {
+          if (key == 1) {
+            throw new Exception("ouch");
+          }
+          super.write(key, value);
+        }
+      },
+      new WriteBehindConfiguration.Builder().windowMillis(Long.MAX_VALUE / 2));
+    c.put(1, 1);
+    c.put(2, 1);
+    WriteBehind<?, ?> wb = writeBehind(c);
+    c.close();
+    assertEquals(Arrays.asList("2=1"), written);
+    assertEquals(1, wb.getFailureCount());
+    assertEquals(1, wb.getWrittenCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void writerMissing() {
+    builder(Integer.class, Integer.class)
+      .with(new WriteBehindConfiguration.Builder())
+      .build();
+  }
+
+}
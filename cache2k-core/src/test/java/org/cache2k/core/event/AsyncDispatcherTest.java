@@ -0,0 +1,294 @@
+package org.cache2k.core.event;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.CacheEntry;
+import org.cache2k.event.CacheEntryCreatedListener;
+import org.cache2k.test.util.Condition;
+import org.cache2k.test.util.TestingBase;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test the striped dispatcher with an executor that runs the submitted
+ * tasks only when asked to.
+ *
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class AsyncDispatcherTest extends TestingBase {
+
+  final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+  final List<Runnable> tasks = Collections.synchronizedList(new ArrayList<Runnable>());
+  final Object listener = new Object();
+
+  final Executor executor = new Executor() {
+    @Override
+    public void execute(final Runnable r) {
+      tasks.add(r);
+    }
+  };
+
+  AsyncDispatcher<Integer> dispatcher(AsyncDispatcherConfiguration.Builder b) {
+    return new AsyncDispatcher<Integer>(null, executor, b.stripes(1).buildConfigurationSection());
+  }
+
+  void runTasks() {
+    while (!tasks.isEmpty()) {
+      tasks.remove(0).run();
+    }
+  }
+
+  AsyncEvent<Integer> event(final int key, final String _name) {
+    return new AsyncEvent<Integer>() {
+      @Override
+      public Integer getKey() {
+        return key;
+      }
+
+      @Override
+      public void execute() {
+        executed.add(_name);
+      }
+
+      @Override
+      public Object getListener() {
+        return listener;
+      }
+    };
+  }
+
+  @Test
+  public void oneTaskPerBurstInOrder() {
+    AsyncDispatcher<Integer> d = dispatcher(new AsyncDispatcherConfiguration.Builder());
+    d.queue(event(1, "a"));
+    d.queue(event(2, "b"));
+    d.queue(event(1, "c"));
+    assertEquals(1, tasks.size());
+    assertEquals(3, d.getQueueSize());
+    runTasks();
+    assertEquals(Arrays.asList("a", "b", "c"), executed);
+    assertEquals(0, d.getQueueSize());
+    assertEquals(3, d.getMaxQueueSize());
+    d.queue(event(1, "d"));
+    assertEquals(1, tasks.size());
+  }
+
+  @Test
+  public void stripesRoundedToPowerOfTwo() {
+    AsyncDispatcher<Integer> d = new AsyncDispatcher<Integer>(null, executor,
+      new AsyncDispatcherConfiguration.Builder().stripes(5).buildConfigurationSection());
+    assertEquals(8, d.getStripeCount());
+  }
+
+  @Test
+  public void dropOldest() {
+    AsyncDispatcher<Integer> d = dispatcher(new AsyncDispatcherConfiguration.Builder()
+      .queueCapacity(2).overflow(AsyncDispatcherConfiguration.Overflow.DROP_OLDEST));
+    d.queue(event(1, "a"));
+    d.queue(event(2, "b"));
+    d.queue(event(3, "c"));
+    runTasks();
+    assertEquals(Arrays.asList("b", "c"), executed);
+    assertEquals(1, d.getDroppedCount());
+  }
+
+  @Test
+  public void coalesceKeepsPosition() {
+    AsyncDispatcher<Integer> d = dispatcher(new AsyncDispatcherConfiguration.Builder()
+      .queueCapacity(2).overflow(AsyncDispatcherConfiguration.Overflow.COALESCE));
+    d.queue(event(1, "a"));
+    d.queue(event(2, "b"));
+    d.queue(event(1, "c"));
+    runTasks();
+    assertEquals(Arrays.asList("c", "b"), executed);
+    assertEquals(1, d.getCoalescedCount());
+  }
+
+  @Test
+  public void growByDefault() {
+    AsyncDispatcher<Integer> d = dispatcher(new AsyncDispatcherConfiguration.Builder()
+      .queueCapacity(1));
+    d.queue(event(1, "a"));
+    d.queue(event(2, "b"));
+    d.queue(event(3, "c"));
+    d.awaitRoom(3);
+    assertEquals(3, d.getQueueSize());
+    runTasks();
+    assertEquals(Arrays.asList("a", "b", "c"), executed);
+    assertEquals(0, d.getBlockedCount());
+  }
+
+  /**
+   * Queuing never waits, the event is queued before the thread waits for room.
+   */
+  @Test
+  public void blockUntilTaken() throws Exception {
+    final AsyncDispatcher<Integer> d = dispatcher(new AsyncDispatcherConfiguration.Builder()
+      .queueCapacity(1).overflow(AsyncDispatcherConfiguration.Overflow.BLOCK));
+    d.queue(event(1, "a"));
+    Thread t = new Thread() {
+      @Override
+      public void run() {
+        d.queue(event(2, "b"));
+        d.awaitRoom(2);
+      }
+    };
+    t.start();
+    await("blocked", new Condition() {
+      @Override
+      public boolean check() throws Exception {
+        return d.getBlockedCount() == 1;
+      }
+    });
+    assertTrue(t.isAlive());
+    assertEquals(2, d.getQueueSize());
+    runTasks();
+    t.join();
+    assertEquals(Arrays.asList("a", "b"), executed);
+  }
+
+  /**
+   * A listener that causes an event in its own stripe must not block.
+   */
+  @Test
+  public void noBlockWhenQueuedByListener() {
+    final AsyncDispatcher<Integer> d = dispatcher(new AsyncDispatcherConfiguration.Builder()
+      .queueCapacity(1).overflow(AsyncDispatcherConfiguration.Overflow.BLOCK));
+    d.queue(new AsyncEvent<Integer>() {
+      @Override
+      public Integer getKey() {
+        return 1;
+      }
+
+      @Override
+      public void execute() {
+        d.queue(event(2, "b"));
+        d.awaitRoom(2);
+        d.queue(event(3, "c"));
+        d.awaitRoom(3);
+      }
+    });
+    runTasks();
+    assertEquals(Arrays.asList("b", "c"), executed);
+    assertEquals(0, d.getBlockedCount());
+  }
+
+  /**
+   * With a full queue the mutating thread waits after the entry is unlocked, so a
+   * listener can operate on the same entry.
+   */
+  @Test
+  public void blockDoesNotLockEntry() throws Exception {
+    final CountDownLatch _release = new CountDownLatch(1);
+    final Cache<Integer, Integer> c = builder(Integer.class, Integer.class)
+      .addAsyncListener(new CacheEntryCreatedListener<Integer, Integer>() {
+        @Override
+        public void onEntryCreated(final Cache<Integer, Integer> cache,
+                                   final CacheEntry<Integer, Integer> entry) {
+          try {
+            _release.await();
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+          }
+          cache.put(1, 10);
+        }
+      })
+      .with(new AsyncDispatcherConfiguration.Builder()
+        .stripes(1).queueCapacity(1).overflow(AsyncDispatcherConfiguration.Overflow.BLOCK))
+      .build();
+    final Thread t = new Thread() {
+      @Override
+      public void run() {
+        c.put(1, 1);
+        c.remove(1);
+        c.put(1, 2);
+        c.remove(1);
+        c.put(1, 3);
+      }
+    };
+    t.start();
+    await("waiting", new Condition() {
+      @Override
+      public boolean check() throws Exception {
+        return t.getState() == Thread.State.WAITING;
+      }
+    });
+    _release.countDown();
+    t.join(10000);
+    assertFalse("deadlock", t.isAlive());
+    c.close();
+  }
+
+  AsyncEvent<Integer> batchEvent(final int key, final Object _listener) {
+    return new BatchedAsyncEvent<Integer>() {
+      @Override
+      public Integer getKey() {
+        return key;
+      }
+
+      @Override
+      public Object getListener() {
+        return _listener;
+      }
+
+      @Override
+      public void executeBatch(final List<AsyncEvent<Integer>> _events) {
+        StringBuilder sb = new StringBuilder();
+        for (AsyncEvent<Integer> e : _events) {
+          sb.append(e.getKey());
+        }
+        executed.add(sb.toString());
+      }
+    };
+  }
+
+  /**
+   * Consecutive events of one listener are passed in one call, up to the batch size.
+   */
+  @Test
+  public void batchConsecutiveEventsOfListener() {
+    Object _otherListener = new Object();
+    AsyncDispatcher<Integer> d = dispatcher(new AsyncDispatcherConfiguration.Builder().batchSize(3));
+    d.queue(batchEvent(1, listener));
+    d.queue(batchEvent(2, listener));
+    d.queue(batchEvent(3, _otherListener));
+    d.queue(batchEvent(4, listener));
+    d.queue(batchEvent(5, listener));
+    d.queue(batchEvent(6, listener));
+    d.queue(batchEvent(7, listener));
+    d.queue(event(8, "a"));
+    runTasks();
+    assertEquals(Arrays.asList("12", "3", "456", "7", "a"), executed);
+  }
+
+}
@@ -0,0 +1,144 @@
+package org.cache2k.core.loader;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.integration.BulkCacheLoader;
+import org.cache2k.integration.CacheLoader;
+import org.cache2k.integration.CacheLoaderException;
+import org.cache2k.test.util.TestingBase;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class CoalescingBulkLoaderTest extends TestingBase {
+
+  final List<Set<Integer>> requests = new CopyOnWriteArrayList<Set<Integer>>();
+  volatile boolean fail;
+
+  final BulkCacheLoader<Integer, Integer> loader = new BulkCacheLoader<Integer, Integer>() {
+    @Override
+    public Map<Integer, Integer> loadAll(final Set<Integer> keys, final long startTime,
+                                         final Executor executor) {
+      requests.add(new HashSet<Integer>(keys));
+      if (fail) {
+        throw new IllegalStateException("loader failure");
+      }
+      Map<Integer, Integer> m = new HashMap<Integer, Integer>();
+      for (Integer k : keys) {
+        m.put(k, k * 2);
+      }
+      return m;
+    }
+  };
+
+  Cache<Integer, Integer> cache(long _maxDelayMillis, int _maxBatchSize) {
+    return builder()
+      .loader(loader)
+      .with(new LoaderCoalescingConfiguration.Builder()
+        .maxDelay(_maxDelayMillis, TimeUnit.MILLISECONDS)
+        .maxBatchSize(_maxBatchSize))
+      .build();
+  }
+
+  @Test
+  public void singleLoadAfterDelay() {
+    Cache<Integer, Integer> c = cache(1, 100);
+    assertEquals(2, (int) c.get(1));
+    assertEquals(1, requests.size());
+  }
+
+  /**
+   * Concurrent loads fill the batch, the long delay is never reached.
+   */
+  @Test
+  public void concurrentLoadsCoalesce() throws Exception {
+    final int _threadCount = 5;
+    final Cache<Integer, Integer> c = cache(TimeUnit.MINUTES.toMillis(5), _threadCount);
+    final Integer[] _results = new Integer[_threadCount];
+    Thread[] _threads = new Thread[_threadCount];
+    for (int i = 0; i < _threadCount; i++) {
+      final int k = i;
+      _threads[i] = new Thread() {
+        @Override
+        public void run() {
+          _results[k] = c.get(k);
+        }
+      };
+      _threads[i].start();
+    }
+    for (Thread t : _threads) {
+      t.join();
+    }
+    for (int i = 0; i < _threadCount; i++) {
+      assertEquals((Integer) (i * 2), _results[i]);
+    }
+    assertEquals(1, requests.size());
+    assertEquals(_threadCount, requests.get(0).size());
+    assertEquals(_threadCount, c.asMap().size());
+  }
+
+  @Test
+  public void bulkRequestPassedOn() {
+    Cache<Integer, Integer> c = cache(TimeUnit.MINUTES.toMillis(5), 100);
+    Set<Integer> _keys = new HashSet<Integer>();
+    _keys.add(1);
+    _keys.add(2);
+    assertEquals(2, c.getAll(_keys).size());
+    assertEquals(_keys, requests.get(0));
+  }
+
+  @Test(expected = CacheLoaderException.class)
+  public void exception() {
+    Cache<Integer, Integer> c = cache(1, 100);
+    fail = true;
+    c.get(1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void bulkLoaderRequired() {
+    builder()
+      .loader(new CacheLoader<Integer, Integer>() {
+        @Override
+        public Integer load(final Integer key) {
+          return key;
+        }
+      })
+      .with(new LoaderCoalescingConfiguration.Builder())
+      .build();
+  }
+
+}
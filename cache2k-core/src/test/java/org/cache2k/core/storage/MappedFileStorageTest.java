@@ -0,0 +1,144 @@
+package org.cache2k.core.storage;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.core.storageApi.StorageEntry;
+import org.cache2k.test.util.TestingBase;
+import org.cache2k.testing.category.FastTests;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class MappedFileStorageTest extends TestingBase {
+
+  File file;
+
+  @Before
+  public void setUp() throws IOException {
+    file = File.createTempFile("cache2k-storage", ".dat");
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+  }
+
+  @Test
+  public void putGetRemove() throws Exception {
+    MappedFileStorage s = new MappedFileStorage(file, 100, 10000, new JavaValueSerializer());
+    s.put(new SimpleStorageEntry("one", 1, 123, 4711));
+    StorageEntry e = s.get("one");
+    assertEquals(1, e.getValueOrException());
+    assertEquals(123, e.getCreatedOrUpdated());
+    assertEquals(4711, e.getValueExpiryTime());
+    assertTrue(s.contains("one"));
+    assertFalse(s.contains("two"));
+    s.put(new SimpleStorageEntry("one", 2, 0, 0));
+    assertEquals(2, s.get("one").getValueOrException());
+    assertEquals(1, s.getEntryCount());
+    assertTrue(s.remove("one"));
+    assertNull(s.get("one"));
+    assertFalse(s.remove("one"));
+    s.close();
+  }
+
+  @Test
+  public void reopen() throws Exception {
+    MappedFileStorage s = new MappedFileStorage(file, 100, 10000, new JavaValueSerializer());
+    for (int i = 0; i < 50; i++) {
+      s.put(new SimpleStorageEntry(i, "value" + i, i, 1000 + i));
+    }
+    s.close();
+    s = new MappedFileStorage(file, 1, 1000, new JavaValueSerializer());
+    assertEquals(50, s.getEntryCount());
+    for (int i = 0; i < 50; i++) {
+      StorageEntry e = s.get(i);
+      assertEquals("value" + i, e.getValueOrException());
+      assertEquals(1000 + i, e.getValueExpiryTime());
+    }
+    s.close();
+  }
+
+  @Test(expected = IOException.class)
+  public void fileInUse() throws Exception {
+    MappedFileStorage s = new MappedFileStorage(file, 100, 10000, new JavaValueSerializer());
+    try {
+      new MappedFileStorage(file, 100, 10000, new JavaValueSerializer());
+    } finally {
+      s.close();
+    }
+  }
+
+  /**
+   * Oldest entries are dropped when the data area or the slots are exhausted,
+   * the newest entries are always retrievable.
+   */
+  @Test
+  public void overwriteOldest() throws Exception {
+    MappedFileStorage s = new MappedFileStorage(file, 100, 5000, new JavaValueSerializer());
+    for (int i = 0; i < 2000; i++) {
+      s.put(new SimpleStorageEntry(i, i, 0, 0));
+      assertEquals(i, s.get(i).getValueOrException());
+    }
+    assertTrue(s.getEntryCount() < 2000);
+    assertNull(s.get(0));
+    s.clear();
+    assertEquals(0, s.getEntryCount());
+    s.close();
+  }
+
+  /**
+   * Heap contents and evicted entries are available after the cache is closed and
+   * built again.
+   */
+  @Test
+  public void warmRestart() {
+    Cache<Integer, Integer> c = builder(Integer.class, Integer.class)
+      .eternal(true)
+      .entryCapacity(100)
+      .with(new StorageConfiguration.Builder().file(file, 1024 * 1024))
+      .build();
+    for (int i = 0; i < 1000; i++) {
+      c.put(i, i);
+    }
+    closeCache();
+    c = builder(Integer.class, Integer.class)
+      .eternal(true)
+      .entryCapacity(100)
+      .with(new StorageConfiguration.Builder().file(file, 1024 * 1024))
+      .build();
+    for (int i = 0; i < 1000; i++) {
+      assertEquals((Integer) i, c.peek(i));
+    }
+  }
+
+}
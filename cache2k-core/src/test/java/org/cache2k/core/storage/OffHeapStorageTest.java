@@ -0,0 +1,164 @@
+package org.cache2k.core.storage;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.core.storageApi.CacheStorage;
+import org.cache2k.core.storageApi.StorageEntry;
+import org.cache2k.test.util.TestingBase;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class OffHeapStorageTest extends TestingBase {
+
+  @Test
+  public void putGetRemove() throws Exception {
+    OffHeapStorage s = new OffHeapStorage(1000, 200, new JavaValueSerializer());
+    s.put(new SimpleStorageEntry(1, "one", 123, 4711));
+    StorageEntry e = s.get(1);
+    assertEquals("one", e.getValueOrException());
+    assertEquals(123, e.getCreatedOrUpdated());
+    assertEquals(4711, e.getValueExpiryTime());
+    assertTrue(s.contains(1));
+    assertEquals(1, s.getEntryCount());
+    assertTrue(s.remove(1));
+    assertNull(s.get(1));
+    assertFalse(s.remove(1));
+    s.close();
+  }
+
+  /**
+   * Oldest entries are dropped when the capacity is exhausted, the newest entries
+   * are always retrievable.
+   */
+  @Test
+  public void overwriteOldest() throws Exception {
+    OffHeapStorage s = new OffHeapStorage(2000, 400, new JavaValueSerializer());
+    for (int i = 0; i < 1000; i++) {
+      s.put(new SimpleStorageEntry(i, i, 0, 0));
+      assertEquals(i, s.get(i).getValueOrException());
+    }
+    assertTrue(s.getEntryCount() < 1000);
+    assertEquals(1000 - s.getEntryCount(), s.getOverwriteCount());
+    assertNull(s.get(0));
+    final List<Object> _keys = new ArrayList<Object>();
+    s.visit(null, null, new CacheStorage.EntryVisitor() {
+      @Override
+      public void visit(final StorageEntry e) {
+        assertEquals(e.getKey(), e.getValueOrException());
+        _keys.add(e.getKey());
+      }
+    });
+    assertEquals(s.getEntryCount(), _keys.size());
+    s.clear();
+    assertEquals(0, s.getEntryCount());
+  }
+
+  /**
+   * Small records need more slots than estimated from the capacity. The hash table
+   * drops the oldest entries before it is full.
+   */
+  @Test
+  public void slotTableFull() throws Exception {
+    OffHeapStorage s = new OffHeapStorage(4096, 1024, new ValueSerializer() {
+      @Override
+      public byte[] serialize(final Object _value) {
+        return new byte[]{(byte) (((Integer) _value) >> 8), (byte) (int) (Integer) _value};
+      }
+
+      @Override
+      public Object deserialize(final byte[] _data) {
+        return ((_data[0] & 0xff) << 8) | (_data[1] & 0xff);
+      }
+    });
+    for (int i = 0; i < 1000; i++) {
+      s.put(new SimpleStorageEntry(i, i, 0, 0));
+      assertEquals(i, s.get(i).getValueOrException());
+    }
+    assertTrue(s.getEntryCount() <= 64);
+    assertEquals(1000 - s.getEntryCount(), s.getOverwriteCount());
+    assertTrue(s.contains(999));
+    assertFalse(s.contains(0));
+    s.remove(999);
+    assertFalse(s.contains(999));
+    assertEquals(998, s.get(998).getValueOrException());
+  }
+
+  @Test
+  public void valueTooBig() throws Exception {
+    OffHeapStorage s = new OffHeapStorage(1000, 200, new JavaValueSerializer());
+    s.put(new SimpleStorageEntry(1, "one", 0, 0));
+    assertTrue(s.contains(1));
+    s.put(new SimpleStorageEntry(1, new byte[300], 0, 0));
+    assertFalse(s.contains(1));
+  }
+
+  /**
+   * Evicted entries are kept in the storage and are moved back to the heap on access.
+   */
+  @Test
+  public void evictToStorage() {
+    Cache<Integer, Integer> c = builder(Integer.class, Integer.class)
+      .eternal(true)
+      .entryCapacity(100)
+      .with(new StorageConfiguration.Builder().offHeap(1024 * 1024))
+      .build();
+    for (int i = 0; i < 1000; i++) {
+      c.put(i, i);
+    }
+    assertEquals(100, countEntriesViaIteration());
+    for (int i = 0; i < 1000; i++) {
+      assertEquals((Integer) i, c.peek(i));
+    }
+    assertTrue(c.containsKey(0));
+    c.remove(0);
+    assertFalse(c.containsKey(0));
+    c.clear();
+    assertNull(c.peek(999));
+  }
+
+  @Test
+  public void evictToStorage_expiry() {
+    Cache<Integer, Integer> c = builder(Integer.class, Integer.class)
+      .expireAfterWrite(5, TimeUnit.MINUTES)
+      .entryCapacity(100)
+      .with(new StorageConfiguration.Builder().offHeap(1024 * 1024))
+      .build();
+    for (int i = 0; i < 1000; i++) {
+      c.put(i, i);
+    }
+    for (int i = 0; i < 1000; i++) {
+      assertEquals((Integer) i, c.get(i));
+    }
+  }
+
+}
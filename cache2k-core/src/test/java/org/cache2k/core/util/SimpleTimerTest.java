@@ -24,7 +24,14 @@ import org.cache2k.testing.category.FastTests;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Only test special cases not covered by normal testing.
@@ -87,6 +94,69 @@ public class SimpleTimerTest {
     }
   }
 
+  /**
+   * Tasks spread over different levels of the timer wheel run in order of
+   * their execution time.
+   */
+  @Test
+  public void executionOrder() {
+    long _START_TIME = 100;
+    int _SIZE = 1000;
+    SimpleTimer t =
+      new SimpleTimer(
+        new SimulatedClock(_START_TIME, true),
+        SimpleTimerTest.class.getName(), true);
+    final List<Long> _executed = new ArrayList<Long>();
+    Random _random = new Random(1802);
+    long _maxTime = 0;
+    for (int i = 0; i < _SIZE; i++) {
+      long _time = _START_TIME + (_random.nextLong() & Long.MAX_VALUE) % (1L << (i % 40));
+      _maxTime = Math.max(_maxTime, _time);
+      final long _expected = _time;
+      t.schedule(new SimpleTimerTask() {
+        @Override
+        public void run() {
+          assertEquals(_expected, scheduledExecutionTime());
+          _executed.add(_expected);
+        }
+      }, _time);
+    }
+    t.timeReachedEvent(_maxTime - 1);
+    assertTrue(_executed.size() < _SIZE);
+    t.timeReachedEvent(_maxTime);
+    assertEquals(_SIZE, _executed.size());
+    List<Long> _sorted = new ArrayList<Long>(_executed);
+    Collections.sort(_sorted);
+    assertEquals(_sorted, _executed);
+  }
+
+  /**
+   * Tasks are executed when their time is reached after the clock went backwards.
+   */
+  @Test
+  public void clockGoesBackwards() {
+    long _START_TIME = 100;
+    SimpleTimer t =
+      new SimpleTimer(
+        new SimulatedClock(_START_TIME, true),
+        SimpleTimerTest.class.getName(), true);
+    MyTimerTask _task1 = new MyTimerTask();
+    t.schedule(_task1, 1000);
+    t.timeReachedEvent(1000);
+    assertTrue(_task1.executed);
+    MyTimerTask _task2 = new MyTimerTask();
+    MyTimerTask _task3 = new MyTimerTask();
+    t.schedule(_task2, 200);
+    t.schedule(_task3, 300);
+    t.timeReachedEvent(150);
+    assertFalse(_task2.executed);
+    t.timeReachedEvent(200);
+    assertTrue(_task2.executed);
+    assertFalse(_task3.executed);
+    t.timeReachedEvent(300);
+    assertTrue(_task3.executed);
+  }
+
   static class MyTimerTask extends SimpleTimerTask {
     volatile boolean executed = false;
     @Override
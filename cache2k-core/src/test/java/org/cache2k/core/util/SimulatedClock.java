@@ -441,6 +441,12 @@ public class SimulatedClock implements InternalClock, Closeable {
       if (wakeupTime > o.wakeupTime) {
         return 1;
       }
+      if (uniqueId < o.uniqueId) {
+        return -1;
+      }
+      if (uniqueId > o.uniqueId) {
+        return 1;
+      }
       return 0;
     }
 
@@ -26,6 +26,7 @@ import org.cache2k.CacheManager;
 import org.cache2k.configuration.Cache2kConfiguration;
 import org.cache2k.configuration.CustomizationSupplierByClassName;
 import org.cache2k.core.Cache2kCoreProviderImpl;
+import org.cache2k.core.InternalCache;
 import org.cache2k.impl.xmlConfiguration.generic.ConfigurationException;
 import org.cache2k.schema.Constants;
 import org.cache2k.testing.category.FastTests;
@@ -249,6 +250,19 @@ public class IntegrationTest {
     c.close();
   }
 
+  @Test
+  public void evictionPolicySection() {
+    Cache c =
+      new Cache2kBuilder<String, String>() { }
+        .manager(CacheManager.getInstance("specialCases"))
+        .name("arcEviction")
+        .build();
+    String _statistics =
+      ((InternalCache) c.requestInterface(InternalCache.class)).getLatestInfo().getExtraStatistics();
+    assertThat(_statistics, containsString("impl=ArcEviction"));
+    c.close();
+  }
+
   @Test
   public void eternal_configExpire() {
     try {
@@ -33,6 +33,9 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
@@ -186,6 +189,25 @@ public class BasicIntCacheOperationsTest {
     cache.put(null, VALUE);
   }
 
+  /**
+   * The key is kept as primitive in the entry and boxed again for the key iteration.
+   */
+  @Test
+  public void put_ExtremeKeys() {
+    cache.put(Integer.MIN_VALUE, VALUE);
+    cache.put(Integer.MAX_VALUE, OTHER_VALUE);
+    cache.put(-1, null);
+    assertEquals(VALUE, cache.peek(Integer.MIN_VALUE));
+    assertEquals(OTHER_VALUE, cache.peek(Integer.MAX_VALUE));
+    assertTrue(cache.containsKey(-1));
+    assertEquals(3, size());
+    Set<Integer> _keys = new HashSet<Integer>();
+    for (Integer k : cache.keys()) {
+      _keys.add(k);
+    }
+    assertEquals(new HashSet<Integer>(Arrays.asList(Integer.MIN_VALUE, Integer.MAX_VALUE, -1)), _keys);
+  }
+
   /*
    * contains
    */
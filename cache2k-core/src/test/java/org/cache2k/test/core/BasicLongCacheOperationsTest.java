@@ -33,6 +33,9 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
@@ -186,6 +189,28 @@ public class BasicLongCacheOperationsTest {
     cache.put(null, VALUE);
   }
 
+  /**
+   * Both keys have the identical hash code, since {@link Long#hashCode()} folds the upper bits.
+   */
+  @Test
+  public void put_SameHashCode() {
+    final long _sameHashKey = (1L << 32) + 1;
+    assertEquals(Long.valueOf(0).hashCode(), Long.valueOf(_sameHashKey).hashCode());
+    cache.put(0, VALUE);
+    cache.put(_sameHashKey, OTHER_VALUE);
+    assertEquals(VALUE, cache.peek(0));
+    assertEquals(OTHER_VALUE, cache.peek(_sameHashKey));
+    assertEquals(2, size());
+    Set<Long> _keys = new HashSet<Long>();
+    for (Long k : cache.keys()) {
+      _keys.add(k);
+    }
+    assertEquals(new HashSet<Long>(Arrays.asList(0L, _sameHashKey)), _keys);
+    cache.remove(_sameHashKey);
+    assertEquals(VALUE, cache.peek(0));
+    assertFalse(cache.containsKey(_sameHashKey));
+  }
+
   /*
    * contains
    */
@@ -0,0 +1,223 @@
+package org.cache2k.test.core;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.CacheEntry;
+import org.cache2k.integration.BulkCacheLoader;
+import org.cache2k.integration.CacheLoaderException;
+import org.cache2k.test.util.TestingBase;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.cache2k.test.core.StaticUtil.*;
+
+/**
+ * Test the bulk loader.
+ *
+ * @author Jens Wilke
+ * @see BulkCacheLoader
+ */
+@Category(FastTests.class)
+public class BulkCacheLoaderTest extends TestingBase {
+
+  final CountingBulkLoader loader = new CountingBulkLoader();
+
+  Cache<Integer, Integer> cache() {
+    return builder().loader(loader).build();
+  }
+
+  @Test
+  public void getAll() {
+    Cache<Integer, Integer> c = cache();
+    c.put(1, 1);
+    Map<Integer, Integer> m = c.getAll(asSet(1, 2, 3));
+    assertEquals(3, m.size());
+    assertEquals(2, (int) m.get(2));
+    assertEquals(1, loader.requests.size());
+    assertEquals(asSet(2, 3), loader.requests.get(0));
+    assertEquals(0, loader.singleLoads.get());
+    assertEquals(2, getInfo().getLoadCount());
+  }
+
+  @Test
+  public void getAll_allPresent() {
+    Cache<Integer, Integer> c = cache();
+    c.put(1, 1);
+    c.getAll(asSet(1));
+    assertEquals(0, loader.requests.size());
+  }
+
+  @Test
+  public void getAll_exception() {
+    Cache<Integer, Integer> c = cache();
+    loader.fail = true;
+    try {
+      c.getAll(asSet(1, 2)).get(1);
+      fail("exception expected");
+    } catch (CacheLoaderException expected) {
+    }
+    assertEquals(2, getInfo().getLoadExceptionCount());
+  }
+
+  @Test
+  public void loadAll() {
+    Cache<Integer, Integer> c = cache();
+    c.put(1, 1);
+    load(c, 1, 2, 3);
+    assertEquals(asSet(2, 3), loader.requests.get(0));
+    assertEquals(1, loader.requests.size());
+    assertEquals(3, (int) c.peek(3));
+  }
+
+  @Test
+  public void reloadAll() {
+    Cache<Integer, Integer> c = cache();
+    c.put(1, 4711);
+    reload(c, 1, 2);
+    assertEquals(asSet(1, 2), loader.requests.get(0));
+    assertEquals(1, (int) c.peek(1));
+    assertEquals(0, loader.singleLoads.get());
+  }
+
+  @Test
+  public void singleGet() {
+    Cache<Integer, Integer> c = cache();
+    assertEquals(1, (int) c.get(1));
+    assertEquals(1, loader.singleLoads.get());
+  }
+
+  /**
+   * A concurrent get for a key in a running bulk load waits for the bulk result.
+   */
+  @Test
+  public void concurrentGetWaitsForBulkLoad() throws Exception {
+    final Cache<Integer, Integer> c = cache();
+    loader.block = new CountDownLatch(1);
+    Thread t = new Thread() {
+      @Override
+      public void run() {
+        c.getAll(asSet(1, 2));
+      }
+    };
+    t.start();
+    while (loader.requests.isEmpty()) {
+      Thread.yield();
+    }
+    final AtomicInteger _value = new AtomicInteger();
+    Thread t2 = new Thread() {
+      @Override
+      public void run() {
+        _value.set(c.get(2));
+      }
+    };
+    t2.start();
+    loader.block.countDown();
+    t.join();
+    t2.join();
+    assertEquals(2, _value.get());
+    assertEquals(1, loader.requests.size());
+    assertEquals(0, loader.singleLoads.get());
+  }
+
+  /**
+   * The loader may use the executor passed to the bulk load, even if the bulk load runs
+   * within a loader executor with only one thread.
+   */
+  @Test
+  public void loadAll_loaderUsesExecutor() {
+    Cache<Integer, Integer> c = builder().loaderThreadCount(1)
+      .loader(new BulkCacheLoader<Integer, Integer>() {
+        @Override
+        public Map<Integer, Integer> loadAll(final Set<Integer> keys, final long startTime,
+                                             final Executor executor) throws Exception {
+          final Map<Integer, Integer> m = new ConcurrentHashMap<Integer, Integer>();
+          final CountDownLatch _done = new CountDownLatch(keys.size());
+          for (final Integer k : keys) {
+            executor.execute(new Runnable() {
+              @Override
+              public void run() {
+                m.put(k, k);
+                _done.countDown();
+              }
+            });
+          }
+          _done.await();
+          return m;
+        }
+      })
+      .build();
+    load(c, 1, 2, 3);
+    assertEquals(3, (int) c.peek(3));
+  }
+
+  static Set<Integer> asSet(Integer... keys) {
+    return new HashSet<Integer>(Arrays.asList(keys));
+  }
+
+  static class CountingBulkLoader extends BulkCacheLoader<Integer, Integer> {
+
+    final List<Set<Integer>> requests = new CopyOnWriteArrayList<Set<Integer>>();
+    final AtomicInteger singleLoads = new AtomicInteger();
+    volatile CountDownLatch block;
+    volatile boolean fail;
+
+    @Override
+    public Integer load(final Integer key, final long startTime,
+                        final CacheEntry<Integer, Integer> currentEntry) throws Exception {
+      singleLoads.incrementAndGet();
+      return key;
+    }
+
+    @Override
+    public Map<Integer, Integer> loadAll(final Set<Integer> keys, final long startTime,
+                                         final Executor executor) throws Exception {
+      requests.add(new HashSet<Integer>(keys));
+      if (block != null) {
+        block.await();
+      }
+      if (fail) {
+        throw new IllegalStateException("loader failure");
+      }
+      Map<Integer, Integer> m = new HashMap<Integer, Integer>();
+      for (Integer k : keys) {
+        m.put(k, k);
+      }
+      return m;
+    }
+
+  }
+
+}
@@ -0,0 +1,112 @@
+package org.cache2k.test.core.expiry;
+
+/*
+ * #%L
+ * cache2k implementation
+ * %%
+ * Copyright (C) 2000 - 2020 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.CacheEntry;
+import org.cache2k.core.LazyExpiryConfiguration;
+import org.cache2k.event.CacheEntryExpiredListener;
+import org.cache2k.test.util.Condition;
+import org.cache2k.test.util.TestingBase;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Expiry without timer tasks per entry.
+ *
+ * @author Jens Wilke
+ * @see LazyExpiryConfiguration
+ */
+@Category(FastTests.class)
+public class LazyExpiryTest extends TestingBase {
+
+  static final long EXPIRY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+  static final int COUNT = 100;
+
+  @Before
+  public void setUp() {
+    enableFastClock();
+  }
+
+  Cache2kBuilder<Integer, Integer> lazyBuilder() {
+    return builder()
+      .expireAfterWrite(EXPIRY_MILLIS, TimeUnit.MILLISECONDS)
+      .with(new LazyExpiryConfiguration.Builder()
+        .sweepInterval(1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void expiredOnAccessAndRemovedBySweeper() {
+    final Cache<Integer, Integer> c = lazyBuilder().build();
+    for (int i = 0; i < COUNT; i++) {
+      c.put(i, i);
+    }
+    assertEquals("only the sweeper task", 1, getInfo().getScheduledTimerTaskCount());
+    assertTrue(c.containsKey(1));
+    sleep(EXPIRY_MILLIS * 2);
+    assertFalse(c.containsKey(1));
+    assertNull(c.peek(2));
+    await(new Condition() {
+      @Override
+      public boolean check() {
+        return getInfo().getSize() == 0;
+      }
+    });
+    assertEquals(COUNT, getInfo().getExpiredCount());
+  }
+
+  @Test
+  public void expiryListener() {
+    final AtomicInteger _listenerCalls = new AtomicInteger();
+    final Cache<Integer, Integer> c = lazyBuilder()
+      .addListener(new CacheEntryExpiredListener<Integer, Integer>() {
+        @Override
+        public void onEntryExpired(final Cache<Integer, Integer> c, final CacheEntry<Integer, Integer> e) {
+          _listenerCalls.incrementAndGet();
+        }
+      })
+      .build();
+    for (int i = 0; i < COUNT; i++) {
+      c.put(i, i);
+    }
+    sleep(EXPIRY_MILLIS * 2);
+    await(new Condition() {
+      @Override
+      public boolean check() {
+        return _listenerCalls.get() == COUNT;
+      }
+    });
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void sharpExpiryNotPossible() {
+    lazyBuilder().sharpExpiry(true).build();
+  }
+
+}